@@ -0,0 +1,29 @@
+package me.security.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openjdk.jmh.Main;
+
+/**
+ * Run the benchmarks, writing the results as json to target/jmh-result.json
+ * unless another result format or file is given.<br>
+ * Takes the same arguments as the JMH launcher, for example
+ * <b>java -jar target/benchmarks.jar RestBenchmark -f 1</b> to only run the
+ * REST ones with a single fork.
+ */
+public class Benchmarks {
+
+	public static final String RESULT_FILE = "target/jmh-result.json";
+
+	public static void main(String[] args) throws Exception {
+		List<String> options = new ArrayList<String>(Arrays.asList(args));
+		if (!options.contains("-rf"))
+			options.addAll(Arrays.asList("-rf", "json"));
+		if (!options.contains("-rff"))
+			options.addAll(Arrays.asList("-rff", RESULT_FILE));
+		Main.main(options.toArray(new String[0]));
+	}
+
+}
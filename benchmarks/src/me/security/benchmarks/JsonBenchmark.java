@@ -0,0 +1,66 @@
+package me.security.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import me.security.hardware.sensors.Sensor;
+import me.security.managers.DatabaseManager.Log;
+
+/**
+ * Serialization of the /sensors and /notify answers, with the same Gson
+ * configuration as RestAPIManager
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+	@Param({ "10", "50" })
+	public int size;
+
+	private Gson gson;
+	private List<Sensor> sensors;
+	private List<Log> logs;
+
+	@Setup
+	public void setUp() {
+		this.gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
+		this.sensors = new ArrayList<Sensor>();
+		this.logs = new ArrayList<Log>();
+		long now = System.currentTimeMillis();
+		for (int i = 1; i <= this.size; i++) {
+			this.sensors.add(new Sensor(i, "Capteur " + i));
+			this.logs.add(new Log(i, now - i * 1000L, i % 2 == 0, "Detection Capteur " + i + " (Porte ouverte)"));
+		}
+	}
+
+	@Benchmark
+	public String sensors() {
+		return this.gson.toJson(this.sensors);
+	}
+
+	@Benchmark
+	public String logs() {
+		return this.gson.toJson(this.logs);
+	}
+
+}
@@ -0,0 +1,74 @@
+package me.security.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import me.security.logs.LogQuery;
+import me.security.logs.LogWriter;
+import me.security.logs.MemoryLogStore;
+import me.security.managers.DatabaseManager.Log;
+
+/**
+ * Cost of logging for the alarm path, from several threads : appending to
+ * MemoryLogStore, and queueing to the LogWriter used by DatabaseManager.rawLog
+ * with a sink that doesn't wait for any database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class LogBenchmark {
+
+	private MemoryLogStore store;
+	private LogWriter writer;
+	private LogQuery page;
+
+	@Setup
+	public void setUp() {
+		this.store = new MemoryLogStore(MemoryLogStore.MAX_CHUNKS, false);
+		this.writer = new LogWriter(batch -> new int[batch.size()], log -> {
+		});
+		this.page = new LogQuery(0, 50, true, 0, 0, null);
+		for (int i = 0; i < 10000; i++)
+			this.store.rawLog(i % 2 == 0, "Detection Porte (ouverte)");
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.writer.close();
+		this.store.close();
+	}
+
+	@Benchmark
+	public void memoryStoreRawLog() {
+		this.store.rawLog(true, "Detection Porte (ouverte)");
+	}
+
+	@Benchmark
+	public boolean logWriterOffer() {
+		return this.writer.offer(new Log(0, System.currentTimeMillis(), true, "Detection Porte (ouverte)"));
+	}
+
+	@Benchmark
+	public int memoryStoreQuery() throws Exception {
+		int[] sum = new int[1];
+		this.store.queryLogs(this.page, (id, time, relatedToSensor, info) -> sum[0] += id);
+		return sum[0];
+	}
+
+}
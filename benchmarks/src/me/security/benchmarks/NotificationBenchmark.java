@@ -0,0 +1,72 @@
+package me.security.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import me.security.loadtest.StubSender;
+import me.security.managers.NotificationManager;
+import me.security.notification.NotificationPolicy;
+import me.security.notification.NotificationResult;
+
+/**
+ * Fan-out of triggerAll to stub senders answering at once : the cost of
+ * queueing a notification to every worker and of its round-trip through
+ * their threads, without any provider latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotificationBenchmark {
+
+	/**
+	 * Neither merged, rate limited nor retried
+	 */
+	private static final NotificationPolicy UNLIMITED = new NotificationPolicy(0, 1, Integer.MAX_VALUE, 1, 0, 1,
+			Integer.MAX_VALUE, 1);
+
+	@Param({ "1", "2", "8" })
+	public int senders;
+
+	private NotificationManager manager;
+
+	@Setup
+	public void setUp() {
+		this.manager = new NotificationManager();
+		for (int i = 0; i < this.senders; i++)
+			this.manager.add(new StubSender(i, 0), UNLIMITED);
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.manager.close();
+	}
+
+	/**
+	 * @return The results, once every sender delivered the notification
+	 */
+	@Benchmark
+	public List<CompletableFuture<NotificationResult>> triggerAll() {
+		List<CompletableFuture<NotificationResult>> results = this.manager.triggerAll("Detection Porte (ouverte)");
+		for (CompletableFuture<NotificationResult> result : results)
+			result.join();
+		return results;
+	}
+
+}
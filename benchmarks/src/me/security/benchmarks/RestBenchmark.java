@@ -0,0 +1,93 @@
+package me.security.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import me.security.hardware.sensors.Sensor;
+import me.security.rest.HttpRequestParser;
+import me.security.rest.ResponseCache;
+import me.security.rest.RestRequest;
+import me.security.rest.RestResponse;
+import me.security.rest.Router;
+
+/**
+ * Cost of answering a request once read from the socket : parsing it,
+ * routing it to its endpoint and encoding the response, like the transports
+ * do for every poll of the mobile app.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RestBenchmark {
+
+	@Param({ "/alarm", "/sensors", "/sensor/3/toggle", "/unknown" })
+	public String url;
+
+	private HttpRequestParser parser;
+	private Router router;
+	private ByteBuffer input;
+	private byte[] request;
+
+	@Setup
+	public void setUp() {
+		Gson gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
+		List<Sensor> sensors = new ArrayList<Sensor>();
+		for (int i = 1; i <= 8; i++)
+			sensors.add(new Sensor(i, "Capteur " + i));
+		AtomicLong version = new AtomicLong();
+		ResponseCache alarm = new ResponseCache(version::get, () -> "true");
+		ResponseCache sensorsCache = new ResponseCache(version::get, () -> gson.toJson(sensors));
+
+		this.parser = new HttpRequestParser();
+		this.router = new Router()
+				.add("/alarm", (request, params) -> alarm.get(request))
+				.add("/sensors", (request, params) -> sensorsCache.get(request))
+				.add("/sensor/{id:int}/toggle", (request, params) -> {
+					Sensor sensor = sensors.get(params.getInt("id") - 1);
+					return RestResponse.text(sensor.isEnabled() + "");
+				});
+		this.input = ByteBuffer.allocateDirect(2048);
+		this.request = ("GET " + this.url + " HTTP/1.1\r\nHost: raspsecurity\r\nUser-Agent: okhttp/4.2.2\r\n"
+				+ "appPassword: eaz897hfg654kiu714sf32d1\r\nAccept-Encoding: gzip\r\n\r\n")
+						.getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+	@Benchmark
+	public RestRequest parse() {
+		this.input.put(this.request);
+		return this.parser.parse(this.input);
+	}
+
+	@Benchmark
+	public ByteBuffer[] parseAndDispatch() throws Exception {
+		this.input.put(this.request);
+		RestRequest request = this.parser.parse(this.input);
+		RestResponse response = this.router.dispatch(request);
+		if (response == null)
+			response = RestResponse.notFound("Unknown endpoint: " + request.getUrl());
+		return response.toBuffers(request.isKeepAlive());
+	}
+
+}
@@ -0,0 +1,436 @@
+package me.security.loadtest;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import me.security.hardware.sensors.Sensor;
+import me.security.logs.MemoryLogStore;
+import me.security.managers.NotificationManager;
+import me.security.managers.RestAPIManager;
+import me.security.managers.ServerSecurity;
+import me.security.rest.BlockingRestTransport;
+import me.security.rest.ConnectionExecutor;
+import me.security.rest.NioRestTransport;
+import me.security.rest.RestTransport;
+
+/**
+ * Simulate mobile clients polling a RestAPIManager and report the throughput
+ * and latency percentiles of every endpoint.<br>
+ * Each client keeps its own connection alive and sends requests picked in
+ * the mix, as fast as possible or every interval milliseconds. With an
+ * interval, latencies are measured from when the request should have been
+ * sent, so a stalled server is not hidden by clients waiting for it.<br>
+ * Without --host, a server is started in this process with a MemoryLogStore
+ * and StubSenders, so it runs fully offline.
+ * <blockquote>java -cp target/benchmarks.jar me.security.loadtest.LoadTest
+ * --clients 2000 --duration 60 --mix alarm=50,sensors=25,notify=20,toggle=5
+ * </blockquote> Options :<br>
+ * --host, --port : server to load, an embedded one if no host is given<br>
+ * --transport nio|blocking : transport of the embedded server<br>
+ * --clients : concurrent connections, 100 by default<br>
+ * --duration, --warmup : seconds measured, and run before measuring<br>
+ * --interval : milliseconds between two requests of a client, 0 by default
+ * <br>
+ * --mix : weight of each endpoint among alarm, sensors, notify, toggle and
+ * test, test triggering the alarm and its notifications<br>
+ * --sensors : sensors of the embedded server, --notifyLatency : milliseconds
+ * taken by its StubSenders<br>
+ * --password : appPassword header<br>
+ * --hdr : file where the full latency distribution is written
+ */
+public class LoadTest {
+
+	public static final String DEFAULT_MIX = "alarm=50,sensors=25,notify=20,toggle=5";
+	public static final String DEFAULT_PASSWORD = "eaz897hfg654kiu714sf32d1";
+
+	/**
+	 * Microseconds, latencies above are recorded as this value
+	 */
+	private static final long MAX_LATENCY = TimeUnit.MINUTES.toMicros(1);
+
+	private final String host;
+	private final int port;
+	private final int clients;
+	private final long interval;
+	private final byte[][] toggles;
+	private final List<Endpoint> endpoints;
+	private final int totalWeight;
+	private final Recorder total;
+	private final AtomicLong errors;
+	private volatile boolean running;
+	private volatile boolean recording;
+
+	private LoadTest(String host, int port, int clients, long interval, int sensors, String mix, String password)
+			throws IllegalArgumentException {
+		this.host = host;
+		this.port = port;
+		this.clients = clients;
+		if (clients <= 0 || sensors <= 0)
+			throw new IllegalArgumentException("clients and sensors must be positive");
+		this.interval = TimeUnit.MILLISECONDS.toNanos(interval);
+		this.endpoints = new ArrayList<Endpoint>();
+		this.total = new Recorder(MAX_LATENCY, 3);
+		this.errors = new AtomicLong();
+
+		int weights = 0;
+		for (String entry : mix.split(",")) {
+			String[] weight = entry.split("=");
+			if (weight.length != 2)
+				throw new IllegalArgumentException("Invalid mix entry : " + entry);
+			String path = path(weight[0].trim());
+			int value = Integer.parseInt(weight[1].trim());
+			if (value < 0)
+				throw new IllegalArgumentException("Negative weight : " + entry);
+			if (value > 0) {
+				this.endpoints.add(new Endpoint(weight[0].trim(), value, request(path, password)));
+				weights += value;
+			}
+		}
+		if (weights == 0)
+			throw new IllegalArgumentException("The mix has no endpoint");
+		this.totalWeight = weights;
+
+		this.toggles = new byte[sensors][];
+		for (int i = 0; i < sensors; i++)
+			this.toggles[i] = request("/sensor/" + (i + 1) + "/toggle", password);
+	}
+
+	private static String path(String name) throws IllegalArgumentException {
+		switch (name) {
+		case "alarm":
+			return "/alarm";
+		case "sensors":
+			return "/sensors";
+		case "notify":
+			return "/notify";
+		case "toggle":
+			return null;// A random sensor each time
+		case "test":
+			return "/alarm/test";
+		default:
+			throw new IllegalArgumentException("Unknown endpoint : " + name);
+		}
+	}
+
+	private static byte[] request(String path, String password) {
+		if (path == null)
+			return null;
+		return ("GET " + path + " HTTP/1.1\r\nHost: raspsecurity\r\nappPassword: " + password + "\r\n\r\n")
+				.getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Run the clients for warmup then duration seconds
+	 */
+	private void run(int warmup, int duration) throws InterruptedException {
+		this.running = true;
+		List<Thread> threads = new ArrayList<Thread>(this.clients);
+		for (int i = 0; i < this.clients; i++) {
+			// Small stacks, thousands of clients are thousands of threads
+			Thread t = new Thread(null, this::client, "LoadTest-" + i, 256 * 1024);
+			t.setDaemon(true);
+			t.start();
+			threads.add(t);
+		}
+
+		System.out.println("Warming up " + this.clients + " clients for " + warmup + "s...");
+		TimeUnit.SECONDS.sleep(warmup);
+		this.recording = true;
+		this.total.getIntervalHistogram();
+		for (Endpoint endpoint : this.endpoints)
+			endpoint.recorder.getIntervalHistogram();
+		this.errors.set(0);
+
+		Histogram interval = null;
+		for (int second = 1; second <= duration; second++) {
+			TimeUnit.SECONDS.sleep(1);
+			interval = this.total.getIntervalHistogram(interval);
+			System.out.println(String.format("%4ds %8d req/s  p50 %8.2fms  p99 %8.2fms  max %8.2fms  errors %d",
+					second, interval.getTotalCount(), millis(interval.getValueAtPercentile(50)),
+					millis(interval.getValueAtPercentile(99)), millis(interval.getMaxValue()), this.errors.get()));
+		}
+		this.running = false;
+		for (Thread t : threads)
+			t.join(1000);
+	}
+
+	/**
+	 * A simulated phone, with its own connection
+	 */
+	private void client() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		Socket socket = null;
+		InputStream in = null;
+		OutputStream out = null;
+		long next = System.nanoTime() + random.nextLong(Math.max(this.interval, 1));
+
+		while (this.running) {
+			Endpoint endpoint = pick(random);
+			byte[] request = endpoint.request != null ? endpoint.request
+					: this.toggles[random.nextInt(this.toggles.length)];
+
+			long start;
+			if (this.interval > 0) {
+				start = next;
+				next += this.interval;
+				long wait = start - System.nanoTime();
+				if (wait > 0)
+					LockSupport.parkNanos(wait);
+			} else {
+				start = System.nanoTime();
+			}
+
+			try {
+				if (socket == null) {
+					socket = new Socket();
+					socket.setTcpNoDelay(true);
+					socket.connect(new InetSocketAddress(this.host, this.port), 10000);
+					in = new BufferedInputStream(socket.getInputStream());
+					out = socket.getOutputStream();
+				}
+				out.write(request);
+				out.flush();
+				Response response = read(in);
+
+				long latency = Math.min((System.nanoTime() - start) / 1000, MAX_LATENCY);
+				if (this.recording) {
+					endpoint.recorder.recordValue(latency);
+					this.total.recordValue(latency);
+					if (response.status != 200 && response.status != 304) {
+						endpoint.errors.incrementAndGet();
+						this.errors.incrementAndGet();
+					}
+				}
+				if (!response.keepAlive) {
+					socket.close();
+					socket = null;
+				}
+			} catch (IOException e) {
+				if (this.recording && this.running) {
+					endpoint.errors.incrementAndGet();
+					this.errors.incrementAndGet();
+				}
+				socket = close(socket);
+			}
+		}
+		close(socket);
+	}
+
+	private Endpoint pick(ThreadLocalRandom random) {
+		int value = random.nextInt(this.totalWeight);
+		for (Endpoint endpoint : this.endpoints) {
+			value -= endpoint.weight;
+			if (value < 0)
+				return endpoint;
+		}
+		return this.endpoints.get(this.endpoints.size() - 1);
+	}
+
+	private static Socket close(Socket socket) {
+		if (socket != null) {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Already closed
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Read a whole response framed with a Content-Length, skipping its body
+	 */
+	private static Response read(InputStream in) throws IOException {
+		String statusLine = readLine(in);
+		int space = statusLine.indexOf(' ');
+		if (space < 0 || statusLine.length() < space + 4)
+			throw new IOException("Invalid status line : " + statusLine);
+		Response response = new Response(Integer.parseInt(statusLine.substring(space + 1, space + 4)));
+
+		int length = 0;
+		String line;
+		while (!(line = readLine(in)).isEmpty()) {
+			int colon = line.indexOf(':');
+			if (colon < 0)
+				continue;
+			String name = line.substring(0, colon).trim();
+			String value = line.substring(colon + 1).trim();
+			if (name.equalsIgnoreCase("Content-Length")) {
+				length = Integer.parseInt(value);
+			} else if (name.equalsIgnoreCase("Connection")) {
+				response.keepAlive = !value.equalsIgnoreCase("close");
+			}
+		}
+
+		while (length > 0) {
+			long skipped = in.skip(length);
+			if (skipped <= 0) {
+				if (in.read() < 0)
+					throw new EOFException();
+				skipped = 1;
+			}
+			length -= skipped;
+		}
+		return response;
+	}
+
+	private static String readLine(InputStream in) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int c;
+		while ((c = in.read()) != '\n') {
+			if (c < 0)
+				throw new EOFException("Connection closed by the server");
+			if (c != '\r')
+				line.append((char) c);
+		}
+		return line.toString();
+	}
+
+	private static double millis(long micros) {
+		return micros / 1000d;
+	}
+
+	/**
+	 * Print the percentiles of every endpoint
+	 */
+	private void report(int duration, PrintStream hdr) {
+		System.out.println();
+		System.out.println(String.format("%-8s %10s %9s %9s %9s %9s %9s %9s %9s %7s", "endpoint", "requests", "req/s",
+				"mean", "p50", "p90", "p99", "p99.9", "max", "errors"));
+		Histogram all = new Histogram(MAX_LATENCY, 3);
+		for (Endpoint endpoint : this.endpoints) {
+			Histogram histogram = endpoint.recorder.getIntervalHistogram();
+			all.add(histogram);
+			print(endpoint.name, histogram, duration, endpoint.errors.get());
+		}
+		print("all", all, duration, this.errors.get());
+		System.out.println("Latencies in milliseconds");
+
+		if (hdr != null)
+			all.outputPercentileDistribution(hdr, 1000.0);
+	}
+
+	private static void print(String name, Histogram histogram, int duration, long errors) {
+		System.out.println(String.format("%-8s %10d %9d %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f %7d", name,
+				histogram.getTotalCount(), histogram.getTotalCount() / duration, histogram.getMean() / 1000,
+				millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+				millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+				millis(histogram.getMaxValue()), errors));
+	}
+
+	/**
+	 * Start a server in this process, with logs kept in memory and stub
+	 * notification providers
+	 *
+	 * @return The port it listens on
+	 */
+	private static int startServer(String transport, int clients, int sensors, long notifyLatency)
+			throws IOException {
+		MemoryLogStore logs = new MemoryLogStore(MemoryLogStore.MAX_CHUNKS, false);
+		NotificationManager notif = new NotificationManager();
+		notif.add(new StubSender(1, notifyLatency));
+		notif.add(new StubSender(2, notifyLatency));
+
+		ServerSecurity security = new ServerSecurity(logs, notif);
+		for (int i = 1; i <= sensors; i++)
+			security.addSensor(new Sensor(i, "Capteur " + i));
+
+		RestAPIManager.PORT = 0;
+		RestAPIManager.MAX_CONNECTIONS = clients;
+		RestAPIManager.BACKLOG = clients;
+		ConnectionExecutor executor = ConnectionExecutor.create(clients, clients);
+		RestTransport rest = "blocking".equals(transport) ? new BlockingRestTransport(executor)
+				: new NioRestTransport(executor);
+		new RestAPIManager(security, rest);
+		return RestAPIManager.PORT;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (!args[i].startsWith("--"))
+				throw new IllegalArgumentException("Unexpected argument : " + args[i]);
+			options.put(args[i].substring(2), args[i + 1]);
+		}
+
+		int clients = Integer.parseInt(options.getOrDefault("clients", "100"));
+		int sensors = Integer.parseInt(options.getOrDefault("sensors", "8"));
+		String host = options.get("host");
+		int port;
+		if (host == null) {
+			host = "localhost";
+			port = startServer(options.getOrDefault("transport", "nio"), clients, sensors,
+					Long.parseLong(options.getOrDefault("notifyLatency", "200")));
+		} else {
+			port = Integer.parseInt(options.getOrDefault("port", "8080"));
+		}
+
+		LoadTest test = new LoadTest(host, port, clients, Long.parseLong(options.getOrDefault("interval", "0")),
+				sensors, options.getOrDefault("mix", DEFAULT_MIX), options.getOrDefault("password", DEFAULT_PASSWORD));
+		int duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+		test.run(Integer.parseInt(options.getOrDefault("warmup", "5")), duration);
+
+		String hdr = options.get("hdr");
+		if (hdr == null) {
+			test.report(duration, null);
+		} else {
+			try (PrintStream out = new PrintStream(hdr, StandardCharsets.UTF_8)) {
+				test.report(duration, out);
+			}
+			System.out.println("Latency distribution written to " + hdr);
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * An endpoint of the mix and its latencies
+	 */
+	private static class Endpoint {
+
+		private final String name;
+		private final int weight;
+		private final byte[] request;
+		private final Recorder recorder;
+		private final AtomicLong errors;
+
+		private Endpoint(String name, int weight, byte[] request) {
+			this.name = name;
+			this.weight = weight;
+			this.request = request;
+			this.recorder = new Recorder(MAX_LATENCY, 3);
+			this.errors = new AtomicLong();
+		}
+
+	}
+
+	private static class Response {
+
+		private final int status;
+		private boolean keepAlive;
+
+		private Response(int status) {
+			this.status = status;
+			this.keepAlive = true;
+		}
+
+	}
+
+}
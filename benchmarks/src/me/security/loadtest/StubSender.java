@@ -0,0 +1,70 @@
+package me.security.loadtest;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import me.security.notification.NotificationSender;
+
+/**
+ * A NotificationSender which only waits like a provider would, to run the
+ * server offline
+ */
+public class StubSender extends NotificationSender {
+
+	private final int id;
+	private final long latency;
+	private final AtomicLong triggered;
+
+	/**
+	 * @param id      Distinguish the stubs of a same NotificationManager
+	 * @param latency Milliseconds taken by each request, 0 to answer at once
+	 * @throws IllegalArgumentException latency must not be negative
+	 */
+	public StubSender(int id, long latency) throws IllegalArgumentException {
+		if (latency < 0)
+			throw new IllegalArgumentException("latency must not be negative");
+		this.id = id;
+		this.latency = latency;
+		this.triggered = new AtomicLong();
+	}
+
+	@Override
+	public void trigger(String value) throws InterruptedException {
+		request();
+	}
+
+	@Override
+	public void trigger(List<String> values) throws InterruptedException {
+		request();
+	}
+
+	private void request() throws InterruptedException {
+		if (this.latency > 0)
+			TimeUnit.MILLISECONDS.sleep(this.latency);
+		this.triggered.incrementAndGet();
+	}
+
+	/**
+	 * @return Number of requests received, digests count as one
+	 */
+	public long getTriggered() {
+		return this.triggered.get();
+	}
+
+	@Override
+	public String getKey() {
+		return "stub:" + this.id;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof StubSender && ((StubSender) o).id == this.id;
+	}
+
+	@Override
+	public int hashCode() {
+		return this.id;
+	}
+
+}
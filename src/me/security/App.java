@@ -2,47 +2,193 @@ package me.security;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 
+import me.security.hardware.sensors.Sensor;
+import me.security.hardware.simulated.DetectionPattern;
+import me.security.hardware.simulated.SimulatedSensorDriver;
+import me.security.hardware.simulated.TraceRecorder;
+import me.security.hardware.simulated.TraceReplayer;
+import me.security.logging.AsyncAppender;
+import me.security.logging.Level;
+import me.security.logging.Logger;
+import me.security.logs.LogStore;
+import me.security.logs.MemoryLogStore;
 import me.security.managers.DatabaseManager;
 import me.security.managers.NotificationManager;
 import me.security.managers.ServerSecurity;
 import me.security.notification.NotificationFreeAPI;
+import me.security.notification.NotificationHttpClient;
 import me.security.notification.NotificationIFTTT;
+import me.security.notification.NotificationOutbox;
 
 public class App {
 
+	/**
+	 * Number of sensors simulated with --simulated
+	 */
+	public static int SIMULATED_SENSORS = 4;
+
+	private static final Logger LOG = Logger.get(App.class);
+
 	/**
 	 * The main entry point of RaspSecurity. Utilization of the argument --simulated
-	 * is needed if running this on Windows
+	 * is needed if running this on Windows<br>
+	 * --simulated simulates SIMULATED_SENSORS sensors (or --sensors=N) detecting
+	 * following --pattern=rate=0.1,jitter=0.5,burst=5,burstChance=0.1, see
+	 * DetectionPattern, seeded with --seed=N<br>
+	 * --replay=path replays a trace recorded with --record=path, at
+	 * --replay-speed=N times the real time (0 for no waiting), in loop with
+	 * --replay-loop<br>
+	 * With --logs=memory, logs are only kept in memory instead of MySQL<br>
+	 * --log-file=path writes the server log to a rotating file instead of the
+	 * console, --log-level=DEBUG|INFO|WARN|ERROR filters it and
+	 * --log-format=json writes JSON objects instead of key=value pairs
 	 */
 	public static void main(String[] args) throws UnsatisfiedLinkError, IOException {
-		System.out.println("Launching RaspSecurityServer... (" + new File(".").getAbsolutePath() + ")");
+		configureLogging(args);
+		LOG.info("Launching RaspSecurityServer", "directory", new File(".").getAbsolutePath());
 
-		DatabaseManager db = DatabaseManager.generateFromFile();
-		NotificationManager notif = new NotificationManager();
+		LogStore db = Arrays.asList(args).contains("--logs=memory") ? new MemoryLogStore()
+				: DatabaseManager.generateFromFile();
+		NotificationManager notif = createNotificationManager();
+		NotificationHttpClient http = new NotificationHttpClient();
 
 		try {
-			NotificationFreeAPI fm = NotificationFreeAPI.generateFromFile();
+			NotificationFreeAPI fm = NotificationFreeAPI.generateFromFile(http);
 			notif.add(fm);
 		} catch (IOException e) {
-			e.printStackTrace();
+			LOG.error("Unable to add the Free notifications", e);
 		}
 
 		try {
-			NotificationIFTTT ifttt = NotificationIFTTT.generateFromFile();
+			NotificationIFTTT ifttt = NotificationIFTTT.generateFromFile(http);
 			notif.add(ifttt);
 		} catch (IOException e) {
-			e.printStackTrace();
+			LOG.error("Unable to add the IFTTT notifications", e);
 		}
 		
-		new ServerSecurity(db, notif);
+		// Notifications not delivered before the last stop
+		notif.replay();
+
+		ServerSecurity security = new ServerSecurity(db, notif);
+
+		String record = getOption(args, "--record", null);
+		TraceRecorder recorder = record == null ? null : new TraceRecorder(new File(record));
+		if (recorder != null)
+			security.addDetectionListener(recorder);
+
+		SimulatedSensorDriver simulated = Arrays.asList(args).contains("--simulated")
+				? startSimulation(security, args)
+				: null;
+
+		String replay = getOption(args, "--replay", null);
+		TraceReplayer replayer = replay == null ? null
+				: new TraceReplayer(security, new File(replay),
+						Double.parseDouble(getOption(args, "--replay-speed", "1")),
+						Arrays.asList(args).contains("--replay-loop"));
+		if (replayer != null)
+			replayer.start();
 
 		// Adding closing mechanism to shutdown DB connection
 		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-			System.out.println("Closing RaspSecurityServer...");
+			LOG.info("Closing RaspSecurityServer");
+			if (simulated != null)
+				simulated.close();
+			if (replayer != null)
+				replayer.close();
+			security.close();// Last detections are logged and notified first
+			if (recorder != null) {
+				try {
+					recorder.close();
+				} catch (IOException e) {
+					LOG.error("Unable to close the trace", e);
+				}
+			}
+			notif.close();
+			db.close();
+			try {
+				http.close();
+			} catch (IOException e) {
+				LOG.error("Unable to close the HTTP client", e);
+			}
+			Logger.shutdown();// Last, so the records above are written
 		}));
 
-		System.out.println("Started successfuly.");
+		LOG.info("Started successfuly");
+
+		// Every thread is a daemon, keep simulating until the process is stopped
+		try {
+			if (simulated != null) {
+				Thread.currentThread().join();
+			} else if (replayer != null) {
+				replayer.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * A full or read-only SD card, or a corrupt outbox, must not prevent the
+	 * alarm from starting : notifications are then sent without being
+	 * journaled
+	 */
+	private static NotificationManager createNotificationManager() {
+		try {
+			return new NotificationManager(new NotificationOutbox(new File("notifications.outbox")));
+		} catch (IOException | RuntimeException e) {
+			LOG.error("Unable to open the notification outbox, notifications won't be journaled", e);
+			return new NotificationManager();
+		}
+	}
+
+	/**
+	 * Simulate sensors detecting following the --simulated options
+	 * 
+	 * @throws IllegalArgumentException If an option is invalid
+	 */
+	private static SimulatedSensorDriver startSimulation(ServerSecurity security, String[] args)
+			throws IllegalArgumentException {
+		DetectionPattern pattern = DetectionPattern.parse(getOption(args, "--pattern", ""));
+		SimulatedSensorDriver driver = new SimulatedSensorDriver(security,
+				Long.parseLong(getOption(args, "--seed", Long.toString(System.nanoTime()))));
+		int count = Integer.parseInt(getOption(args, "--sensors", Integer.toString(SIMULATED_SENSORS)));
+		for (int i = 1; i <= count; i++)
+			driver.add(new Sensor(i, "Capteur " + i), pattern);
+		driver.start();
+		return driver;
+	}
+
+	/**
+	 * @param args The command line arguments
+	 * @param name The option, like --sensors
+	 * @param def  Returned if the option is not given
+	 * @return The value of the last --name=value argument, def if none
+	 */
+	private static String getOption(String[] args, String name, String def) {
+		String value = def;
+		for (String arg : args)
+			if (arg.startsWith(name + "="))
+				value = arg.substring(name.length() + 1);
+		return value;
+	}
+
+	/**
+	 * Apply the logging options, before anything is logged
+	 * 
+	 * @throws IllegalArgumentException If the level is unknown
+	 */
+	private static void configureLogging(String[] args) throws IllegalArgumentException {
+		for (String arg : args) {
+			if (arg.startsWith("--log-file=")) {
+				AsyncAppender.FILE = new File(arg.substring("--log-file=".length()));
+			} else if (arg.startsWith("--log-level=")) {
+				Logger.LEVEL = Level.valueOf(arg.substring("--log-level=".length()).toUpperCase());
+			} else if (arg.equals("--log-format=json")) {
+				AsyncAppender.JSON = true;
+			}
+		}
 	}
 	
 }
@@ -0,0 +1,75 @@
+package me.security.hardware.sensors;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import com.google.gson.annotations.Expose;
+
+/**
+ * A detection sensor managed by ServerSecurity, a disabled sensor is ignored
+ * even if the alarm is enabled.<br>
+ * Serialized by RestAPIManager for the mobile app.
+ *
+ * @see me.security.managers.ServerSecurity
+ */
+public class Sensor {
+
+	@Expose private final int id;
+	@Expose private final String name;
+	@Expose private volatile boolean enabled;
+	private final List<Consumer<Sensor>> listeners;
+
+	/**
+	 * @param id   Unique identifier of this sensor
+	 * @param name Name displayed in logs and notifications
+	 * @throws IllegalArgumentException name must not be null or empty
+	 */
+	public Sensor(int id, String name) throws IllegalArgumentException {
+		if (name == null)
+			throw new IllegalArgumentException("Name can't be null");
+		if (name.length() == 0)
+			throw new IllegalArgumentException("Name can't be empty");
+
+		this.id = id;
+		this.name = name;
+		this.enabled = true;
+		this.listeners = new CopyOnWriteArrayList<Consumer<Sensor>>();
+	}
+
+	/**
+	 * Be called every time this sensor is enabled or disabled
+	 * 
+	 * @param listener Called with this sensor after its state changed
+	 * @throws IllegalArgumentException listener must not be null
+	 */
+	public void addListener(Consumer<Sensor> listener) throws IllegalArgumentException {
+		if (listener == null)
+			throw new IllegalArgumentException("Listener can't be null");
+		this.listeners.add(listener);
+	}
+
+	public int getId() {
+		return this.id;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	/**
+	 * Enable this sensor if it is disabled, disable it otherwise
+	 */
+	public void toggle() {
+		synchronized (this) {
+			this.enabled = !this.enabled;
+		}
+		for (Consumer<Sensor> listener : this.listeners)
+			listener.accept(this);
+	}
+
+}
@@ -0,0 +1,94 @@
+package me.security.hardware.sensors;
+
+import com.google.gson.annotations.Expose;
+
+/**
+ * A slot of the SensorEventRing, reused for every event published at its
+ * position.<br>
+ * Handlers must only read it during their call, and copy what they keep.
+ *
+ * @see SensorEventRing
+ */
+public class SensorEvent {
+
+	public enum Type {
+		/**
+		 * Something was detected, it raises the alarm if both the alarm and the
+		 * sensor are enabled
+		 */
+		DETECTION,
+		/**
+		 * Raise the alarm whatever its state, like the test of the mobile app
+		 */
+		TRIGGER
+	}
+
+	private Sensor sensor;
+	@Expose private String sensorName;
+	@Expose private String message;
+	@Expose private Type type;
+	@Expose private long time;
+	@Expose private boolean alarm;
+	private long published;
+
+	void set(Sensor sensor, String sensorName, String message, Type type) {
+		this.sensor = sensor;
+		this.sensorName = sensorName;
+		this.message = message;
+		this.type = type;
+		this.time = System.currentTimeMillis();
+		this.alarm = false;
+		this.published = System.nanoTime();
+	}
+
+	/**
+	 * @return The sensor who detected something, null for a TRIGGER not coming
+	 *         from a sensor
+	 */
+	public Sensor getSensor() {
+		return this.sensor;
+	}
+
+	public String getSensorName() {
+		return this.sensorName;
+	}
+
+	public String getMessage() {
+		return this.message;
+	}
+
+	public Type getType() {
+		return this.type;
+	}
+
+	/**
+	 * @return Milliseconds since the epoch when the event was published
+	 */
+	public long getTime() {
+		return this.time;
+	}
+
+	/**
+	 * @return System.nanoTime() when the event was published, to measure
+	 *         latencies
+	 */
+	public long getPublished() {
+		return this.published;
+	}
+
+	/**
+	 * @return True if this event raised the alarm, only decided once the first
+	 *         stage handled it
+	 */
+	public boolean isAlarm() {
+		return this.alarm;
+	}
+
+	/**
+	 * Record the alarm decision, only the stage the others wait for may call it
+	 */
+	public void setAlarm(boolean alarm) {
+		this.alarm = alarm;
+	}
+
+}
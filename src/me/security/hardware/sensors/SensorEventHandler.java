@@ -0,0 +1,19 @@
+package me.security.hardware.sensors;
+
+/**
+ * A stage of the SensorEventRing, called from its own thread with every
+ * event in order
+ */
+@FunctionalInterface
+public interface SensorEventHandler {
+
+	/**
+	 * @param event      Only valid during the call, the slot is reused
+	 * @param sequence   Position of the event in the ring
+	 * @param endOfBatch True if no other event is available yet, to flush work
+	 *                   batched over the previous events
+	 * @throws Exception Any problem, logged without stopping the stage
+	 */
+	void onEvent(SensorEvent event, long sequence, boolean endOfBatch) throws Exception;
+
+}
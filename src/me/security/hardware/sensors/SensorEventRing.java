@@ -0,0 +1,312 @@
+package me.security.hardware.sensors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import me.security.logging.Logger;
+
+/**
+ * Ring of preallocated SensorEvent slots read by independent stages, in the
+ * style of the LMAX Disruptor.<br>
+ * Publishing claims the next sequence with a compare-and-set, fills
+ * its slot then marks it published : a slot is only ever written by the
+ * thread who claimed it and nothing is allocated. Every stage has its own
+ * thread and sequence and reads every event in order, a stage declared after
+ * others only reads an event once they handled it, so it can use what they
+ * decided.<br>
+ * Stages spin briefly then park when they caught up, publishing wakes them.
+ * Closing sets a bit of the claimed sequence, so no event can be claimed
+ * once the stages know the last one they must handle.<br>
+ * A producer only waits when the slowest stage is a whole ring behind, so
+ * stages must hand slow work (database, HTTP) to their own queues.
+ */
+public class SensorEventRing implements AutoCloseable {
+
+	public static final int DEFAULT_SIZE = 1024;
+	/**
+	 * Number of spins of a stage waiting for an event before parking
+	 */
+	public static int SPIN_TRIES = 1000;
+
+	private static final Logger LOG = Logger.get(SensorEventRing.class);
+	private static final long CLOSED = 1L << 62;
+
+	private final SensorEvent[] events;
+	private final AtomicLongArray published;
+	private final int mask;
+	/**
+	 * Number of sequences claimed, with the CLOSED bit set once closed
+	 */
+	private final AtomicLong claimed;
+	private final List<Stage> stages;
+	private final List<Stage> roots;
+	private volatile long gating;
+	private volatile boolean started;
+
+	/**
+	 * @param size Number of slots, rounded up to a power of two
+	 * @throws IllegalArgumentException size must be between 1 and 2^30
+	 */
+	public SensorEventRing(int size) throws IllegalArgumentException {
+		if (size <= 0 || size > 1 << 30)
+			throw new IllegalArgumentException("size must be between 1 and 2^30");
+		int capacity = Integer.highestOneBit(size);
+		if (capacity < size)
+			capacity <<= 1;
+
+		this.events = new SensorEvent[capacity];
+		this.published = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			this.events[i] = new SensorEvent();
+			this.published.set(i, -1);
+		}
+		this.mask = capacity - 1;
+		this.claimed = new AtomicLong();
+		this.stages = new ArrayList<Stage>();
+		this.roots = new ArrayList<Stage>();
+		this.gating = -1;
+	}
+
+	/**
+	 * Declare a stage, must be done before start
+	 *
+	 * @param name    Name of the stage, its thread is SensorEvents-name
+	 * @param handler Called with every event, in order
+	 * @param after   Stages that must handle an event before this one
+	 * @return The stage, to declare the ones following it
+	 * @throws IllegalArgumentException handler must not be null, after must be
+	 *                                  stages of this ring
+	 * @throws IllegalStateException    If the ring is already started
+	 */
+	public synchronized Stage addStage(String name, SensorEventHandler handler, Stage... after)
+			throws IllegalArgumentException, IllegalStateException {
+		if (handler == null)
+			throw new IllegalArgumentException("Handler must not be null");
+		if (this.started)
+			throw new IllegalStateException("Stages must be added before start");
+		for (Stage stage : after)
+			if (!this.stages.contains(stage))
+				throw new IllegalArgumentException("Stage " + stage + " is not part of this ring");
+
+		Stage stage = new Stage(name, handler, after);
+		for (Stage dependency : after)
+			dependency.dependents.add(stage);
+		this.stages.add(stage);
+		if (after.length == 0)
+			this.roots.add(stage);
+		return stage;
+	}
+
+	/**
+	 * Start the thread of every stage
+	 *
+	 * @throws IllegalStateException If already started or without stages
+	 */
+	public synchronized void start() throws IllegalStateException {
+		if (this.started)
+			throw new IllegalStateException("Ring already started");
+		if (this.stages.isEmpty())
+			throw new IllegalStateException("No stage to start");
+		this.started = true;
+		for (Stage stage : this.stages)
+			stage.thread.start();
+	}
+
+	/**
+	 * Publish an event, waiting only if the slowest stage is a whole ring
+	 * behind
+	 *
+	 * @param sensor     The sensor who detected something, may be null
+	 * @param sensorName Name written in logs and notifications
+	 * @param message    What happened
+	 * @param type       How the alarm must be decided
+	 * @return The sequence of the event, -1 if the ring is closed
+	 */
+	public long publish(Sensor sensor, String sensorName, String message, SensorEvent.Type type) {
+		if (!this.started)
+			return -1;
+		long sequence;
+		do {
+			sequence = this.claimed.get();
+			if ((sequence & CLOSED) != 0)
+				return -1;
+		} while (!this.claimed.compareAndSet(sequence, sequence + 1));
+
+		// Claimed before close : the stages handle it before stopping, so wait for them
+		long wrap = sequence - this.events.length;
+		if (wrap > this.gating) {
+			long min;
+			while (wrap > (min = getMinimumSequence()))
+				LockSupport.parkNanos(1000);
+			this.gating = min;
+		}
+
+		int index = (int) sequence & this.mask;
+		this.events[index].set(sensor, sensorName, message, type);
+		this.published.set(index, sequence);
+		for (Stage stage : this.roots)
+			if (stage.waiting)
+				LockSupport.unpark(stage.thread);
+		return sequence;
+	}
+
+	private long getMinimumSequence() {
+		long min = Long.MAX_VALUE;
+		for (Stage stage : this.stages)
+			min = Math.min(min, stage.sequence.get());
+		return min;
+	}
+
+	/**
+	 * @return Sequence of the last event claimed, -1 if none
+	 */
+	private long getClaimed() {
+		return (this.claimed.get() & ~CLOSED) - 1;
+	}
+
+	private boolean isClosed() {
+		return (this.claimed.get() & CLOSED) != 0;
+	}
+
+	/**
+	 * @return Number of events published but not handled by every stage yet
+	 */
+	public long getBacklog() {
+		return Math.max(0, getClaimed() - getMinimumSequence());
+	}
+
+	public int getSize() {
+		return this.events.length;
+	}
+
+	/**
+	 * Stop accepting events, let every stage handle the published ones then
+	 * stop their threads
+	 */
+	@Override
+	public synchronized void close() {
+		this.claimed.getAndUpdate(claimed -> claimed | CLOSED);
+		for (Stage stage : this.stages)
+			LockSupport.unpark(stage.thread);
+		if (!this.started)
+			return;
+		try {
+			for (Stage stage : this.stages)
+				stage.thread.join(TimeUnit.SECONDS.toMillis(5));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * A consumer of the ring with its own thread and sequence
+	 */
+	public class Stage {
+
+		private final String name;
+		private final SensorEventHandler handler;
+		private final Stage[] dependencies;
+		private final List<Stage> dependents;
+		private final AtomicLong sequence;
+		private final Thread thread;
+		private volatile boolean waiting;
+
+		private Stage(String name, SensorEventHandler handler, Stage[] dependencies) {
+			this.name = name;
+			this.handler = handler;
+			this.dependencies = dependencies.clone();
+			this.dependents = new ArrayList<Stage>();
+			this.sequence = new AtomicLong(-1);
+			this.thread = new Thread(this::run, "SensorEvents-" + name);
+			this.thread.setDaemon(true);
+		}
+
+		private void run() {
+			long next = 0;
+			int idle = 0;
+			while (true) {
+				long available = getAvailable(next);
+				if (available < next) {
+					// Read at once : nothing can be claimed after close
+					long claimed = SensorEventRing.this.claimed.get();
+					if ((claimed & CLOSED) != 0 && next >= (claimed & ~CLOSED))
+						break;
+					idle = await(next, idle);
+					continue;
+				}
+
+				for (long s = next; s <= available; s++) {
+					try {
+						this.handler.onEvent(SensorEventRing.this.events[(int) s & SensorEventRing.this.mask], s,
+								s == available);
+					} catch (Exception e) {
+						LOG.error("Sensor event handler failed", e, "stage", this.name, "sequence", s);
+					}
+				}
+				this.sequence.set(available);
+				for (Stage dependent : this.dependents)
+					if (dependent.waiting)
+						LockSupport.unpark(dependent.thread);
+				next = available + 1;
+				idle = 0;
+			}
+		}
+
+		/**
+		 * @return The last sequence this stage can handle, next - 1 if none
+		 */
+		private long getAvailable(long next) {
+			if (this.dependencies.length > 0) {
+				long min = Long.MAX_VALUE;
+				for (Stage dependency : this.dependencies)
+					min = Math.min(min, dependency.sequence.get());
+				return min;
+			}
+			long available = next - 1;
+			AtomicLongArray published = SensorEventRing.this.published;
+			int mask = SensorEventRing.this.mask;
+			// Stop at the first slot claimed but not published yet
+			while (published.get((int) (available + 1) & mask) == available + 1)
+				available++;
+			return available;
+		}
+
+		/**
+		 * Spin then park until an event is available, publishers and
+		 * dependencies unpark a waiting stage
+		 */
+		private int await(long next, int idle) {
+			if (idle < SPIN_TRIES) {
+				Thread.onSpinWait();
+				return idle + 1;
+			}
+			this.waiting = true;
+			if (getAvailable(next) < next && !isClosed())
+				LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+			this.waiting = false;
+			return idle;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		/**
+		 * @return Sequence of the last event handled by this stage, -1 if none
+		 */
+		public long getSequence() {
+			return this.sequence.get();
+		}
+
+		@Override
+		public String toString() {
+			return this.name;
+		}
+
+	}
+
+}
@@ -0,0 +1,154 @@
+package me.security.hardware.simulated;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How often a simulated sensor detects something.<br>
+ * Detections are spaced by 1/rate seconds, shifted randomly by up to jitter
+ * times this interval. Each one starts a burst with a probability of
+ * burstChance : burstSize detections spaced by burstSpacing milliseconds, like
+ * a door opened several times in a row.
+ */
+public class DetectionPattern {
+
+	public static final DetectionPattern DEFAULT = new DetectionPattern(0.1, 0.5, 5, 0.1, 200);
+
+	private final double rate;
+	private final double jitter;
+	private final int burstSize;
+	private final double burstChance;
+	private final long burstSpacing;
+
+	/**
+	 * @param rate         Detections per second outside bursts
+	 * @param jitter       Fraction of the interval detections are shifted by,
+	 *                     0 for a fixed rate
+	 * @param burstSize    Number of detections of a burst, 1 for no bursts
+	 * @param burstChance  Probability of a detection starting a burst
+	 * @param burstSpacing Milliseconds between the detections of a burst
+	 * @throws IllegalArgumentException rate must be positive, jitter and
+	 *                                  burstChance between 0 and 1, burstSize
+	 *                                  positive and burstSpacing not negative
+	 */
+	public DetectionPattern(double rate, double jitter, int burstSize, double burstChance, long burstSpacing)
+			throws IllegalArgumentException {
+		if (!(rate > 0) || Double.isInfinite(rate))
+			throw new IllegalArgumentException("rate must be positive");
+		if (!(jitter >= 0 && jitter <= 1))
+			throw new IllegalArgumentException("jitter must be between 0 and 1");
+		if (burstSize <= 0)
+			throw new IllegalArgumentException("burstSize must be positive");
+		if (!(burstChance >= 0 && burstChance <= 1))
+			throw new IllegalArgumentException("burstChance must be between 0 and 1");
+		if (burstSpacing < 0)
+			throw new IllegalArgumentException("burstSpacing must not be negative");
+
+		this.rate = rate;
+		this.jitter = jitter;
+		this.burstSize = burstSize;
+		this.burstChance = burstChance;
+		this.burstSpacing = burstSpacing;
+	}
+
+	/**
+	 * Read a pattern written as comma separated key=value pairs, like
+	 * rate=2,jitter=0.5,burst=10,burstChance=0.05,burstSpacing=50.<br>
+	 * Missing keys keep the value of DEFAULT.
+	 *
+	 * @param pattern The pattern to read
+	 * @return The pattern
+	 * @throws IllegalArgumentException If a key is unknown or a value invalid
+	 */
+	public static DetectionPattern parse(String pattern) throws IllegalArgumentException {
+		if (pattern == null)
+			throw new IllegalArgumentException("pattern must not be null");
+		double rate = DEFAULT.rate;
+		double jitter = DEFAULT.jitter;
+		int burstSize = DEFAULT.burstSize;
+		double burstChance = DEFAULT.burstChance;
+		long burstSpacing = DEFAULT.burstSpacing;
+
+		for (String pair : pattern.split(",")) {
+			if (pair.trim().isEmpty())
+				continue;
+			int equals = pair.indexOf('=');
+			if (equals < 0)
+				throw new IllegalArgumentException("Expected key=value : " + pair);
+			String key = pair.substring(0, equals).trim();
+			String value = pair.substring(equals + 1).trim();
+			try {
+				if (key.equals("rate")) {
+					rate = Double.parseDouble(value);
+				} else if (key.equals("jitter")) {
+					jitter = Double.parseDouble(value);
+				} else if (key.equals("burst")) {
+					burstSize = Integer.parseInt(value);
+				} else if (key.equals("burstChance")) {
+					burstChance = Double.parseDouble(value);
+				} else if (key.equals("burstSpacing")) {
+					burstSpacing = Long.parseLong(value);
+				} else {
+					throw new IllegalArgumentException("Unknown pattern key : " + key);
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid value for " + key + " : " + value, e);
+			}
+		}
+		return new DetectionPattern(rate, jitter, burstSize, burstChance, burstSpacing);
+	}
+
+	/**
+	 * @param random Source of the jitter
+	 * @return Nanoseconds until the next detection outside a burst
+	 */
+	long nextInterval(Random random) {
+		double interval = TimeUnit.SECONDS.toNanos(1) / this.rate;
+		return Math.max(0, (long) (interval * (1 + this.jitter * (2 * random.nextDouble() - 1))));
+	}
+
+	/**
+	 * @param random Source of the burst chance
+	 * @return Number of detections following this one in a burst, 0 if none
+	 */
+	int nextBurst(Random random) {
+		return this.burstSize > 1 && random.nextDouble() < this.burstChance ? this.burstSize - 1 : 0;
+	}
+
+	public double getRate() {
+		return this.rate;
+	}
+
+	public double getJitter() {
+		return this.jitter;
+	}
+
+	public int getBurstSize() {
+		return this.burstSize;
+	}
+
+	public double getBurstChance() {
+		return this.burstChance;
+	}
+
+	/**
+	 * @return Milliseconds between the detections of a burst
+	 */
+	public long getBurstSpacing() {
+		return this.burstSpacing;
+	}
+
+	/**
+	 * @return Average detections per second, bursts included
+	 */
+	public double getAverageRate() {
+		return this.rate * (1 + this.burstChance * (this.burstSize - 1));
+	}
+
+	@Override
+	public String toString() {
+		return "rate=" + this.rate + ",jitter=" + this.jitter + ",burst=" + this.burstSize + ",burstChance="
+				+ this.burstChance + ",burstSpacing=" + this.burstSpacing;
+	}
+
+}
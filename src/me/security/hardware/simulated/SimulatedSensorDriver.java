@@ -0,0 +1,203 @@
+package me.security.hardware.simulated;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import me.security.hardware.sensors.Sensor;
+import me.security.logging.Logger;
+import me.security.managers.ServerSecurity;
+import me.security.metrics.Counter;
+import me.security.metrics.MetricsRegistry;
+
+/**
+ * Sensor driver for machines without GPIO, every sensor detects something
+ * following its own DetectionPattern.<br>
+ * A single thread publishes the detections of every sensor to
+ * ServerSecurity, so the simulation itself costs a thread whatever the
+ * number of sensors and the pipeline is soak-tested like with real ones.
+ *
+ * @see TraceReplayer to replay recorded detections instead
+ */
+public class SimulatedSensorDriver implements AutoCloseable {
+
+	/**
+	 * Milliseconds between two reports of the number of detections published
+	 */
+	public static long REPORT_PERIOD = 60000;
+
+	private static final Logger LOG = Logger.get(SimulatedSensorDriver.class);
+
+	private final ServerSecurity security;
+	private final Random random;
+	private final List<Source> sources;
+	private final AtomicLong published;
+	private final AtomicLong refused;
+	private final Counter detections;
+	private Thread thread;
+	private volatile boolean running;
+
+	/**
+	 * @param security Where detections are published
+	 * @param seed     Seed of the jitter and bursts, the same seed gives the
+	 *                 same detections
+	 * @throws IllegalArgumentException security must not be null
+	 */
+	public SimulatedSensorDriver(ServerSecurity security, long seed) throws IllegalArgumentException {
+		if (security == null)
+			throw new IllegalArgumentException("security must not be null");
+		this.security = security;
+		this.random = new Random(seed);
+		this.sources = new ArrayList<Source>();
+		this.published = new AtomicLong();
+		this.refused = new AtomicLong();
+		this.detections = MetricsRegistry.DEFAULT.counter("sensor_simulated_detections_total",
+				"Detections published by the simulated sensors");
+	}
+
+	/**
+	 * Simulate a sensor, it is registered to ServerSecurity if not already
+	 *
+	 * @param sensor  The sensor to simulate
+	 * @param pattern How often it detects something
+	 * @throws IllegalArgumentException sensor and pattern must not be null
+	 * @throws IllegalStateException    If the driver is already started
+	 */
+	public synchronized void add(Sensor sensor, DetectionPattern pattern)
+			throws IllegalArgumentException, IllegalStateException {
+		if (sensor == null || pattern == null)
+			throw new IllegalArgumentException("sensor and pattern must not be null");
+		if (this.thread != null)
+			throw new IllegalStateException("Sensors must be added before start");
+		if (this.security.getSensor(sensor.getId()) != sensor)
+			this.security.addSensor(sensor);
+		this.sources.add(new Source(sensor, pattern));
+	}
+
+	/**
+	 * Start publishing detections
+	 *
+	 * @throws IllegalStateException If already started or without sensors
+	 */
+	public synchronized void start() throws IllegalStateException {
+		if (this.thread != null)
+			throw new IllegalStateException("Driver already started");
+		if (this.sources.isEmpty())
+			throw new IllegalStateException("No sensor to simulate");
+		double rate = 0;
+		long now = System.nanoTime();
+		for (Source source : this.sources) {
+			source.next = now + source.pattern.nextInterval(this.random);
+			rate += source.pattern.getAverageRate();
+		}
+		this.running = true;
+		this.thread = new Thread(this::run, "SimulatedSensors");
+		this.thread.setDaemon(true);
+		this.thread.start();
+		LOG.info("Simulated sensors started", "sensors", this.sources.size(), "averageRate", rate);
+	}
+
+	private void run() {
+		long count = 0;
+		long nextReport = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(REPORT_PERIOD);
+		while (this.running) {
+			if (System.nanoTime() - nextReport > 0) {
+				long published = this.published.get();
+				LOG.info("Simulated sensors report", "published", published, "refused", this.refused.get(),
+						"rate", (published - count) * 1000d / REPORT_PERIOD, "backlog",
+						this.security.getRing().getBacklog());
+				count = published;
+				nextReport += TimeUnit.MILLISECONDS.toNanos(REPORT_PERIOD);
+			}
+
+			Source source = this.sources.get(0);
+			for (Source s : this.sources)
+				if (s.due() - source.due() < 0)
+					source = s;
+
+			long wait = source.due() - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(this, Math.min(wait, TimeUnit.MILLISECONDS.toNanos(100)));
+				continue;// Woken up early by close or the cap
+			}
+
+			if (source.burstRemaining > 0 && source.burstNext - source.next < 0) {
+				source.burstRemaining--;
+				source.burstNext += TimeUnit.MILLISECONDS.toNanos(source.pattern.getBurstSpacing());
+			} else {
+				int burst = source.pattern.nextBurst(this.random);
+				if (burst > 0) {
+					// A burst starting during another one extends it
+					if (source.burstRemaining == 0)
+						source.burstNext = source.next + TimeUnit.MILLISECONDS.toNanos(source.pattern.getBurstSpacing());
+					source.burstRemaining += burst;
+				}
+				source.next += source.pattern.nextInterval(this.random);
+			}
+
+			if (this.security.detect(source.sensor, "Simulated detection " + ++source.count)) {
+				this.published.incrementAndGet();
+				this.detections.increment();
+			} else {
+				this.refused.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * @return Number of detections accepted by ServerSecurity
+	 */
+	public long getPublished() {
+		return this.published.get();
+	}
+
+	/**
+	 * @return Number of detections refused because ServerSecurity was closed
+	 */
+	public long getRefused() {
+		return this.refused.get();
+	}
+
+	/**
+	 * Stop publishing detections, the sensors stay registered
+	 */
+	@Override
+	public synchronized void close() {
+		this.running = false;
+		if (this.thread == null)
+			return;
+		LockSupport.unpark(this.thread);
+		try {
+			this.thread.join(TimeUnit.SECONDS.toMillis(5));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * A simulated sensor and when it detects something next
+	 */
+	private static class Source {
+
+		private final Sensor sensor;
+		private final DetectionPattern pattern;
+		private long next;
+		private long burstNext;
+		private int burstRemaining;
+		private long count;
+
+		private Source(Sensor sensor, DetectionPattern pattern) {
+			this.sensor = sensor;
+			this.pattern = pattern;
+		}
+
+		private long due() {
+			return this.burstRemaining > 0 && this.burstNext - this.next < 0 ? this.burstNext : this.next;
+		}
+
+	}
+
+}
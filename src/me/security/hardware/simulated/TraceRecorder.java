@@ -0,0 +1,96 @@
+package me.security.hardware.simulated;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import me.security.hardware.sensors.SensorEvent;
+import me.security.logging.Logger;
+
+/**
+ * Record the detections handled by ServerSecurity to a trace file, to be
+ * replayed later by a TraceReplayer.<br>
+ * Added as a detection listener, so it is called from the push stage and a
+ * slow disk never delays the alarm decision.<br>
+ * Each line is [millis since the first event] TAB [type] TAB [sensor id, or -
+ * for an alarm triggered without sensor] TAB [sensor name] TAB [message].
+ *
+ * @see me.security.managers.ServerSecurity#addDetectionListener(Consumer)
+ */
+public class TraceRecorder implements Consumer<SensorEvent>, AutoCloseable {
+
+	private static final Logger LOG = Logger.get(TraceRecorder.class);
+
+	private final Writer out;
+	private long start;
+	private boolean failed;
+
+	/**
+	 * @param file The trace file, overwritten
+	 * @throws IOException If the file cannot be created
+	 */
+	public TraceRecorder(File file) throws IOException {
+		this(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * @param out Where the trace is written, closed with the recorder
+	 * @throws IllegalArgumentException out must not be null
+	 */
+	public TraceRecorder(Writer out) throws IllegalArgumentException {
+		if (out == null)
+			throw new IllegalArgumentException("out must not be null");
+		this.out = out;
+		this.start = -1;
+	}
+
+	@Override
+	public synchronized void accept(SensorEvent event) {
+		if (this.failed)
+			return;
+		if (this.start < 0)
+			this.start = event.getTime();
+		try {
+			this.out.write(Long.toString(event.getTime() - this.start));
+			this.out.write('\t');
+			this.out.write(event.getType().name());
+			this.out.write('\t');
+			this.out.write(event.getSensor() == null ? "-" : Integer.toString(event.getSensor().getId()));
+			this.out.write('\t');
+			this.out.write(clean(event.getSensorName()));
+			this.out.write('\t');
+			this.out.write(clean(event.getMessage()));
+			this.out.write('\n');
+		} catch (IOException e) {
+			this.failed = true;// Don't report every following event
+			LOG.error("Unable to record the trace, recording stopped", e);
+		}
+	}
+
+	/**
+	 * Tabs and line breaks would split the record
+	 */
+	private static String clean(String value) {
+		return value == null ? "" : value.replace('\t', ' ').replace('\r', ' ').replace('\n', ' ');
+	}
+
+	/**
+	 * Write the buffered events, the file stays open
+	 *
+	 * @throws IOException If they couldn't be written
+	 */
+	public synchronized void flush() throws IOException {
+		this.out.flush();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		this.out.close();
+	}
+
+}
@@ -0,0 +1,221 @@
+package me.security.hardware.simulated;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import me.security.hardware.sensors.Sensor;
+import me.security.logging.Logger;
+import me.security.managers.ServerSecurity;
+
+/**
+ * Replay a trace written by a TraceRecorder to ServerSecurity.<br>
+ * Events are published at their recorded offsets divided by speed : 1 for
+ * real time, 10 for ten times faster, 0 to publish them as fast as
+ * ServerSecurity accepts them. The trace is read line by line, so it can be
+ * bigger than the memory.<br>
+ * Sensors of the trace not registered yet are registered with their recorded
+ * id and name.
+ *
+ * @see TraceRecorder
+ */
+public class TraceReplayer implements AutoCloseable {
+
+	private static final Logger LOG = Logger.get(TraceReplayer.class);
+
+	private final ServerSecurity security;
+	private final Callable<Reader> source;
+	private final double speed;
+	private final boolean loop;
+	private final AtomicLong published;
+	private final AtomicLong refused;
+	private Thread thread;
+	private volatile boolean running;
+
+	/**
+	 * @param security Where events are published
+	 * @param trace    The trace file
+	 * @param speed    How much faster than real time, 0 for no waiting
+	 * @param loop     Start again from the beginning at the end of the trace
+	 * @throws IllegalArgumentException security and trace must not be null,
+	 *                                  speed must not be negative
+	 */
+	public TraceReplayer(ServerSecurity security, File trace, double speed, boolean loop)
+			throws IllegalArgumentException {
+		this(security, trace == null ? null : () -> Files.newBufferedReader(trace.toPath(), StandardCharsets.UTF_8),
+				speed, loop);
+	}
+
+	/**
+	 * @param security Where events are published
+	 * @param source   Open the trace, called again for every loop
+	 * @param speed    How much faster than real time, 0 for no waiting
+	 * @param loop     Start again from the beginning at the end of the trace
+	 * @throws IllegalArgumentException security and source must not be null,
+	 *                                  speed must not be negative
+	 */
+	public TraceReplayer(ServerSecurity security, Callable<Reader> source, double speed, boolean loop)
+			throws IllegalArgumentException {
+		if (security == null || source == null)
+			throw new IllegalArgumentException("security and trace must not be null");
+		if (!(speed >= 0) || Double.isInfinite(speed))
+			throw new IllegalArgumentException("speed must not be negative");
+		this.security = security;
+		this.source = source;
+		this.speed = speed;
+		this.loop = loop;
+		this.published = new AtomicLong();
+		this.refused = new AtomicLong();
+	}
+
+	/**
+	 * Start replaying from a background thread
+	 *
+	 * @throws IllegalStateException If already started
+	 */
+	public synchronized void start() throws IllegalStateException {
+		if (this.thread != null)
+			throw new IllegalStateException("Replay already started");
+		this.running = true;
+		this.thread = new Thread(() -> {
+			try {
+				replay();
+			} catch (Exception e) {
+				LOG.error("Unable to replay the trace", e);
+			}
+		}, "TraceReplayer");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Replay the trace from the calling thread
+	 *
+	 * @return Number of events published
+	 * @throws Exception If the trace cannot be read or is invalid
+	 */
+	public long replay() throws Exception {
+		this.running = true;
+		long start = System.nanoTime();
+		int pass = 0;
+		do {
+			pass++;
+			long passStart = System.nanoTime();
+			try (BufferedReader in = new BufferedReader(this.source.call())) {
+				String line;
+				int number = 0;
+				while (this.running && (line = in.readLine()) != null) {
+					number++;
+					if (line.isEmpty() || line.startsWith("#"))
+						continue;
+					try {
+						publish(line, passStart);
+					} catch (IllegalArgumentException e) {
+						throw new IOException("Invalid trace line " + number + " : " + e.getMessage(), e);
+					}
+				}
+			}
+		} while (this.loop && this.running);
+
+		long published = this.published.get();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		LOG.info("Trace replayed", "published", published, "refused", this.refused.get(), "passes", pass,
+				"seconds", seconds, "rate", seconds == 0 ? 0 : published / seconds);
+		return published;
+	}
+
+	private void publish(String line, long passStart) throws IllegalArgumentException {
+		String[] fields = line.split("\t", 5);
+		if (fields.length != 5)
+			throw new IllegalArgumentException("expected 5 tab separated fields");
+		long offset = Long.parseLong(fields[0]);
+		boolean trigger = fields[1].equals("TRIGGER");
+		if (!trigger && !fields[1].equals("DETECTION"))
+			throw new IllegalArgumentException("unknown type " + fields[1]);
+
+		if (this.speed > 0) {
+			long due = passStart + (long) (TimeUnit.MILLISECONDS.toNanos(offset) / this.speed);
+			long wait;
+			while (this.running && (wait = due - System.nanoTime()) > 0)
+				LockSupport.parkNanos(this, Math.min(wait, TimeUnit.MILLISECONDS.toNanos(100)));
+			if (!this.running)
+				return;
+		}
+
+		boolean accepted = true;
+		if (trigger) {
+			this.security.triggerAlarm(fields[3], fields[4]);
+		} else if (fields[2].equals("-")) {
+			throw new IllegalArgumentException("a detection needs a sensor");
+		} else {
+			accepted = this.security.detect(getSensor(Integer.parseInt(fields[2]), fields[3]), fields[4]);
+		}
+		(accepted ? this.published : this.refused).incrementAndGet();
+	}
+
+	private Sensor getSensor(int id, String name) {
+		Sensor sensor = this.security.getSensor(id);
+		if (sensor == null) {
+			sensor = new Sensor(id, name);
+			try {
+				this.security.addSensor(sensor);
+			} catch (IllegalArgumentException e) {
+				sensor = this.security.getSensor(id);// Added meanwhile by another thread
+			}
+		}
+		return sensor;
+	}
+
+	/**
+	 * Wait for the end of a replay started with start, forever if it loops
+	 *
+	 * @throws InterruptedException If interrupted while waiting
+	 */
+	public void join() throws InterruptedException {
+		Thread thread;
+		synchronized (this) {
+			thread = this.thread;
+		}
+		if (thread != null)
+			thread.join();
+	}
+
+	/**
+	 * @return Number of events accepted by ServerSecurity
+	 */
+	public long getPublished() {
+		return this.published.get();
+	}
+
+	/**
+	 * @return Number of events refused because ServerSecurity was closed
+	 */
+	public long getRefused() {
+		return this.refused.get();
+	}
+
+	/**
+	 * Stop replaying, the current event is not published if it is not due
+	 * yet
+	 */
+	@Override
+	public synchronized void close() {
+		this.running = false;
+		if (this.thread == null)
+			return;
+		LockSupport.unpark(this.thread);
+		try {
+			this.thread.join(TimeUnit.SECONDS.toMillis(5));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,318 @@
+package me.security.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import me.security.logs.MpscRingBuffer;
+
+/**
+ * Format and write log records from a single background thread.<br>
+ * Logging threads only queue their record in a lock-free ring buffer and
+ * never wait for the disk : when the buffer is full the record is dropped and
+ * counted, the writer reports how many were dropped once it catches up.<br>
+ * The writer formats every queued record then flushes once, so a burst of
+ * records costs a single write to the SD card.<br>
+ * Records are a line of key=value pairs, or a JSON object if json is set.
+ */
+public class AsyncAppender implements AutoCloseable {
+
+	public static int CAPACITY = 8192;
+	/**
+	 * Maximum number of records written between two flushes
+	 */
+	public static int BATCH_SIZE = 512;
+	/**
+	 * File written by the default appender, null to write to the standard
+	 * output
+	 */
+	public static File FILE = null;
+	public static long MAX_SIZE = 10 << 20;
+	public static int MAX_FILES = 5;
+	public static boolean JSON = false;
+
+	private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
+			.withZone(ZoneOffset.UTC);
+
+	private final Writer out;
+	private final boolean json;
+	private final MpscRingBuffer<LogEvent> ring;
+	private final Thread thread;
+	private final AtomicLong dropped;
+	private final StringBuilder line;
+	private long reported;
+	private volatile boolean waiting;
+	private volatile boolean enabled;
+
+	/**
+	 * @return An appender following FILE, MAX_SIZE, MAX_FILES and JSON, writing
+	 *         to the standard output if the file can't be opened
+	 */
+	public static AsyncAppender create() {
+		if (FILE != null) {
+			try {
+				return new AsyncAppender(new RollingFileWriter(FILE, MAX_SIZE, MAX_FILES), JSON, CAPACITY);
+			} catch (IOException e) {
+				System.err.println("Unable to open " + FILE + " (" + e + "), logging to the standard output");
+			}
+		}
+		return console(JSON);
+	}
+
+	/**
+	 * @param json Write JSON objects instead of key=value pairs
+	 * @return An appender writing to the standard output, which is flushed but
+	 *         never closed
+	 */
+	public static AsyncAppender console(boolean json) {
+		Writer out = new OutputStreamWriter(System.out, StandardCharsets.UTF_8) {
+			@Override
+			public void close() throws IOException {
+				flush();
+			}
+		};
+		return new AsyncAppender(out, json, CAPACITY);
+	}
+
+	/**
+	 * Start the writer thread
+	 *
+	 * @param out      Where records are written, closed with this appender
+	 * @param json     Write JSON objects instead of key=value pairs
+	 * @param capacity Maximum number of records waiting to be written
+	 * @throws IllegalArgumentException out must not be null and capacity must be
+	 *                                  positive
+	 */
+	public AsyncAppender(Writer out, boolean json, int capacity) throws IllegalArgumentException {
+		if (out == null)
+			throw new IllegalArgumentException("Writer must not be null");
+
+		this.out = out;
+		this.json = json;
+		this.ring = new MpscRingBuffer<LogEvent>(capacity);
+		this.dropped = new AtomicLong();
+		this.line = new StringBuilder(256);
+		this.enabled = true;
+
+		this.thread = new Thread(this::run, "AsyncAppender");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * @return False if the record was dropped because the buffer is full or
+	 *         the appender closed
+	 */
+	boolean append(LogEvent event) {
+		if (!this.enabled || !this.ring.offer(event)) {
+			this.dropped.incrementAndGet();
+			return false;
+		}
+		if (this.waiting)
+			LockSupport.unpark(this.thread);
+		return true;
+	}
+
+	private void run() {
+		while (this.enabled || this.ring.size() > 0) {
+			LogEvent event = this.ring.poll();
+			if (event == null) {
+				await();
+				continue;
+			}
+
+			int count = 0;
+			do {
+				write(event);
+			} while (++count < BATCH_SIZE && (event = this.ring.poll()) != null);
+			reportDropped();
+
+			try {
+				this.out.flush();
+			} catch (IOException e) {
+				System.err.println("Unable to write logs : " + e);
+			}
+		}
+
+		try {
+			this.out.close();
+		} catch (IOException e) {
+			System.err.println("Unable to close logs : " + e);
+		}
+	}
+
+	/**
+	 * Park until a record is queued
+	 */
+	private void await() {
+		this.waiting = true;
+		if (this.ring.size() == 0 && this.enabled)
+			LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+		this.waiting = false;
+	}
+
+	private void reportDropped() {
+		long dropped = this.dropped.get();
+		if (dropped != this.reported) {
+			write(new LogEvent(System.currentTimeMillis(), Level.WARN, "AsyncAppender",
+					Thread.currentThread().getName(), "Log records dropped, the buffer was full", null,
+					new Object[] { "count", dropped - this.reported }));
+			this.reported = dropped;
+		}
+	}
+
+	private void write(LogEvent event) {
+		this.line.setLength(0);
+		try {
+			format(event, this.json, this.line);
+		} catch (RuntimeException e) {
+			// A toString() failed, keep what identifies the record
+			this.line.setLength(0);
+			format(new LogEvent(event.time, event.level, event.logger, event.thread, event.message, e,
+					new Object[0]), this.json, this.line);
+		}
+		try {
+			this.out.write(this.line.toString());
+		} catch (IOException e) {
+			System.err.println("Unable to write logs : " + e);
+		}
+	}
+
+	/**
+	 * Append a record as a single line ending with a line feed
+	 */
+	static void format(LogEvent event, boolean json, StringBuilder out) {
+		out.append(json ? "{" : "");
+		field(out, json, true, "time", TIME.format(Instant.ofEpochMilli(event.time)));
+		field(out, json, false, "level", event.level.name());
+		field(out, json, false, "logger", event.logger);
+		field(out, json, false, "thread", event.thread);
+		field(out, json, false, "msg", event.message);
+
+		Object[] fields = event.fields;
+		if (fields != null) {
+			for (int i = 0; i < fields.length; i += 2)
+				field(out, json, false, String.valueOf(fields[i]), i + 1 < fields.length ? fields[i + 1] : null);
+		}
+
+		if (event.error != null) {
+			field(out, json, false, "error", event.error.toString());
+			StringWriter stack = new StringWriter();
+			event.error.printStackTrace(new PrintWriter(stack));
+			field(out, json, false, "stack", stack.toString().trim());
+		}
+		out.append(json ? "}\n" : "\n");
+	}
+
+	private static void field(StringBuilder out, boolean json, boolean first, String name, Object value) {
+		if (json) {
+			if (!first)
+				out.append(',');
+			out.append('"');
+			escape(out, name, true);
+			out.append("\":");
+			if (value == null) {
+				out.append("null");
+			} else if (value instanceof Boolean || value instanceof Integer || value instanceof Long
+					|| (value instanceof Double && Double.isFinite((Double) value))) {
+				out.append(value);
+			} else {
+				out.append('"');
+				escape(out, value.toString(), true);
+				out.append('"');
+			}
+		} else {
+			if (!first)
+				out.append(' ');
+			out.append(name).append('=');
+			String text = String.valueOf(value);
+			if (needsQuotes(text)) {
+				out.append('"');
+				escape(out, text, false);
+				out.append('"');
+			} else {
+				out.append(text);
+			}
+		}
+	}
+
+	private static boolean needsQuotes(String text) {
+		if (text.isEmpty())
+			return true;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c <= ' ' || c == '=' || c == '"' || c == '\\')
+				return true;
+		}
+		return false;
+	}
+
+	private static void escape(StringBuilder out, String text, boolean json) {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '"':
+				out.append("\\\"");
+				break;
+			case '\\':
+				out.append("\\\\");
+				break;
+			case '\n':
+				out.append("\\n");
+				break;
+			case '\r':
+				out.append("\\r");
+				break;
+			case '\t':
+				out.append("\\t");
+				break;
+			default:
+				if (c < ' ' && json) {
+					out.append(String.format("\\u%04x", (int) c));
+				} else {
+					out.append(c);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return Number of records dropped because the buffer was full or the
+	 *         appender closed
+	 */
+	public long getDropped() {
+		return this.dropped.get();
+	}
+
+	/**
+	 * @return Number of records waiting to be written
+	 */
+	public int getPending() {
+		return this.ring.size();
+	}
+
+	/**
+	 * Stop accepting records, write the queued ones then close the output
+	 */
+	@Override
+	public void close() {
+		this.enabled = false;
+		LockSupport.unpark(this.thread);
+		try {
+			this.thread.join(TimeUnit.SECONDS.toMillis(10));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
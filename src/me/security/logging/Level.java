@@ -0,0 +1,11 @@
+package me.security.logging;
+
+/**
+ * Severity of a record, in increasing order.<br>
+ * OFF is only a threshold, nothing is logged at this level.
+ */
+public enum Level {
+
+	DEBUG, INFO, WARN, ERROR, OFF;
+
+}
@@ -0,0 +1,29 @@
+package me.security.logging;
+
+/**
+ * A record waiting to be formatted by the writer thread.<br>
+ * Only references are captured by the calling thread, so field values must
+ * not change once logged.
+ */
+final class LogEvent {
+
+	final long time;
+	final Level level;
+	final String logger;
+	final String thread;
+	final String message;
+	final Throwable error;
+	final Object[] fields;
+
+	LogEvent(long time, Level level, String logger, String thread, String message, Throwable error,
+			Object[] fields) {
+		this.time = time;
+		this.level = level;
+		this.logger = logger;
+		this.thread = thread;
+		this.message = message;
+		this.error = error;
+		this.fields = fields;
+	}
+
+}
@@ -0,0 +1,118 @@
+package me.security.logging;
+
+/**
+ * Structured logging of the server, records are written asynchronously by
+ * the current AsyncAppender.<br>
+ * A record is a constant message followed by fields, given as alternated
+ * names and values : <blockquote>LOG.info("Listening", "port", port);
+ * </blockquote> The level is checked before anything is captured, and values
+ * are only turned into text by the writer thread. A call whose arguments are
+ * costly to compute should still be guarded with isEnabled.
+ */
+public final class Logger {
+
+	/**
+	 * Minimum level written by every logger
+	 */
+	public static volatile Level LEVEL = Level.INFO;
+
+	private static volatile AsyncAppender appender;
+
+	private final String name;
+
+	private Logger(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @param owner The class logging, its simple name is written with every
+	 *              record
+	 * @return A logger for this class
+	 */
+	public static Logger get(Class<?> owner) {
+		return new Logger(owner.getSimpleName());
+	}
+
+	/**
+	 * @return The appender writing every record, created from the AsyncAppender
+	 *         settings on first use
+	 */
+	public static AsyncAppender getAppender() {
+		AsyncAppender current = appender;
+		if (current == null) {
+			synchronized (Logger.class) {
+				current = appender;
+				if (current == null)
+					appender = current = AsyncAppender.create();
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Write the following records with another appender, the previous one is
+	 * not closed
+	 *
+	 * @param next The appender to use from now on
+	 * @return The previous appender, null if none was created yet
+	 * @throws IllegalArgumentException next must not be null
+	 */
+	public static synchronized AsyncAppender setAppender(AsyncAppender next) throws IllegalArgumentException {
+		if (next == null)
+			throw new IllegalArgumentException("AsyncAppender must not be null");
+		AsyncAppender previous = appender;
+		appender = next;
+		return previous;
+	}
+
+	/**
+	 * Write the queued records and stop the writer thread, records logged
+	 * afterwards are dropped
+	 */
+	public static synchronized void shutdown() {
+		if (appender != null)
+			appender.close();
+	}
+
+	public boolean isEnabled(Level level) {
+		return level != Level.OFF && level.ordinal() >= LEVEL.ordinal();
+	}
+
+	public void debug(String message, Object... fields) {
+		log(Level.DEBUG, message, null, fields);
+	}
+
+	public void info(String message, Object... fields) {
+		log(Level.INFO, message, null, fields);
+	}
+
+	public void warn(String message, Object... fields) {
+		log(Level.WARN, message, null, fields);
+	}
+
+	public void warn(String message, Throwable error, Object... fields) {
+		log(Level.WARN, message, error, fields);
+	}
+
+	public void error(String message, Object... fields) {
+		log(Level.ERROR, message, null, fields);
+	}
+
+	public void error(String message, Throwable error, Object... fields) {
+		log(Level.ERROR, message, error, fields);
+	}
+
+	/**
+	 * @param level   The severity of the record
+	 * @param message What happened, constant so records can be searched for
+	 * @param error   The cause, written with its stack trace, may be null
+	 * @param fields  Names and values, alternated
+	 */
+	public void log(Level level, String message, Throwable error, Object... fields) {
+		if (!isEnabled(level))
+			return;
+		getAppender().append(new LogEvent(System.currentTimeMillis(), level, this.name,
+				Thread.currentThread().getName(), message, error, fields));
+	}
+
+}
@@ -0,0 +1,122 @@
+package me.security.logging;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Buffered writer to a file renamed once it reaches maxSize : file becomes
+ * file.1, file.1 becomes file.2 and so on, the oldest beyond maxFiles being
+ * deleted.<br>
+ * A file is only rotated between two writes, so a record written at once is
+ * never split across files. The size is counted in characters, close to the
+ * bytes of mostly ASCII logs.<br>
+ * Flushing hands the data to the OS without forcing it to the disk, to spare
+ * the SD card.
+ */
+public class RollingFileWriter extends Writer {
+
+	public static int BUFFER_SIZE = 64 << 10;
+
+	private final File file;
+	private final long maxSize;
+	private final int maxFiles;
+	private Writer out;
+	private long size;
+
+	/**
+	 * Open the file to append to it
+	 *
+	 * @param file     The file written
+	 * @param maxSize  Size above which the file is rotated
+	 * @param maxFiles Number of rotated files kept, 0 to only truncate the file
+	 * @throws IOException              If the file can't be opened
+	 * @throws IllegalArgumentException file must not be null, maxSize must be
+	 *                                  positive and maxFiles not negative
+	 */
+	public RollingFileWriter(File file, long maxSize, int maxFiles) throws IOException, IllegalArgumentException {
+		if (file == null)
+			throw new IllegalArgumentException("File must not be null");
+		if (maxSize <= 0)
+			throw new IllegalArgumentException("maxSize must be positive");
+		if (maxFiles < 0)
+			throw new IllegalArgumentException("maxFiles must not be negative");
+
+		this.file = file;
+		this.maxSize = maxSize;
+		this.maxFiles = maxFiles;
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null)
+			Files.createDirectories(parent.toPath());
+		open();
+	}
+
+	private void open() throws IOException {
+		this.size = this.file.length();
+		this.out = new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(this.file, true), StandardCharsets.UTF_8), BUFFER_SIZE);
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		if (this.size > 0 && this.size + len > this.maxSize)
+			rotate();
+		this.out.write(cbuf, off, len);
+		this.size += len;
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		if (this.size > 0 && this.size + len > this.maxSize)
+			rotate();
+		this.out.write(str, off, len);
+		this.size += len;
+	}
+
+	/**
+	 * Shift the rotated files and start a new one
+	 */
+	private void rotate() throws IOException {
+		this.out.close();
+		try {
+			if (this.maxFiles == 0) {
+				Files.delete(this.file.toPath());
+			} else {
+				Files.deleteIfExists(rotated(this.maxFiles).toPath());
+				for (int i = this.maxFiles - 1; i >= 1; i--) {
+					File from = rotated(i);
+					if (from.exists())
+						Files.move(from.toPath(), rotated(i + 1).toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+				Files.move(this.file.toPath(), rotated(1).toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			open();// Keep writing to the current file if it couldn't be renamed
+		}
+	}
+
+	/**
+	 * @param index 1 for the most recent rotated file
+	 * @return The rotated file at this index
+	 */
+	public File rotated(int index) {
+		return new File(this.file.getPath() + "." + index);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		this.out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.out.close();
+	}
+
+}
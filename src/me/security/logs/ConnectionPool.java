@@ -0,0 +1,414 @@
+package me.security.logs;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.sql.SQLTransientConnectionException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.security.logging.Logger;
+
+/**
+ * Small pool of JDBC connections shared by the REST and alarm threads.<br>
+ * A connection idle for more than VALIDATE_IDLE is validated before being
+ * lent, each one keeps its prepared statements, and a connection not given
+ * back within the leak threshold is reported with the code that borrowed it.
+ * <br>
+ * Some connections can be reserved for borrowReserved, so writers always get
+ * one while slow readers hold all the others.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+	/**
+	 * Milliseconds a connection can stay idle before being validated on borrow
+	 */
+	public static long VALIDATE_IDLE = 5000;
+	/**
+	 * Maximum number of prepared statements kept per connection
+	 */
+	public static int STATEMENT_CACHE = 32;
+	/**
+	 * Record the stack trace of each borrow to report leaks, costs a few
+	 * microseconds per borrow
+	 */
+	public static boolean TRACE_LEAKS = false;
+
+	private static final Logger LOG = Logger.get(ConnectionPool.class);
+
+	/**
+	 * Open new connections to the database
+	 */
+	@FunctionalInterface
+	public interface Factory {
+
+		Connection create() throws SQLException;
+
+	}
+
+	private final Factory factory;
+	private final int maxSize;
+	private final int reserved;
+	private final long borrowTimeout;
+	private final long leakThreshold;
+	private final Semaphore permits;
+	private final Semaphore reservedPermits;
+	private final BlockingDeque<PooledConnection> idle;
+	private final Set<PooledConnection> borrowed;
+	private final AtomicInteger created;
+	private final AtomicInteger leaks;
+	private final ScheduledExecutorService leakDetector;
+	private volatile boolean closed;
+
+	/**
+	 * @param factory       Open new connections to the database
+	 * @param maxSize       Maximum number of open connections
+	 * @param borrowTimeout Milliseconds to wait for a connection when all are
+	 *                      borrowed
+	 * @param leakThreshold Milliseconds after which a borrowed connection is
+	 *                      reported as leaked
+	 * @throws IllegalArgumentException factory must not be null, other values
+	 *                                  must be positive
+	 */
+	public ConnectionPool(Factory factory, int maxSize, long borrowTimeout, long leakThreshold)
+			throws IllegalArgumentException {
+		this(factory, maxSize, 0, borrowTimeout, leakThreshold);
+	}
+
+	/**
+	 * @param factory       Open new connections to the database
+	 * @param maxSize       Maximum number of open connections
+	 * @param reserved      Number of these connections only lent by
+	 *                      borrowReserved
+	 * @param borrowTimeout Milliseconds to wait for a connection when all are
+	 *                      borrowed
+	 * @param leakThreshold Milliseconds after which a borrowed connection is
+	 *                      reported as leaked
+	 * @throws IllegalArgumentException factory must not be null, reserved must
+	 *                                  be less than maxSize, other values must
+	 *                                  be positive
+	 */
+	public ConnectionPool(Factory factory, int maxSize, int reserved, long borrowTimeout, long leakThreshold)
+			throws IllegalArgumentException {
+		if (factory == null)
+			throw new IllegalArgumentException("factory must not be null");
+		if (maxSize <= 0 || borrowTimeout <= 0 || leakThreshold <= 0)
+			throw new IllegalArgumentException("maxSize, borrowTimeout and leakThreshold must be positive");
+		if (reserved < 0 || reserved >= maxSize)
+			throw new IllegalArgumentException("reserved must be between 0 and maxSize - 1");
+
+		this.factory = factory;
+		this.maxSize = maxSize;
+		this.reserved = reserved;
+		this.borrowTimeout = borrowTimeout;
+		this.leakThreshold = leakThreshold;
+		this.permits = new Semaphore(maxSize - reserved, true);
+		this.reservedPermits = new Semaphore(reserved, true);
+		this.idle = new LinkedBlockingDeque<PooledConnection>();
+		this.borrowed = ConcurrentHashMap.newKeySet();
+		this.created = new AtomicInteger();
+		this.leaks = new AtomicInteger();
+
+		this.leakDetector = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "ConnectionPool-leaks");
+			t.setDaemon(true);
+			return t;
+		});
+		long period = Math.max(leakThreshold / 2, 100);
+		this.leakDetector.scheduleWithFixedDelay(this::detectLeaks, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Borrow a connection, give it back by closing the PooledConnection
+	 *
+	 * @return A valid connection
+	 * @throws SQLException If no connection is available in time, as a
+	 *                      SQLTransientException, or a new one cannot be opened
+	 */
+	public PooledConnection borrow() throws SQLException {
+		return borrow(false);
+	}
+
+	/**
+	 * Borrow a connection, a reserved one if the others are all borrowed
+	 *
+	 * @return A valid connection
+	 * @throws SQLException If no connection is available in time, as a
+	 *                      SQLTransientException, or a new one cannot be opened
+	 */
+	public PooledConnection borrowReserved() throws SQLException {
+		return borrow(true);
+	}
+
+	private PooledConnection borrow(boolean reserved) throws SQLException {
+		if (this.closed)
+			throw new SQLTransientConnectionException("ConnectionPool is closed");
+		Semaphore permit;
+		try {
+			permit = acquire(reserved);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLTransientException("Interrupted while waiting for a database connection", e);
+		}
+		// Not an outage : the database is fine, the pool is only exhausted
+		if (permit == null)
+			throw new SQLTransientException("No database connection available after " + this.borrowTimeout + "ms");
+
+		try {
+			PooledConnection pooled;
+			// Most recently used first, the others can expire on the server side
+			while ((pooled = this.idle.pollFirst()) != null) {
+				if (System.currentTimeMillis() - pooled.returnedAt < VALIDATE_IDLE || isValid(pooled))
+					break;
+				pooled.destroy();
+			}
+			if (pooled == null) {
+				pooled = new PooledConnection(this.factory.create());
+				this.created.incrementAndGet();
+			}
+
+			pooled.permit = permit;
+			pooled.borrowedAt = System.currentTimeMillis();
+			pooled.borrower = TRACE_LEAKS ? new Throwable("Borrowed by " + Thread.currentThread().getName())
+					: null;
+			pooled.borrowerName = Thread.currentThread().getName();
+			pooled.reported = false;
+			this.borrowed.add(pooled);
+			return pooled;
+		} catch (SQLException | RuntimeException e) {
+			permit.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return The semaphore a permit was taken from, null on timeout
+	 */
+	private Semaphore acquire(boolean reserved) throws InterruptedException {
+		if (reserved && this.reserved > 0) {
+			if (this.reservedPermits.tryAcquire())
+				return this.reservedPermits;
+			if (this.permits.tryAcquire())
+				return this.permits;
+			// Reserved connections are only held by short writes
+			return this.reservedPermits.tryAcquire(this.borrowTimeout, TimeUnit.MILLISECONDS) ? this.reservedPermits
+					: null;
+		}
+		return this.permits.tryAcquire(this.borrowTimeout, TimeUnit.MILLISECONDS) ? this.permits : null;
+	}
+
+	/**
+	 * Tell an outage from an error the database would return on every attempt,
+	 * like a value too long or a constraint violation.<br>
+	 * A borrow timing out is not an outage, only the pool is exhausted.
+	 *
+	 * @param e The error of a statement or a borrow
+	 * @return True if the database couldn't be reached, false if it rejected
+	 *         the statement
+	 */
+	public static boolean isConnectionError(SQLException e) {
+		for (Throwable t = e; t != null; t = t.getCause()) {
+			if (t instanceof SQLRecoverableException || t instanceof SQLTransientConnectionException)
+				return true;
+			if (t instanceof SQLException) {
+				String state = ((SQLException) t).getSQLState();
+				if (state != null && state.startsWith("08"))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isValid(PooledConnection pooled) {
+		try {
+			return pooled.connection.isValid(1);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private void giveBack(PooledConnection pooled, boolean broken) {
+		if (!this.borrowed.remove(pooled))
+			return;// Already given back
+		if (broken || this.closed) {
+			pooled.destroy();
+		} else {
+			pooled.returnedAt = System.currentTimeMillis();
+			this.idle.offerFirst(pooled);
+		}
+		pooled.permit.release();
+	}
+
+	private void detectLeaks() {
+		long now = System.currentTimeMillis();
+		for (PooledConnection pooled : this.borrowed) {
+			if (!pooled.reported && now - pooled.borrowedAt > this.leakThreshold) {
+				pooled.reported = true;
+				this.leaks.incrementAndGet();
+				LOG.warn("Database connection may have leaked", pooled.borrower, "borrower", pooled.borrowerName,
+						"borrowedMs", now - pooled.borrowedAt);
+			}
+		}
+	}
+
+	/**
+	 * @return Number of connections currently borrowed
+	 */
+	public int getActive() {
+		return this.borrowed.size();
+	}
+
+	/**
+	 * @return Number of open connections waiting to be borrowed
+	 */
+	public int getIdle() {
+		return this.idle.size();
+	}
+
+	/**
+	 * @return Number of connections opened since the pool was created
+	 */
+	public int getCreated() {
+		return this.created.get();
+	}
+
+	/**
+	 * @return Number of connections reported as leaked
+	 */
+	public int getLeaks() {
+		return this.leaks.get();
+	}
+
+	public int getMaxSize() {
+		return this.maxSize;
+	}
+
+	/**
+	 * Close the idle connections, borrowed ones are closed when given back
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		this.leakDetector.shutdownNow();
+		PooledConnection pooled;
+		while ((pooled = this.idle.pollFirst()) != null)
+			pooled.destroy();
+	}
+
+	/**
+	 * A connection lent by the pool, to use from a single thread at a time and
+	 * give back by closing it
+	 */
+	public class PooledConnection implements AutoCloseable {
+
+		private final Connection connection;
+		private final Map<String, PreparedStatement> statements;
+		private volatile Semaphore permit;
+		private volatile long borrowedAt;
+		private volatile long returnedAt;
+		private volatile Throwable borrower;
+		private volatile String borrowerName;
+		private volatile boolean reported;
+		private boolean broken;
+
+		private PooledConnection(Connection connection) {
+			this.connection = connection;
+			this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+					if (size() <= STATEMENT_CACHE)
+						return false;
+					closeQuietly(eldest.getValue());
+					return true;
+				}
+			};
+		}
+
+		public Connection getConnection() {
+			return this.connection;
+		}
+
+		/**
+		 * @param sql The statement to prepare
+		 * @return The statement prepared by a previous borrower, or a new one
+		 * @throws SQLException If the statement cannot be prepared
+		 */
+		public PreparedStatement prepare(String sql) throws SQLException {
+			PreparedStatement stmt = this.statements.get(sql);
+			if (stmt == null || stmt.isClosed()) {
+				stmt = this.connection.prepareStatement(sql);
+				this.statements.put(sql, stmt);
+			}
+			return stmt;
+		}
+
+		/**
+		 * @param sql               The statement to prepare
+		 * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS or
+		 *                          Statement.NO_GENERATED_KEYS
+		 * @return The statement prepared by a previous borrower, or a new one
+		 * @throws SQLException If the statement cannot be prepared
+		 */
+		public PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+			String key = autoGeneratedKeys + ":" + sql;
+			PreparedStatement stmt = this.statements.get(key);
+			if (stmt == null || stmt.isClosed()) {
+				stmt = this.connection.prepareStatement(sql, autoGeneratedKeys);
+				this.statements.put(key, stmt);
+			}
+			return stmt;
+		}
+
+		/**
+		 * Close the connection instead of giving it back, to call when it failed
+		 * in a way that may have broken it
+		 */
+		public void invalidate() {
+			this.broken = true;
+		}
+
+		/**
+		 * Give the connection back to the pool
+		 */
+		@Override
+		public void close() {
+			boolean broken = this.broken;
+			this.broken = false;
+			giveBack(this, broken);
+		}
+
+		private void destroy() {
+			for (PreparedStatement stmt : this.statements.values())
+				closeQuietly(stmt);
+			this.statements.clear();
+			try {
+				this.connection.close();
+			} catch (SQLException e) {
+				// Already broken, nothing to release
+			}
+		}
+
+		private void closeQuietly(PreparedStatement stmt) {
+			try {
+				stmt.close();
+			} catch (SQLException e) {
+				// The connection is probably broken, it will be destroyed
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,333 @@
+package me.security.logs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+
+import me.security.logging.Logger;
+import me.security.managers.DatabaseManager.Log;
+
+/**
+ * Append-only store of the logs which couldn't be written to the database,
+ * kept in memory-mapped segment files until they are replayed.<br>
+ * Segments are [int replayed][records], each record being [int length][long
+ * time][byte relatedToSensor][info], the length being written last so a
+ * record torn by a crash is never read back. replayed is the offset of the
+ * first record not replayed yet, a segment is deleted once fully replayed.<br>
+ * Replaying is at least once : a crash between a batch being written and its
+ * offset being saved replays that batch again.
+ */
+public class LocalLogStore implements AutoCloseable {
+
+	public static int SEGMENT_SIZE = 4 << 20;
+
+	private static final int HEADER = 4;
+	private static final int RECORD_HEADER = 4 + 8 + 1;
+	private static final String PREFIX = "segment-";
+	private static final String SUFFIX = ".log";
+	private static final Logger LOG = Logger.get(LocalLogStore.class);
+
+	private final File directory;
+	private final Deque<Segment> segments;
+	private long nextSegment;
+	private int pending;
+
+	/**
+	 * Open or create the store, reading the logs not replayed yet
+	 *
+	 * @param directory Where segments are kept
+	 * @throws IOException If the directory or a segment cannot be opened
+	 */
+	public LocalLogStore(File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Cannot create " + directory);
+		this.directory = directory;
+		this.segments = new ArrayDeque<Segment>();
+
+		File[] files = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+		Arrays.sort(files);// Zero padded sequence numbers sort by age
+		for (File file : files) {
+			Segment segment = new Segment(file);
+			this.nextSegment = Math.max(this.nextSegment, segment.sequence + 1);
+			if (segment.count == 0) {
+				segment.delete();
+			} else {
+				this.segments.addLast(segment);
+				this.pending += segment.count;
+			}
+		}
+		if (this.pending > 0)
+			LOG.info("LocalLogStore opened", "directory", directory, "pending", this.pending);
+	}
+
+	/**
+	 * Append logs, their id is ignored.<br>
+	 * Either every log is appended or none is : sizes are checked and the
+	 * segments needed are created before writing the first one.
+	 *
+	 * @param logs The logs to keep until replayed
+	 * @throws IOException              If a new segment cannot be created
+	 * @throws IllegalArgumentException If a log doesn't fit in a segment
+	 */
+	public synchronized void append(List<Log> logs) throws IOException {
+		List<byte[]> infos = new ArrayList<byte[]>(logs.size());
+		Segment last = this.segments.peekLast();
+		int remaining = last == null ? 0 : last.buffer.remaining();
+		int needed = 0;
+		for (Log log : logs) {
+			byte[] info = log.info.getBytes(StandardCharsets.UTF_8);
+			int size = RECORD_HEADER + info.length;
+			if (size > SEGMENT_SIZE - HEADER)
+				throw new IllegalArgumentException("Log too long to be stored locally");
+			if (remaining < size) {
+				needed++;
+				remaining = SEGMENT_SIZE - HEADER;
+			}
+			remaining -= size;
+			infos.add(info);
+		}
+
+		List<Segment> created = new ArrayList<Segment>(needed);
+		try {
+			for (int i = 0; i < needed; i++)
+				created.add(new Segment(new File(this.directory, String.format("%s%010d%s", PREFIX,
+						this.nextSegment + i, SUFFIX))));
+		} catch (IOException e) {
+			for (Segment segment : created)
+				segment.delete();
+			throw e;
+		}
+		this.nextSegment += needed;
+
+		Iterator<Segment> next = created.iterator();
+		for (int i = 0; i < logs.size(); i++) {
+			byte[] info = infos.get(i);
+			Segment segment = this.segments.peekLast();
+			if (segment == null || segment.buffer.remaining() < RECORD_HEADER + info.length) {
+				segment = next.next();
+				this.segments.addLast(segment);
+			}
+			Log log = logs.get(i);
+			segment.append(log.time, log.relatedToSensor, info);
+			this.pending++;
+		}
+	}
+
+	/**
+	 * @return Number of logs waiting to be replayed
+	 */
+	public synchronized int getPending() {
+		return this.pending;
+	}
+
+	public synchronized boolean isEmpty() {
+		return this.pending == 0;
+	}
+
+	/**
+	 * Write the stored logs to sink, oldest first, in batches of at most
+	 * batchSize logs, until the store is empty or sink fails
+	 *
+	 * @param sink      Where to replay the logs
+	 * @param batchSize Maximum number of logs written at once
+	 * @return Number of logs replayed
+	 * @throws Exception If sink failed, the failed batch stays stored
+	 */
+	public int replay(LogWriter.Sink sink, int batchSize) throws Exception {
+		int replayed = 0;
+		List<Log> batch = new ArrayList<Log>(batchSize);
+		while (true) {
+			Segment segment;
+			int end;
+			synchronized (this) {
+				segment = this.segments.peekFirst();
+				if (segment == null)
+					return replayed;
+				end = segment.read(batch, batchSize);
+			}
+
+			if (!batch.isEmpty())
+				sink.write(batch);// Outside the lock, appends never wait for the database
+
+			synchronized (this) {
+				segment.commit(end, batch.size());
+				this.pending -= batch.size();
+				if (segment.count == 0) {
+					// Fully replayed, if it was the active one the next append starts a new one
+					this.segments.removeFirst();
+					segment.delete();
+				}
+			}
+			replayed += batch.size();
+			batch.clear();
+		}
+	}
+
+	/**
+	 * @param count Maximum number of logs
+	 * @return The most recent logs not replayed yet, newest first, with id 0
+	 */
+	public List<Log> getLast(int count) {
+		return getLast(count, null);
+	}
+
+	/**
+	 * Read the most recent logs matching filter, going back from the newest
+	 * segment only as far as needed.<br>
+	 * Only the offsets of a segment are kept to read it backwards, logs are
+	 * decoded one at a time.
+	 *
+	 * @param count  Maximum number of logs
+	 * @param filter The logs to keep, null for all of them
+	 * @return The most recent logs not replayed yet, newest first, with id 0
+	 */
+	public synchronized List<Log> getLast(int count, Predicate<Log> filter) {
+		List<Log> last = new ArrayList<Log>(Math.min(count, this.pending));
+		for (Iterator<Segment> it = this.segments.descendingIterator(); it.hasNext() && last.size() < count;) {
+			Segment segment = it.next();
+			int[] offsets = segment.offsets();
+			for (int i = offsets.length - 1; i >= 0 && last.size() < count; i--) {
+				Log log = segment.readAt(offsets[i]);
+				if (filter == null || filter.test(log))
+					last.add(log);
+			}
+		}
+		return Collections.unmodifiableList(last);
+	}
+
+	/**
+	 * Release the segments, logs not replayed stay in them
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		for (Segment segment : this.segments)
+			segment.close();
+		this.segments.clear();
+	}
+
+	/**
+	 * A memory-mapped file of SEGMENT_SIZE bytes
+	 */
+	private static class Segment {
+
+		private final File file;
+		private final long sequence;
+		private final FileChannel channel;
+		private final MappedByteBuffer buffer;
+		private int count;
+
+		/**
+		 * Map the file and count its records not replayed, the buffer is left
+		 * positioned after the last complete one
+		 */
+		private Segment(File file) throws IOException {
+			this.file = file;
+			String name = file.getName();
+			this.sequence = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+			this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+
+			int replayed = this.buffer.getInt(0);
+			if (replayed < HEADER) {
+				replayed = HEADER;
+				this.buffer.putInt(0, replayed);
+			}
+			this.buffer.position(HEADER);
+			while (this.buffer.remaining() >= RECORD_HEADER) {
+				int start = this.buffer.position();
+				int length = this.buffer.getInt();
+				if (length < RECORD_HEADER - 4 || length > this.buffer.remaining()) {
+					this.buffer.position(start);
+					break;
+				}
+				this.buffer.position(start + 4 + length);
+				if (start >= replayed)
+					this.count++;
+			}
+		}
+
+		private void append(long time, boolean relatedToSensor, byte[] info) {
+			int start = this.buffer.position();
+			this.buffer.position(start + 4);
+			this.buffer.putLong(time).put((byte) (relatedToSensor ? 1 : 0)).put(info);
+			this.buffer.putInt(start, 8 + 1 + info.length);
+			this.count++;
+		}
+
+		/**
+		 * Read at most max logs not replayed yet
+		 *
+		 * @return The offset following the last log read
+		 */
+		private int read(List<Log> logs, int max) {
+			ByteBuffer in = this.buffer.duplicate();
+			int end = this.buffer.position();
+			in.position(this.buffer.getInt(0));
+			while (in.position() < end && logs.size() < max)
+				logs.add(decode(in));
+			return in.position();
+		}
+
+		/**
+		 * @return The offset of each log not replayed yet, oldest first
+		 */
+		private int[] offsets() {
+			int[] offsets = new int[this.count];
+			int position = this.buffer.getInt(0);
+			for (int i = 0; i < offsets.length; i++) {
+				offsets[i] = position;
+				position += 4 + this.buffer.getInt(position);
+			}
+			return offsets;
+		}
+
+		private Log readAt(int offset) {
+			ByteBuffer in = this.buffer.duplicate();
+			in.position(offset);
+			return decode(in);
+		}
+
+		private Log decode(ByteBuffer in) {
+			int length = in.getInt();
+			long time = in.getLong();
+			boolean relatedToSensor = in.get() != 0;
+			byte[] info = new byte[length - 8 - 1];
+			in.get(info);
+			return new Log(0, time, relatedToSensor, new String(info, StandardCharsets.UTF_8));
+		}
+
+		/**
+		 * Save that the logs up to end were replayed
+		 */
+		private void commit(int end, int replayed) {
+			this.buffer.putInt(0, end);
+			this.count -= replayed;
+		}
+
+		private void close() throws IOException {
+			this.buffer.force();
+			this.channel.close();
+		}
+
+		private void delete() throws IOException {
+			this.channel.close();
+			Files.deleteIfExists(this.file.toPath());
+		}
+
+	}
+
+}
@@ -0,0 +1,123 @@
+package me.security.logs;
+
+import java.io.IOException;
+
+/**
+ * A page of logs to read, newest first.<br>
+ * Pages are chained with keyset pagination : the next page is the one before
+ * the smallest id of the current page, so reading a page costs the same
+ * however deep it is, unlike an OFFSET which reads and skips every row before
+ * it.
+ */
+public class LogQuery {
+
+	public static int DEFAULT_LIMIT = 50;
+	public static int MAX_LIMIT = 500;
+
+	/**
+	 * Receive the logs of a query one row at a time, without materializing them
+	 */
+	@FunctionalInterface
+	public interface Visitor {
+
+		/**
+		 * @throws IOException If the row cannot be written to the client
+		 */
+		void visit(int id, long time, boolean relatedToSensor, String info) throws IOException;
+
+	}
+
+	private final int before;
+	private final int limit;
+	private final boolean sensorOnly;
+	private final long from;
+	private final long to;
+	private final String text;
+
+	/**
+	 * @param before     Only logs with a smaller id, 0 to start from the newest
+	 * @param limit      Maximum number of logs, at most MAX_LIMIT
+	 * @param sensorOnly Only logs related to a sensor
+	 * @param from       Only logs logged at or after this time in milliseconds, 0
+	 *                   for no lower bound
+	 * @param to         Only logs logged before this time in milliseconds, 0 for
+	 *                   no upper bound
+	 * @param text       Only logs containing this text, null for any
+	 * @throws IllegalArgumentException If a bound is negative, limit is out of
+	 *                                  range or from is not before to
+	 */
+	public LogQuery(int before, int limit, boolean sensorOnly, long from, long to, String text)
+			throws IllegalArgumentException {
+		if (before < 0)
+			throw new IllegalArgumentException("before must not be negative");
+		if (limit <= 0 || limit > MAX_LIMIT)
+			throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+		if (from < 0 || to < 0)
+			throw new IllegalArgumentException("from and to must not be negative");
+		if (to != 0 && from >= to)
+			throw new IllegalArgumentException("from must be before to");
+
+		this.before = before;
+		this.limit = limit;
+		this.sensorOnly = sensorOnly;
+		this.from = from;
+		this.to = to;
+		this.text = text == null || text.isEmpty() ? null : text;
+	}
+
+	/**
+	 * @return Only logs with a smaller id are read, 0 if unbounded
+	 */
+	public int getBefore() {
+		return this.before;
+	}
+
+	public int getLimit() {
+		return this.limit;
+	}
+
+	public boolean isSensorOnly() {
+		return this.sensorOnly;
+	}
+
+	/**
+	 * @return Lower time bound in milliseconds, inclusive, 0 if unbounded
+	 */
+	public long getFrom() {
+		return this.from;
+	}
+
+	/**
+	 * @return Upper time bound in milliseconds, exclusive, 0 if unbounded
+	 */
+	public long getTo() {
+		return this.to;
+	}
+
+	/**
+	 * @return Text the logs must contain, null for any
+	 */
+	public String getText() {
+		return this.text;
+	}
+
+	/**
+	 * Apply the filters to a log read from somewhere else than the database,
+	 * text being matched ignoring case like the database does
+	 *
+	 * @return True if the log belongs to this query, whatever its id
+	 */
+	public boolean matches(long time, boolean relatedToSensor, String info) {
+		return (!this.sensorOnly || relatedToSensor) && time >= this.from && (this.to == 0 || time < this.to)
+				&& (this.text == null || info.toLowerCase().contains(this.text.toLowerCase()));
+	}
+
+	/**
+	 * @param lastId The id of the last log of this page
+	 * @return The query of the next, older, page
+	 */
+	public LogQuery next(int lastId) {
+		return new LogQuery(lastId, this.limit, this.sensorOnly, this.from, this.to, this.text);
+	}
+
+}
@@ -0,0 +1,249 @@
+package me.security.logs;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import me.security.logs.ConnectionPool.PooledConnection;
+import me.security.managers.DatabaseManager.Log;
+
+/**
+ * Move the logs older than maxAge out of the logs table.<br>
+ * Old logs are read in chunks of CHUNK_SIZE, oldest first. Each chunk is
+ * appended to a gzip archive as json lines and synced to disk. Then, in a
+ * single transaction, its sensor events are counted per hour and per sensor
+ * in logs_hourly and its rows are deleted by primary key range.<br>
+ * Each transaction only locks CHUNK_SIZE rows for a few milliseconds, and
+ * runs pause CHUNK_PAUSE between chunks, so the inserts of the alarm path
+ * never wait long.<br>
+ * A crash between archiving a chunk and deleting it archives it again on
+ * the next run, the counts are never doubled.
+ */
+public class LogRetention {
+
+	public static int CHUNK_SIZE = 500;
+	/**
+	 * Milliseconds to pause between two chunks
+	 */
+	public static long CHUNK_PAUSE = 50;
+
+	private static final String CREATE_HOURLY = "CREATE TABLE IF NOT EXISTS `logs_hourly` ("
+			+ "`hour` DATETIME NOT NULL, `sensor` VARCHAR(255) NOT NULL, `count` INT NOT NULL, "
+			+ "PRIMARY KEY (`hour`,`sensor`))";
+	private static final String UPSERT_HOURLY = "INSERT INTO `logs_hourly`(`hour`,`sensor`,`count`) VALUES (?,?,?) "
+			+ "ON DUPLICATE KEY UPDATE `count` = `count` + VALUES(`count`)";
+	private static final String SELECT_OLD = "SELECT * FROM `logs` WHERE `id_log` > ? AND `%s` < ? "
+			+ "ORDER BY `id_log` LIMIT ?";
+	private static final String DELETE_OLD = "DELETE FROM `logs` WHERE `id_log` BETWEEN ? AND ? AND `%s` < ?";
+	private static final String SENSOR_PREFIX = "Detection ";
+
+	private final ConnectionPool pool;
+	private final File directory;
+	private final long maxAge;
+	private final Gson gson;
+	private final AtomicLong archived;
+	private volatile boolean tableCreated;
+
+	/**
+	 * @param pool      Connections to the database holding the logs table
+	 * @param directory Where archives are written
+	 * @param maxAge    Milliseconds after which a log is archived
+	 * @throws IllegalArgumentException pool and directory must not be null,
+	 *                                  maxAge must be positive
+	 */
+	public LogRetention(ConnectionPool pool, File directory, long maxAge) throws IllegalArgumentException {
+		if (pool == null || directory == null)
+			throw new IllegalArgumentException("pool and directory must not be null");
+		if (maxAge <= 0)
+			throw new IllegalArgumentException("maxAge must be positive");
+		this.pool = pool;
+		this.directory = directory;
+		this.maxAge = maxAge;
+		this.gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
+		this.archived = new AtomicLong();
+	}
+
+	/**
+	 * Archive, roll up and delete every log older than maxAge
+	 *
+	 * @param timeColumn The name of the time column of the logs table
+	 * @return Number of logs archived
+	 * @throws SQLException         If the database is unreachable, chunks
+	 *                              already done stay done
+	 * @throws IOException          If the archive cannot be written, the chunk
+	 *                              isn't deleted
+	 * @throws InterruptedException If interrupted between two chunks
+	 */
+	public int run(String timeColumn) throws SQLException, IOException, InterruptedException {
+		createTable();
+		if (!this.directory.isDirectory() && !this.directory.mkdirs())
+			throw new IOException("Cannot create " + this.directory);
+
+		Timestamp cutoff = new Timestamp(System.currentTimeMillis() - this.maxAge);
+		File file = new File(this.directory,
+				"logs-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".jsonl.gz");
+		int total = 0;
+		int after = 0;
+		try (FileOutputStream out = new FileOutputStream(file, true)) {
+			List<Log> chunk;
+			do {
+				chunk = readChunk(timeColumn, after, cutoff);
+				if (chunk.isEmpty())
+					break;
+				archive(out, chunk);
+				delete(timeColumn, chunk, cutoff);
+
+				after = chunk.get(chunk.size() - 1).id;
+				total += chunk.size();
+				this.archived.addAndGet(chunk.size());
+				Thread.sleep(CHUNK_PAUSE);
+			} while (chunk.size() == CHUNK_SIZE);
+		} finally {
+			if (total == 0)
+				file.delete();
+		}
+		return total;
+	}
+
+	private void createTable() throws SQLException {
+		if (this.tableCreated)
+			return;
+		try (PooledConnection c = this.pool.borrow(); Statement stmt = c.getConnection().createStatement()) {
+			stmt.execute(CREATE_HOURLY);
+		}
+		this.tableCreated = true;
+	}
+
+	private List<Log> readChunk(String timeColumn, int after, Timestamp cutoff) throws SQLException {
+		List<Log> chunk = new ArrayList<Log>(CHUNK_SIZE);
+		try (PooledConnection c = this.pool.borrow()) {
+			try {
+				PreparedStatement stmt = c.prepare(String.format(SELECT_OLD, timeColumn));
+				stmt.setInt(1, after);
+				stmt.setTimestamp(2, cutoff);
+				stmt.setInt(3, CHUNK_SIZE);
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next())
+						chunk.add(new Log(rs.getInt(1), rs.getTimestamp(2), rs.getBoolean(3), rs.getString(4)));
+				}
+			} catch (SQLException e) {
+				c.invalidate();
+				throw e;
+			}
+		}
+		return chunk;
+	}
+
+	/**
+	 * Append the chunk as a gzip member of its own, so the archive stays
+	 * readable whatever chunk a crash stops at
+	 */
+	private void archive(FileOutputStream out, List<Log> chunk) throws IOException {
+		OutputStream shield = new FilterOutputStream(out) {
+			@Override
+			public void close() throws IOException {
+				flush();// The file stays open for the next chunk
+			}
+		};
+		try (BufferedWriter writer = new BufferedWriter(
+				new OutputStreamWriter(new GZIPOutputStream(shield), StandardCharsets.UTF_8))) {
+			for (Log log : chunk) {
+				this.gson.toJson(log, writer);
+				writer.newLine();
+			}
+		}
+		out.getFD().sync();// Archived before being deleted
+	}
+
+	/**
+	 * Count the sensor events of the chunk and delete it in a single
+	 * transaction
+	 */
+	private void delete(String timeColumn, List<Log> chunk, Timestamp cutoff) throws SQLException {
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		Map<String, Timestamp> hours = new HashMap<String, Timestamp>();
+		Map<String, String> sensors = new HashMap<String, String>();
+		for (Log log : chunk) {
+			if (!log.relatedToSensor)
+				continue;
+			Timestamp hour = Timestamp.valueOf(
+					new Timestamp(log.time).toLocalDateTime().truncatedTo(ChronoUnit.HOURS));
+			String sensor = getSensor(log.info);
+			String key = hour.getTime() + "|" + sensor;
+			counts.merge(key, 1, Integer::sum);
+			hours.put(key, hour);
+			sensors.put(key, sensor);
+		}
+
+		try (PooledConnection c = this.pool.borrow()) {
+			Connection connection = c.getConnection();
+			try {
+				connection.setAutoCommit(false);
+				if (!counts.isEmpty()) {
+					PreparedStatement upsert = c.prepare(UPSERT_HOURLY);
+					for (Map.Entry<String, Integer> count : counts.entrySet()) {
+						upsert.setTimestamp(1, hours.get(count.getKey()));
+						upsert.setString(2, sensors.get(count.getKey()));
+						upsert.setInt(3, count.getValue());
+						upsert.addBatch();
+					}
+					upsert.executeBatch();
+				}
+
+				PreparedStatement delete = c.prepare(String.format(DELETE_OLD, timeColumn));
+				delete.setInt(1, chunk.get(0).id);
+				delete.setInt(2, chunk.get(chunk.size() - 1).id);
+				delete.setTimestamp(3, cutoff);// Replayed logs may be newer than their neighbours
+				delete.executeUpdate();
+				connection.commit();
+				connection.setAutoCommit(true);
+			} catch (SQLException e) {
+				c.invalidate();// Rolled back when the connection is closed
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * @param info The info of a sensor event, "Detection name (message)"
+	 * @return The name of the sensor
+	 * @see me.security.managers.ServerSecurity
+	 */
+	private static String getSensor(String info) {
+		int start = info.startsWith(SENSOR_PREFIX) ? SENSOR_PREFIX.length() : 0;
+		int end = info.indexOf(" (", start);
+		String sensor = info.substring(start, end < 0 ? info.length() : end);
+		return sensor.length() > 255 ? sensor.substring(0, 255) : sensor;
+	}
+
+	/**
+	 * @return Number of logs archived since started
+	 */
+	public long getArchived() {
+		return this.archived.get();
+	}
+
+}
@@ -0,0 +1,70 @@
+package me.security.logs;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Consumer;
+
+import me.security.managers.DatabaseManager;
+import me.security.managers.DatabaseManager.Log;
+
+/**
+ * Where the alarm and sensor events are logged.<br>
+ * DatabaseManager stores them in MySQL, MemoryLogStore keeps them in memory to
+ * run and load test the server without any external service.
+ *
+ * @see DatabaseManager
+ * @see MemoryLogStore
+ */
+public interface LogStore extends AutoCloseable {
+
+	/**
+	 * Log a message and if it is related to a sensor, never blocks on the
+	 * storage
+	 *
+	 * @param relatedToSensor If it is related to a sensor
+	 * @param info            The related information
+	 * @throws IllegalArgumentException The text information must not be null or
+	 *                                  empty
+	 */
+	void rawLog(boolean relatedToSensor, String info) throws IllegalArgumentException;
+
+	/**
+	 * @return The 10 last logs, newest first
+	 */
+	List<Log> getLast10Logs();
+
+	/**
+	 * @return A number changing every time a log is added, to know if
+	 *         getLast10Logs changed
+	 */
+	long getVersion();
+
+	/**
+	 * Read a page of logs, newest first, giving each row to visitor as soon as
+	 * it is read
+	 *
+	 * @param query   The page to read
+	 * @param visitor Receive each log, from the calling thread
+	 * @return Number of logs read, less than the limit if it was the last page
+	 * @throws SQLException If the storage is unreachable
+	 * @throws IOException  If visitor failed, the query is then aborted
+	 */
+	int queryLogs(LogQuery query, LogQuery.Visitor visitor) throws SQLException, IOException;
+
+	/**
+	 * Be called for every logged message, even if it couldn't be stored
+	 *
+	 * @param listener Called with the logged message, its id is 0 if it wasn't
+	 *                 stored
+	 * @throws IllegalArgumentException listener must not be null
+	 */
+	void addLogListener(Consumer<Log> listener) throws IllegalArgumentException;
+
+	/**
+	 * Store the logs still queued and release the storage
+	 */
+	@Override
+	void close();
+
+}
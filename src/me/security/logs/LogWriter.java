@@ -0,0 +1,240 @@
+package me.security.logs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import me.security.logging.Logger;
+import me.security.managers.DatabaseManager.Log;
+
+/**
+ * Write logs in batches from a background thread.<br>
+ * Callers only queue their log in a lock-free ring buffer, the writer thread
+ * drains it into batches of at most batchSize logs, waiting at most linger
+ * milliseconds for a batch to fill up.<br>
+ * When the ring buffer is full, because the storage is slow or unreachable,
+ * callers wait a little then drop their log : the alarm path never blocks on
+ * the database.
+ */
+public class LogWriter implements AutoCloseable {
+
+	public static int CAPACITY = 8192;
+	public static int BATCH_SIZE = 256;
+	public static long LINGER = 5;
+	/**
+	 * Microseconds a caller waits for room in a full buffer before dropping
+	 */
+	public static long BACKPRESSURE_WAIT = 5000;
+
+	private static final Logger LOG = Logger.get(LogWriter.class);
+
+	/**
+	 * Where batches are written
+	 */
+	@FunctionalInterface
+	public interface Sink {
+
+		/**
+		 * @param batch The logs to write, their id is 0
+		 * @return The id given to each log, in order
+		 * @throws Exception If the batch couldn't be written
+		 */
+		int[] write(List<Log> batch) throws Exception;
+
+	}
+
+	private final Sink sink;
+	private final Consumer<Log> written;
+	private final MpscRingBuffer<Log> ring;
+	private final int batchSize;
+	private final long linger;
+	private final Thread thread;
+	private final AtomicLong writtenCount;
+	private final AtomicLong dropped;
+	private final AtomicLong failed;
+	private final AtomicLong batches;
+	private volatile boolean waiting;
+	private volatile boolean enabled;
+
+	public LogWriter(Sink sink, Consumer<Log> written) {
+		this(sink, written, CAPACITY, BATCH_SIZE, LINGER);
+	}
+
+	/**
+	 * Start the writer thread
+	 *
+	 * @param sink      Where batches are written
+	 * @param written   Called from the writer thread with every log once
+	 *                  written, or with id 0 if it couldn't be
+	 * @param capacity  Maximum number of logs waiting to be written
+	 * @param batchSize Maximum number of logs written at once
+	 * @param linger    Maximum milliseconds to wait for a batch to fill up
+	 * @throws IllegalArgumentException sink and written must not be null,
+	 *                                  capacity and batchSize must be positive
+	 */
+	public LogWriter(Sink sink, Consumer<Log> written, int capacity, int batchSize, long linger)
+			throws IllegalArgumentException {
+		if (sink == null || written == null)
+			throw new IllegalArgumentException("sink and written must not be null");
+		if (batchSize <= 0)
+			throw new IllegalArgumentException("batchSize must be positive");
+		if (linger < 0)
+			throw new IllegalArgumentException("linger must not be negative");
+
+		this.sink = sink;
+		this.written = written;
+		this.ring = new MpscRingBuffer<Log>(capacity);
+		this.batchSize = batchSize;
+		this.linger = TimeUnit.MILLISECONDS.toNanos(linger);
+		this.writtenCount = new AtomicLong();
+		this.dropped = new AtomicLong();
+		this.failed = new AtomicLong();
+		this.batches = new AtomicLong();
+		this.enabled = true;
+
+		this.thread = new Thread(this::run, "LogWriter");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Queue a log to be written, wait up to BACKPRESSURE_WAIT if the buffer is
+	 * full
+	 *
+	 * @param log The log to write, its id is ignored
+	 * @return False if the log was dropped, it is then never given to written
+	 */
+	public boolean offer(Log log) {
+		if (!this.enabled) {
+			this.dropped.incrementAndGet();
+			return false;
+		}
+		if (!this.ring.offer(log)) {
+			long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(BACKPRESSURE_WAIT);
+			do {
+				LockSupport.parkNanos(50_000);
+				if (System.nanoTime() - deadline > 0 || !this.enabled) {
+					this.dropped.incrementAndGet();
+					return false;
+				}
+			} while (!this.ring.offer(log));
+		}
+		if (this.waiting)
+			LockSupport.unpark(this.thread);
+		return true;
+	}
+
+	private void run() {
+		List<Log> batch = new ArrayList<Log>(this.batchSize);
+		while (this.enabled || this.ring.size() > 0) {
+			Log log = this.ring.poll();
+			if (log == null) {
+				await(0);
+				continue;
+			}
+
+			batch.add(log);
+			long deadline = System.nanoTime() + this.linger;
+			while (batch.size() < this.batchSize) {
+				log = this.ring.poll();
+				if (log != null) {
+					batch.add(log);
+				} else if (!this.enabled || deadline - System.nanoTime() <= 0) {
+					break;
+				} else {
+					await(deadline);
+				}
+			}
+
+			write(batch);
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Park until a log is queued, or until deadline if not 0
+	 */
+	private void await(long deadline) {
+		this.waiting = true;
+		if (this.ring.size() == 0 && this.enabled) {
+			if (deadline == 0) {
+				LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+			} else {
+				LockSupport.parkNanos(this, deadline - System.nanoTime());
+			}
+		}
+		this.waiting = false;
+	}
+
+	private void write(List<Log> batch) {
+		int[] ids = null;
+		try {
+			ids = this.sink.write(batch);
+			this.writtenCount.addAndGet(batch.size());
+			this.batches.incrementAndGet();
+		} catch (Exception e) {
+			LOG.error("Unable to write logs", e, "count", batch.size());
+			this.failed.addAndGet(batch.size());
+		}
+
+		for (int i = 0; i < batch.size(); i++) {
+			Log log = batch.get(i);
+			int id = ids != null && i < ids.length ? ids[i] : 0;
+			try {
+				this.written.accept(id == 0 ? log : new Log(id, log.time, log.relatedToSensor, log.info));
+			} catch (RuntimeException e) {
+				LOG.error("Log listener failed", e);
+			}
+		}
+	}
+
+	/**
+	 * @return Number of logs waiting to be written
+	 */
+	public int getPending() {
+		return this.ring.size();
+	}
+
+	public long getWritten() {
+		return this.writtenCount.get();
+	}
+
+	/**
+	 * @return Number of batches written, each one is a single round-trip
+	 */
+	public long getBatches() {
+		return this.batches.get();
+	}
+
+	/**
+	 * @return Number of logs dropped because the buffer was full
+	 */
+	public long getDropped() {
+		return this.dropped.get();
+	}
+
+	/**
+	 * @return Number of logs lost because the sink failed to write them
+	 */
+	public long getFailed() {
+		return this.failed.get();
+	}
+
+	/**
+	 * Stop accepting logs, write the queued ones then stop the writer thread
+	 */
+	@Override
+	public void close() {
+		this.enabled = false;
+		LockSupport.unpark(this.thread);
+		try {
+			this.thread.join(TimeUnit.SECONDS.toMillis(10));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
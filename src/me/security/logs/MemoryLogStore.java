@@ -0,0 +1,202 @@
+package me.security.logs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+import me.security.logging.Logger;
+import me.security.managers.DatabaseManager.Log;
+
+/**
+ * Logs kept in memory only, to run and load test the server without MySQL.
+ * <br>
+ * Logs are appended to fixed size chunks of primitive arrays : a log costs a
+ * long, a boolean and its String, appending is a single atomic increment
+ * claiming an id and never locks. The id of a log is its position, so pages
+ * are read by walking the chunks backwards from before.<br>
+ * Only the last maxChunks chunks are kept, older logs are forgotten a chunk at
+ * a time.
+ */
+public class MemoryLogStore implements LogStore {
+
+	public static int CHUNK_SIZE = 4096;
+	public static int MAX_CHUNKS = 256;
+
+	private static final Logger LOG = Logger.get(MemoryLogStore.class);
+
+	private final int maxChunks;
+	private final AtomicInteger nextId;
+	private final AtomicReferenceArray<Chunk> chunks;
+	private final List<Consumer<Log>> logListeners;
+	private final boolean print;
+
+	public MemoryLogStore() {
+		this(MAX_CHUNKS, true);
+	}
+
+	/**
+	 * @param maxChunks Number of chunks of CHUNK_SIZE logs kept
+	 * @param print     Write every log to the server log like DatabaseManager,
+	 *                  load tests may not want to
+	 * @throws IllegalArgumentException maxChunks must be positive
+	 */
+	public MemoryLogStore(int maxChunks, boolean print) throws IllegalArgumentException {
+		if (maxChunks <= 0)
+			throw new IllegalArgumentException("maxChunks must be positive");
+		this.maxChunks = maxChunks;
+		this.nextId = new AtomicInteger(1);
+		this.chunks = new AtomicReferenceArray<Chunk>(maxChunks);
+		this.logListeners = new CopyOnWriteArrayList<Consumer<Log>>();
+		this.print = print;
+	}
+
+	@Override
+	public void rawLog(boolean relatedToSensor, String info) throws IllegalArgumentException {
+		if (info == null)
+			throw new IllegalArgumentException("Information must not be null");
+		if (info.length() == 0)
+			throw new IllegalArgumentException("Information must not be empty");
+		if (this.print)
+			LOG.info("Log recorded", "sensor", relatedToSensor, "info", info);
+
+		long time = System.currentTimeMillis();
+		int id = this.nextId.getAndIncrement();
+		Chunk chunk = chunkFor(id);
+		if (chunk != null)
+			chunk.set(id, time, relatedToSensor, info);
+
+		Log log = new Log(chunk != null ? id : 0, time, relatedToSensor, info);
+		for (Consumer<Log> listener : this.logListeners)
+			listener.accept(log);
+	}
+
+	/**
+	 * @return The chunk holding this id, created if needed, null if the id is
+	 *         already too old to be kept
+	 */
+	private Chunk chunkFor(int id) {
+		int number = id / CHUNK_SIZE;
+		int slot = number % this.maxChunks;
+		while (true) {
+			Chunk chunk = this.chunks.get(slot);
+			if (chunk != null && chunk.number == number)
+				return chunk;
+			if (chunk != null && chunk.number > number)
+				return null;// Overtaken by maxChunks chunks while claiming this id
+			Chunk created = new Chunk(number);
+			if (this.chunks.compareAndSet(slot, chunk, created))
+				return created;
+		}
+	}
+
+	/**
+	 * @return The chunk holding this id, null if forgotten
+	 */
+	private Chunk chunkOf(int id) {
+		int number = id / CHUNK_SIZE;
+		Chunk chunk = this.chunks.get(number % this.maxChunks);
+		return chunk != null && chunk.number == number ? chunk : null;
+	}
+
+	@Override
+	public List<Log> getLast10Logs() {
+		List<Log> logs = new ArrayList<Log>(10);
+		try {
+			visit(this.nextId.get(), 10, null,
+					(id, time, relatedToSensor, info) -> logs.add(new Log(id, time, relatedToSensor, info)));
+		} catch (IOException e) {
+			// Adding to a list doesn't fail
+		}
+		return Collections.unmodifiableList(logs);
+	}
+
+	@Override
+	public long getVersion() {
+		return this.nextId.get();
+	}
+
+	@Override
+	public int queryLogs(LogQuery query, LogQuery.Visitor visitor) throws IOException {
+		int before = query.getBefore() == 0 ? this.nextId.get() : Math.min(query.getBefore(), this.nextId.get());
+		return visit(before, query.getLimit(), query, visitor);
+	}
+
+	/**
+	 * Give the logs with an id smaller than before to visitor, newest first
+	 */
+	private int visit(int before, int limit, LogQuery query, LogQuery.Visitor visitor) throws IOException {
+		int visited = 0;
+		int id = before - 1;
+		while (id > 0 && visited < limit) {
+			Chunk chunk = chunkOf(id);
+			if (chunk == null)
+				break;// Older logs are forgotten
+			int first = Math.max(chunk.number * CHUNK_SIZE, 1);
+			for (; id >= first && visited < limit; id--) {
+				int index = id - chunk.number * CHUNK_SIZE;
+				String info = chunk.infos.get(index);
+				if (info == null)
+					continue;// Still being appended
+				long time = chunk.times[index];
+				boolean relatedToSensor = chunk.sensors[index];
+				if (query != null && !query.matches(time, relatedToSensor, info))
+					continue;
+				visitor.visit(id, time, relatedToSensor, info);
+				visited++;
+			}
+		}
+		return visited;
+	}
+
+	/**
+	 * @return Number of logs appended since created
+	 */
+	public int getSize() {
+		return this.nextId.get() - 1;
+	}
+
+	@Override
+	public void addLogListener(Consumer<Log> listener) throws IllegalArgumentException {
+		if (listener == null)
+			throw new IllegalArgumentException("Listener can't be null");
+		this.logListeners.add(listener);
+	}
+
+	@Override
+	public void close() {
+		// Nothing to release
+	}
+
+	/**
+	 * CHUNK_SIZE consecutive logs, the info being set last publishes the
+	 * others
+	 */
+	private static class Chunk {
+
+		private final int number;
+		private final long[] times;
+		private final boolean[] sensors;
+		private final AtomicReferenceArray<String> infos;
+
+		private Chunk(int number) {
+			this.number = number;
+			this.times = new long[CHUNK_SIZE];
+			this.sensors = new boolean[CHUNK_SIZE];
+			this.infos = new AtomicReferenceArray<String>(CHUNK_SIZE);
+		}
+
+		private void set(int id, long time, boolean relatedToSensor, String info) {
+			int index = id - this.number * CHUNK_SIZE;
+			this.times[index] = time;
+			this.sensors[index] = relatedToSensor;
+			this.infos.set(index, info);
+		}
+
+	}
+
+}
@@ -0,0 +1,95 @@
+package me.security.logs;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer.<br>
+ * Each slot has a sequence number telling whether it is free for the producer
+ * of a given position or filled for the consumer, so producers only contend
+ * on a compare-and-set of the tail and never wait for each other.
+ *
+ * @param <E> Type of the queued elements
+ */
+public class MpscRingBuffer<E> {
+
+	private final Object[] buffer;
+	private final AtomicLongArray sequences;
+	private final int mask;
+	private final AtomicLong tail;
+	private final AtomicLong head;
+
+	/**
+	 * @param capacity Maximum number of queued elements, rounded up to a power
+	 *                 of two
+	 * @throws IllegalArgumentException capacity must be between 1 and 2^30
+	 */
+	public MpscRingBuffer(int capacity) throws IllegalArgumentException {
+		if (capacity <= 0 || capacity > 1 << 30)
+			throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity)
+			size <<= 1;
+
+		this.buffer = new Object[size];
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++)
+			this.sequences.set(i, i);
+		this.mask = size - 1;
+		this.tail = new AtomicLong();
+		this.head = new AtomicLong();
+	}
+
+	/**
+	 * Queue an element, can be called from any thread
+	 *
+	 * @param e The element to queue, must not be null
+	 * @return False if the buffer is full
+	 */
+	public boolean offer(E e) {
+		while (true) {
+			long position = this.tail.get();
+			int index = (int) position & this.mask;
+			long diff = this.sequences.get(index) - position;
+			if (diff == 0) {
+				if (this.tail.compareAndSet(position, position + 1)) {
+					this.buffer[index] = e;
+					this.sequences.lazySet(index, position + 1);// Publish to the consumer
+					return true;
+				}
+			} else if (diff < 0) {
+				return false;// The consumer didn't free this slot yet
+			}
+		}
+	}
+
+	/**
+	 * Take the oldest element, must only be called from the consumer thread
+	 *
+	 * @return The oldest element, null if none is queued
+	 */
+	@SuppressWarnings("unchecked")
+	public E poll() {
+		long position = this.head.get();
+		int index = (int) position & this.mask;
+		if (this.sequences.get(index) != position + 1)
+			return null;
+		E e = (E) this.buffer[index];
+		this.buffer[index] = null;
+		this.sequences.lazySet(index, position + this.buffer.length);// Free for the next lap
+		this.head.lazySet(position + 1);
+		return e;
+	}
+
+	/**
+	 * @return Approximate number of queued elements
+	 */
+	public int size() {
+		return (int) Math.max(0, this.tail.get() - this.head.get());
+	}
+
+	public int capacity() {
+		return this.buffer.length;
+	}
+
+}
@@ -0,0 +1,88 @@
+package me.security.logs;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import me.security.managers.DatabaseManager.Log;
+
+/**
+ * The most recent logs kept in memory, newest first.<br>
+ * Every added log publishes a new immutable snapshot : readers only read a
+ * volatile field, they never lock nor wait for the database. Adding copies
+ * the snapshot, which stays cheap for the few dozens of logs kept.
+ */
+public class RecentLogs implements Consumer<Log> {
+
+	public static final int DEFAULT_SIZE = 50;
+
+	private static final Log[] EMPTY = new Log[0];
+
+	private final int size;
+	private volatile Log[] snapshot;
+	private volatile long version;
+
+	/**
+	 * @param size Number of logs kept
+	 * @throws IllegalArgumentException size must be positive
+	 */
+	public RecentLogs(int size) throws IllegalArgumentException {
+		if (size <= 0)
+			throw new IllegalArgumentException("size must be positive");
+		this.size = size;
+		this.snapshot = EMPTY;
+	}
+
+	/**
+	 * Add a log as the most recent one, the oldest is forgotten if full
+	 */
+	@Override
+	public synchronized void accept(Log log) {
+		Log[] current = this.snapshot;
+		Log[] next = new Log[Math.min(current.length + 1, this.size)];
+		next[0] = log;
+		System.arraycopy(current, 0, next, 1, next.length - 1);
+		this.snapshot = next;
+		this.version++;
+	}
+
+	/**
+	 * Fill with logs read from the database, logs added meanwhile stay the most
+	 * recent ones
+	 *
+	 * @param logs The logs to add, newest first
+	 */
+	public synchronized void warm(List<Log> logs) {
+		Log[] current = this.snapshot;
+		Log[] next = new Log[Math.min(current.length + logs.size(), this.size)];
+		System.arraycopy(current, 0, next, 0, Math.min(current.length, next.length));
+		for (int i = current.length; i < next.length; i++)
+			next[i] = logs.get(i - current.length);
+		this.snapshot = next;
+		this.version++;
+	}
+
+	/**
+	 * @param count Maximum number of logs to return
+	 * @return The count most recent logs, newest first, an unmodifiable view
+	 *         of the current snapshot
+	 */
+	public List<Log> getLast(int count) {
+		Log[] current = this.snapshot;
+		return Collections.unmodifiableList(Arrays.asList(current).subList(0, Math.min(count, current.length)));
+	}
+
+	/**
+	 * @return Incremented on every change, to know when a serialized copy is
+	 *         outdated
+	 */
+	public long getVersion() {
+		return this.version;
+	}
+
+	public int getSize() {
+		return this.size;
+	}
+
+}
@@ -3,24 +3,45 @@ package me.security.managers;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTransientException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import com.google.gson.annotations.Expose;
 
+import me.security.logging.Logger;
+import me.security.logs.ConnectionPool;
+import me.security.logs.ConnectionPool.PooledConnection;
+import me.security.logs.LocalLogStore;
+import me.security.logs.LogRetention;
+import me.security.logs.LogStore;
+import me.security.logs.LogQuery;
+import me.security.logs.LogWriter;
+import me.security.logs.RecentLogs;
+import me.security.metrics.Gauge;
+import me.security.metrics.LatencyHistogram;
+import me.security.metrics.MetricsRegistry;
+
 /**
  * @author Geraldes Jocelyn
  * @since 24/11/2019
  */
-public class DatabaseManager implements AutoCloseable {
+public class DatabaseManager implements LogStore {
 
 	/**
 	 * Generate a DatabaseManager object from the 'database.password' file<br>
@@ -37,7 +58,7 @@ public class DatabaseManager implements AutoCloseable {
 	 */
 	public static DatabaseManager generateFromFile() throws IOException {
 		File dbPassword = new File("database.password");
-		System.out.println("Parsing " + dbPassword.getCanonicalPath() + " file");
+		LOG.info("Parsing password file", "file", dbPassword.getCanonicalPath());
 
 		if (!dbPassword.exists() || !dbPassword.canRead()) {
 			throw new IllegalStateException("Database password file doesn't exist, unable to launch.");
@@ -49,11 +70,73 @@ public class DatabaseManager implements AutoCloseable {
 		}
 
 		List<String> dbInfo = Files.readAllLines(dbPassword.toPath());
-		System.out.println("Database file readed successfuly, creating DatabaseManager");
+		LOG.info("Password file read, creating DatabaseManager");
 		return new DatabaseManager(dbInfo.get(0), dbInfo.get(1), dbInfo.get(2), dbInfo.get(3));
 	}
 
-	private Connection connection;
+	public static int POOL_SIZE = 4;
+	/**
+	 * Connections of the pool only used to write logs, so slow readers never
+	 * push logs out of the database
+	 */
+	public static int RESERVED_CONNECTIONS = 1;
+	public static long BORROW_TIMEOUT = 3000;
+	public static long LEAK_THRESHOLD = 30000;
+
+	private static final String INSERT_LOG = "INSERT INTO `logs`(`relatedToSensor`,`log_info`) VALUES (?,?)";
+	private static final Logger LOG = Logger.get(DatabaseManager.class);
+
+	/**
+	 * Number of recent logs kept in memory
+	 */
+	public static int RECENT_LOGS = RecentLogs.DEFAULT_SIZE;
+
+	/**
+	 * Where logs are kept while the database is unreachable
+	 */
+	public static File LOCAL_STORE = new File("logs.local");
+	/**
+	 * Milliseconds between two attempts to replay the local logs
+	 */
+	public static long REPLAY_PERIOD = 5000;
+	public static int REPLAY_BATCH = 500;
+	/**
+	 * Days after which logs are archived and removed from the database, 0 to
+	 * keep them forever
+	 */
+	public static int RETENTION_DAYS = 180;
+	public static long RETENTION_PERIOD = TimeUnit.HOURS.toMillis(1);
+	public static File ARCHIVE_DIRECTORY = new File("logs.archive");
+
+	private static final String SELECT_LAST = "SELECT * FROM `logs` ORDER BY `id_log` DESC LIMIT ?";
+	private static final String SELECT_NONE = "SELECT * FROM `logs` LIMIT 0";
+	/**
+	 * Create the indexes used by queryLogs if they are missing
+	 */
+	public static boolean CREATE_INDEXES = true;
+	/**
+	 * Column of the log time, read from the table as its name differs between
+	 * installations
+	 */
+	private volatile String timeColumn;
+
+	private final List<Consumer<Log>> logListeners = new CopyOnWriteArrayList<Consumer<Log>>();
+	private final RecentLogs recentLogs = new RecentLogs(RECENT_LOGS);
+	private ConnectionPool pool;
+	private final LocalLogStore localStore;
+	private final LogWriter writer;
+	private final ScheduledExecutorService maintenance;
+	private final LogRetention retention;
+	private final LatencyHistogram insertLatency = MetricsRegistry.DEFAULT.histogram("db_insert_seconds",
+			"Time to insert a batch of logs in the database");
+	private final LatencyHistogram queryLatency = MetricsRegistry.DEFAULT.histogram("db_query_seconds",
+			"Time to read and stream a page of logs from the database");
+	private final List<Gauge> gauges = new ArrayList<Gauge>();
+	/**
+	 * Set when an insert failed, logs then go straight to the local store
+	 * until the replayer reaches the database again
+	 */
+	private volatile boolean unreachable;
 
 	/**
 	 * Create a DatabaseManager to handle db connection
@@ -75,10 +158,97 @@ public class DatabaseManager implements AutoCloseable {
 			throw new IllegalArgumentException("Password can't be null");
 
 		initializeConnection(domain, db, user, password);
+		this.localStore = openLocalStore();
+		this.writer = new LogWriter(this::write, this::notifyListeners);
+		warmRecentLogs();
+		prepareQueries();
+
+		this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "DatabaseManager-maintenance");
+			t.setDaemon(true);
+			return t;
+		});
+		if (this.localStore != null)
+			this.maintenance.scheduleWithFixedDelay(this::replayLocalLogs, 0, REPLAY_PERIOD, TimeUnit.MILLISECONDS);
+		this.retention = RETENTION_DAYS > 0
+				? new LogRetention(this.pool, ARCHIVE_DIRECTORY, TimeUnit.DAYS.toMillis(RETENTION_DAYS))
+				: null;
+		if (this.retention != null)
+			this.maintenance.scheduleWithFixedDelay(this::applyRetention, RETENTION_PERIOD, RETENTION_PERIOD,
+					TimeUnit.MILLISECONDS);
+		registerMetrics();
+	}
+
+	/**
+	 * Export the depth of the log queues and the use of the pool, removed on
+	 * close
+	 */
+	private void registerMetrics() {
+		MetricsRegistry metrics = MetricsRegistry.DEFAULT;
+		this.gauges.add(metrics.gauge("log_queue_depth", "Logs waiting for the LogWriter thread",
+				this.writer::getPending));
+		if (this.localStore != null)
+			this.gauges.add(metrics.gauge("log_local_pending", "Logs kept locally until the database is back",
+					this.localStore::getPending));
+		this.gauges.add(metrics.gauge("db_connections_active", "Database connections currently borrowed",
+				this.pool::getActive));
+		this.gauges.add(metrics.gauge("db_connections_idle", "Open database connections waiting to be borrowed",
+				this.pool::getIdle));
+	}
+
+	private static LocalLogStore openLocalStore() {
+		try {
+			return new LocalLogStore(LOCAL_STORE);
+		} catch (IOException e) {
+			LOG.error("Unable to open the local log store", e, "directory", LOCAL_STORE);
+			return null;// Logs are lost during outages, as before
+		}
 	}
 
 	/**
-	 * Define a connection in this DatabaseManager<br>
+	 * Read the table layout and create the indexes of queryLogs now rather than
+	 * on the first query, creating an index on a big table takes a while
+	 */
+	private void prepareQueries() {
+		try (PooledConnection c = this.pool.borrow()) {
+			getTimeColumn(c);
+		} catch (SQLException e) {
+			LOG.warn("Unable to prepare the logs queries", e);
+			// Retried on the first query
+		}
+	}
+
+	/**
+	 * Fill the recent logs with the last ones of the database, preceded by the
+	 * ones still waiting in the local store
+	 */
+	private void warmRecentLogs() {
+		List<Log> logs = new ArrayList<DatabaseManager.Log>();
+		if (this.localStore != null)
+			logs.addAll(this.localStore.getLast(this.recentLogs.getSize()));
+
+		try (PooledConnection c = this.pool.borrow()) {
+			try {
+				PreparedStatement stmt = c.prepare(SELECT_LAST);
+				stmt.setInt(1, this.recentLogs.getSize() - logs.size());
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						logs.add(new Log(rs.getInt(1), rs.getTimestamp(2), rs.getBoolean(3), rs.getString(4)));
+					}
+				}
+			} catch (SQLException e) {
+				c.invalidate();
+				throw e;
+			}
+		} catch (SQLException e) {
+			LOG.warn("Unable to read the recent logs", e);
+			// Recent logs will only contain the local ones and the ones of this run
+		}
+		this.recentLogs.warm(logs);
+	}
+
+	/**
+	 * Define the connection pool of this DatabaseManager<br>
 	 * <b>Note:</b><br>
 	 * This method is protected and separated from the constructor as it is
 	 * Overrided by DummyDatabaseManager
@@ -87,96 +257,426 @@ public class DatabaseManager implements AutoCloseable {
 	 * @param db       The database name
 	 * @param user     The username
 	 * @param password The corresponding password
-	 * @throws SQLException If the connection can't be initiated
 	 */
 	protected void initializeConnection(String domain, String db, String user, String password) {
-		System.out.println("Establishing database connection (" + domain + ")...");
+		LOG.info("Establishing database connection", "domain", domain);
 		DriverManager.setLoginTimeout(3);
+		String url = "jdbc:mysql://" + domain + ":3306/" + db + "?rewriteBatchedStatements=true";
+		this.pool = new ConnectionPool(() -> DriverManager.getConnection(url, user, password), POOL_SIZE,
+				RESERVED_CONNECTIONS, BORROW_TIMEOUT, LEAK_THRESHOLD);
+
+		// Open a first connection now to report a wrong configuration at startup
 		try {
-			this.connection = DriverManager
-					.getConnection("jdbc:mysql://" + domain + ":3306/" + db + "?autoReconnect=true", user, password);
+			this.pool.borrow().close();
+			LOG.info("Database connection established");
 		} catch (SQLException e) {
-			e.printStackTrace();
+			LOG.error("Unable to connect to the database", e);
 			// We can still run security without database
-			// autoReconnect option will do the rest for us
+			// the pool will open connections once it is reachable
 		}
 	}
 
 	/**
-	 * Log a message and if it is related to a sensor
+	 * Log a message and if it is related to a sensor<br>
+	 * The log is only queued, it is inserted in database by the LogWriter
+	 * thread with the other logs queued meanwhile.
 	 * 
 	 * @param relatedToSensor If it is related to a sensor
 	 * @param info            The related information
 	 * @throws IllegalArgumentException The text information must not be null or empty
 	 */
+	@Override
 	public void rawLog(boolean relatedToSensor, String info) throws IllegalArgumentException {
 		if (info == null)
 			throw new IllegalArgumentException("Information must not be null");
 		if (info.length() == 0)
 			throw new IllegalArgumentException("Information must not be empty");
-		System.out.println(info);
+		LOG.info("Log recorded", "sensor", relatedToSensor, "info", info);
 
-		try {
-			if (!isAlive())
-				return;
+		Log log = new Log(0, System.currentTimeMillis(), relatedToSensor, info);
+		if (!this.writer.offer(log))
+			notifyListeners(log);// Dropped, listeners still need to know
+	}
+
+	/**
+	 * Insert a batch of logs, or keep it in the local store if the database is
+	 * unreachable
+	 * 
+	 * @return The generated id of each log, 0 for the ones stored locally or
+	 *         rejected by the database
+	 */
+	private int[] write(List<Log> batch) throws Exception {
+		if (this.localStore == null)
+			return insertValid(batch, false);
+		if (!this.unreachable) {
+			try {
+				return insertValid(batch, false);
+			} catch (SQLException e) {
+				if (ConnectionPool.isConnectionError(e)) {
+					this.unreachable = true;
+					LOG.warn("Database unreachable, keeping logs locally", "error", e.getMessage());
+				} else {
+					// Replayed with the next local logs, without waiting for an outage to end
+					LOG.warn("Database busy, keeping logs locally", "count", batch.size(), "error", e.getMessage());
+				}
+			}
+		}
+		this.localStore.append(batch);
+		return new int[batch.size()];
+	}
 
-			PreparedStatement stmt = this.connection.prepareStatement("INSERT INTO `logs`(`relatedToSensor`,`log_info`) VALUES (?,?)");
-			stmt.setBoolean(1, relatedToSensor);
-			stmt.setString(2, info);
-			stmt.execute();
+	/**
+	 * Insert a batch of logs, one by one if the database rejects it, so only
+	 * the logs it rejects are lost instead of being retried forever
+	 * 
+	 * @param replayed True to keep the original time of the logs
+	 * @return The result of the insert of each log, 0 for the rejected ones
+	 * @throws SQLException Only if the database is unreachable or busy
+	 */
+	private int[] insertValid(List<Log> batch, boolean replayed) throws SQLException {
+		try {
+			return replayed ? insertReplayed(batch) : insert(batch);
 		} catch (SQLException e) {
-			e.printStackTrace();
-			// Ignore the error as error on logging will not be damageable for our code
-			// Security system need to continue running even if we have errors
+			if (ConnectionPool.isConnectionError(e) || e instanceof SQLTransientException)
+				throw e;// Would succeed later, nothing wrong with the logs
+			if (batch.size() == 1) {
+				LOG.error("Log rejected by the database, dropped", e, "time", batch.get(0).time, "info",
+						batch.get(0).info);
+				return new int[1];
+			}
+			LOG.warn("Logs rejected by the database, inserting them one by one", "count", batch.size(), "error",
+					e.getMessage());
 		}
+
+		int[] results = new int[batch.size()];
+		for (int i = 0; i < results.length; i++)
+			results[i] = insertValid(Collections.singletonList(batch.get(i)), replayed)[0];
+		return results;
 	}
 
 	/**
-	 * @return A list of the 10 last logs in an List of Log object
+	 * Replay the local logs in batches, called periodically until it succeeds
 	 */
-	public List<Log> getLast10Logs() {
+	private void replayLocalLogs() {
+		if (!this.unreachable && this.localStore.isEmpty())
+			return;
 		try {
-			if (!isAlive())
-				throw new IllegalStateException("Database connection seems dead.");
+			int replayed = this.localStore.replay(batch -> insertValid(batch, true), REPLAY_BATCH);
+			this.unreachable = false;
+			if (replayed > 0)
+				LOG.info("Local logs replayed to the database", "count", replayed);
+		} catch (Exception e) {
+			// Still unreachable, the failed batch is tried again next time
+		}
+	}
+
+	/**
+	 * Archive the logs older than RETENTION_DAYS, counting sensor events per
+	 * hour in logs_hourly
+	 */
+	private void applyRetention() {
+		if (this.unreachable)
+			return;
+		String timeColumn;
+		try (PooledConnection c = this.pool.borrow()) {
+			timeColumn = getTimeColumn(c);
+		} catch (SQLException e) {
+			LOG.warn("Unable to read the logs table", e);
+			return;
+		}
 
-			List<Log> logs = new ArrayList<DatabaseManager.Log>();
-			Statement stmt = this.connection.createStatement();
-			ResultSet rs = stmt.executeQuery("SELECT * FROM `logs` ORDER BY `id_log` DESC LIMIT 10");
+		try {
+			int archived = this.retention.run(timeColumn);
+			if (archived > 0)
+				LOG.info("Logs archived", "count", archived, "directory", ARCHIVE_DIRECTORY);
+		} catch (SQLException | IOException e) {
+			LOG.error("Unable to archive old logs", e);// Next run continues where this one stopped
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
 
-			while (rs.next()) {
-				logs.add(new Log(rs.getInt(1), rs.getTimestamp(2), rs.getBoolean(3), rs.getString(4)));
+	/**
+	 * Insert logs logged while the database was unreachable, with their
+	 * original time
+	 */
+	private int[] insertReplayed(List<Log> batch) throws SQLException {
+		try (PooledConnection c = this.pool.borrowReserved()) {
+			try {
+				PreparedStatement stmt = c.prepare("INSERT INTO `logs`(`relatedToSensor`,`log_info`,`"
+						+ getTimeColumn(c) + "`) VALUES (?,?,?)");
+				for (Log log : batch) {
+					stmt.setBoolean(1, log.relatedToSensor);
+					stmt.setString(2, log.info);
+					stmt.setTimestamp(3, new Timestamp(log.time));
+					stmt.addBatch();
+				}
+				return stmt.executeBatch();
+			} catch (SQLException e) {
+				c.invalidate();
+				throw e;
 			}
+		}
+	}
 
-			return logs;
-		} catch (SQLException e) {
-			e.printStackTrace();
-			return Arrays.asList(
-					new Log(0, new Timestamp(System.currentTimeMillis()), false, "Error on DB connection, unable to retrieve logs.")
-					);
-		} catch (Error e) {
-			e.printStackTrace();
-			return Arrays.asList(new Log(0, new Timestamp(System.currentTimeMillis()), false, "Error " + e.getMessage()));
+	/**
+	 * Insert a batch of logs in a single round-trip, rewritten as a multi-row
+	 * INSERT by the driver
+	 * 
+	 * @param batch The logs to insert
+	 * @return The generated id of each log
+	 * @throws SQLException If the database is unreachable
+	 */
+	private int[] insert(List<Log> batch) throws SQLException {
+		int[] ids = new int[batch.size()];
+		long start = System.nanoTime();
+		try (PooledConnection c = this.pool.borrowReserved()) {
+			try {
+				PreparedStatement stmt = c.prepare(INSERT_LOG, Statement.RETURN_GENERATED_KEYS);
+				for (Log log : batch) {
+					stmt.setBoolean(1, log.relatedToSensor);
+					stmt.setString(2, log.info);
+					stmt.addBatch();
+				}
+				stmt.executeBatch();
+
+				try (ResultSet keys = stmt.getGeneratedKeys()) {
+					for (int i = 0; i < ids.length && keys.next(); i++)
+						ids[i] = keys.getInt(1);
+				}
+			} catch (SQLException e) {
+				c.invalidate();
+				throw e;
+			}
+		} finally {
+			this.insertLatency.recordSince(start);
 		}
+		return ids;
 	}
 
-	private boolean isAlive() {
+	/**
+	 * Read a page of logs, newest first, giving each row to visitor as soon as
+	 * it is read.<br>
+	 * Pages are read with keyset pagination on id_log : the index
+	 * (relatedToSensor, id_log) serves sensorOnly pages, the one on the time
+	 * column serves time ranges. Text is matched with a LIKE, it only narrows
+	 * the rows read through these indexes.<br>
+	 * While logs wait in the local store, the first page starts with the ones
+	 * matching, with id 0, and is completed up to the limit from the database.
+	 * 
+	 * @param query   The page to read
+	 * @param visitor Receive each log, from the calling thread
+	 * @return Number of logs read, less than the limit if it was the last page
+	 * @throws SQLException If the database is unreachable
+	 * @throws IOException  If visitor failed, the query is then aborted
+	 */
+	@Override
+	public int queryLogs(LogQuery query, LogQuery.Visitor visitor) throws SQLException, IOException {
+		int local = 0;
+		if (query.getBefore() == 0 && this.localStore != null && !this.localStore.isEmpty()) {
+			for (Log log : this.localStore.getLast(query.getLimit(),
+					log -> query.matches(log.time, log.relatedToSensor, log.info))) {
+				visitor.visit(0, log.time, log.relatedToSensor, log.info);
+				local++;
+			}
+			if (local == query.getLimit())
+				return local;// Full page, the database is read from the next one
+		}
+
+		long start = System.nanoTime();
+		try (PooledConnection c = this.pool.borrow()) {
+			try {
+				PreparedStatement stmt = c.prepare(selectPage(query, getTimeColumn(c)));
+				int index = 1;
+				if (query.getBefore() > 0)
+					stmt.setInt(index++, query.getBefore());
+				if (query.getFrom() > 0)
+					stmt.setTimestamp(index++, new Timestamp(query.getFrom()));
+				if (query.getTo() > 0)
+					stmt.setTimestamp(index++, new Timestamp(query.getTo()));
+				if (query.getText() != null)
+					stmt.setString(index++, "%" + escapeLike(query.getText()) + "%");
+				stmt.setInt(index, query.getLimit() - local);
+				// Let the driver stream rows instead of reading the whole page first
+				stmt.setFetchSize(Integer.MIN_VALUE);
+
+				int rows = 0;
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						visitor.visit(rs.getInt(1), rs.getTimestamp(2).getTime(), rs.getBoolean(3), rs.getString(4));
+						rows++;
+					}
+				}
+				return local + rows;
+			} catch (SQLException e) {
+				c.invalidate();
+				throw e;
+			}
+		} finally {
+			this.queryLatency.recordSince(start);
+		}
+	}
+
+	/**
+	 * Only the filters used are part of the statement, so each combination is
+	 * prepared once per connection and uses its own index
+	 */
+	private static String selectPage(LogQuery query, String timeColumn) {
+		StringBuilder sql = new StringBuilder("SELECT * FROM `logs`");
+		String where = " WHERE ";
+		if (query.getBefore() > 0) {
+			sql.append(where).append("`id_log` < ?");
+			where = " AND ";
+		}
+		if (query.isSensorOnly()) {
+			sql.append(where).append("`relatedToSensor` = 1");
+			where = " AND ";
+		}
+		if (query.getFrom() > 0) {
+			sql.append(where).append('`').append(timeColumn).append("` >= ?");
+			where = " AND ";
+		}
+		if (query.getTo() > 0) {
+			sql.append(where).append('`').append(timeColumn).append("` < ?");
+			where = " AND ";
+		}
+		if (query.getText() != null)
+			sql.append(where).append("`log_info` LIKE ?");
+		return sql.append(" ORDER BY `id_log` DESC LIMIT ?").toString();
+	}
+
+	private static String escapeLike(String text) {
+		return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+	}
+
+	/**
+	 * Read the name of the time column on first use, then create the missing
+	 * indexes of queryLogs
+	 */
+	private String getTimeColumn(PooledConnection c) throws SQLException {
+		String column = this.timeColumn;
+		if (column != null)
+			return column;
+
+		try (Statement stmt = c.getConnection().createStatement(); ResultSet rs = stmt.executeQuery(SELECT_NONE)) {
+			column = rs.getMetaData().getColumnName(2);
+		}
+		if (CREATE_INDEXES) {
+			createIndex(c, "logs_sensor_id", "`relatedToSensor`,`id_log`");
+			createIndex(c, "logs_time", "`" + column + "`");
+		}
+		this.timeColumn = column;
+		return column;
+	}
+
+	private void createIndex(PooledConnection c, String name, String columns) {
 		try {
-			return this.connection != null && !this.connection.isClosed();
+			DatabaseMetaData meta = c.getConnection().getMetaData();
+			Set<String> indexes = new HashSet<String>();
+			try (ResultSet rs = meta.getIndexInfo(c.getConnection().getCatalog(), null, "logs", false, true)) {
+				while (rs.next())
+					indexes.add(rs.getString("INDEX_NAME"));
+			}
+			if (indexes.contains(name))
+				return;
+
+			LOG.info("Creating index", "name", name, "columns", columns);
+			try (Statement stmt = c.getConnection().createStatement()) {
+				stmt.execute("CREATE INDEX `" + name + "` ON `logs` (" + columns + ")");
+			}
 		} catch (SQLException e) {
-			return false;
+			LOG.warn("Unable to create index", e, "name", name);
+			// Queries still work, only slower
 		}
 	}
 
+	private void notifyListeners(Log log) {
+		this.recentLogs.accept(log);// First so listeners reading it see this log
+		for (Consumer<Log> listener : this.logListeners)
+			listener.accept(log);
+	}
+
+	/**
+	 * @return The writer inserting logs, for its statistics
+	 */
+	public LogWriter getLogWriter() {
+		return this.writer;
+	}
+
+	/**
+	 * Be called for every logged message, even if it couldn't be stored
+	 * 
+	 * @param listener Called with the logged message, its id is 0 if it wasn't
+	 *                 stored in database
+	 * @throws IllegalArgumentException listener must not be null
+	 */
+	@Override
+	public void addLogListener(Consumer<Log> listener) throws IllegalArgumentException {
+		if (listener == null)
+			throw new IllegalArgumentException("Listener can't be null");
+		this.logListeners.add(listener);
+	}
+
+	/**
+	 * Served from memory, never waits for the database. Logs which couldn't be
+	 * stored are included with id 0.
+	 * 
+	 * @return A list of the 10 last logs in an List of Log object
+	 */
+	@Override
+	public List<Log> getLast10Logs() {
+		return this.recentLogs.getLast(10);
+	}
+
+	@Override
+	public long getVersion() {
+		return this.recentLogs.getVersion();
+	}
+
+	/**
+	 * @return The most recent logs kept in memory, written through by rawLog
+	 */
+	public RecentLogs getRecentLogs() {
+		return this.recentLogs;
+	}
+
+	/**
+	 * @return The pool of database connections, for its statistics
+	 */
+	public ConnectionPool getPool() {
+		return this.pool;
+	}
+
+	/**
+	 * @return The job archiving old logs, null if RETENTION_DAYS is 0
+	 */
+	public LogRetention getRetention() {
+		return this.retention;
+	}
+
+	/**
+	 * @return The store of the logs waiting for the database, null if it
+	 *         couldn't be opened
+	 */
+	public LocalLogStore getLocalStore() {
+		return this.localStore;
+	}
+
 	@Override
 	public void close() {
-		try {
-			System.out.println("Closing connection...");
-			if (!this.isAlive())
-				this.connection.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
+		this.writer.close();// Write the queued logs first
+		this.maintenance.shutdownNow();
+		for (Gauge gauge : this.gauges)
+			MetricsRegistry.DEFAULT.remove(gauge);
+		LOG.info("Closing connection");
+		this.pool.close();
+		if (this.localStore != null) {
+			try {
+				this.localStore.close();
+			} catch (IOException e) {
+				LOG.error("Unable to close the local log store", e);
+			}
 		}
-		this.connection = null;
 	}
 
 	/**
@@ -190,8 +690,12 @@ public class DatabaseManager implements AutoCloseable {
 		@Expose public final String info;
 
 		public Log(int id, Timestamp time, boolean relatedToSensor, String info) {
+			this(id, time.getTime(), relatedToSensor, info);
+		}
+
+		public Log(int id, long time, boolean relatedToSensor, String info) {
 			this.id = id;
-			this.time = time.getTime();
+			this.time = time;
 			this.relatedToSensor = relatedToSensor;
 			this.info = info;
 		}
@@ -1,24 +1,61 @@
 package me.security.managers;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
 
+import me.security.logging.Logger;
 import me.security.notification.NotificationFreeAPI;
 import me.security.notification.NotificationIFTTT;
+import me.security.notification.NotificationOutbox;
+import me.security.notification.NotificationPolicy;
+import me.security.notification.NotificationResult;
 import me.security.notification.NotificationSender;
+import me.security.notification.NotificationWorker;
 
 /**
  * @author Geraldes Jocelyn
  * @since 24/11/2019
  */
-public class NotificationManager {
+public class NotificationManager implements AutoCloseable {
 
-	private final List<NotificationSender> senders;
+	public static int QUEUE_CAPACITY = NotificationWorker.DEFAULT_CAPACITY;
+	/**
+	 * Milliseconds a journaled notification failing to be delivered is
+	 * submitted again before being given up and acknowledged, counted from its
+	 * first dispatch since start, 0 to never give up
+	 */
+	public static long MAX_AGE = 0;
+
+	private static final Logger LOG = Logger.get(NotificationManager.class);
+
+	/**
+	 * One worker per sender, copied on write : triggering iterates a snapshot
+	 * without locking while senders are added or removed
+	 */
+	private final List<NotificationWorker> workers;
+	private final NotificationOutbox outbox;
+	private volatile boolean closed;
 
 	public NotificationManager() {
-		this.senders = new ArrayList<NotificationSender>();
-		System.out.println("NotificationManager created successfuly.");
+		this(null);
+	}
+
+	/**
+	 * Journal every notification in outbox before dispatching it, and
+	 * acknowledge it once delivered
+	 * 
+	 * @param outbox The journal of notifications to deliver, null to not
+	 *               journal them
+	 */
+	public NotificationManager(NotificationOutbox outbox) {
+		this.workers = new CopyOnWriteArrayList<NotificationWorker>();
+		this.outbox = outbox;
+		LOG.info("NotificationManager created", "outbox", outbox != null);
 	}
 
 	/**
@@ -31,22 +68,60 @@ public class NotificationManager {
 	 *                                  contained in the senders list
 	 */
 	public void add(NotificationSender ns) throws IllegalArgumentException {
+		add(ns, ns == null ? null : ns.getPolicy());
+	}
+
+	/**
+	 * Add the specified NotificationSender to senders list, overriding its own
+	 * NotificationPolicy
+	 * 
+	 * @param ns     {@link NotificationSender} The notification sensor to add to
+	 *               the list of senders
+	 * @param policy How notifications to ns are merged and rate limited
+	 * @throws IllegalArgumentException ns and policy must not be null and ns not
+	 *                                  already contained in the senders list
+	 */
+	public void add(NotificationSender ns, NotificationPolicy policy) throws IllegalArgumentException {
 		if (ns == null)
 			throw new IllegalArgumentException("Null NotificationSender");
-		if (this.senders.contains(ns))
-			throw new IllegalArgumentException("NotificationSender is already in senders list");
-		this.senders.add(ns);
-		System.out.println("Adding " + ns.getClass().getName() + " to NotificationSender list");
+		synchronized (this.workers) {
+			for (NotificationWorker worker : this.workers)
+				if (worker.getSender().equals(ns))
+					throw new IllegalArgumentException("NotificationSender is already in senders list");
+			this.workers.add(new NotificationWorker(ns, QUEUE_CAPACITY, policy));
+		}
+		LOG.info("NotificationSender added", "sender", ns.getClass().getName());
+	}
+
+	/**
+	 * Remove the specified NotificationSender from senders list, notifications
+	 * not delivered yet are failed
+	 * 
+	 * @param ns The notification sender to remove
+	 * @return True if ns was in the senders list
+	 */
+	public boolean remove(NotificationSender ns) {
+		synchronized (this.workers) {
+			for (NotificationWorker worker : this.workers) {
+				if (worker.getSender().equals(ns)) {
+					this.workers.remove(worker);
+					worker.close();
+					return true;
+				}
+			}
+		}
+		return false;
 	}
 
 	/**
 	 * Trigger all NotificationSender in senders with the message param
 	 * 
 	 * @param message Message to send to NotificationSender
+	 * @return One future per triggered NotificationSender
 	 * @throws IllegalArgumentException message must not be empty or null
 	 */
-	public void triggerAll(String message) throws IllegalArgumentException {
-		triggerSpecific(null, message);
+	public List<CompletableFuture<NotificationResult>> triggerAll(String message) throws IllegalArgumentException {
+		return triggerSpecific(null, message);
 	}
 
 	/**
@@ -54,36 +129,41 @@ public class NotificationManager {
 	 * values will never send multiple notification on NotificationSender side.
 	 * 
 	 * @param values Values to send to NotificationSender
+	 * @return One future per triggered NotificationSender
 	 * @throws IllegalArgumentException values must not be empty or null
 	 */
-	public void triggerAll(List<String> values) throws IllegalArgumentException {
-		triggerSpecific(null, values);
+	public List<CompletableFuture<NotificationResult>> triggerAll(List<String> values)
+			throws IllegalArgumentException {
+		return triggerSpecific(null, values);
 	}
 
 	/**
 	 * Trigger every NotificationFreeAPI object in the senders list with a message
 	 * 
 	 * @param message The message to send to all NotificationFreeAPI
+	 * @return One future per triggered NotificationFreeAPI
 	 * @see NotificationFreeAPI
 	 * @throws IllegalArgumentException message must not be empty or null
 	 */
-	public void triggerFree(String message) throws IllegalArgumentException {
-		triggerSpecific(NotificationFreeAPI.class, message);
+	public List<CompletableFuture<NotificationResult>> triggerFree(String message) throws IllegalArgumentException {
+		return triggerSpecific(NotificationFreeAPI.class, message);
 	}
 
 	/**
 	 * Trigger every NotificationIFTTT object in the senders list with a message
 	 * 
 	 * @param message The message to send to all NotificationFreeAPI
+	 * @return One future per triggered NotificationIFTTT
 	 * @see NotificationIFTTT
 	 * @throws IllegalArgumentException Must contains between 1 and 3 values
 	 */
-	public void triggerIFTTT(String... values) throws IllegalArgumentException {
+	public List<CompletableFuture<NotificationResult>> triggerIFTTT(String... values)
+			throws IllegalArgumentException {
 		if (values.length == 0)
 			throw new IllegalArgumentException("Cannot send no values in IFTTT");
 		if (values.length > 3)
 			throw new IllegalArgumentException("Cannot send more than 3 values in IFTTT");
-		triggerSpecific(NotificationIFTTT.class, Arrays.asList(values));
+		return triggerSpecific(NotificationIFTTT.class, Arrays.asList(values));
 	}
 
 	/**
@@ -93,25 +173,24 @@ public class NotificationManager {
 	 *                must be a parent of NotificatioSender class,<br>
 	 *                clazz can be null if wanted to trigger all implementation
 	 * @param message The message to send to targeted NotificationSender
+	 * @return One future per targeted NotificationSender, completed once
+	 *         delivered or failed
 	 * @throws IllegalArgumentException message cannot be null or empty
 	 */
-	private void triggerSpecific(Class<? extends NotificationSender> clazz, String message)
+	private List<CompletableFuture<NotificationResult>> triggerSpecific(Class<? extends NotificationSender> clazz, String message)
 			throws IllegalArgumentException {
 		if (message == null)
 			throw new IllegalArgumentException("Cannot trigger with null message");
 		if (message.length() == 0)
 			throw new IllegalArgumentException("Cannot trigger with empty message");
 
-		for (NotificationSender ns : this.senders) {
-			if (clazz == null || clazz.isInstance(ns)) {
-				try {
-					ns.trigger(message);
-				} catch (Exception e) {
-					e.printStackTrace();
-					this.senders.remove(ns);
-				}
+		List<CompletableFuture<NotificationResult>> results = new ArrayList<CompletableFuture<NotificationResult>>();
+		for (NotificationWorker worker : this.workers) {
+			if (clazz == null || clazz.isInstance(worker.getSender())) {
+				results.add(dispatch(worker, journal(worker, message, null), message, null, System.currentTimeMillis()));
 			}
 		}
+		return results;
 	}
 
 	/**
@@ -121,9 +200,11 @@ public class NotificationManager {
 	 *                must be a parent of NotificatioSender class,<br>
 	 *                clazz can be null if wanted to trigger all implementation
 	 * @param message The values to send to targeted NotificationSender
+	 * @return One future per targeted NotificationSender, completed once
+	 *         delivered or failed
 	 * @throws IllegalArgumentException values cannot be null or empty
 	 */
-	private void triggerSpecific(Class<? extends NotificationSender> clazz, List<String> values)
+	private List<CompletableFuture<NotificationResult>> triggerSpecific(Class<? extends NotificationSender> clazz, List<String> values)
 			throws IllegalArgumentException {
 		if (values == null)
 			throw new IllegalArgumentException("values is null");
@@ -133,23 +214,138 @@ public class NotificationManager {
 			if (v == null || v.length() == 0)
 				throw new IllegalArgumentException("values contains null or empty value");
 
-		for (NotificationSender ns : this.senders) {
-			if (clazz == null || clazz.isInstance(ns)) {
-				try {
-					ns.trigger(values);
-				} catch (Exception e) {
-					e.printStackTrace();
-					this.senders.remove(ns);
+		List<CompletableFuture<NotificationResult>> results = new ArrayList<CompletableFuture<NotificationResult>>();
+		for (NotificationWorker worker : this.workers) {
+			if (clazz == null || clazz.isInstance(worker.getSender())) {
+				results.add(dispatch(worker, journal(worker, null, values), null, values, System.currentTimeMillis()));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Send again the notifications of the outbox not delivered before the last
+	 * stop, to the registered senders they were meant for
+	 * 
+	 * @return Number of notifications dispatched
+	 */
+	public int replay() {
+		if (this.outbox == null)
+			return 0;
+		int count = 0;
+		for (NotificationOutbox.Entry entry : this.outbox.getPending()) {
+			for (NotificationWorker worker : this.workers) {
+				if (worker.getSender().getKey().equals(entry.getSenderKey())) {
+					dispatch(worker, entry, entry.getMessage(), entry.getMessage() == null ? entry.getValues() : null,
+							System.currentTimeMillis());
+					count++;
+					break;
 				}
 			}
 		}
+		LOG.info("Notifications replayed from outbox", "count", count);
+		return count;
+	}
+
+	/**
+	 * Write the notification in the outbox, an outbox failure must never stop
+	 * an alarm : the notification is then dispatched without being journaled
+	 * 
+	 * @return The journaled notification, null if not journaled
+	 */
+	private NotificationOutbox.Entry journal(NotificationWorker worker, String message, List<String> values) {
+		if (this.outbox != null) {
+			try {
+				return this.outbox.append(worker.getSender().getKey(), message, values);
+			} catch (IOException | IllegalArgumentException e) {
+				LOG.error("Unable to journal a notification", e);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Submit the notification to the worker and report its delivery.<br>
+	 * A failing sender stays registered : its worker retries and its circuit
+	 * breaker probes the provider until it recovers, a journaled notification
+	 * is submitted again until delivered or older than MAX_AGE. One refused
+	 * for good by the provider (IllegalArgumentException) is acknowledged at
+	 * once, a rejected one stays in the outbox until the next replay.
+	 * 
+	 * @param since Time of the first dispatch of the notification
+	 */
+	private CompletableFuture<NotificationResult> dispatch(NotificationWorker worker, NotificationOutbox.Entry entry,
+			String message, List<String> values, long since) {
+		CompletableFuture<NotificationResult> future = message != null ? worker.submit(message)
+				: worker.submit(values);
+		return future.whenComplete((result, t) -> {
+			String provider = result.getSender().getClass().getSimpleName();
+			if (result.isSuccess()) {
+				LOG.info("Notification delivered", "provider", provider, "latencyMs", result.getLatencyMillis(),
+						"batched", result.getBatched());
+			} else {
+				LOG.warn("Notification not delivered", "provider", provider, "latencyMs", result.getLatencyMillis(),
+						"error", result.getError());
+			}
+			if (entry == null)
+				return;
+			Exception error = result.getError();
+			if (error instanceof RejectedExecutionException
+					|| (error != null && (this.closed || !this.workers.contains(worker))))
+				return;// Stays in the outbox until the next replay
+			long age = System.currentTimeMillis() - since;
+			if (error != null && !(error instanceof IllegalArgumentException) && (MAX_AGE <= 0 || age < MAX_AGE)) {
+				dispatch(worker, entry, message, values, since);
+				return;
+			}
+			if (error != null)
+				LOG.error("Notification given up, removed from the outbox", error, "provider", provider, "ageMs", age,
+						"values", entry.getValues());
+			try {
+				this.outbox.ack(entry);
+			} catch (IOException e) {
+				LOG.error("Unable to acknowledge a notification", e);
+			}
+		});
+	}
+
+	/**
+	 * @return Delivery statistics of every sender
+	 */
+	public String getStats() {
+		String s = "";
+		for (NotificationWorker worker : this.workers) {
+			s += worker.getSender().getClass().getSimpleName() + ": " + worker.getDelivered() + " delivered in "
+					+ worker.getRequests() + " requests, " + worker.getState() + ", " + worker.getFailed() + " failed, " + worker.getPending() + " pending, "
+					+ String.format("%.1f", worker.getAverageLatencyMillis()) + "ms average\n";
+		}
+		return s;
+	}
+
+	/**
+	 * Stop every worker, notifications not delivered yet are failed and stay
+	 * in the outbox
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		for (NotificationWorker worker : this.workers)
+			worker.close();
+		this.workers.clear();
+		if (this.outbox != null) {
+			try {
+				this.outbox.close();
+			} catch (IOException e) {
+				LOG.error("Unable to close the outbox", e);
+			}
+		}
 	}
 
 	@Override
 	public String toString() {
 		String s = "Currently active notifications system:\n";
-		for (NotificationSender ns : this.senders) {
-			s += " - " + ns.getClass().getName() + "\n";
+		for (NotificationWorker worker : this.workers) {
+			s += " - " + worker.getSender().getClass().getName() + "\n";
 		}
 		return s;
 	}
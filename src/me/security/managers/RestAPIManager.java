@@ -1,25 +1,38 @@
 package me.security.managers;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.PrintStream;
+import java.io.OutputStreamWriter;
 import java.net.BindException;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Scanner;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
 
 import me.security.hardware.sensors.Sensor;
-import me.security.managers.DatabaseManager.Log;
-import utils.JUnitUtil;
+import me.security.logging.Logger;
+import me.security.logs.LogQuery;
+import me.security.logs.LogStore;
+import me.security.metrics.Counter;
+import me.security.metrics.Gauge;
+import me.security.metrics.LatencyHistogram;
+import me.security.metrics.MetricsRegistry;
+import me.security.rest.BlockingRestTransport;
+import me.security.rest.ChunkedResponse;
+import me.security.rest.ConnectionExecutor;
+import me.security.rest.EventBus;
+import me.security.rest.EventSubscriber;
+import me.security.rest.PathParams;
+import me.security.rest.ResponseCache;
+import me.security.rest.RestRequest;
+import me.security.rest.RestResponse;
+import me.security.rest.RestTransport;
+import me.security.rest.RouteHandler;
+import me.security.rest.Router;
+import me.security.rest.StreamResponse;
 
 /**
  * @author Geraldes Jocelyn
@@ -28,13 +41,23 @@ import utils.JUnitUtil;
 public class RestAPIManager {
 
 	public static int PORT = 8080;
+	public static int MAX_CONNECTIONS = 32;
+	public static int BACKLOG = 64;
+	public static int EVENT_BUFFER = EventBus.DEFAULT_CAPACITY;
 
 	private static final Gson GSON = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
 	private static final List<String> AUTHS = Arrays.asList("eaz897hfg654kiu714sf32d1");
+	private static final Logger LOG = Logger.get(RestAPIManager.class);
 
 	private final ServerSecurity security;
-	private final ServerSocket server;
-	private boolean enabled;
+	private final RestTransport transport;
+	private final Router router;
+	private final ResponseCache alarmCache;
+	private final ResponseCache sensorsCache;
+	private final ResponseCache logsCache;
+	private final EventBus events;
+	private final Counter[] responses;
+	private Gauge connections;
 
 	/**
 	 * Immediately start a web server on PORT to answer queries from mobile app
@@ -43,240 +66,246 @@ public class RestAPIManager {
 	 * @throws IOException If ServerSocket fails to create
 	 */
 	public RestAPIManager(ServerSecurity security) throws IOException, BindException {
-		this.security = security;
-		this.enabled = true;
+		this(security, ConnectionExecutor.create(MAX_CONNECTIONS, BACKLOG));
+	}
 
-		this.server = new ServerSocket(PORT);
-		PORT = this.server.getLocalPort();
-		System.out.println("Listening on port " + server.getLocalPort());
+	/**
+	 * Immediately start a blocking web server on PORT to answer queries from
+	 * mobile app
+	 * 
+	 * @param security The main SecuManager
+	 * @param executor The strategy running accepted connections
+	 * @throws IOException              If ServerSocket fails to create
+	 * @throws IllegalArgumentException executor must not be null
+	 */
+	public RestAPIManager(ServerSecurity security, ConnectionExecutor executor) throws IOException, BindException {
+		this(security, new BlockingRestTransport(executor));
+	}
 
-		new Thread(() -> {
-			while (RestAPIManager.this.enabled) {
-				try {
-					ConnectionThread thread = new ConnectionThread(RestAPIManager.this.security, server.accept());
-					thread.start();
-				} catch (Exception ex) {
-					ex.printStackTrace();
-				}
-			}
+	/**
+	 * Immediately start a web server on PORT to answer queries from mobile app
+	 * 
+	 * @param security  The main SecuManager
+	 * @param transport The network implementation, blocking or NIO
+	 * @throws IOException              If the server fails to create
+	 * @throws IllegalArgumentException transport must not be null
+	 * @see me.security.rest.NioRestTransport
+	 */
+	public RestAPIManager(ServerSecurity security, RestTransport transport) throws IOException, BindException {
+		if (transport == null)
+			throw new IllegalArgumentException("RestTransport must not be null");
+		this.security = security;
+		this.transport = transport;
+		this.responses = new Counter[5];
+		for (int i = 0; i < this.responses.length; i++)
+			this.responses[i] = MetricsRegistry.DEFAULT.counter("rest_responses_total",
+					"Responses sent by the REST API by status class", "code", (i + 1) + "xx");
+		this.router = createRouter();
+		this.alarmCache = new ResponseCache(security::getStateVersion, () -> security.isEnabled() + "");
+		this.sensorsCache = new ResponseCache(security::getStateVersion, () -> GSON.toJson(security.getSensors()));
+		this.logsCache = new ResponseCache(security.getDb()::getVersion,
+				() -> GSON.toJson(security.getDb().getLast10Logs()));
+		this.events = new EventBus(EVENT_BUFFER);
+		publishChanges();
+
+		PORT = this.transport.start(PORT, BACKLOG, this::handle);
+		this.connections = MetricsRegistry.DEFAULT.gauge("rest_connections_open",
+				"Client connections currently open on the REST API", this.transport::getOpenConnections);
+		LOG.info("Listening", "port", PORT, "transport", transport.getClass().getSimpleName());
+	}
+
+	/**
+	 * Compile every endpoint of the mobile app into a Router
+	 */
+	private Router createRouter() {
+		Router router = new Router();
+		route(router, "/alarm", (request, params) -> this.alarmCache.get(request));
+		route(router, "/alarm/toggle", (request, params) -> {
+			this.security.toggleAlarm("APP.");
+			return RestResponse.text(this.security.isEnabled() + "");
+		});
+		route(router, "/alarm/test", (request, params) -> {
+			this.security.triggerAlarm("TEST", "Activation de l'alarme de test.");
+			return RestResponse.text("true");
+		});
+		route(router, "/notify", (request, params) -> this.logsCache.get(request));
+		route(router, "/logs", (request, params) -> queryLogs(request));
+		route(router, "/sensors", (request, params) -> this.sensorsCache.get(request));
+		route(router, "/events", (request, params) -> subscribe());
+		route(router, "/sensor/{id:int}/toggle", (request, params) -> {
+			Sensor target = getSensor(params);
+			target.toggle();
+			return RestResponse.text(target.isEnabled() + "");
+		});
+		route(router, "/metrics", (request, params) -> new RestResponse(200, "OK", MetricsRegistry.CONTENT_TYPE,
+				MetricsRegistry.DEFAULT.scrape()));
+		// Potentially add other endpoints to manage sensor ?
+		return router;
+	}
 
+	/**
+	 * Register an endpoint timed under its pattern, so the requests of every
+	 * sensor share the same histogram.<br>
+	 * Streamed answers like /logs and /events are timed until their response
+	 * is ready to be written, not until the client received it.
+	 */
+	private static void route(Router router, String pattern, RouteHandler handler) {
+		LatencyHistogram latency = MetricsRegistry.DEFAULT.histogram("rest_request_seconds",
+				"Time to answer a request of the REST API", "endpoint", pattern);
+		router.add(pattern, (request, params) -> {
+			long start = System.nanoTime();
 			try {
-				RestAPIManager.this.server.close();
-			} catch (IOException e) {
-				e.printStackTrace();
+				return handler.handle(request, params);
+			} finally {
+				latency.recordSince(start);
 			}
-		}).start();
+		});
 	}
 
 	/**
-	 * Manage a specific connection from a single socket
+	 * Forward every alarm, sensor, detection and log change to the clients of
+	 * /events
 	 */
-	private class ConnectionThread extends Thread {
+	private void publishChanges() {
+		this.security.addAlarmListener(enabled -> this.events.publish("alarm", enabled + ""));
+		this.security.addSensorListener(sensor -> this.events.publish("sensor", GSON.toJson(sensor)));
+		this.security.addDetectionListener(event -> this.events.publish("detection", GSON.toJson(event)));
+		this.security.getDb().addLogListener(log -> this.events.publish("log", GSON.toJson(log)));
+	}
 
-		private final ServerSecurity security;
-		private Socket client;
+	/**
+	 * Open an event stream starting with the current alarm and sensors state so
+	 * the client doesn't need to poll them first
+	 */
+	private RestResponse subscribe() {
+		EventSubscriber subscriber = this.events.subscribe();
+		this.events.send(subscriber, "alarm", this.security.isEnabled() + "");
+		this.events.send(subscriber, "sensors", GSON.toJson(this.security.getSensors()));
+		return new StreamResponse(subscriber);
+	}
 
-		public ConnectionThread(ServerSecurity security, Socket client) {
-			this.security = security;
-			this.client = client;
+	/**
+	 * Stream a page of logs as {"logs":[...],"next":id}, next being the before
+	 * parameter of the following page, null on the last one. Logs not stored
+	 * yet have the id 0 and are only on the first page.<br>
+	 * Parameters : before=id, limit=n, sensorOnly=true, from=ms, to=ms, q=text
+	 */
+	private RestResponse queryLogs(RestRequest request) {
+		LogQuery query;
+		try {
+			query = new LogQuery(getInt(request, "before", 0), getInt(request, "limit", LogQuery.DEFAULT_LIMIT),
+					"true".equals(request.getParameter("sensorOnly")), getLong(request, "from"),
+					getLong(request, "to"), request.getParameter("q"));
+		} catch (IllegalArgumentException e) {
+			return RestResponse.badRequest(e.getMessage());
 		}
 
-		public void run() {
-			InputStream input = null;
-			OutputStream output = null;
-			Scanner inputReader = null;
-
+		LogStore db = this.security.getDb();
+		return new ChunkedResponse(output -> {
+			JsonWriter json = new JsonWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+			int[] last = new int[1];
+			int rows;
+			json.beginObject().name("logs").beginArray();
 			try {
-				input = this.client.getInputStream();
-				output = this.client.getOutputStream();
-			} catch (IOException e) {
-				e.printStackTrace();
-				return;
-			}
-
-			try {
-				inputReader = new Scanner(input);
-				inputReader.useDelimiter("\n");
-				if (!inputReader.hasNext()) {
-					sendError(output, "Invalid header ?");
-					return;// Ignore invalid request.
-				}
-
-				String url = inputReader.next().split(" ")[1];
-
-				/*
-				 * Collect every line of the inputReader a Map<String, String>
-				 */
-				String headerLine = null;
-				Map<String, String> headers = new HashMap<String, String>();
-				while (inputReader.hasNext()) {
-					headerLine = inputReader.next();
-					headerLine = headerLine.substring(0, headerLine.length() - 1);
-					if (headerLine.contains(": ")) {
-						headers.put(headerLine.split(": ")[0], headerLine.split(": ")[1]);
-					} else {
-						break;
-					}
-				}
-
-				if (!isAuthed(headers)) {
-					sendNotAuth(output);
-					return;
-				}
-
-				switch (url) { // Switch between different endpoints
-
-				case "/alarm":
-					sendText(output, this.security.isEnabled() + "");
-					break;
-
-				case "/alarm/toggle":
-					this.security.toggleAlarm("APP.");
-					sendText(output, this.security.isEnabled() + "");
-					break;
-
-				case "/alarm/test":
-					this.security.triggerAlarm("TEST", "Activation de l'alarme de test.");
-					sendText(output, "true");
-					break;
-
-				case "/notify":
-					List<Log> logs = this.security.getDb().getLast10Logs();
-					sendText(output, GSON.toJson(logs));
-					break;
-
-				case "/sensors":
-					sendText(output, GSON.toJson(this.security.getSensors()));
-					break;
-
-				default:
-					if (url.startsWith("/sensor/")) {
-						try {
-							Sensor target = null;
-							int id = Integer.parseInt(url.split("/")[2]);
-							for (Sensor s : this.security.getSensors()) {
-								if (s.getId() == id) {
-									target = s;
-								}
-							}
-
-							if (target == null) {
-								throw new IllegalArgumentException(id + "");
-							}
-
-							switch (url.replaceFirst("/sensor/" + id, "")) {
-
-							case "/toggle":
-								target.toggle();
-								sendText(output, target.isEnabled() + "");
-								break;
-
-							// Potentially add other endpoints to manage sensor ?
-
-							default:
-								sendNotFound(output, url);
-								break;
-
-							}
-						} catch (NumberFormatException ex) {
-							throw new Exception("Invalid sensor ID.");
-						}
-					} else {
-						throw new IllegalAccessException("Unknown endpoint: " + url);
-					}
-					break;
-				}
-
-				inputReader.close();
-			} catch (IllegalAccessException e) {
-				e.printStackTrace();
-				sendNotFound(output, e.getMessage());
-			} catch (Exception e) {
-				e.printStackTrace();
-				sendError(output, e.getMessage());
-			} finally {
-				if (inputReader != null)
-					inputReader.close();
-
-				try {
-					output.close();
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
+				rows = db.queryLogs(query, (id, time, relatedToSensor, info) -> {
+					json.beginObject().name("id").value(id).name("time").value(time).name("relatedToSensor")
+							.value(relatedToSensor).name("info").value(info).endObject();
+					if (id > 0)
+						last[0] = id;
+				});
+			} catch (SQLException e) {
+				throw new IOException("Logs query failed", e);
 			}
-		}
-
-		/**
-		 * Verify if headers contains valid auth password
-		 * 
-		 * @param headers Headers sended by a request
-		 * @return True if headers contains appPassword & a valid auth password.
-		 */
-		private boolean isAuthed(Map<String, String> headers) {
-			for (Entry<String, String> headerLine : headers.entrySet()) {
-				if (headerLine.getKey().equals("appPassword")) {
-					return AUTHS.contains(headerLine.getValue());
-				}
+			json.endArray().name("next");
+			if (rows == query.getLimit()) {
+				// A page of logs not stored yet is followed by the newest stored
+				json.value(last[0] > 0 ? last[0] : Integer.MAX_VALUE);
+			} else {
+				json.nullValue();
 			}
+			json.endObject().flush();
+		});
+	}
 
-			return false;
+	private static int getInt(RestRequest request, String name, int defaultValue) throws IllegalArgumentException {
+		String value = request.getParameter(name);
+		try {
+			return value == null ? defaultValue : Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(name + " must be a number");
 		}
+	}
 
-		/**
-		 * Send error 500 to output stream from the socket
-		 * 
-		 * @param msg The specific problem encountered
-		 */
-		private void sendError(OutputStream output, String msg) {
-			PrintStream out = new PrintStream(output);
-			out.println("HTTP/1.0 500 Internal Server Error");
-			out.println("");
-			out.println("" + msg);
-			out.println("");
-			out.flush();
+	private static long getLong(RestRequest request, String name) throws IllegalArgumentException {
+		String value = request.getParameter(name);
+		try {
+			return value == null ? 0 : Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(name + " must be a time in milliseconds");
 		}
+	}
 
-		/**
-		 * Send error 401 to output stream from the socket
-		 */
-		private void sendNotAuth(OutputStream output) {
-			PrintStream out = new PrintStream(output);
-			out.println("HTTP/1.0 401 Not Authed Correctly");
-			out.println("");
-			out.flush();
+	/**
+	 * @param params Path parameters containing the sensor id
+	 * @return The targeted sensor
+	 * @throws IllegalArgumentException If no sensor has this id
+	 */
+	private Sensor getSensor(PathParams params) throws IllegalArgumentException {
+		int id = params.getInt("id");
+		Sensor target = this.security.getSensor(id);
+		if (target == null) {
+			throw new IllegalArgumentException(id + "");
 		}
+		return target;
+	}
 
-		/**
-		 * Send error 404 Not Found to output stream from the socket
-		 * 
-		 * @param url What url was not found
-		 */
-		private void sendNotFound(OutputStream output, String url) {
-			PrintStream out = new PrintStream(output);
-			out.println("HTTP/1.0 404 Not Found");
-			out.println("");
-			out.println("NOT FOUND : " + url);
-			out.println("");
-			out.flush();
-		}
+	/**
+	 * Answer a request and count its status, called by the transport for every
+	 * request
+	 * 
+	 * @param request The received request
+	 * @return The answer to send back
+	 */
+	private RestResponse handle(RestRequest request) {
+		RestResponse response = dispatch(request);
+		this.responses[Math.min(Math.max(response.getStatus() / 100, 1), 5) - 1].increment();
+		return response;
+	}
 
-		/**
-		 * Send OK 200 to output stream from the socket
-		 * 
-		 * @param text Json to answer
-		 */
-		private void sendText(OutputStream output, String text) {
-			PrintStream out = new PrintStream(output);
-			out.println("HTTP/1.0 200 OK");
-			out.println("Content-Type:application/json");
-			out.println("");
-			out.println(text);
-			out.println("");
+	/**
+	 * Dispatch a request to its endpoint once authenticated
+	 */
+	private RestResponse dispatch(RestRequest request) {
+		try {
+			if (!isAuthed(request)) {
+				return RestResponse.notAuthed();
+			}
+
+			RestResponse response = this.router.dispatch(request);
+			if (response == null) {
+				return RestResponse.notFound("Unknown endpoint: " + request.getUrl());
+			}
+			return response;
+		} catch (Exception e) {
+			LOG.error("Request failed", e, "url", request.getUrl());
+			return RestResponse.error(e.getMessage());
 		}
+	}
 
+	/**
+	 * Verify if headers contains valid auth password
+	 * 
+	 * @param request The request sended
+	 * @return True if headers contains appPassword & a valid auth password.
+	 */
+	private boolean isAuthed(RestRequest request) {
+		String password = request.getHeader(RestRequest.APP_PASSWORD);
+		return password != null && AUTHS.contains(password);
 	}
 
 	public void close() {
-		this.enabled = false;
+		MetricsRegistry.DEFAULT.remove(this.connections);
+		this.events.close();
+		this.transport.close();
 	}
 }
\ No newline at end of file
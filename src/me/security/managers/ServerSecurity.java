@@ -1,24 +1,247 @@
 package me.security.managers;
 
-public class ServerSecurity {
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
-	private final DatabaseManager db;
+import me.security.hardware.sensors.Sensor;
+import me.security.hardware.sensors.SensorEvent;
+import me.security.hardware.sensors.SensorEventRing;
+import me.security.logs.LogStore;
+import me.security.metrics.Gauge;
+import me.security.metrics.LatencyHistogram;
+import me.security.metrics.MetricsRegistry;
+
+/**
+ * State of the alarm and its sensors.<br>
+ * Detections go through a SensorEventRing : a first stage decides whether
+ * they raise the alarm, then logging, notification and push to the mobile
+ * app each handle them on their own thread. The decision never waits for the
+ * database nor the notification providers.
+ */
+public class ServerSecurity implements AutoCloseable {
+
+	public static int RING_SIZE = SensorEventRing.DEFAULT_SIZE;
+
+	private final LogStore db;
 	private final NotificationManager notif;
+	private final List<Sensor> sensors;
+	private final Map<Integer, Sensor> sensorsById;
+	private final AtomicLong stateVersion;
+	private final List<Consumer<Boolean>> alarmListeners;
+	private final List<Consumer<Sensor>> sensorListeners;
+	private final List<Consumer<SensorEvent>> detectionListeners;
+	private final SensorEventRing ring;
+	private final LatencyHistogram decisionLatency;
+	private final Gauge backlog;
+	private volatile boolean enabled;
 	
-	public ServerSecurity(DatabaseManager db, NotificationManager notif) {
+	public ServerSecurity(LogStore db, NotificationManager notif) {
 		if(db == null) throw new IllegalArgumentException();
 		if(notif == null) throw new IllegalArgumentException();
 		
 		this.db = db;
 		this.notif = notif;
+		this.sensors = new CopyOnWriteArrayList<Sensor>();
+		this.sensorsById = new ConcurrentHashMap<Integer, Sensor>();
+		this.stateVersion = new AtomicLong();
+		this.alarmListeners = new CopyOnWriteArrayList<Consumer<Boolean>>();
+		this.sensorListeners = new CopyOnWriteArrayList<Consumer<Sensor>>();
+		this.detectionListeners = new CopyOnWriteArrayList<Consumer<SensorEvent>>();
+		this.decisionLatency = MetricsRegistry.DEFAULT.histogram("sensor_decision_seconds",
+				"Time from a detection to the alarm decision", LatencyHistogram.MICRO_BUCKETS);
+
+		this.ring = new SensorEventRing(RING_SIZE);
+		SensorEventRing.Stage alarm = this.ring.addStage("alarm", (event, sequence, endOfBatch) -> decide(event));
+		this.ring.addStage("logs", (event, sequence, endOfBatch) -> {
+			if (event.isAlarm())
+				this.db.rawLog(true, "Detection " + event.getSensorName() + " (" + event.getMessage() + ")");
+		}, alarm);
+		this.ring.addStage("notify", (event, sequence, endOfBatch) -> {
+			if (event.isAlarm())
+				this.notif.triggerAll(Arrays.asList(event.getSensorName(), event.getMessage()));
+		}, alarm);
+		this.ring.addStage("push", (event, sequence, endOfBatch) -> {
+			for (Consumer<SensorEvent> listener : this.detectionListeners)
+				listener.accept(event);
+		}, alarm);
+		this.ring.start();
+		this.backlog = MetricsRegistry.DEFAULT.gauge("sensor_events_pending",
+				"Sensor events not handled by every stage yet", this.ring::getBacklog);
+	}
+
+	/**
+	 * Decide whether an event raises the alarm, the other stages wait for it
+	 */
+	private void decide(SensorEvent event) {
+		Sensor sensor = event.getSensor();
+		event.setAlarm(event.getType() == SensorEvent.Type.TRIGGER
+				|| (this.enabled && sensor != null && sensor.isEnabled()));
+		this.decisionLatency.recordSince(event.getPublished());
+	}
+
+	/**
+	 * Be called every time the alarm is enabled or disabled
+	 * 
+	 * @param listener Called with the new alarm state
+	 * @throws IllegalArgumentException listener must not be null
+	 */
+	public void addAlarmListener(Consumer<Boolean> listener) throws IllegalArgumentException {
+		if (listener == null)
+			throw new IllegalArgumentException("Listener can't be null");
+		this.alarmListeners.add(listener);
+	}
+
+	/**
+	 * Be called every time any registered sensor is enabled or disabled
+	 * 
+	 * @param listener Called with the toggled sensor
+	 * @throws IllegalArgumentException listener must not be null
+	 */
+	public void addSensorListener(Consumer<Sensor> listener) throws IllegalArgumentException {
+		if (listener == null)
+			throw new IllegalArgumentException("Listener can't be null");
+		this.sensorListeners.add(listener);
+	}
+
+	/**
+	 * Be called with every detection once the alarm is decided, from the push
+	 * stage thread
+	 * 
+	 * @param listener Called with the event, only valid during the call
+	 * @throws IllegalArgumentException listener must not be null
+	 */
+	public void addDetectionListener(Consumer<SensorEvent> listener) throws IllegalArgumentException {
+		if (listener == null)
+			throw new IllegalArgumentException("Listener can't be null");
+		this.detectionListeners.add(listener);
+	}
+
+	/**
+	 * Register a sensor so it can be listed and found by its id
+	 * 
+	 * @param sensor The sensor to add
+	 * @throws IllegalArgumentException sensor must not be null and its id must not
+	 *                                  be already used
+	 */
+	public void addSensor(Sensor sensor) throws IllegalArgumentException {
+		if (sensor == null)
+			throw new IllegalArgumentException("Sensor can't be null");
+		if (this.sensorsById.putIfAbsent(sensor.getId(), sensor) != null)
+			throw new IllegalArgumentException("Sensor id " + sensor.getId() + " already used");
+		this.sensors.add(sensor);
+		sensor.addListener(s -> {
+			this.stateVersion.incrementAndGet();
+			for (Consumer<Sensor> listener : this.sensorListeners)
+				listener.accept(s);
+		});
+		this.stateVersion.incrementAndGet();
+	}
+
+	/**
+	 * @return Every registered sensor in registration order
+	 */
+	public List<Sensor> getSensors() {
+		return Collections.unmodifiableList(this.sensors);
+	}
+
+	/**
+	 * @param id The sensor id
+	 * @return The sensor with this id, null if none
+	 */
+	public Sensor getSensor(int id) {
+		return this.sensorsById.get(id);
+	}
+
+	/**
+	 * Incremented every time the alarm or a sensor changes, so serialized states
+	 * can be reused as long as it doesn't change
+	 * 
+	 * @return The current version of the alarm and sensors state
+	 */
+	public long getStateVersion() {
+		return this.stateVersion.get();
+	}
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	/**
+	 * Enable the alarm if it is disabled, disable it otherwise
+	 * 
+	 * @param from Who toggled the alarm, written in logs
+	 */
+	public void toggleAlarm(String from) {
+		boolean state;
+		synchronized (this) {
+			this.enabled = !this.enabled;
+			this.stateVersion.incrementAndGet();
+			state = this.enabled;
+		}
+		this.db.rawLog(false, "Alarme " + (state ? "activée" : "désactivée") + " par " + from);
+		for (Consumer<Boolean> listener : this.alarmListeners)
+			listener.accept(state);
+	}
+
+	/**
+	 * Publish a detection of a sensor, it raises the alarm if both the alarm
+	 * and the sensor are enabled.<br>
+	 * Called by sensor drivers, returns once the event is queued.
+	 * 
+	 * @param sensor  The sensor who detected something
+	 * @param message The detection message
+	 * @return False if the event was refused because ServerSecurity is closed
+	 * @throws IllegalArgumentException sensor and message must not be null
+	 */
+	public boolean detect(Sensor sensor, String message) throws IllegalArgumentException {
+		if (sensor == null)
+			throw new IllegalArgumentException("Sensor can't be null");
+		if (message == null)
+			throw new IllegalArgumentException("Message can't be null");
+		return this.ring.publish(sensor, sensor.getName(), message, SensorEvent.Type.DETECTION) >= 0;
+	}
+
+	/**
+	 * Raise the alarm whatever its state : log it and send it to every
+	 * NotificationSender.<br>
+	 * Returns once the event is queued, it is handled like a detection.
+	 * 
+	 * @param sensorName The name of the sensor who detected something
+	 * @param message    The detection message
+	 */
+	public void triggerAlarm(String sensorName, String message) {
+		this.ring.publish(null, sensorName, message, SensorEvent.Type.TRIGGER);
 	}
 
 	public NotificationManager getNotif() {
 		return this.notif;
 	}
 
-	public DatabaseManager getDb() {
+	public LogStore getDb() {
 		return this.db;
 	}
 
+	/**
+	 * @return The ring carrying the sensor events, to watch its stages
+	 */
+	public SensorEventRing getRing() {
+		return this.ring;
+	}
+
+	/**
+	 * Handle the events already published then stop the stages, the database
+	 * and the notifications are closed by their owner
+	 */
+	@Override
+	public void close() {
+		this.ring.close();
+		MetricsRegistry.DEFAULT.remove(this.backlog);
+	}
+
 }
@@ -0,0 +1,39 @@
+package me.security.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count that only goes up, like requests or failures.<br>
+ * Increments are striped by LongAdder so threads counting at the same time
+ * don't contend on a single value, reading sums the stripes.
+ */
+public class Counter extends Metric {
+
+	private final LongAdder count;
+
+	Counter(String name, String labels) {
+		super(name, labels);
+		this.count = new LongAdder();
+	}
+
+	public void increment() {
+		this.count.increment();
+	}
+
+	/**
+	 * @param n The amount to add, must not be negative
+	 */
+	public void add(long n) {
+		this.count.add(n);
+	}
+
+	public long get() {
+		return this.count.sum();
+	}
+
+	@Override
+	void write(StringBuilder out) {
+		writeSample(out, "", null, Long.toString(get()));
+	}
+
+}
@@ -0,0 +1,26 @@
+package me.security.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A value read when the metrics are scraped, like a queue depth
+ */
+public class Gauge extends Metric {
+
+	private final LongSupplier value;
+
+	Gauge(String name, String labels, LongSupplier value) {
+		super(name, labels);
+		this.value = value;
+	}
+
+	public long get() {
+		return this.value.getAsLong();
+	}
+
+	@Override
+	void write(StringBuilder out) {
+		writeSample(out, "", null, Long.toString(get()));
+	}
+
+}
@@ -0,0 +1,111 @@
+package me.security.metrics;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of durations in fixed buckets, exported as a Prometheus
+ * histogram in seconds.<br>
+ * Recording finds the bucket among a few bounds and increments its LongAdder,
+ * it never locks nor allocates. Buckets are read one by one while others may
+ * be recorded, a scrape can be off by the few recordings made meanwhile.
+ */
+public class LatencyHistogram extends Metric {
+
+	/**
+	 * Upper bounds of the buckets in seconds, from a fast cached answer to a
+	 * slow notification provider
+	 */
+	public static final double[] DEFAULT_BUCKETS = { 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25,
+			0.5, 1, 2.5, 5, 10 };
+	/**
+	 * Upper bounds of the buckets in seconds, for in-memory work expected to
+	 * take microseconds
+	 */
+	public static final double[] MICRO_BUCKETS = { 0.000001, 0.0000025, 0.000005, 0.00001, 0.000025, 0.00005,
+			0.0001, 0.00025, 0.0005, 0.001, 0.01 };
+
+	private final long[] bounds;
+	private final String[] les;
+	private final LongAdder[] buckets;
+	private final LongAdder sum;
+
+	LatencyHistogram(String name, String labels, double[] buckets) throws IllegalArgumentException {
+		super(name, labels);
+		if (buckets.length == 0)
+			throw new IllegalArgumentException("A histogram needs at least one bucket");
+
+		this.bounds = new long[buckets.length];
+		this.les = new String[buckets.length + 1];
+		for (int i = 0; i < buckets.length; i++) {
+			if (i > 0 && buckets[i] <= buckets[i - 1])
+				throw new IllegalArgumentException("Buckets must be increasing");
+			this.bounds[i] = (long) (buckets[i] * 1_000_000_000d);
+			this.les[i] = "le=\"" + BigDecimal.valueOf(buckets[i]).stripTrailingZeros().toPlainString() + "\"";
+		}
+		this.les[buckets.length] = "le=\"+Inf\"";
+
+		// The last one counts the durations above every bound
+		this.buckets = new LongAdder[buckets.length + 1];
+		for (int i = 0; i < this.buckets.length; i++)
+			this.buckets[i] = new LongAdder();
+		this.sum = new LongAdder();
+	}
+
+	/**
+	 * @param nanos The duration to record, from System.nanoTime() differences
+	 */
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+		int i = 0;
+		while (i < this.bounds.length && nanos > this.bounds[i])
+			i++;
+		this.buckets[i].increment();
+		this.sum.add(nanos);
+	}
+
+	/**
+	 * Record the time elapsed since start
+	 *
+	 * @param start A System.nanoTime() taken before the measured operation
+	 */
+	public void recordSince(long start) {
+		record(System.nanoTime() - start);
+	}
+
+	public long getCount() {
+		long count = 0;
+		for (LongAdder bucket : this.buckets)
+			count += bucket.sum();
+		return count;
+	}
+
+	/**
+	 * @return Sum of the recorded durations in seconds
+	 */
+	public double getSum() {
+		return this.sum.sum() / 1_000_000_000d;
+	}
+
+	/**
+	 * @param i Index of the bucket, the number of bounds for the one above them
+	 * @return Number of durations recorded in this bucket only, not cumulative
+	 */
+	public long getBucket(int i) {
+		return this.buckets[i].sum();
+	}
+
+	@Override
+	void write(StringBuilder out) {
+		long cumulative = 0;
+		for (int i = 0; i < this.buckets.length; i++) {
+			cumulative += this.buckets[i].sum();
+			writeSample(out, "_bucket", this.les[i], Long.toString(cumulative));
+		}
+		// Count from the buckets so it always equals the +Inf one
+		writeSample(out, "_sum", null, Double.toString(getSum()));
+		writeSample(out, "_count", null, Long.toString(cumulative));
+	}
+
+}
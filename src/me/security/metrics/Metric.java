@@ -0,0 +1,53 @@
+package me.security.metrics;
+
+/**
+ * A metric of a MetricsRegistry, identified by its name and labels
+ */
+public abstract class Metric {
+
+	private final String name;
+	private final String labels;
+
+	/**
+	 * @param name   The name of the family of this metric
+	 * @param labels The labels in Prometheus form, key="value",... or empty
+	 */
+	Metric(String name, String labels) {
+		this.name = name;
+		this.labels = labels;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * @return The labels in Prometheus form, key="value",... or empty
+	 */
+	public String getLabels() {
+		return this.labels;
+	}
+
+	/**
+	 * Append the samples of this metric in Prometheus text format
+	 */
+	abstract void write(StringBuilder out);
+
+	/**
+	 * Append a sample line
+	 *
+	 * @param suffix Appended to the name, _bucket for example
+	 * @param extra  A label appended to the ones of this metric, null if none
+	 */
+	void writeSample(StringBuilder out, String suffix, String extra, String value) {
+		out.append(this.name).append(suffix);
+		if (!this.labels.isEmpty() || extra != null) {
+			out.append('{').append(this.labels);
+			if (extra != null)
+				out.append(this.labels.isEmpty() ? "" : ",").append(extra);
+			out.append('}');
+		}
+		out.append(' ').append(value).append('\n');
+	}
+
+}
@@ -0,0 +1,205 @@
+package me.security.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * Named counters, gauges and latency histograms exported in the Prometheus
+ * text format.<br>
+ * Looking a metric up builds its label key, so callers look it up once and
+ * keep it in a field, the hot path then only increments or records.<br>
+ * Metrics are grouped in families sharing a name, a help text and a type, a
+ * family holds a metric for every combination of labels.
+ */
+public class MetricsRegistry {
+
+	/**
+	 * The registry instrumented by the server and exported on /metrics
+	 */
+	public static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	private static final Pattern NAME = Pattern.compile("[a-zA-Z_:][a-zA-Z0-9_:]*");
+	private static final Pattern LABEL = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
+
+	private final Map<String, Family> families;
+
+	public MetricsRegistry() {
+		this.families = new ConcurrentSkipListMap<String, Family>();
+	}
+
+	/**
+	 * @param name   The name of the counter, ending with _total
+	 * @param help   What is counted
+	 * @param labels Label names and values, alternated
+	 * @return The counter with these labels, created on first use
+	 * @throws IllegalArgumentException If a name or label is invalid, or name is
+	 *                                  already used by another type of metric
+	 */
+	public Counter counter(String name, String help, String... labels) throws IllegalArgumentException {
+		Family family = getFamily(name, help, "counter");
+		return (Counter) family.metrics.computeIfAbsent(formatLabels(labels), l -> new Counter(name, l));
+	}
+
+	/**
+	 * @param name   The name of the histogram, ending with _seconds
+	 * @param help   What is timed
+	 * @param labels Label names and values, alternated
+	 * @return The histogram with these labels and the default buckets, created
+	 *         on first use
+	 * @throws IllegalArgumentException If a name or label is invalid, or name is
+	 *                                  already used by another type of metric
+	 * @see LatencyHistogram#DEFAULT_BUCKETS
+	 */
+	public LatencyHistogram histogram(String name, String help, String... labels) throws IllegalArgumentException {
+		return histogram(name, help, LatencyHistogram.DEFAULT_BUCKETS, labels);
+	}
+
+	/**
+	 * @param name    The name of the histogram, ending with _seconds
+	 * @param help    What is timed
+	 * @param buckets Increasing upper bounds of the buckets in seconds, only
+	 *                used when the histogram is created
+	 * @param labels  Label names and values, alternated
+	 * @return The histogram with these labels, created on first use
+	 * @throws IllegalArgumentException If a name, label or bucket is invalid,
+	 *                                  or name is already used by another type
+	 *                                  of metric
+	 */
+	public LatencyHistogram histogram(String name, String help, double[] buckets, String... labels)
+			throws IllegalArgumentException {
+		Family family = getFamily(name, help, "histogram");
+		return (LatencyHistogram) family.metrics.computeIfAbsent(formatLabels(labels),
+				l -> new LatencyHistogram(name, l, buckets));
+	}
+
+	/**
+	 * Register a value read at every scrape, replacing the one registered with
+	 * the same name and labels
+	 *
+	 * @param name   The name of the gauge
+	 * @param help   What is measured
+	 * @param value  Read from the scraping thread, must be thread safe
+	 * @param labels Label names and values, alternated
+	 * @return The registered gauge, to remove once value is no longer valid
+	 * @throws IllegalArgumentException If a name or label is invalid, or name is
+	 *                                  already used by another type of metric
+	 */
+	public Gauge gauge(String name, String help, LongSupplier value, String... labels)
+			throws IllegalArgumentException {
+		if (value == null)
+			throw new IllegalArgumentException("Gauge value must not be null");
+		Family family = getFamily(name, help, "gauge");
+		String key = formatLabels(labels);
+		Gauge gauge = new Gauge(name, key, value);
+		family.metrics.put(key, gauge);
+		return gauge;
+	}
+
+	/**
+	 * Stop exporting a metric, does nothing if it was replaced since
+	 *
+	 * @param metric A metric of this registry
+	 * @return False if the metric wasn't registered
+	 */
+	public boolean remove(Metric metric) {
+		Family family = this.families.get(metric.getName());
+		return family != null && family.metrics.remove(metric.getLabels(), metric);
+	}
+
+	/**
+	 * @param name The name of a metric family
+	 * @return The metric with these labels, null if not registered
+	 */
+	public Metric get(String name, String... labels) {
+		Family family = this.families.get(name);
+		return family == null ? null : family.metrics.get(formatLabels(labels));
+	}
+
+	/**
+	 * @return Every metric in the Prometheus text format, sorted by name then
+	 *         labels
+	 */
+	public String scrape() {
+		StringBuilder out = new StringBuilder(4096);
+		for (Family family : this.families.values()) {
+			if (family.metrics.isEmpty())
+				continue;
+			out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+			out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+			for (Metric metric : family.metrics.values())
+				metric.write(out);
+		}
+		return out.toString();
+	}
+
+	private Family getFamily(String name, String help, String type) throws IllegalArgumentException {
+		if (name == null || !NAME.matcher(name).matches())
+			throw new IllegalArgumentException("Invalid metric name : " + name);
+		Family family = this.families.computeIfAbsent(name, n -> new Family(n, help, type));
+		if (!family.type.equals(type))
+			throw new IllegalArgumentException(name + " is already registered as a " + family.type);
+		return family;
+	}
+
+	/**
+	 * @return The labels in Prometheus form : key="value",...
+	 */
+	private static String formatLabels(String... labels) throws IllegalArgumentException {
+		if (labels.length % 2 != 0)
+			throw new IllegalArgumentException("Labels must be name and value pairs");
+		StringBuilder out = new StringBuilder();
+		for (int i = 0; i < labels.length; i += 2) {
+			if (labels[i] == null || !LABEL.matcher(labels[i]).matches() || labels[i].startsWith("__"))
+				throw new IllegalArgumentException("Invalid label name : " + labels[i]);
+			if (labels[i + 1] == null)
+				throw new IllegalArgumentException("Label " + labels[i] + " must have a value");
+			if (i > 0)
+				out.append(',');
+			out.append(labels[i]).append("=\"");
+			escape(out, labels[i + 1], true);
+			out.append('"');
+		}
+		return out.toString();
+	}
+
+	private static void escape(StringBuilder out, String value, boolean quotes) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\') {
+				out.append("\\\\");
+			} else if (c == '\n') {
+				out.append("\\n");
+			} else if (c == '"' && quotes) {
+				out.append("\\\"");
+			} else {
+				out.append(c);
+			}
+		}
+	}
+
+	/**
+	 * The metrics sharing a name
+	 */
+	private static class Family {
+
+		private final String name;
+		private final String help;
+		private final String type;
+		private final Map<String, Metric> metrics;
+
+		private Family(String name, String help, String type) {
+			StringBuilder escaped = new StringBuilder();
+			escape(escaped, help == null ? name : help, false);
+			this.name = name;
+			this.help = escaped.toString();
+			this.type = type;
+			this.metrics = new ConcurrentSkipListMap<String, Metric>();
+		}
+
+	}
+
+}
@@ -0,0 +1,84 @@
+package me.security.notification;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Health of a notification provider.<br>
+ * After threshold consecutive failures the circuit opens : nothing is sent
+ * until the cooldown is over, then a single request probes the provider. If
+ * it succeeds the circuit closes, otherwise it opens again for twice as long.
+ */
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	/**
+	 * The cooldown never grows above this many times the initial one
+	 */
+	public static final int MAX_COOLDOWN_FACTOR = 16;
+
+	private final int threshold;
+	private final long initialCooldown;
+	private State state;
+	private int failures;
+	private long cooldown;
+	private long openedUntil;
+
+	/**
+	 * @param threshold Consecutive failures opening the circuit
+	 * @param cooldown  Milliseconds before probing an open circuit
+	 * @throws IllegalArgumentException threshold and cooldown must be positive
+	 */
+	public CircuitBreaker(int threshold, long cooldown) throws IllegalArgumentException {
+		if (threshold <= 0)
+			throw new IllegalArgumentException("threshold must be positive");
+		if (cooldown <= 0)
+			throw new IllegalArgumentException("cooldown must be positive");
+		this.threshold = threshold;
+		this.initialCooldown = TimeUnit.MILLISECONDS.toNanos(cooldown);
+		this.cooldown = this.initialCooldown;
+		this.state = State.CLOSED;
+	}
+
+	/**
+	 * @return 0 if a request can be sent, otherwise the nanoseconds to wait
+	 *         before probing the provider
+	 */
+	public synchronized long getWait() {
+		if (this.state != State.OPEN)
+			return 0;
+		long wait = this.openedUntil - System.nanoTime();
+		if (wait > 0)
+			return wait;
+		this.state = State.HALF_OPEN;
+		return 0;
+	}
+
+	public synchronized void onSuccess() {
+		this.state = State.CLOSED;
+		this.failures = 0;
+		this.cooldown = this.initialCooldown;
+	}
+
+	public synchronized void onFailure() {
+		if (this.state == State.HALF_OPEN) {
+			this.cooldown = Math.min(this.cooldown * 2, this.initialCooldown * MAX_COOLDOWN_FACTOR);
+			open();
+		} else if (++this.failures >= this.threshold) {
+			open();
+		}
+	}
+
+	private void open() {
+		this.state = State.OPEN;
+		this.failures = 0;
+		this.openedUntil = System.nanoTime() + this.cooldown;
+	}
+
+	public synchronized State getState() {
+		return this.state;
+	}
+
+}
@@ -8,11 +8,10 @@ import java.nio.file.Files;
 import java.util.List;
 import java.util.stream.Collectors;
 
-import org.apache.http.HttpResponse;
 import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.HttpClientBuilder;
+
+import me.security.logging.Logger;
 
 /**
  * Notification implementation of the Free sms api
@@ -23,9 +22,23 @@ import org.apache.http.impl.client.HttpClientBuilder;
  */
 public class NotificationFreeAPI extends NotificationSender {
 
+	/**
+	 * Free answers 402 when too many sms are sent in a short time
+	 */
+	public static NotificationPolicy POLICY = new NotificationPolicy(30000, 20, 3, 60000);
+
+	private static final Logger LOG = Logger.get(NotificationFreeAPI.class);
+
 	public static NotificationFreeAPI generateFromFile() throws IOException {
+		return generateFromFile(NotificationHttpClient.getDefault());
+	}
+
+	/**
+	 * @param http The HTTP transport to send notifications with
+	 */
+	public static NotificationFreeAPI generateFromFile(NotificationHttpClient http) throws IOException {
 		File freePwd = new File("free.password");
-		System.out.println("Parsing " + freePwd.getCanonicalPath() + " file");
+		LOG.info("Parsing password file", "file", freePwd.getCanonicalPath());
 
 		if (!freePwd.exists() || !freePwd.canRead())
 			throw new FileNotFoundException("Free password file doesn't exist or cannot be readed");
@@ -36,7 +49,7 @@ public class NotificationFreeAPI extends NotificationSender {
 			throw new FileNotFoundException("Free password file doesn't respect defined format : must have 2 lines");
 
 		try {
-			return new NotificationFreeAPI(Integer.parseInt(freeInfo.get(0)), freeInfo.get(1));
+			return new NotificationFreeAPI(Integer.parseInt(freeInfo.get(0)), freeInfo.get(1), http);
 		} catch (NumberFormatException e) {
 			throw new FileNotFoundException("Free password file have invalid first line : must be a number");
 		}
@@ -44,6 +57,7 @@ public class NotificationFreeAPI extends NotificationSender {
 
 	private final int user;
 	private final String password;
+	private final NotificationHttpClient http;
 
 	/**
 	 * Create an instance of FreeAPI, multiple instances of a specific user can be instanciated
@@ -54,14 +68,31 @@ public class NotificationFreeAPI extends NotificationSender {
 	 * @throws IllegalArgumentException passwords must be 14 characters
 	 */
 	public NotificationFreeAPI(int user, String password) throws IllegalArgumentException {
+		this(user, password, NotificationHttpClient.getDefault());
+	}
+
+	/**
+	 * Create an instance of FreeAPI sending its notifications with http
+	 * 
+	 * @param user     The account number from Free account manager (format must be: 12345678)
+	 * @param password Free mobile password (must be 14 characters)
+	 * @param http     The HTTP transport to send notifications with
+	 * @throws IllegalArgumentException user must be 8 numbers
+	 * @throws IllegalArgumentException passwords must be 14 characters
+	 * @throws IllegalArgumentException http must not be null
+	 */
+	public NotificationFreeAPI(int user, String password, NotificationHttpClient http) throws IllegalArgumentException {
 		if (user >= 100000000 || user <= 00100000)
 			throw new IllegalArgumentException("User id not valid size"); // Magic values to mask FreeAPI user
 		if (password == null)
 			throw new IllegalArgumentException("Password is null");
 		if (password.length() != 14)
 			throw new IllegalArgumentException("Password not valid size");// Password will always be 14 chars
+		if (http == null)
+			throw new IllegalArgumentException("HTTP client is null");
 		this.user = user;
 		this.password = password;
+		this.http = http;
 
 		/*
 		 * We have no way to verify if user and password are valid from Free because
@@ -76,34 +107,37 @@ public class NotificationFreeAPI extends NotificationSender {
 	 * @throws ClientProtocolException message must not be null and not empty
 	 * @throws IOException             in case of a problem or the connection was aborted
 	 * @throws ClientProtocolException in case of an http protocol error
+	 * @throws IllegalArgumentException Free refused the message for good, a 4xx
+	 *                                  response other than a rate limit
 	 * @throws IllegalStateException   The response from free api was different from "HTTP 200 OK".
 	 */
 	@Override
 	public void trigger(String message) throws ClientProtocolException, IOException, IllegalArgumentException, IllegalStateException {
 		if (message == null || message.length() == 0) throw new IllegalArgumentException("Message cannot be null or empty.");
-		HttpClient httpClient = HttpClientBuilder.create().build();
 		HttpGet request = new HttpGet("https://smsapi.free-mobile.fr/sendmsg?user=" + user + "&pass=" + password + "&msg=" + URLEncoder.encode(message, "UTF-8"));
-		HttpResponse hr = httpClient.execute(request);
+		int status = this.http.execute(request);
 
-		switch (hr.getStatusLine().getStatusCode()) {
+		switch (status) {
 
 		case 200:// Yeah good response!
 			break;
 
 		case 400:// Missing parameter from url ? This will never append
-			throw new IllegalStateException("Missing parameter response from free api...");
+			throw new IllegalArgumentException("Missing parameter response from free api...");
 
-		case 402:// Too much sms
+		case 402:// Too much sms, accepted again later
 			throw new IllegalStateException("Too much sms sended to free api.. Must be errorneous loop somewhere");
 
 		case 403:// Service not activated on account
-			throw new IllegalStateException("Service is not activated on user account.");
+			throw new IllegalArgumentException("Service is not activated on user account.");
 
 		case 500:// Internal server error
 			throw new IllegalStateException("Internal server error from FreeAPI... Maybe they are down ?");
 
 		default:
-			throw new IllegalStateException("Response from Free doesn't validate : " + hr.getStatusLine().getStatusCode());
+			if (status >= 400 && status < 500)// Sending it again will be refused again
+				throw new IllegalArgumentException("Response from Free doesn't validate : " + status);
+			throw new IllegalStateException("Response from Free doesn't validate : " + status);
 		}
 	}
 
@@ -118,6 +152,16 @@ public class NotificationFreeAPI extends NotificationSender {
 		trigger(values.stream().collect(Collectors.joining(" ")));
 	}
 
+	@Override
+	public String getKey() {
+		return "free:" + this.user;
+	}
+
+	@Override
+	public NotificationPolicy getPolicy() {
+		return POLICY;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (o == null) return false;
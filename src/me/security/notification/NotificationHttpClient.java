@@ -0,0 +1,115 @@
+package me.security.notification;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * HTTP transport shared by every NotificationSender.<br>
+ * Connections to a provider are pooled and kept alive between notifications,
+ * so only the first one pays for the TCP and TLS handshakes.
+ */
+public class NotificationHttpClient implements AutoCloseable {
+
+	public static int CONNECT_TIMEOUT = 5000;
+	public static int READ_TIMEOUT = 10000;
+	public static int MAX_PER_ROUTE = 2;
+	public static int MAX_TOTAL = 8;
+	/**
+	 * Time a connection is kept alive when the provider doesn't say
+	 */
+	public static long KEEP_ALIVE = 60000;
+
+	private static NotificationHttpClient defaultClient;
+
+	/**
+	 * @return The client used by senders created without one, created on first
+	 *         use with the static configuration
+	 */
+	public static synchronized NotificationHttpClient getDefault() {
+		if (defaultClient == null)
+			defaultClient = new NotificationHttpClient(CONNECT_TIMEOUT, READ_TIMEOUT, MAX_PER_ROUTE, MAX_TOTAL);
+		return defaultClient;
+	}
+
+	private final PoolingHttpClientConnectionManager pool;
+	private final CloseableHttpClient client;
+
+	public NotificationHttpClient() {
+		this(CONNECT_TIMEOUT, READ_TIMEOUT, MAX_PER_ROUTE, MAX_TOTAL);
+	}
+
+	/**
+	 * @param connectTimeout Milliseconds to wait for a connection to a provider
+	 * @param readTimeout    Milliseconds to wait for data from a provider
+	 * @param maxPerRoute    Maximum pooled connections to a single provider
+	 * @param maxTotal       Maximum pooled connections
+	 * @throws IllegalArgumentException All parameters must be positive
+	 */
+	public NotificationHttpClient(int connectTimeout, int readTimeout, int maxPerRoute, int maxTotal)
+			throws IllegalArgumentException {
+		if (connectTimeout <= 0 || readTimeout <= 0)
+			throw new IllegalArgumentException("Timeouts must be positive");
+		if (maxPerRoute <= 0 || maxTotal < maxPerRoute)
+			throw new IllegalArgumentException("Pool sizes must be positive and maxTotal >= maxPerRoute");
+
+		this.pool = new PoolingHttpClientConnectionManager(KEEP_ALIVE, TimeUnit.MILLISECONDS);
+		this.pool.setDefaultMaxPerRoute(maxPerRoute);
+		this.pool.setMaxTotal(maxTotal);
+		// Providers close idle connections on their side, check before reusing
+		this.pool.setValidateAfterInactivity(2000);
+
+		RequestConfig config = RequestConfig.custom()
+				.setConnectTimeout(connectTimeout)
+				.setSocketTimeout(readTimeout)
+				.setConnectionRequestTimeout(connectTimeout)
+				.build();
+
+		this.client = HttpClients.custom()
+				.setConnectionManager(this.pool)
+				.setDefaultRequestConfig(config)
+				.setKeepAliveStrategy((response, context) -> {
+					long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+					return duration > 0 ? duration : KEEP_ALIVE;
+				})
+				.evictExpiredConnections()
+				.evictIdleConnections(KEEP_ALIVE, TimeUnit.MILLISECONDS)
+				.build();
+	}
+
+	/**
+	 * Execute a request and release its connection back to the pool
+	 *
+	 * @param request The request to send
+	 * @return The HTTP status code of the response
+	 * @throws IOException in case of a problem or the connection was aborted
+	 */
+	public int execute(HttpUriRequest request) throws IOException {
+		try (CloseableHttpResponse response = this.client.execute(request)) {
+			// Reading the body to the end is what lets the connection be reused
+			EntityUtils.consume(response.getEntity());
+			return response.getStatusLine().getStatusCode();
+		}
+	}
+
+	/**
+	 * @return Number of connections kept alive, waiting to be reused
+	 */
+	public int getIdleConnections() {
+		return this.pool.getTotalStats().getAvailable();
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.client.close();
+	}
+
+}
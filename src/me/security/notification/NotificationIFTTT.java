@@ -9,14 +9,13 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 
-import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.HttpClientBuilder;
 
 import com.google.gson.Gson;
 
+import me.security.logging.Logger;
+
 /**
  * Notification implementation of the IFFT api
  * 
@@ -26,9 +25,18 @@ import com.google.gson.Gson;
  */
 public class NotificationIFTTT extends NotificationSender {
 
+	private static final Logger LOG = Logger.get(NotificationIFTTT.class);
+
 	public static NotificationIFTTT generateFromFile() throws IOException {
+		return generateFromFile(NotificationHttpClient.getDefault());
+	}
+
+	/**
+	 * @param http The HTTP transport to send notifications with
+	 */
+	public static NotificationIFTTT generateFromFile(NotificationHttpClient http) throws IOException {
 		File iftttPwd = new File("ifttt.password");
-		System.out.println("Parsing " + iftttPwd.getCanonicalPath() + " file");
+		LOG.info("Parsing password file", "file", iftttPwd.getCanonicalPath());
 
 		if (!iftttPwd.exists() || !iftttPwd.canRead())
 			throw new FileNotFoundException("IFTTT password file doesn't exist or can't be readed");
@@ -38,15 +46,25 @@ public class NotificationIFTTT extends NotificationSender {
 		if (iftttInfo.size() != 2)
 			throw new FileNotFoundException("IFTTT password file doesn't respect defined format");
 
-		return new NotificationIFTTT(iftttInfo.get(0), iftttInfo.get(1));
+		return new NotificationIFTTT(iftttInfo.get(0), iftttInfo.get(1), http);
 	}
 
 	private static final Gson GSON = new Gson();
 
 	private String event;
 	private String key;
+	private final NotificationHttpClient http;
 
 	public NotificationIFTTT(String event, String key) {
+		this(event, key, NotificationHttpClient.getDefault());
+	}
+
+	/**
+	 * @param event The IFTTT event name to trigger
+	 * @param key   The IFTTT webhooks key (22 characters)
+	 * @param http  The HTTP transport to send notifications with
+	 */
+	public NotificationIFTTT(String event, String key, NotificationHttpClient http) {
 		if (event == null)
 			throw new IllegalArgumentException("Event must not be null");
 		if (event.length() == 0)
@@ -55,9 +73,12 @@ public class NotificationIFTTT extends NotificationSender {
 			throw new IllegalArgumentException("Key must not be null");
 		if (key.length() != 22)
 			throw new IllegalArgumentException("Key must be of size 22 characters");
+		if (http == null)
+			throw new IllegalArgumentException("HTTP client must not be null");
 
 		this.event = event;
 		this.key = key;
+		this.http = http;
 	}
 
 	@Override
@@ -73,14 +94,14 @@ public class NotificationIFTTT extends NotificationSender {
 			if (v == null || v.length() == 0)
 				throw new IllegalArgumentException("values contains null or empty value");
 
-		HttpClient httpClient = HttpClientBuilder.create().build();
 		HttpPost request = new HttpPost("https://maker.ifttt.com/trigger/" + this.event + "/with/key/" + this.key);
 		request.addHeader("content-type", "application/json; charset=UTF-8");
 		request.setEntity(new StringEntity(buildJson(values), StandardCharsets.UTF_8));
-		HttpResponse hr = httpClient.execute(request);
-
-		if (hr.getStatusLine().getStatusCode() != 200)
-			throw new Exception("Response from IFTTT doesn't validate!");
+		int status = this.http.execute(request);
+		if (status >= 400 && status < 500 && status != 429)// Refused for good, sending it again won't help
+			throw new IllegalArgumentException("Response from IFTTT doesn't validate : " + status);
+		if (status != 200)
+			throw new Exception("Response from IFTTT doesn't validate : " + status);
 	}
 
 	/**
@@ -100,6 +121,11 @@ public class NotificationIFTTT extends NotificationSender {
 		return GSON.toJson(map);
 	}
 
+	@Override
+	public String getKey() {
+		return "ifttt:" + this.event;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (o == null)
@@ -0,0 +1,353 @@
+package me.security.notification;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import me.security.logging.Logger;
+
+/**
+ * Append-only, memory-mapped journal of the notifications to deliver.<br>
+ * Every notification is written here before being dispatched and acknowledged
+ * once delivered, so the ones not delivered when the process stops are
+ * replayed at the next start.<br>
+ * Appending is a copy into the mapped file, the OS writes it back to disk :
+ * it survives a crash of the process, not a power loss unless SYNC is set.
+ * <br>
+ * Records are [int length][byte type][long seq][body], the length being
+ * written last so a record torn by a crash is never read back.
+ */
+public class NotificationOutbox implements AutoCloseable {
+
+	public static int INITIAL_SIZE = 1 << 20;
+	/**
+	 * Size of the file above which acknowledged records are compacted
+	 */
+	public static int COMPACT_SIZE = 256 << 10;
+	public static long COMPACT_PERIOD = 60000;
+	/**
+	 * Force every record to the disk, costs milliseconds on a SD card
+	 */
+	public static boolean SYNC = false;
+
+	private static final byte NOTIFICATION = 1;
+	private static final byte ACK = 2;
+	private static final int HEADER = 4 + 1 + 8;
+	private static final Logger LOG = Logger.get(NotificationOutbox.class);
+
+	private final File file;
+	private final Map<Long, Entry> pending;
+	private final ScheduledExecutorService compactor;
+	private FileChannel channel;
+	private MappedByteBuffer buffer;
+	private long nextSeq;
+	private int liveBytes;
+
+	/**
+	 * Open or create the outbox file, reading the notifications not
+	 * acknowledged yet
+	 *
+	 * @param file The journal file
+	 * @throws IOException If the file cannot be opened or mapped
+	 */
+	public NotificationOutbox(File file) throws IOException {
+		this.file = file;
+		this.pending = new LinkedHashMap<Long, Entry>();
+		this.nextSeq = 1;
+		open();
+		LOG.info("NotificationOutbox opened", "file", file, "pending", this.pending.size());
+
+		this.compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "NotificationOutbox-compactor");
+			t.setDaemon(true);
+			return t;
+		});
+		this.compactor.scheduleWithFixedDelay(() -> {
+			try {
+				if (needsCompaction())
+					compact();
+			} catch (IOException e) {
+				LOG.error("Unable to compact the outbox", e);
+			}
+		}, COMPACT_PERIOD, COMPACT_PERIOD, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Map the file and replay its records, the buffer is left positioned after
+	 * the last complete one
+	 */
+	private void open() throws IOException {
+		this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0,
+				Math.max(INITIAL_SIZE, this.channel.size()));
+		this.pending.clear();
+		this.liveBytes = 0;
+
+		while (this.buffer.remaining() >= HEADER) {
+			int start = this.buffer.position();
+			int length = this.buffer.getInt();
+			if (length <= 0 || length > this.buffer.remaining()) {
+				this.buffer.position(start);
+				break;
+			}
+			ByteBuffer record = this.buffer.slice();
+			record.limit(length);
+			this.buffer.position(this.buffer.position() + length);
+
+			byte type = record.get();
+			long seq = record.getLong();
+			this.nextSeq = Math.max(this.nextSeq, seq + 1);
+			if (type == NOTIFICATION) {
+				Entry entry = decode(seq, record);
+				this.pending.put(seq, entry);
+				this.liveBytes += entry.size;
+			} else if (type == ACK) {
+				Entry entry = this.pending.remove(seq);
+				if (entry != null)
+					this.liveBytes -= entry.size;
+			}
+		}
+	}
+
+	/**
+	 * Journal a notification before dispatching it
+	 *
+	 * @param senderKey The key of the NotificationSender to deliver it with
+	 * @param message   The message, null if sent as values
+	 * @param values    The values, null if sent as a message
+	 * @return The journaled notification, to acknowledge once delivered
+	 * @throws IOException              If the file cannot grow
+	 * @throws IllegalArgumentException If a value is longer than 65535 bytes
+	 */
+	public Entry append(String senderKey, String message, List<String> values) throws IOException {
+		List<byte[]> strings = new ArrayList<byte[]>();
+		strings.add(senderKey.getBytes(StandardCharsets.UTF_8));
+		if (message != null) {
+			strings.add(message.getBytes(StandardCharsets.UTF_8));
+		} else {
+			if (values.size() > 0xFF)
+				throw new IllegalArgumentException("Too many values to journal");
+			for (String v : values)
+				strings.add(v.getBytes(StandardCharsets.UTF_8));
+		}
+
+		int length = 1 + 8 + 1 + 1;
+		for (byte[] s : strings) {
+			if (s.length > 0xFFFF)
+				throw new IllegalArgumentException("Value too long to journal");
+			length += 2 + s.length;
+		}
+
+		synchronized (this) {
+			long seq = this.nextSeq++;
+			Entry entry = new Entry(seq, senderKey, message,
+					values == null ? null : new ArrayList<String>(values), 4 + length);
+			int start = reserve(4 + length);
+			this.buffer.put(NOTIFICATION).putLong(seq);
+			this.buffer.put((byte) (message != null ? 0 : 1)).put((byte) (strings.size() - 1));
+			for (byte[] s : strings)
+				this.buffer.putShort((short) s.length).put(s);
+			commit(start, length);
+
+			this.pending.put(seq, entry);
+			this.liveBytes += entry.size;
+			return entry;
+		}
+	}
+
+	/**
+	 * Mark a notification as delivered, it won't be replayed
+	 *
+	 * @param entry The journaled notification
+	 * @throws IOException If the file cannot grow
+	 */
+	public synchronized void ack(Entry entry) throws IOException {
+		if (this.pending.remove(entry.seq) == null)
+			return;
+		this.liveBytes -= entry.size;
+		int start = reserve(HEADER);
+		this.buffer.put(ACK).putLong(entry.seq);
+		commit(start, HEADER - 4);
+	}
+
+	/**
+	 * Make room for a record, the buffer is positioned after its length
+	 *
+	 * @return The position of the record
+	 */
+	private int reserve(int size) throws IOException {
+		if (this.buffer.remaining() < size + 4) {
+			int position = this.buffer.position();
+			long capacity = Math.max((long) this.buffer.capacity() * 2, position + size + 4L);
+			if (capacity > Integer.MAX_VALUE)
+				throw new IOException("NotificationOutbox is full");
+			this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+			this.buffer.position(position);
+		}
+		int start = this.buffer.position();
+		this.buffer.position(start + 4);
+		return start;
+	}
+
+	/**
+	 * Write the length of a record, making it visible to the next replay
+	 */
+	private void commit(int start, int length) {
+		this.buffer.putInt(start, length);
+		if (SYNC)
+			this.buffer.force();
+	}
+
+	/**
+	 * @return A copy of the notifications not acknowledged yet, oldest first
+	 */
+	public synchronized Collection<Entry> getPending() {
+		return new ArrayList<Entry>(this.pending.values());
+	}
+
+	/**
+	 * @return True if the file is big and mostly made of acknowledged records
+	 */
+	public synchronized boolean needsCompaction() {
+		return this.buffer.position() > COMPACT_SIZE && this.liveBytes < this.buffer.position() / 2;
+	}
+
+	/**
+	 * Rewrite the file with only the notifications not acknowledged yet.<br>
+	 * Appends wait during the rewrite, which only copies the pending records.
+	 *
+	 * @throws IOException If the new file cannot be written
+	 */
+	public synchronized void compact() throws IOException {
+		File tmp = new File(this.file.getPath() + ".tmp");
+		try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			for (Entry entry : this.pending.values()) {
+				ByteBuffer record = ByteBuffer.allocate(entry.size);
+				encode(entry, record);
+				record.flip();
+				while (record.hasRemaining())
+					out.write(record);
+			}
+			out.force(true);
+		}
+
+		int before = this.buffer.position();
+		this.channel.close();
+		Files.move(tmp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		open();
+		LOG.info("NotificationOutbox compacted", "before", before, "after", this.buffer.position());
+	}
+
+	private static void encode(Entry entry, ByteBuffer out) {
+		int start = out.position();
+		out.position(start + 4);
+		out.put(NOTIFICATION).putLong(entry.seq);
+		out.put((byte) (entry.message != null ? 0 : 1));
+		List<String> strings = entry.getValues();
+		out.put((byte) strings.size());
+		putString(out, entry.senderKey);
+		for (String s : strings)
+			putString(out, s);
+		out.putInt(start, out.position() - start - 4);
+	}
+
+	private static void putString(ByteBuffer out, String s) {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.putShort((short) bytes.length).put(bytes);
+	}
+
+	private static Entry decode(long seq, ByteBuffer record) {
+		int size = 4 + record.limit();
+		boolean isMessage = record.get() == 0;
+		int count = record.get() & 0xFF;
+		String senderKey = getString(record);
+		List<String> values = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++)
+			values.add(getString(record));
+		if (isMessage)
+			return new Entry(seq, senderKey, values.get(0), null, size);
+		return new Entry(seq, senderKey, null, values, size);
+	}
+
+	private static String getString(ByteBuffer in) {
+		byte[] bytes = new byte[in.getShort() & 0xFFFF];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Stop compacting and release the file, pending notifications stay in it
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		this.compactor.shutdownNow();
+		this.buffer.force();
+		this.channel.close();
+	}
+
+	/**
+	 * A journaled notification
+	 */
+	public static class Entry {
+
+		private final long seq;
+		private final String senderKey;
+		private final String message;
+		private final List<String> values;
+		private final int size;
+
+		private Entry(long seq, String senderKey, String message, List<String> values, int size) {
+			this.seq = seq;
+			this.senderKey = senderKey;
+			this.message = message;
+			this.values = values;
+			this.size = size;
+		}
+
+		public long getSeq() {
+			return this.seq;
+		}
+
+		/**
+		 * @return The key of the NotificationSender to deliver it with
+		 * @see NotificationSender#getKey()
+		 */
+		public String getSenderKey() {
+			return this.senderKey;
+		}
+
+		/**
+		 * @return The message, null if sent as values
+		 */
+		public String getMessage() {
+			return this.message;
+		}
+
+		/**
+		 * @return The values, or the message as a single value
+		 */
+		public List<String> getValues() {
+			return this.message != null ? Collections.singletonList(this.message) : this.values;
+		}
+
+	}
+
+}
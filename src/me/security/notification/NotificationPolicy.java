@@ -0,0 +1,113 @@
+package me.security.notification;
+
+/**
+ * How a NotificationWorker paces the notifications of its sender.<br>
+ * Notifications arriving less than window milliseconds after the previous
+ * send are merged in a single digest of at most maxBatch notifications, and
+ * sends are limited by a token bucket so a chattering sensor costs a few
+ * requests instead of dozens.<br>
+ * A failed send is retried with an exponential backoff, and a CircuitBreaker
+ * stops sending to a provider failing repeatedly until it recovers.
+ */
+public class NotificationPolicy {
+
+	public static final int DEFAULT_RETRIES = 3;
+	public static final long DEFAULT_BACKOFF = 1000;
+	public static final int DEFAULT_THRESHOLD = 5;
+	public static final long DEFAULT_COOLDOWN = 60000;
+
+	/**
+	 * 10 seconds window, 20 notifications per digest, bursts of 5 then one
+	 * request every 10 seconds
+	 */
+	public static final NotificationPolicy DEFAULT = new NotificationPolicy(10000, 20, 5, 10000);
+
+	private final long window;
+	private final int maxBatch;
+	private final int burst;
+	private final long refill;
+	private final int retries;
+	private final long backoff;
+	private final int threshold;
+	private final long cooldown;
+
+	/**
+	 * @param window   Milliseconds after a send during which notifications are
+	 *                 merged, 0 to send them one by one
+	 * @param maxBatch Maximum notifications merged in a digest
+	 * @param burst    Requests the provider accepts in a burst
+	 * @param refill   Milliseconds for the provider to accept one more request
+	 * @throws IllegalArgumentException window must not be negative, other values
+	 *                                  must be positive
+	 */
+	public NotificationPolicy(long window, int maxBatch, int burst, long refill) throws IllegalArgumentException {
+		this(window, maxBatch, burst, refill, DEFAULT_RETRIES, DEFAULT_BACKOFF, DEFAULT_THRESHOLD, DEFAULT_COOLDOWN);
+	}
+
+	/**
+	 * @param window    Milliseconds after a send during which notifications are
+	 *                  merged, 0 to send them one by one
+	 * @param maxBatch  Maximum notifications merged in a digest
+	 * @param burst     Requests the provider accepts in a burst
+	 * @param refill    Milliseconds for the provider to accept one more request
+	 * @param retries   Times a failed send is retried, 0 to never retry
+	 * @param backoff   Milliseconds before the first retry, doubled each retry
+	 * @param threshold Consecutive failed sends opening the circuit
+	 * @param cooldown  Milliseconds before probing a provider with an open
+	 *                  circuit
+	 * @throws IllegalArgumentException window and retries must not be negative,
+	 *                                  other values must be positive
+	 */
+	public NotificationPolicy(long window, int maxBatch, int burst, long refill, int retries, long backoff,
+			int threshold, long cooldown) throws IllegalArgumentException {
+		if (window < 0 || retries < 0)
+			throw new IllegalArgumentException("window and retries must not be negative");
+		if (maxBatch <= 0 || burst <= 0 || refill <= 0)
+			throw new IllegalArgumentException("maxBatch, burst and refill must be positive");
+		if (backoff <= 0 || threshold <= 0 || cooldown <= 0)
+			throw new IllegalArgumentException("backoff, threshold and cooldown must be positive");
+		this.window = window;
+		this.maxBatch = maxBatch;
+		this.burst = burst;
+		this.refill = refill;
+		this.retries = retries;
+		this.backoff = backoff;
+		this.threshold = threshold;
+		this.cooldown = cooldown;
+	}
+
+	public long getWindow() {
+		return this.window;
+	}
+
+	public int getMaxBatch() {
+		return this.maxBatch;
+	}
+
+	public int getRetries() {
+		return this.retries;
+	}
+
+	/**
+	 * @param retry The number of the retry, starting at 1
+	 * @return Milliseconds to wait before this retry
+	 */
+	public long getBackoff(int retry) {
+		return this.backoff << Math.min(retry - 1, 16);
+	}
+
+	/**
+	 * @return A new circuit breaker following this policy
+	 */
+	public CircuitBreaker createBreaker() {
+		return new CircuitBreaker(this.threshold, this.cooldown);
+	}
+
+	/**
+	 * @return A new token bucket following this policy
+	 */
+	public TokenBucket createBucket() {
+		return new TokenBucket(this.burst, this.refill);
+	}
+
+}
@@ -0,0 +1,73 @@
+package me.security.notification;
+
+/**
+ * Outcome of a notification sent by a NotificationWorker
+ */
+public class NotificationResult {
+
+	private final NotificationSender sender;
+	private final long latency;
+	private final Exception error;
+	private final int batched;
+
+	/**
+	 * @param sender  The sender who tried to deliver the notification
+	 * @param latency Nanoseconds between the trigger and the end of the delivery
+	 * @param error   The reason of the failure, null if delivered
+	 */
+	public NotificationResult(NotificationSender sender, long latency, Exception error) {
+		this(sender, latency, error, 1);
+	}
+
+	/**
+	 * @param sender  The sender who tried to deliver the notification
+	 * @param latency Nanoseconds between the trigger and the end of the delivery
+	 * @param error   The reason of the failure, null if delivered
+	 * @param batched Number of notifications merged in the same request
+	 */
+	public NotificationResult(NotificationSender sender, long latency, Exception error, int batched) {
+		this.sender = sender;
+		this.latency = latency;
+		this.error = error;
+		this.batched = batched;
+	}
+
+	public NotificationSender getSender() {
+		return this.sender;
+	}
+
+	/**
+	 * @return Milliseconds between the trigger and the end of the delivery,
+	 *         including the time spent waiting in queue
+	 */
+	public double getLatencyMillis() {
+		return this.latency / 1_000_000d;
+	}
+
+	public boolean isSuccess() {
+		return this.error == null;
+	}
+
+	/**
+	 * @return The reason of the failure, null if delivered
+	 */
+	public Exception getError() {
+		return this.error;
+	}
+
+	/**
+	 * @return Number of notifications merged in the same request, 1 if sent
+	 *         alone
+	 */
+	public int getBatched() {
+		return this.batched;
+	}
+
+	@Override
+	public String toString() {
+		return this.sender.getClass().getSimpleName() + (isSuccess() ? " delivered" : " failed (" + this.error + ")")
+				+ " in " + String.format("%.1f", getLatencyMillis()) + "ms"
+				+ (this.batched > 1 ? " with " + (this.batched - 1) + " others" : "");
+	}
+
+}
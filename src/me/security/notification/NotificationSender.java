@@ -1,6 +1,9 @@
 package me.security.notification;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * @author Geraldes Jocelyn
@@ -24,6 +27,47 @@ public abstract class NotificationSender {
 	 */
 	public abstract void trigger(List<String> values) throws Exception;
 
+	/**
+	 * @return Identify this sender across restarts, used to replay the
+	 *         notifications of the NotificationOutbox
+	 */
+	public String getKey() {
+		return getClass().getName();
+	}
+
+	/**
+	 * @return How notifications to this sender are merged and rate limited,
+	 *         providers with stricter limits override it
+	 */
+	public NotificationPolicy getPolicy() {
+		return NotificationPolicy.DEFAULT;
+	}
+
+	/**
+	 * Merge several notifications in a single one, value by value :<br>
+	 * each value is the distinct values at its position joined by ", ", the
+	 * first one is prefixed by the number of merged notifications.
+	 * 
+	 * @param notifications The values of each notification, at least 2
+	 * @return The values of the digest, never more than the longest notification
+	 */
+	public List<String> digest(List<List<String>> notifications) {
+		int size = 0;
+		for (List<String> values : notifications)
+			size = Math.max(size, values.size());
+
+		List<String> digest = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++) {
+			Set<String> distinct = new LinkedHashSet<String>();
+			for (List<String> values : notifications)
+				if (i < values.size())
+					distinct.add(values.get(i));
+			digest.add(String.join(", ", distinct));
+		}
+		digest.set(0, "(" + notifications.size() + ") " + digest.get(0));
+		return digest;
+	}
+
 	// Must have because of NotificationManager "contains" usage
 	public abstract boolean equals(Object o);
 
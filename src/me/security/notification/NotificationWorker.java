@@ -0,0 +1,346 @@
+package me.security.notification;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import me.security.logging.Logger;
+import me.security.metrics.Counter;
+import me.security.metrics.LatencyHistogram;
+import me.security.metrics.MetricsRegistry;
+
+/**
+ * Deliver the notifications of a single NotificationSender on its own thread.
+ * <br>
+ * Senders do blocking HTTPS calls, giving each one its own queue and thread
+ * means triggering never waits for a provider and a slow provider never
+ * delays the others.<br>
+ * The first notification is sent at once, the ones arriving during the
+ * window of the NotificationPolicy are merged in a digest sent when it ends,
+ * or earlier if maxBatch is reached, as soon as the token bucket allows.<br>
+ * A failed send is retried with an exponential backoff, notifications
+ * arriving meanwhile join the retried digest. While the circuit breaker of
+ * the sender is open, notifications are kept queued until it half-opens.
+ */
+public class NotificationWorker implements AutoCloseable {
+
+	public static final int DEFAULT_CAPACITY = 256;
+
+	private static final Logger LOG = Logger.get(NotificationWorker.class);
+
+	private final NotificationSender sender;
+	private final BlockingQueue<Task> queue;
+	private final NotificationPolicy policy;
+	private final long window;
+	private final int maxBatch;
+	private final TokenBucket bucket;
+	private final CircuitBreaker breaker;
+	private final Thread thread;
+	private final AtomicLong requests;
+	private final AtomicLong delivered;
+	private final AtomicLong failed;
+	private final AtomicLong totalLatency;
+	private final LatencyHistogram sendLatency;
+	private final Counter sendFailures;
+	private volatile boolean enabled;
+
+	/**
+	 * Start a worker thread for this sender, following the policy of the sender
+	 *
+	 * @param sender   The sender to deliver notifications with
+	 * @param capacity Maximum number of notifications waiting to be delivered
+	 * @throws IllegalArgumentException sender must not be null and capacity must
+	 *                                  be positive
+	 */
+	public NotificationWorker(NotificationSender sender, int capacity) throws IllegalArgumentException {
+		this(sender, capacity, sender == null ? null : sender.getPolicy());
+	}
+
+	/**
+	 * Start a worker thread for this sender
+	 *
+	 * @param sender   The sender to deliver notifications with
+	 * @param capacity Maximum number of notifications waiting to be delivered
+	 * @param policy   How notifications are merged and rate limited
+	 * @throws IllegalArgumentException sender and policy must not be null and
+	 *                                  capacity must be positive
+	 */
+	public NotificationWorker(NotificationSender sender, int capacity, NotificationPolicy policy)
+			throws IllegalArgumentException {
+		if (sender == null)
+			throw new IllegalArgumentException("Null NotificationSender");
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity must be positive");
+		if (policy == null)
+			throw new IllegalArgumentException("Null NotificationPolicy");
+
+		this.sender = sender;
+		this.queue = new LinkedBlockingQueue<Task>(capacity);
+		this.policy = policy;
+		this.window = TimeUnit.MILLISECONDS.toNanos(policy.getWindow());
+		this.maxBatch = policy.getMaxBatch();
+		this.bucket = policy.createBucket();
+		this.breaker = policy.createBreaker();
+		this.requests = new AtomicLong();
+		this.delivered = new AtomicLong();
+		this.failed = new AtomicLong();
+		this.totalLatency = new AtomicLong();
+		String provider = sender.getClass().getSimpleName();
+		this.sendLatency = MetricsRegistry.DEFAULT.histogram("notification_send_seconds",
+				"Duration of the requests to the notification providers", "provider", provider);
+		this.sendFailures = MetricsRegistry.DEFAULT.counter("notification_send_failures_total",
+				"Requests to the notification providers that failed, retries included", "provider", provider);
+		this.enabled = true;
+
+		this.thread = new Thread(this::run, "Notification-" + sender.getClass().getSimpleName());
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Queue a message, it will be sent with trigger(String)
+	 *
+	 * @param message The message to send
+	 * @return Completed once delivered or failed, never exceptionally. Failed
+	 *         with a RejectedExecutionException if the queue is full or the
+	 *         worker closed
+	 */
+	public CompletableFuture<NotificationResult> submit(String message) {
+		return submit(new Task(message, null));
+	}
+
+	/**
+	 * Queue some values, they will be sent with trigger(List)
+	 *
+	 * @param values The values to send
+	 * @return Completed once delivered or failed, never exceptionally
+	 */
+	public CompletableFuture<NotificationResult> submit(List<String> values) {
+		return submit(new Task(null, values));
+	}
+
+	private CompletableFuture<NotificationResult> submit(Task task) {
+		if (!this.enabled || !this.queue.offer(task)) {
+			this.failed.incrementAndGet();
+			task.complete(new RejectedExecutionException("Notification queue of "
+					+ this.sender.getClass().getSimpleName() + " is full or closed"), 1);
+		}
+		return task.future;
+	}
+
+	private void run() {
+		List<Task> batch = new ArrayList<Task>(this.maxBatch);
+		long lastSend = System.nanoTime() - this.window;
+
+		while (this.enabled) {
+			try {
+				batch.add(this.queue.take());
+				collect(batch, lastSend + this.window);
+				send(batch);
+			} catch (InterruptedException e) {
+				complete(batch, new RejectedExecutionException("NotificationWorker closed"));
+				break;
+			}
+			lastSend = System.nanoTime();
+			batch.clear();
+		}
+
+		Task task;
+		while ((task = this.queue.poll()) != null)
+			task.complete(new RejectedExecutionException("NotificationWorker closed"), 1);
+	}
+
+	/**
+	 * Add the notifications arriving until end to batch, then the ones already
+	 * queued, stopping at maxBatch
+	 */
+	private void collect(List<Task> batch, long end) throws InterruptedException {
+		long remaining;
+		while (batch.size() < this.maxBatch && (remaining = end - System.nanoTime()) > 0) {
+			Task task = this.queue.poll(remaining, TimeUnit.NANOSECONDS);
+			if (task == null)
+				return;
+			batch.add(task);
+		}
+		Task task;
+		while (batch.size() < this.maxBatch && (task = this.queue.poll()) != null)
+			batch.add(task);
+	}
+
+	/**
+	 * Wait until the circuit breaker and the token bucket allow a request,
+	 * merging the notifications arriving meanwhile
+	 */
+	private void awaitProvider(List<Task> batch) throws InterruptedException {
+		long wait;
+		while ((wait = this.breaker.getWait()) > 0 || (wait = this.bucket.tryAcquire()) > 0) {
+			if (batch.size() >= this.maxBatch) {
+				TimeUnit.NANOSECONDS.sleep(wait);
+			} else {
+				collect(batch, System.nanoTime() + wait);
+			}
+		}
+	}
+
+	/**
+	 * Send the batch, retrying transient failures, then complete it
+	 */
+	private void send(List<Task> batch) throws InterruptedException {
+		Exception error = null;
+		for (int retry = 0;; retry++) {
+			if (retry > 0) {
+				long backoff = this.policy.getBackoff(retry);
+				// Jitter to not retry in lockstep with the other senders
+				Thread.sleep(backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+			}
+			awaitProvider(batch);
+
+			try {
+				this.requests.incrementAndGet();
+				deliver(batch);
+				this.breaker.onSuccess();
+				error = null;
+				break;
+			} catch (IllegalArgumentException e) {
+				error = e;// The notification itself is invalid, retrying won't help
+				break;
+			} catch (Exception e) {
+				error = e;
+				this.breaker.onFailure();
+			}
+
+			if (retry >= this.policy.getRetries())
+				break;
+			LOG.warn("Notification failed, retrying", "provider", this.sender.getClass().getSimpleName(), "error",
+					error, "retry", retry + 1, "retries", this.policy.getRetries());
+		}
+
+		if (error != null)
+			LOG.error("Notification failed", error, "provider", this.sender.getClass().getSimpleName());
+		complete(batch, error);
+	}
+
+	/**
+	 * Send the batch in a single request, as is if it holds a single
+	 * notification, as a digest otherwise
+	 */
+	private void deliver(List<Task> batch) throws Exception {
+		long start = System.nanoTime();
+		try {
+			if (batch.size() == 1) {
+				Task task = batch.get(0);
+				if (task.message != null) {
+					this.sender.trigger(task.message);
+				} else {
+					this.sender.trigger(task.values);
+				}
+			} else {
+				List<List<String>> notifications = new ArrayList<List<String>>(batch.size());
+				for (Task task : batch)
+					notifications.add(task.getValues());
+				this.sender.trigger(this.sender.digest(notifications));
+			}
+		} catch (Exception e) {
+			this.sendFailures.increment();
+			throw e;
+		} finally {
+			this.sendLatency.recordSince(start);
+		}
+	}
+
+	private void complete(List<Task> batch, Exception error) {
+		// Statistics are updated before completing so callers see them
+		long now = System.nanoTime();
+		for (Task task : batch)
+			this.totalLatency.addAndGet(now - task.queued);
+		(error == null ? this.delivered : this.failed).addAndGet(batch.size());
+		for (Task task : batch)
+			task.complete(error, batch.size());
+	}
+
+	public NotificationSender getSender() {
+		return this.sender;
+	}
+
+	/**
+	 * @return Health of the provider of this sender
+	 */
+	public CircuitBreaker.State getState() {
+		return this.breaker.getState();
+	}
+
+	/**
+	 * @return Number of notifications waiting to be delivered
+	 */
+	public int getPending() {
+		return this.queue.size();
+	}
+
+	/**
+	 * @return Number of requests sent to the provider, digests count as one
+	 */
+	public long getRequests() {
+		return this.requests.get();
+	}
+
+	public long getDelivered() {
+		return this.delivered.get();
+	}
+
+	public long getFailed() {
+		return this.failed.get();
+	}
+
+	/**
+	 * @return Average milliseconds from trigger to delivery or failure
+	 */
+	public double getAverageLatencyMillis() {
+		long count = this.delivered.get() + this.failed.get();
+		return count == 0 ? 0 : this.totalLatency.get() / 1_000_000d / count;
+	}
+
+	/**
+	 * Stop the worker thread, notifications still queued are failed
+	 */
+	@Override
+	public void close() {
+		this.enabled = false;
+		this.thread.interrupt();
+	}
+
+	/**
+	 * A notification waiting in queue
+	 */
+	private class Task {
+
+		private final String message;
+		private final List<String> values;
+		private final long queued;
+		private final CompletableFuture<NotificationResult> future;
+
+		private Task(String message, List<String> values) {
+			this.message = message;
+			this.values = values;
+			this.queued = System.nanoTime();
+			this.future = new CompletableFuture<NotificationResult>();
+		}
+
+		private List<String> getValues() {
+			return this.message != null ? Collections.singletonList(this.message) : this.values;
+		}
+
+		private void complete(Exception error, int batched) {
+			this.future.complete(new NotificationResult(NotificationWorker.this.sender,
+					System.nanoTime() - this.queued, error, batched));
+		}
+
+	}
+
+}
@@ -0,0 +1,55 @@
+package me.security.notification;
+
+/**
+ * Classic token bucket : up to capacity requests can be sent at once, then one
+ * every refill period.
+ */
+public class TokenBucket {
+
+	private final int capacity;
+	private final long refillNanos;
+	private double tokens;
+	private long lastRefill;
+
+	/**
+	 * Create a full bucket
+	 *
+	 * @param capacity     Maximum number of requests sent in a burst
+	 * @param refillMillis Milliseconds for a single token to come back
+	 * @throws IllegalArgumentException capacity and refillMillis must be positive
+	 */
+	public TokenBucket(int capacity, long refillMillis) throws IllegalArgumentException {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity must be positive");
+		if (refillMillis <= 0)
+			throw new IllegalArgumentException("refillMillis must be positive");
+		this.capacity = capacity;
+		this.refillNanos = refillMillis * 1_000_000;
+		this.tokens = capacity;
+		this.lastRefill = System.nanoTime();
+	}
+
+	/**
+	 * Take a token if one is available
+	 *
+	 * @return 0 if a token was taken, otherwise the nanoseconds to wait before
+	 *         the next one
+	 */
+	public synchronized long tryAcquire() {
+		long now = System.nanoTime();
+		this.tokens = Math.min(this.capacity, this.tokens + (double) (now - this.lastRefill) / this.refillNanos);
+		this.lastRefill = now;
+
+		if (this.tokens >= 1) {
+			this.tokens--;
+			return 0;
+		}
+		return (long) Math.ceil((1 - this.tokens) * this.refillNanos);
+	}
+
+	public synchronized int getAvailable() {
+		return (int) Math.min(this.capacity,
+				this.tokens + (double) (System.nanoTime() - this.lastRefill) / this.refillNanos);
+	}
+
+}
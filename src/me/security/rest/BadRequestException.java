@@ -0,0 +1,26 @@
+package me.security.rest;
+
+/**
+ * Thrown by HttpRequestParser when received bytes can't be a valid request,
+ * the connection must then be answered with getResponse and closed.
+ */
+public class BadRequestException extends IllegalArgumentException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final transient RestResponse response;
+
+	/**
+	 * @param response The error answer to send before closing the connection
+	 * @param message  The specific problem encountered
+	 */
+	public BadRequestException(RestResponse response, String message) {
+		super(message);
+		this.response = response;
+	}
+
+	public RestResponse getResponse() {
+		return this.response;
+	}
+
+}
@@ -0,0 +1,231 @@
+package me.security.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import me.security.logging.Logger;
+
+/**
+ * Transport reading each connection with blocking sockets, every connection
+ * is handled by a ConnectionExecutor.<br>
+ * A kept alive connection holds its executor slot until the client closes it
+ * or stays silent for idleTimeout, an event stream holds it until one side
+ * closes it.
+ */
+public class BlockingRestTransport extends RestTransport {
+
+	public static final int DEFAULT_IDLE_TIMEOUT = 15000;
+	public static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+
+	private static final Logger LOG = Logger.get(BlockingRestTransport.class);
+
+	private final ConnectionExecutor executor;
+	private final int idleTimeout;
+	private ServerSocket server;
+	private RestHandler handler;
+	private volatile boolean enabled;
+
+	/**
+	 * @param executor The strategy running accepted connections
+	 * @throws IllegalArgumentException executor must not be null
+	 */
+	public BlockingRestTransport(ConnectionExecutor executor) throws IllegalArgumentException {
+		this(executor, DEFAULT_IDLE_TIMEOUT);
+	}
+
+	/**
+	 * @param executor    The strategy running accepted connections
+	 * @param idleTimeout Milliseconds a kept alive connection may stay silent
+	 *                    before being closed
+	 * @throws IllegalArgumentException executor must not be null and idleTimeout
+	 *                                  must be positive
+	 */
+	public BlockingRestTransport(ConnectionExecutor executor, int idleTimeout) throws IllegalArgumentException {
+		if (executor == null)
+			throw new IllegalArgumentException("ConnectionExecutor must not be null");
+		if (idleTimeout <= 0)
+			throw new IllegalArgumentException("idleTimeout must be positive");
+		this.executor = executor;
+		this.idleTimeout = idleTimeout;
+	}
+
+	@Override
+	public int start(int port, int backlog, RestHandler handler)
+			throws IOException, IllegalArgumentException, IllegalStateException {
+		if (handler == null)
+			throw new IllegalArgumentException("Handler must not be null");
+		if (this.server != null)
+			throw new IllegalStateException("Transport already started");
+
+		this.handler = handler;
+		this.server = new ServerSocket(port, backlog);
+		this.enabled = true;
+
+		new Thread(() -> {
+			while (this.enabled) {
+				try {
+					Socket client = this.server.accept();
+					if (!this.executor.execute(new ConnectionThread(client))) {
+						sendUnavailable(client);
+					}
+				} catch (Exception ex) {
+					if (this.enabled)
+						LOG.error("Unable to accept a connection", ex);
+				}
+			}
+		}, "RestAPI-Accept").start();
+
+		return this.server.getLocalPort();
+	}
+
+	/**
+	 * Answer 503 Service Unavailable and close the socket, used when executor is
+	 * full so the client doesn't wait on a connection nobody will handle
+	 *
+	 * @param client The rejected socket
+	 */
+	private void sendUnavailable(Socket client) {
+		try (OutputStream output = client.getOutputStream()) {
+			RestResponse.unavailable().writeTo(output, false);
+		} catch (IOException e) {
+			LOG.debug("Unable to refuse a connection", e);
+		}
+	}
+
+	@Override
+	public int getOpenConnections() {
+		return this.executor.getActiveConnections();
+	}
+
+	@Override
+	public void close() {
+		this.enabled = false;
+		this.executor.close();
+		try {
+			if (this.server != null)
+				this.server.close();
+		} catch (IOException e) {
+			LOG.warn("Unable to close the server", e);
+		}
+	}
+
+	/**
+	 * Manage a specific connection from a single socket, requests are answered in
+	 * order until the connection is closed
+	 */
+	private class ConnectionThread implements Runnable {
+
+		private final Socket client;
+		private final HttpRequestParser parser;
+		private final ByteBuffer input;
+
+		public ConnectionThread(Socket client) {
+			this.client = client;
+			this.parser = new HttpRequestParser();
+			this.input = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+		}
+
+		public void run() {
+			InputStream in = null;
+			OutputStream output = null;
+
+			try {
+				this.client.setSoTimeout(BlockingRestTransport.this.idleTimeout);
+				this.client.setTcpNoDelay(true);
+				in = this.client.getInputStream();
+				output = this.client.getOutputStream();
+			} catch (IOException e) {
+				LOG.warn("Unable to open a connection", e);
+				close();
+				return;
+			}
+
+			try {
+				boolean keepAlive = true;
+				while (keepAlive && BlockingRestTransport.this.enabled) {
+					RestRequest request = next(in);
+					if (request == null)
+						return;// Client closed the connection
+
+					keepAlive = request.isKeepAlive();
+					RestResponse response = BlockingRestTransport.this.handler.handle(request);
+					if (response instanceof StreamResponse) {
+						stream(output, (StreamResponse) response);
+						return;
+					}
+					response.writeTo(output, keepAlive);
+				}
+			} catch (BadRequestException e) {
+				try {
+					e.getResponse().writeTo(output, false);
+				} catch (IOException ex) {
+					// Client already left
+				}
+			} catch (SocketTimeoutException e) {
+				// Idle connection reaped
+			} catch (IOException e) {
+				// Client left, nothing to answer
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (Exception e) {
+				LOG.error("Connection failed", e);
+			} finally {
+				close();
+			}
+		}
+
+		/**
+		 * Block until a whole request is received
+		 *
+		 * @return The next request, null if the client closed the connection
+		 */
+		private RestRequest next(InputStream in) throws IOException, BadRequestException {
+			RestRequest request;
+			while ((request = this.parser.parse(this.input)) == null) {
+				int read = in.read(this.input.array(), this.input.position(), this.input.remaining());
+				if (read < 0)
+					return null;
+				this.input.position(this.input.position() + read);
+			}
+			return request;
+		}
+
+		/**
+		 * Write events to this connection until the subscriber or the connection is
+		 * closed
+		 */
+		private void stream(OutputStream output, StreamResponse response) throws IOException, InterruptedException {
+			EventSubscriber subscriber = response.getSubscriber();
+			try {
+				response.writeTo(output, false);
+				while (!subscriber.isClosed() && BlockingRestTransport.this.enabled) {
+					byte[] frame = subscriber.poll(1, TimeUnit.SECONDS);
+					if (frame == null)
+						continue;
+					do {
+						output.write(frame);
+					} while ((frame = subscriber.poll()) != null);
+					output.flush();
+				}
+			} finally {
+				subscriber.close();
+			}
+		}
+
+		private void close() {
+			try {
+				this.client.close();
+			} catch (IOException e) {
+				LOG.debug("Unable to close a connection", e);
+			}
+		}
+
+	}
+
+}
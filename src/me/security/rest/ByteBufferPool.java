@@ -0,0 +1,69 @@
+package me.security.rest;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Pool of direct ByteBuffer of the same size.<br>
+ * Allocating direct buffers is slow and their memory is only freed by the GC,
+ * so buffers are recycled instead of being allocated for each read.<br>
+ * <b>Note:</b><br>
+ * This pool is not thread safe, it is meant to be owned by a single event loop.
+ */
+public class ByteBufferPool {
+
+	private final ArrayDeque<ByteBuffer> free;
+	private final int bufferSize;
+	private final int maxPooled;
+
+	/**
+	 * @param bufferSize Size in bytes of every buffer
+	 * @param maxPooled  Maximum number of idle buffers kept for reuse
+	 * @throws IllegalArgumentException bufferSize must be positive and maxPooled
+	 *                                  must not be negative
+	 */
+	public ByteBufferPool(int bufferSize, int maxPooled) throws IllegalArgumentException {
+		if (bufferSize <= 0)
+			throw new IllegalArgumentException("bufferSize must be positive");
+		if (maxPooled < 0)
+			throw new IllegalArgumentException("maxPooled must not be negative");
+
+		this.free = new ArrayDeque<ByteBuffer>(maxPooled);
+		this.bufferSize = bufferSize;
+		this.maxPooled = maxPooled;
+	}
+
+	/**
+	 * @return A cleared buffer, taken from the pool if one is available
+	 */
+	public ByteBuffer acquire() {
+		ByteBuffer buffer = this.free.poll();
+		return buffer != null ? buffer : ByteBuffer.allocateDirect(this.bufferSize);
+	}
+
+	/**
+	 * Give back a buffer obtained with acquire, it must not be used afterwards
+	 *
+	 * @param buffer The buffer to recycle, ignored if null
+	 */
+	public void release(ByteBuffer buffer) {
+		if (buffer == null || buffer.capacity() != this.bufferSize)
+			return;
+		if (this.free.size() < this.maxPooled) {
+			buffer.clear();
+			this.free.offer(buffer);
+		}
+	}
+
+	public int getBufferSize() {
+		return this.bufferSize;
+	}
+
+	/**
+	 * @return The number of idle buffers ready to be acquired
+	 */
+	public int getPooledCount() {
+		return this.free.size();
+	}
+
+}
@@ -0,0 +1,76 @@
+package me.security.rest;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turn ASCII bytes into String without allocating when the same bytes were
+ * already seen.<br>
+ * The mobile app always sends the same few urls, methods and header values so
+ * a small direct mapped table is enough : on collision the slot is simply
+ * replaced. Entries are immutable, the table can be shared by every thread
+ * without locking.
+ */
+final class ByteStringCache {
+
+	private final Entry[] table;
+	private final int mask;
+
+	/**
+	 * @param size Number of slots, rounded up to a power of two
+	 */
+	ByteStringCache(int size) {
+		int capacity = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+		this.table = new Entry[capacity];
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * @param in   The buffer holding the bytes
+	 * @param from Index of the first byte (inclusive)
+	 * @param to   Index of the last byte (exclusive)
+	 * @return The String decoded from these bytes, the same instance as the last
+	 *         call with identical bytes if it is still cached
+	 */
+	String get(ByteBuffer in, int from, int to) {
+		int hash = 0;
+		for (int i = from; i < to; i++)
+			hash = 31 * hash + in.get(i);
+
+		int slot = (hash ^ (hash >>> 16)) & this.mask;
+		Entry entry = this.table[slot];
+		if (entry != null && entry.hash == hash && entry.matches(in, from, to))
+			return entry.value;
+
+		byte[] bytes = new byte[to - from];
+		for (int i = from; i < to; i++)
+			bytes[i - from] = in.get(i);
+		entry = new Entry(hash, bytes);
+		this.table[slot] = entry;
+		return entry.value;
+	}
+
+	private static final class Entry {
+
+		private final int hash;
+		private final byte[] bytes;
+		private final String value;
+
+		private Entry(int hash, byte[] bytes) {
+			this.hash = hash;
+			this.bytes = bytes;
+			this.value = new String(bytes, StandardCharsets.ISO_8859_1);
+		}
+
+		private boolean matches(ByteBuffer in, int from, int to) {
+			if (to - from != this.bytes.length)
+				return false;
+			for (int i = from; i < to; i++)
+				if (in.get(i) != this.bytes[i - from])
+					return false;
+			return true;
+		}
+
+	}
+
+}
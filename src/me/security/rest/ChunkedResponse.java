@@ -0,0 +1,166 @@
+package me.security.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import me.security.logging.Logger;
+
+/**
+ * An answer whose body is produced while it is written, framed with
+ * Transfer-Encoding: chunked so the connection can still be kept alive.<br>
+ * The blocking transport writes every chunk to the socket as soon as it is
+ * full, so a large body is never held in memory. The NIO transport cannot
+ * block its event loop and encodes the whole body on its worker thread.<br>
+ * If the body fails half way through, the connection is closed without the
+ * last chunk so the client knows the answer is incomplete.
+ */
+public class ChunkedResponse extends RestResponse {
+
+	public static int CHUNK_SIZE = 8192;
+
+	private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.ISO_8859_1);
+	private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+	private static final Logger LOG = Logger.get(ChunkedResponse.class);
+
+	/**
+	 * Write the body of the answer
+	 */
+	@FunctionalInterface
+	public interface BodyWriter {
+
+		/**
+		 * @param output Where to write the body, buffered and chunked
+		 * @throws IOException If the body cannot be produced or the client left
+		 */
+		void write(OutputStream output) throws IOException;
+
+	}
+
+	private final BodyWriter writer;
+
+	/**
+	 * OK 200 with a json body
+	 *
+	 * @param writer Write the json
+	 * @throws IllegalArgumentException writer must not be null
+	 */
+	public ChunkedResponse(BodyWriter writer) throws IllegalArgumentException {
+		this(200, "OK", "application/json", writer);
+	}
+
+	/**
+	 * @param status      The HTTP status code
+	 * @param reason      The reason phrase following the status code
+	 * @param contentType The Content-Type header, null if none
+	 * @param writer      Write the body
+	 * @throws IllegalArgumentException writer must not be null
+	 */
+	public ChunkedResponse(int status, String reason, String contentType, BodyWriter writer)
+			throws IllegalArgumentException {
+		super(status, reason, contentType, false, "", "Transfer-Encoding: chunked");
+		if (writer == null)
+			throw new IllegalArgumentException("BodyWriter can't be null");
+		this.writer = writer;
+	}
+
+	/**
+	 * Encode the whole body, called by the NIO transport from a worker thread
+	 */
+	@Override
+	public ByteBuffer[] toBuffers(boolean keepAlive) {
+		ByteArrayOutputStream body = new ByteArrayOutputStream(CHUNK_SIZE);
+		try {
+			writeBody(body);
+		} catch (IOException e) {
+			LOG.error("Unable to write a response body", e);
+			return RestResponse.error(e.getMessage()).toBuffers(keepAlive);
+		}
+		ByteBuffer[] head = super.toBuffers(keepAlive);
+		head[head.length - 1] = ByteBuffer.wrap(body.toByteArray());
+		return head;
+	}
+
+	@Override
+	public void writeTo(OutputStream output, boolean keepAlive) throws IOException {
+		super.writeTo(output, keepAlive);
+		writeBody(output);
+		output.flush();
+	}
+
+	private void writeBody(OutputStream output) throws IOException {
+		ChunkedOutputStream chunked = new ChunkedOutputStream(output);
+		this.writer.write(chunked);
+		chunked.finish();
+	}
+
+	/**
+	 * Buffer the body and write it as chunks of CHUNK_SIZE bytes
+	 */
+	private static class ChunkedOutputStream extends FilterOutputStream {
+
+		private final byte[] buffer;
+		private int count;
+
+		private ChunkedOutputStream(OutputStream output) {
+			super(output);
+			this.buffer = new byte[CHUNK_SIZE];
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (this.count == this.buffer.length)
+				writeChunk();
+			this.buffer[this.count++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				if (this.count == this.buffer.length)
+					writeChunk();
+				int n = Math.min(len, this.buffer.length - this.count);
+				System.arraycopy(b, off, this.buffer, this.count, n);
+				this.count += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		/**
+		 * Only full chunks are written, writers flushing after every row would
+		 * otherwise send tiny packets
+		 */
+		@Override
+		public void flush() {
+		}
+
+		private void writeChunk() throws IOException {
+			if (this.count == 0)
+				return;
+			this.out.write(Integer.toHexString(this.count).getBytes(StandardCharsets.ISO_8859_1));
+			this.out.write(CRLF);
+			this.out.write(this.buffer, 0, this.count);
+			this.out.write(CRLF);
+			this.out.flush();
+			this.count = 0;
+		}
+
+		private void finish() throws IOException {
+			writeChunk();
+			this.out.write(LAST_CHUNK);
+		}
+
+		/**
+		 * The socket stays open for the next request
+		 */
+		@Override
+		public void close() {
+		}
+
+	}
+
+}
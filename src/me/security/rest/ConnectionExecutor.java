@@ -0,0 +1,52 @@
+package me.security.rest;
+
+/**
+ * Strategy used by RestAPIManager to run accepted connections.<br>
+ * An implementation must never create threads without limit, when it can't
+ * take a new connection it must refuse it so the caller can answer with a
+ * <b>503 Service Unavailable</b> instead of waiting.
+ *
+ * @see me.security.managers.RestAPIManager
+ */
+public abstract class ConnectionExecutor implements AutoCloseable {
+
+	/**
+	 * Create the best available ConnectionExecutor for this JVM :<br>
+	 * A virtual thread per connection if the runtime supports it, otherwise a
+	 * bounded pool of platform threads.
+	 *
+	 * @param maxConnections Maximum number of connections handled at the same time
+	 * @param backlog        Maximum number of connections waiting for a free slot
+	 * @return The created ConnectionExecutor
+	 * @throws IllegalArgumentException maxConnections must be positive and backlog
+	 *                                  must not be negative
+	 */
+	public static ConnectionExecutor create(int maxConnections, int backlog) throws IllegalArgumentException {
+		if (VirtualThreadConnectionExecutor.isSupported())
+			return new VirtualThreadConnectionExecutor(maxConnections, backlog);
+		return new PooledConnectionExecutor(maxConnections, backlog);
+	}
+
+	/**
+	 * Run the connection handler asynchronously if a slot is available
+	 *
+	 * @param connection The handler of an accepted connection
+	 * @return False if the connection was rejected because every slot and the
+	 *         backlog are full, the handler will then never be run
+	 * @throws IllegalArgumentException connection must not be null
+	 */
+	public abstract boolean execute(Runnable connection) throws IllegalArgumentException;
+
+	/**
+	 * @return The number of connections currently handled or waiting in backlog
+	 */
+	public abstract int getActiveConnections();
+
+	/**
+	 * Stop accepting new connections, connections already running are not
+	 * interrupted.
+	 */
+	@Override
+	public abstract void close();
+
+}
@@ -0,0 +1,114 @@
+package me.security.rest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan out server events to every subscribed client as Server-Sent Events.<br>
+ * An event is encoded once and the same bytes are queued for every
+ * subscriber. A comment is also sent regularly so dead connections are
+ * detected and proxies don't close idle streams.
+ *
+ * @see EventSubscriber
+ */
+public class EventBus implements AutoCloseable {
+
+	public static final int DEFAULT_CAPACITY = 64;
+	public static final int HEARTBEAT_SECONDS = 15;
+
+	private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+	private final List<EventSubscriber> subscribers;
+	private final int capacity;
+	private final ScheduledExecutorService heartbeat;
+
+	/**
+	 * @param capacity Number of events a subscriber may have pending before being
+	 *                 disconnected
+	 * @throws IllegalArgumentException capacity must be positive
+	 */
+	public EventBus(int capacity) throws IllegalArgumentException {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity must be positive");
+
+		this.subscribers = new CopyOnWriteArrayList<EventSubscriber>();
+		this.capacity = capacity;
+		this.heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "EventBus-Heartbeat");
+			t.setDaemon(true);
+			return t;
+		});
+		this.heartbeat.scheduleAtFixedRate(() -> broadcast(HEARTBEAT), HEARTBEAT_SECONDS, HEARTBEAT_SECONDS,
+				TimeUnit.SECONDS);
+	}
+
+	/**
+	 * @return A new subscriber receiving every event published from now on
+	 */
+	public EventSubscriber subscribe() {
+		EventSubscriber subscriber = new EventSubscriber(this, this.capacity);
+		this.subscribers.add(subscriber);
+		return subscriber;
+	}
+
+	void unsubscribe(EventSubscriber subscriber) {
+		this.subscribers.remove(subscriber);
+	}
+
+	/**
+	 * Send an event to every subscriber
+	 *
+	 * @param event The event name (alarm, sensor, log...)
+	 * @param data  The json data of this event, on a single line
+	 * @throws IllegalArgumentException event and data must not be null
+	 */
+	public void publish(String event, String data) throws IllegalArgumentException {
+		broadcast(encode(event, data));
+	}
+
+	/**
+	 * Queue an event only for one subscriber, used to send the current state to
+	 * a new client
+	 *
+	 * @param subscriber The targeted subscriber
+	 * @param event      The event name
+	 * @param data       The json data of this event, on a single line
+	 * @throws IllegalArgumentException event and data must not be null
+	 */
+	public void send(EventSubscriber subscriber, String event, String data) throws IllegalArgumentException {
+		subscriber.offer(encode(event, data));
+	}
+
+	public int getSubscriberCount() {
+		return this.subscribers.size();
+	}
+
+	/**
+	 * Close every subscriber and stop the heartbeat
+	 */
+	@Override
+	public void close() {
+		this.heartbeat.shutdownNow();
+		for (EventSubscriber subscriber : this.subscribers)
+			subscriber.close();
+	}
+
+	private void broadcast(byte[] frame) {
+		for (EventSubscriber subscriber : this.subscribers)
+			subscriber.offer(frame);
+	}
+
+	private static byte[] encode(String event, String data) throws IllegalArgumentException {
+		if (event == null)
+			throw new IllegalArgumentException("Event can't be null");
+		if (data == null)
+			throw new IllegalArgumentException("Data can't be null");
+		return ("event: " + event + "\ndata: " + data.replace("\n", "\ndata: ") + "\n\n")
+				.getBytes(StandardCharsets.UTF_8);
+	}
+
+}
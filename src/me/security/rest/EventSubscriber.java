@@ -0,0 +1,92 @@
+package me.security.rest;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A client of an EventBus, holding the encoded events it didn't receive yet.<br>
+ * Its buffer is bounded : a client too slow to read its events is closed
+ * instead of making the server keep every event in memory.
+ */
+public class EventSubscriber implements AutoCloseable {
+
+	private final EventBus bus;
+	private final BlockingQueue<byte[]> frames;
+	private volatile Runnable listener;
+	private volatile boolean closed;
+
+	EventSubscriber(EventBus bus, int capacity) {
+		this.bus = bus;
+		this.frames = new ArrayBlockingQueue<byte[]>(capacity);
+	}
+
+	/**
+	 * Queue an encoded event, close this subscriber if its buffer is full
+	 *
+	 * @return False if the event was not queued
+	 */
+	boolean offer(byte[] frame) {
+		if (this.closed)
+			return false;
+		if (!this.frames.offer(frame)) {
+			close();// Slow consumer
+			return false;
+		}
+		notifyListener();
+		return true;
+	}
+
+	/**
+	 * Be called each time an event is queued and when this subscriber is closed,
+	 * used by non blocking transports to know when to write
+	 *
+	 * @param listener Called from the publishing thread, must not block
+	 */
+	public void setListener(Runnable listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * @return The next encoded event, null if none is queued
+	 */
+	public byte[] poll() {
+		return this.frames.poll();
+	}
+
+	/**
+	 * Wait for the next encoded event
+	 *
+	 * @param timeout Maximum time to wait
+	 * @param unit    Unit of timeout
+	 * @return The next encoded event, null if none arrived in time
+	 * @throws InterruptedException If interrupted while waiting
+	 */
+	public byte[] poll(long timeout, TimeUnit unit) throws InterruptedException {
+		return this.frames.poll(timeout, unit);
+	}
+
+	public boolean isClosed() {
+		return this.closed;
+	}
+
+	/**
+	 * Stop receiving events, queued ones are dropped
+	 */
+	@Override
+	public void close() {
+		if (this.closed)
+			return;
+		this.closed = true;
+		this.bus.unsubscribe(this);
+		this.frames.clear();
+		notifyListener();
+	}
+
+	private void notifyListener() {
+		Runnable l = this.listener;
+		if (l != null)
+			l.run();
+	}
+
+}
@@ -0,0 +1,222 @@
+package me.security.rest;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Split the bytes received on a connection into requests.<br>
+ * The input buffer is kept in write mode (position is the number of bytes
+ * received) and bytes of a parsed request are removed from it, so pipelined
+ * requests already received stay at the start of the buffer for the next call.
+ * A request body is skipped using its Content-Length.<br>
+ * The request line and headers are read byte by byte directly in the buffer,
+ * the only String used are cached ones and the same RestRequest is handed out
+ * for every request, so polling the same endpoint creates no garbage.<br>
+ * One parser is used per connection as it remembers how far it already looked
+ * for the end of the head.
+ */
+public class HttpRequestParser {
+
+	public static final int MAX_HEADER_LINE = 1024;
+	public static final int MAX_HEADERS = 64;
+
+	/**
+	 * Shared by every connection, urls, methods and passwords are the same for
+	 * every mobile app
+	 */
+	private static final ByteStringCache STRINGS = new ByteStringCache(256);
+
+	private static final byte[][] KNOWN_NAMES = new byte[RestRequest.KNOWN_HEADERS.length][];
+	private static final int CONTENT_LENGTH = RestRequest.indexOf(RestRequest.CONTENT_LENGTH);
+
+	static {
+		for (int i = 0; i < KNOWN_NAMES.length; i++)
+			KNOWN_NAMES[i] = RestRequest.KNOWN_HEADERS[i].toLowerCase().getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+	private final RestRequest request;
+	private int scanned;
+
+	public HttpRequestParser() {
+		this.request = new RestRequest();
+	}
+
+	/**
+	 * @param in The buffer receiving bytes from the connection
+	 * @return The first complete request of the buffer, null if more bytes must
+	 *         be received. The returned object is reused by the next call.
+	 * @throws BadRequestException If the request is invalid or can't fit in the
+	 *                             buffer
+	 */
+	public RestRequest parse(ByteBuffer in) throws BadRequestException {
+		int limit = in.position();
+		int headEnd = -1;
+		int consumed = 0;
+
+		for (int i = Math.max(this.scanned, 1); i < limit; i++) {
+			if (in.get(i) != '\n')
+				continue;
+			if (in.get(i - 1) == '\n') {
+				headEnd = i;
+			} else if (i >= 3 && in.get(i - 1) == '\r' && in.get(i - 2) == '\n' && in.get(i - 3) == '\r') {
+				headEnd = i - 2;
+			} else {
+				continue;
+			}
+			consumed = i + 1;
+			break;
+		}
+
+		if (headEnd < 0) {
+			this.scanned = limit;
+			if (!in.hasRemaining())
+				throw tooLarge("Request head is bigger than " + in.capacity() + " bytes");
+			return null;
+		}
+
+		int lineStart = parseRequestLine(in, headEnd);
+		int headers = 0;
+		while (lineStart < headEnd) {
+			int lineEnd = indexOf(in, '\n', lineStart, headEnd);
+			if (lineEnd - lineStart > MAX_HEADER_LINE)
+				throw tooLarge("Header line bigger than " + MAX_HEADER_LINE + " bytes");
+			if (++headers > MAX_HEADERS)
+				throw tooLarge("More than " + MAX_HEADERS + " headers");
+			parseHeader(in, lineStart, trimEnd(in, lineStart, lineEnd));
+			lineStart = lineEnd + 1;
+		}
+
+		consumed += this.request.getContentLength();
+		if (consumed > in.capacity())
+			throw new BadRequestException(new RestResponse(413, "Payload Too Large", null, ""),
+					"Request is bigger than " + in.capacity() + " bytes");
+
+		if (consumed > limit) {
+			this.scanned = 0;// Body not fully received, head will be parsed again
+			return null;
+		}
+
+		in.flip();
+		in.position(consumed);
+		in.compact();
+		this.scanned = 0;
+		return this.request;
+	}
+
+	/**
+	 * Forget the scanning progress, must be called when the buffer is cleared
+	 */
+	public void reset() {
+		this.scanned = 0;
+	}
+
+	/**
+	 * Read "METHOD url VERSION" and reset the request with it
+	 *
+	 * @return The index of the first header line
+	 */
+	private int parseRequestLine(ByteBuffer in, int headEnd) throws BadRequestException {
+		int lineEnd = indexOf(in, '\n', 0, headEnd);
+		int end = trimEnd(in, 0, lineEnd);
+
+		int methodEnd = indexOf(in, ' ', 0, end);
+		if (methodEnd == 0 || methodEnd >= end)
+			throw badRequest("Invalid request line");
+		int urlEnd = indexOf(in, ' ', methodEnd + 1, end);
+		if (urlEnd == methodEnd + 1)
+			throw badRequest("Invalid request line");
+
+		String version = urlEnd < end ? STRINGS.get(in, urlEnd + 1, end) : "HTTP/1.0";
+		this.request.reset(STRINGS.get(in, 0, methodEnd), STRINGS.get(in, methodEnd + 1, urlEnd), version);
+		return lineEnd + 1;
+	}
+
+	/**
+	 * Keep the header if it is a known one, lines without ':' are ignored
+	 */
+	private void parseHeader(ByteBuffer in, int from, int to) throws BadRequestException {
+		int colon = indexOf(in, ':', from, to);
+		if (colon >= to)
+			return;
+
+		int known = knownHeader(in, from, colon);
+		if (known < 0)
+			return;
+
+		int valueStart = colon + 1;
+		while (valueStart < to && (in.get(valueStart) == ' ' || in.get(valueStart) == '\t'))
+			valueStart++;
+
+		if (known == CONTENT_LENGTH) {
+			this.request.setContentLength(parseLength(in, valueStart, to));
+		} else {
+			this.request.setHeader(known, STRINGS.get(in, valueStart, to));
+		}
+	}
+
+	/**
+	 * Compare the header name with every known name ignoring case
+	 *
+	 * @return The index of the known header, -1 if this header isn't kept
+	 */
+	private static int knownHeader(ByteBuffer in, int from, int to) {
+		for (int k = 0; k < KNOWN_NAMES.length; k++) {
+			byte[] name = KNOWN_NAMES[k];
+			if (name.length != to - from)
+				continue;
+			int i = 0;
+			while (i < name.length && toLower(in.get(from + i)) == name[i])
+				i++;
+			if (i == name.length)
+				return k;
+		}
+		return -1;
+	}
+
+	private static int parseLength(ByteBuffer in, int from, int to) throws BadRequestException {
+		if (from == to)
+			throw badRequest("Empty Content-Length");
+		long value = 0;
+		for (int i = from; i < to; i++) {
+			byte b = in.get(i);
+			if (b < '0' || b > '9' || value > Integer.MAX_VALUE)
+				throw badRequest("Invalid Content-Length");
+			value = value * 10 + (b - '0');
+		}
+		if (value > Integer.MAX_VALUE)
+			throw badRequest("Invalid Content-Length");
+		return (int) value;
+	}
+
+	/**
+	 * @return The index of b between from and to, to if not found
+	 */
+	private static int indexOf(ByteBuffer in, char b, int from, int to) {
+		for (int i = from; i < to; i++)
+			if (in.get(i) == b)
+				return i;
+		return to;
+	}
+
+	/**
+	 * @return The end of the line without trailing '\r', spaces and tabs
+	 */
+	private static int trimEnd(ByteBuffer in, int from, int to) {
+		while (to > from && (in.get(to - 1) == '\r' || in.get(to - 1) == ' ' || in.get(to - 1) == '\t'))
+			to--;
+		return to;
+	}
+
+	private static byte toLower(byte b) {
+		return b >= 'A' && b <= 'Z' ? (byte) (b + 32) : b;
+	}
+
+	private static BadRequestException badRequest(String msg) {
+		return new BadRequestException(RestResponse.badRequest(msg), msg);
+	}
+
+	private static BadRequestException tooLarge(String msg) {
+		return new BadRequestException(new RestResponse(431, "Request Header Fields Too Large", null, ""), msg);
+	}
+
+}
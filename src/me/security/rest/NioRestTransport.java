@@ -0,0 +1,397 @@
+package me.security.rest;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.security.logging.Logger;
+
+/**
+ * Non blocking transport where a single event loop thread accepts, reads and
+ * writes every connection.<br>
+ * Idle clients cost no thread and no buffer : a pooled direct buffer is only
+ * attached to a connection while a request is partially received. Once a
+ * request is complete it is given to a ConnectionExecutor worker, since
+ * endpoints may block on the database or on notifications, and the answer is
+ * written back by the event loop with a gathering write.<br>
+ * Connections are kept alive, pipelined requests are answered one after the
+ * other in the order they were received and connections silent for
+ * idleTimeout are closed. Event streams are written by the event loop as
+ * events are published.
+ */
+public class NioRestTransport extends RestTransport {
+
+	public static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+	public static final int DEFAULT_MAX_POOLED = 256;
+	public static final int DEFAULT_IDLE_TIMEOUT = 15000;
+	public static final int MAX_FRAMES_PER_WRITE = 16;
+
+	private static final Logger LOG = Logger.get(NioRestTransport.class);
+
+	private final ConnectionExecutor workers;
+	private final ByteBufferPool buffers;
+	private final int idleTimeout;
+	private final Queue<Connection> completed;
+	private final AtomicInteger open;
+	private Selector selector;
+	private ServerSocketChannel server;
+	private RestHandler handler;
+	private volatile boolean enabled;
+
+	/**
+	 * @param workers The executor running the RestHandler for complete requests
+	 * @throws IllegalArgumentException workers must not be null
+	 */
+	public NioRestTransport(ConnectionExecutor workers) throws IllegalArgumentException {
+		this(workers, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED, DEFAULT_IDLE_TIMEOUT);
+	}
+
+	/**
+	 * @param workers     The executor running the RestHandler for complete
+	 *                    requests
+	 * @param bufferSize  Size of a read buffer, this is the maximum size of a
+	 *                    request
+	 * @param maxPooled   Maximum number of idle read buffers kept for reuse
+	 * @param idleTimeout Milliseconds a kept alive connection may stay silent
+	 *                    before being closed
+	 * @throws IllegalArgumentException workers must not be null and idleTimeout
+	 *                                  must be positive
+	 */
+	public NioRestTransport(ConnectionExecutor workers, int bufferSize, int maxPooled, int idleTimeout)
+			throws IllegalArgumentException {
+		if (workers == null)
+			throw new IllegalArgumentException("ConnectionExecutor must not be null");
+		if (idleTimeout <= 0)
+			throw new IllegalArgumentException("idleTimeout must be positive");
+		this.workers = workers;
+		this.buffers = new ByteBufferPool(bufferSize, maxPooled);
+		this.idleTimeout = idleTimeout;
+		this.completed = new ConcurrentLinkedQueue<Connection>();
+		this.open = new AtomicInteger();
+	}
+
+	@Override
+	public int start(int port, int backlog, RestHandler handler)
+			throws IOException, IllegalArgumentException, IllegalStateException {
+		if (handler == null)
+			throw new IllegalArgumentException("Handler must not be null");
+		if (this.server != null)
+			throw new IllegalStateException("Transport already started");
+
+		this.handler = handler;
+		this.selector = Selector.open();
+		this.server = ServerSocketChannel.open();
+		this.server.bind(new InetSocketAddress(port), backlog);
+		this.server.configureBlocking(false);
+		this.server.register(this.selector, SelectionKey.OP_ACCEPT);
+		this.enabled = true;
+
+		new Thread(this::loop, "RestAPI-NIO").start();
+		return this.server.socket().getLocalPort();
+	}
+
+	@Override
+	public int getOpenConnections() {
+		return this.open.get();
+	}
+
+	@Override
+	public void close() {
+		this.enabled = false;
+		this.workers.close();
+		if (this.selector != null)
+			this.selector.wakeup();
+	}
+
+	/**
+	 * The event loop, only this thread touches selection keys and buffers
+	 */
+	private void loop() {
+		long nextReap = System.currentTimeMillis() + this.idleTimeout;
+		while (this.enabled) {
+			try {
+				this.selector.select(this.idleTimeout / 2);
+				drainCompleted();
+
+				long now = System.currentTimeMillis();
+				if (now >= nextReap) {
+					reapIdle(now);
+					nextReap = now + this.idleTimeout / 2;
+				}
+
+				Iterator<SelectionKey> it = this.selector.selectedKeys().iterator();
+				while (it.hasNext()) {
+					SelectionKey key = it.next();
+					it.remove();
+					if (!key.isValid())
+						continue;
+
+					if (key.isAcceptable()) {
+						accept();
+						continue;
+					}
+
+					Connection c = (Connection) key.attachment();
+					try {
+						if (key.isReadable())
+							read(c);
+						if (key.isValid() && key.isWritable())
+							write(c);
+					} catch (IOException e) {
+						close(c);// Client left, nothing to answer
+					}
+				}
+			} catch (Exception e) {
+				LOG.error("Event loop failed", e);
+			}
+		}
+
+		for (SelectionKey key : this.selector.keys()) {
+			if (key.attachment() instanceof Connection)
+				close((Connection) key.attachment());
+		}
+
+		try {
+			this.server.close();
+			this.selector.close();
+		} catch (IOException e) {
+			LOG.warn("Unable to close the server", e);
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = this.server.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			Connection c = new Connection(channel);
+			c.key = channel.register(this.selector, SelectionKey.OP_READ, c);
+			this.open.incrementAndGet();
+		}
+	}
+
+	private void read(Connection c) throws IOException {
+		if (c.input == null)
+			c.input = this.buffers.acquire();
+
+		if (c.channel.read(c.input) < 0) {
+			close(c);
+			return;
+		}
+
+		if (c.stream != null) {
+			c.input.clear();// Nothing is expected from an event stream client
+			return;
+		}
+
+		c.lastActive = System.currentTimeMillis();
+		dispatchNext(c);
+	}
+
+	/**
+	 * Parse the next request already received on this connection and give it to
+	 * a worker, keep reading if it isn't complete yet
+	 */
+	private void dispatchNext(Connection c) {
+		RestRequest request;
+		try {
+			request = c.input == null ? null : c.parser.parse(c.input);
+		} catch (BadRequestException e) {
+			c.keepAlive = false;
+			respond(c, e.getResponse());
+			return;
+		}
+
+		if (request == null) {
+			if (c.input != null && c.input.position() == 0)
+				releaseInput(c);// Nothing pending, don't keep a buffer for an idle client
+			c.key.interestOps(SelectionKey.OP_READ);
+			return;
+		}
+
+		c.keepAlive = request.isKeepAlive();
+		c.inFlight = true;
+		c.key.interestOps(0);// Pipelined requests wait until this one is answered
+		if (!this.workers.execute(() -> complete(c, request))) {
+			c.keepAlive = false;
+			respond(c, RestResponse.unavailable());
+		}
+	}
+
+	/**
+	 * Run on a worker thread, hand the response back to the event loop
+	 */
+	private void complete(Connection c, RestRequest request) {
+		RestResponse response;
+		try {
+			response = this.handler.handle(request);
+		} catch (Exception e) {
+			LOG.error("Request failed", e, "url", request.getUrl());
+			response = RestResponse.error(e.getMessage());
+		}
+
+		if (response instanceof StreamResponse) {
+			c.stream = ((StreamResponse) response).getSubscriber();
+			c.keepAlive = false;
+		}
+
+		c.output = response.toBuffers(c.keepAlive);
+		this.completed.offer(c);
+		this.selector.wakeup();
+	}
+
+	/**
+	 * Handle connections woken up by a worker or by a new event to stream
+	 */
+	private void drainCompleted() {
+		Connection c;
+		while ((c = this.completed.poll()) != null) {
+			if (!c.key.isValid())
+				continue;
+
+			if (c.output == null && c.stream != null) {
+				c.output = nextFrames(c.stream);
+				if (c.output == null) {
+					if (c.stream.isClosed())
+						close(c);// Slow consumer or server closing
+					continue;
+				}
+			}
+			c.key.interestOps(SelectionKey.OP_WRITE | (c.stream != null ? SelectionKey.OP_READ : 0));
+		}
+	}
+
+	private void respond(Connection c, RestResponse response) {
+		c.inFlight = true;
+		c.output = response.toBuffers(c.keepAlive);
+		c.key.interestOps(SelectionKey.OP_WRITE);
+	}
+
+	private void write(Connection c) throws IOException {
+		c.channel.write(c.output);
+		if (c.output[c.output.length - 1].hasRemaining())
+			return;// Socket buffer full, wait to be writable again
+
+		c.output = null;
+		c.lastActive = System.currentTimeMillis();
+		if (c.stream != null) {
+			writeStream(c);
+			return;
+		}
+
+		c.inFlight = false;
+		if (c.keepAlive) {
+			dispatchNext(c);
+		} else {
+			close(c);
+		}
+	}
+
+	/**
+	 * Continue an event stream once the previous writes are done, the
+	 * connection stays in flight so it is never reaped
+	 */
+	private void writeStream(Connection c) {
+		if (!c.listening) {
+			c.stream.setListener(() -> {
+				this.completed.offer(c);
+				this.selector.wakeup();
+			});
+			c.listening = true;
+		}
+
+		c.output = nextFrames(c.stream);
+		if (c.output != null) {
+			c.key.interestOps(SelectionKey.OP_WRITE | SelectionKey.OP_READ);
+		} else if (c.stream.isClosed()) {
+			close(c);
+		} else {
+			c.key.interestOps(SelectionKey.OP_READ);// Wait for the next event
+		}
+	}
+
+	/**
+	 * @return The queued events ready for a gathering write, null if none
+	 */
+	private static ByteBuffer[] nextFrames(EventSubscriber subscriber) {
+		byte[] frame = subscriber.poll();
+		if (frame == null)
+			return null;
+
+		ByteBuffer[] frames = new ByteBuffer[MAX_FRAMES_PER_WRITE];
+		int count = 0;
+		do {
+			frames[count++] = ByteBuffer.wrap(frame);
+		} while (count < frames.length && (frame = subscriber.poll()) != null);
+		return count == frames.length ? frames : Arrays.copyOf(frames, count);
+	}
+
+	/**
+	 * Close connections waiting for a request since more than idleTimeout
+	 */
+	private void reapIdle(long now) {
+		for (SelectionKey key : this.selector.keys()) {
+			if (!(key.attachment() instanceof Connection))
+				continue;
+			Connection c = (Connection) key.attachment();
+			if (!c.inFlight && now - c.lastActive > this.idleTimeout)
+				close(c);
+		}
+	}
+
+	private void releaseInput(Connection c) {
+		this.buffers.release(c.input);
+		c.input = null;
+		c.parser.reset();
+	}
+
+	private void close(Connection c) {
+		if (c.stream != null)
+			c.stream.close();
+		releaseInput(c);
+		if (c.key != null)
+			c.key.cancel();
+		if (c.channel.isOpen())
+			this.open.decrementAndGet();
+		try {
+			c.channel.close();
+		} catch (IOException e) {
+			LOG.debug("Unable to close a connection", e);
+		}
+	}
+
+	/**
+	 * State of a single client connection
+	 */
+	private static class Connection {
+
+		private final SocketChannel channel;
+		private final HttpRequestParser parser;
+		private SelectionKey key;
+		private ByteBuffer input;
+		private long lastActive;
+		private boolean inFlight;
+		private volatile boolean keepAlive;
+		private volatile ByteBuffer[] output;
+		private EventSubscriber stream;
+		private boolean listening;
+
+		private Connection(SocketChannel channel) {
+			this.channel = channel;
+			this.parser = new HttpRequestParser();
+			this.lastActive = System.currentTimeMillis();
+		}
+
+	}
+
+}
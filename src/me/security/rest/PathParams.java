@@ -0,0 +1,68 @@
+package me.security.rest;
+
+/**
+ * Values of the {parameters} of a matched route.<br>
+ * int parameters are parsed while walking the url, string ones are only
+ * extracted from the url if asked.
+ */
+public class PathParams {
+
+	/**
+	 * Used for routes without parameters so they never allocate
+	 */
+	static final PathParams EMPTY = new PathParams(null, 0);
+
+	private final String url;
+	private final int[] starts;
+	private final int[] ends;
+	private final int[] ints;
+	private String[] names;
+
+	PathParams(String url, int capacity) {
+		this.names = new String[0];
+		this.url = url;
+		this.starts = new int[capacity];
+		this.ends = new int[capacity];
+		this.ints = new int[capacity];
+	}
+
+	void set(int index, int start, int end, int value) {
+		this.starts[index] = start;
+		this.ends[index] = end;
+		this.ints[index] = value;
+	}
+
+	/**
+	 * Name the captured values once the route is known
+	 */
+	void bind(String[] names) {
+		this.names = names;
+	}
+
+	/**
+	 * @param name The name of an {name:int} parameter
+	 * @return Its parsed value
+	 * @throws IllegalArgumentException If the route has no such parameter
+	 */
+	public int getInt(String name) throws IllegalArgumentException {
+		return this.ints[indexOf(name)];
+	}
+
+	/**
+	 * @param name The name of a parameter
+	 * @return Its raw value as sent in the url
+	 * @throws IllegalArgumentException If the route has no such parameter
+	 */
+	public String getString(String name) throws IllegalArgumentException {
+		int index = indexOf(name);
+		return this.url.substring(this.starts[index], this.ends[index]);
+	}
+
+	private int indexOf(String name) {
+		for (int i = 0; i < this.names.length; i++)
+			if (this.names[i].equals(name))
+				return i;
+		throw new IllegalArgumentException("Unknown path parameter : " + name);
+	}
+
+}
@@ -0,0 +1,73 @@
+package me.security.rest;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Run connections on a fixed pool of platform threads.<br>
+ * At most maxConnections threads are ever created, connections arriving while
+ * all of them are busy wait in a queue of backlog size and are rejected once
+ * this queue is full.
+ */
+public class PooledConnectionExecutor extends ConnectionExecutor {
+
+	private final ThreadPoolExecutor pool;
+
+	/**
+	 * @param maxConnections Number of threads of the pool
+	 * @param backlog        Maximum number of connections waiting for a free thread
+	 * @throws IllegalArgumentException maxConnections must be positive and backlog
+	 *                                  must not be negative
+	 */
+	public PooledConnectionExecutor(int maxConnections, int backlog) throws IllegalArgumentException {
+		if (maxConnections <= 0)
+			throw new IllegalArgumentException("maxConnections must be positive");
+		if (backlog < 0)
+			throw new IllegalArgumentException("backlog must not be negative");
+
+		BlockingQueue<Runnable> queue = backlog == 0
+				? new SynchronousQueue<Runnable>()
+				: new ArrayBlockingQueue<Runnable>(backlog);
+
+		AtomicInteger count = new AtomicInteger();
+		ThreadFactory factory = r -> {
+			Thread t = new Thread(r, "RestAPI-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+
+		this.pool = new ThreadPoolExecutor(maxConnections, maxConnections, 60, TimeUnit.SECONDS, queue, factory,
+				new ThreadPoolExecutor.AbortPolicy());
+		this.pool.allowCoreThreadTimeOut(true);
+	}
+
+	@Override
+	public boolean execute(Runnable connection) throws IllegalArgumentException {
+		if (connection == null)
+			throw new IllegalArgumentException("Connection must not be null");
+
+		try {
+			this.pool.execute(connection);
+			return true;
+		} catch (RejectedExecutionException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public int getActiveConnections() {
+		return this.pool.getActiveCount() + this.pool.getQueue().size();
+	}
+
+	@Override
+	public void close() {
+		this.pool.shutdown();
+	}
+
+}
@@ -0,0 +1,82 @@
+package me.security.rest;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Keep the serialized answer of a polled endpoint until the state it
+ * represents changes.<br>
+ * The state is identified by a version number incremented on every change,
+ * as long as it stays the same the encoded response is reused as is. The
+ * version is also sent as ETag so a client polling again with If-None-Match
+ * gets a body-less 304.
+ */
+public class ResponseCache {
+
+	/**
+	 * Versions restart from 0 with the server, this prefix keeps an ETag of a
+	 * previous run from matching
+	 */
+	private static final String BOOT_ID = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+	private final LongSupplier version;
+	private final Supplier<String> json;
+	private volatile Snapshot snapshot;
+
+	/**
+	 * @param version Give the current version of the state
+	 * @param json    Serialize the current state, only called when the version
+	 *                changed
+	 * @throws IllegalArgumentException If any argument is null
+	 */
+	public ResponseCache(LongSupplier version, Supplier<String> json) throws IllegalArgumentException {
+		if (version == null)
+			throw new IllegalArgumentException("Version supplier can't be null");
+		if (json == null)
+			throw new IllegalArgumentException("Json supplier can't be null");
+		this.version = version;
+		this.json = json;
+	}
+
+	/**
+	 * @param request The request polling this endpoint
+	 * @return 304 if the client already has the current version, the cached 200
+	 *         answer otherwise
+	 */
+	public RestResponse get(RestRequest request) {
+		// Version is read before serializing : the state can only be newer than
+		// its version, at worst it will be serialized again on next poll
+		long current = this.version.getAsLong();
+		Snapshot s = this.snapshot;
+		if (s == null || s.version != current) {
+			s = new Snapshot(current, this.json.get());
+			this.snapshot = s;
+		}
+
+		String ifNoneMatch = request.getHeader(RestRequest.IF_NONE_MATCH);
+		if (ifNoneMatch != null && (ifNoneMatch == s.etag || ifNoneMatch.contains(s.etag)))
+			return s.notModified;
+		return s.ok;
+	}
+
+	/**
+	 * Responses of a single version, immutable so it can be shared by threads
+	 */
+	private static class Snapshot {
+
+		private final long version;
+		private final String etag;
+		private final RestResponse ok;
+		private final RestResponse notModified;
+
+		private Snapshot(long version, String json) {
+			this.version = version;
+			this.etag = "\"" + BOOT_ID + "-" + version + "\"";
+			this.ok = RestResponse.text(json, this.etag);
+			this.notModified = RestResponse.notModified(this.etag);
+		}
+
+	}
+
+}
@@ -0,0 +1,18 @@
+package me.security.rest;
+
+/**
+ * Answer requests received by a RestTransport, this is where endpoints are
+ * dispatched
+ *
+ * @see me.security.managers.RestAPIManager
+ */
+@FunctionalInterface
+public interface RestHandler {
+
+	/**
+	 * @param request The received request
+	 * @return The answer to send back, never null
+	 */
+	RestResponse handle(RestRequest request);
+
+}
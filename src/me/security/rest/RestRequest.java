@@ -0,0 +1,129 @@
+package me.security.rest;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A request received by a RestTransport, independent of how it was read.<br>
+ * <b>Note:</b><br>
+ * Requests are reused by their HttpRequestParser to avoid garbage on every
+ * poll of the mobile app : an instance is only valid until the next request of
+ * the same connection is parsed, never keep a reference to it.<br>
+ * Only the headers listed in KNOWN_HEADERS are kept, every other header is
+ * skipped while parsing.
+ */
+public class RestRequest {
+
+	public static final String APP_PASSWORD = "appPassword";
+	public static final String CONTENT_LENGTH = "Content-Length";
+	public static final String CONNECTION = "Connection";
+	public static final String IF_NONE_MATCH = "If-None-Match";
+
+	static final String[] KNOWN_HEADERS = { APP_PASSWORD, CONTENT_LENGTH, CONNECTION, IF_NONE_MATCH };
+
+	/**
+	 * @param name A header name, case insensitive
+	 * @return The index of this header in KNOWN_HEADERS, -1 if it isn't kept
+	 */
+	static int indexOf(String name) {
+		for (int i = 0; i < KNOWN_HEADERS.length; i++)
+			if (KNOWN_HEADERS[i] == name || KNOWN_HEADERS[i].equalsIgnoreCase(name))
+				return i;
+		return -1;
+	}
+
+	private final String[] headers;
+	private String method;
+	private String url;
+	private String version;
+	private int contentLength;
+
+	RestRequest() {
+		this.headers = new String[KNOWN_HEADERS.length];
+	}
+
+	/**
+	 * Prepare this request to receive the headers of a new request line
+	 */
+	void reset(String method, String url, String version) {
+		this.method = method;
+		this.url = url;
+		this.version = version;
+		this.contentLength = 0;
+		for (int i = 0; i < this.headers.length; i++)
+			this.headers[i] = null;
+	}
+
+	void setHeader(int index, String value) {
+		this.headers[index] = value;
+	}
+
+	void setContentLength(int contentLength) {
+		this.contentLength = contentLength;
+	}
+
+	public String getMethod() {
+		return this.method;
+	}
+
+	public String getUrl() {
+		return this.url;
+	}
+
+	/**
+	 * @param name The name of a parameter of the query string
+	 * @return Its decoded value, "" if sent without value, null if not sent
+	 * @throws IllegalArgumentException If the value is not correctly encoded
+	 */
+	public String getParameter(String name) throws IllegalArgumentException {
+		int start = this.url.indexOf('?') + 1;
+		if (start == 0)
+			return null;
+		while (start < this.url.length()) {
+			int end = this.url.indexOf('&', start);
+			if (end < 0)
+				end = this.url.length();
+			int equals = this.url.indexOf('=', start);
+			int nameEnd = equals < 0 || equals > end ? end : equals;
+			if (nameEnd - start == name.length() && this.url.startsWith(name, start))
+				return nameEnd == end ? ""
+						: URLDecoder.decode(this.url.substring(nameEnd + 1, end), StandardCharsets.UTF_8);
+			start = end + 1;
+		}
+		return null;
+	}
+
+	public String getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * HTTP/1.1 connections are persistent unless the client asks to close them,
+	 * HTTP/1.0 ones only if the client asks to keep them alive
+	 *
+	 * @return True if the connection can be reused after answering this request
+	 */
+	public boolean isKeepAlive() {
+		String connection = getHeader(CONNECTION);
+		if ("HTTP/1.1".equals(this.version))
+			return !"close".equalsIgnoreCase(connection);
+		return "keep-alive".equalsIgnoreCase(connection);
+	}
+
+	/**
+	 * @return The announced size of the body, 0 if there is none
+	 */
+	public int getContentLength() {
+		return this.contentLength;
+	}
+
+	/**
+	 * @param name The header name, must be one of KNOWN_HEADERS
+	 * @return The value of this header, null if not sent
+	 */
+	public String getHeader(String name) {
+		int index = indexOf(name);
+		return index < 0 ? null : this.headers[index];
+	}
+
+}
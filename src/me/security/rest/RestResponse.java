@@ -0,0 +1,158 @@
+package me.security.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An answer to a RestRequest, already encoded so every transport writes the
+ * same bytes.<br>
+ * Responses are framed with a Content-Length so the connection can be kept
+ * alive, only the Connection header depends on the request and is appended
+ * when written.
+ */
+public class RestResponse {
+
+	private static final byte[] KEEP_ALIVE = "Connection: keep-alive\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+	private static final byte[] CLOSE = "Connection: close\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+	/**
+	 * OK 200 with a json body
+	 *
+	 * @param text Json to answer
+	 */
+	public static RestResponse text(String text) {
+		return new RestResponse(200, "OK", "application/json", text + "\n");
+	}
+
+	/**
+	 * OK 200 with a json body that clients may cache and revalidate
+	 *
+	 * @param text Json to answer
+	 * @param etag The quoted entity tag identifying this version of text
+	 */
+	public static RestResponse text(String text, String etag) {
+		return new RestResponse(200, "OK", "application/json", text + "\n", "ETag: " + etag,
+				"Cache-Control: no-cache");
+	}
+
+	/**
+	 * 304 Not Modified, the client already has this version
+	 *
+	 * @param etag The quoted entity tag sent by the client
+	 */
+	public static RestResponse notModified(String etag) {
+		return new RestResponse(304, "Not Modified", null, "", "ETag: " + etag, "Cache-Control: no-cache");
+	}
+
+	/**
+	 * Error 401 when the appPassword header is missing or invalid
+	 */
+	public static RestResponse notAuthed() {
+		return new RestResponse(401, "Not Authed Correctly", null, "");
+	}
+
+	/**
+	 * Error 404 Not Found
+	 *
+	 * @param url What url was not found
+	 */
+	public static RestResponse notFound(String url) {
+		return new RestResponse(404, "Not Found", null, "NOT FOUND : " + url + "\n");
+	}
+
+	/**
+	 * Error 400 when the request can't be parsed
+	 *
+	 * @param msg The specific problem encountered
+	 */
+	public static RestResponse badRequest(String msg) {
+		return new RestResponse(400, "Bad Request", null, msg + "\n");
+	}
+
+	/**
+	 * Error 500
+	 *
+	 * @param msg The specific problem encountered
+	 */
+	public static RestResponse error(String msg) {
+		return new RestResponse(500, "Internal Server Error", null, msg + "\n");
+	}
+
+	/**
+	 * Error 503, used when the server is too busy to handle a connection
+	 */
+	public static RestResponse unavailable() {
+		return new RestResponse(503, "Service Unavailable", null, "", "Retry-After: 1");
+	}
+
+	private final int status;
+	private final byte[] head;
+	private final byte[] body;
+
+	/**
+	 * @param status       The HTTP status code
+	 * @param reason       The reason phrase following the status code
+	 * @param contentType  The Content-Type header, null if none
+	 * @param body         The body of the answer
+	 * @param extraHeaders Additional header lines
+	 */
+	public RestResponse(int status, String reason, String contentType, String body, String... extraHeaders) {
+		this(status, reason, contentType, status != 304, body, extraHeaders);// A 304 never has a body
+	}
+
+	/**
+	 * @param status       The HTTP status code
+	 * @param reason       The reason phrase following the status code
+	 * @param contentType  The Content-Type header, null if none
+	 * @param framed       If a Content-Length header is sent, a body not framed
+	 *                     ends when the connection is closed
+	 * @param body         The body of the answer
+	 * @param extraHeaders Additional header lines
+	 */
+	protected RestResponse(int status, String reason, String contentType, boolean framed, String body,
+			String... extraHeaders) {
+		this.status = status;
+		this.body = body.getBytes(StandardCharsets.UTF_8);
+
+		StringBuilder head = new StringBuilder();
+		head.append("HTTP/1.1 ").append(status).append(' ').append(reason).append("\r\n");
+		if (contentType != null)
+			head.append("Content-Type: ").append(contentType).append("\r\n");
+		if (framed)
+			head.append("Content-Length: ").append(this.body.length).append("\r\n");
+		for (String header : extraHeaders)
+			head.append(header).append("\r\n");
+		this.head = head.toString().getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+	public int getStatus() {
+		return this.status;
+	}
+
+	/**
+	 * @param keepAlive If the connection stays open after this response
+	 * @return The status line and headers followed by the body, ready for a
+	 *         gathering write
+	 */
+	public ByteBuffer[] toBuffers(boolean keepAlive) {
+		return new ByteBuffer[] { ByteBuffer.wrap(this.head), ByteBuffer.wrap(keepAlive ? KEEP_ALIVE : CLOSE),
+				ByteBuffer.wrap(this.body) };
+	}
+
+	/**
+	 * Write the whole response to a blocking stream
+	 *
+	 * @param output    The socket output stream
+	 * @param keepAlive If the connection stays open after this response
+	 * @throws IOException If the socket was closed
+	 */
+	public void writeTo(OutputStream output, boolean keepAlive) throws IOException {
+		output.write(this.head);
+		output.write(keepAlive ? KEEP_ALIVE : CLOSE);
+		output.write(this.body);
+		output.flush();
+	}
+
+}
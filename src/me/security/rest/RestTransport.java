@@ -0,0 +1,39 @@
+package me.security.rest;
+
+import java.io.IOException;
+
+/**
+ * The network side of RestAPIManager : accept connections, read requests and
+ * write back what the RestHandler answered.
+ *
+ * @see BlockingRestTransport
+ * @see NioRestTransport
+ */
+public abstract class RestTransport implements AutoCloseable {
+
+	/**
+	 * Bind the server and start answering requests in background
+	 *
+	 * @param port    The port to listen on, 0 for any free port
+	 * @param backlog Maximum number of pending connections in the system queue
+	 * @param handler The handler answering every request
+	 * @return The port really listened on
+	 * @throws IOException              If the server can't be bound
+	 * @throws IllegalArgumentException handler must not be null
+	 * @throws IllegalStateException    If this transport was already started
+	 */
+	public abstract int start(int port, int backlog, RestHandler handler)
+			throws IOException, IllegalArgumentException, IllegalStateException;
+
+	/**
+	 * @return Number of client connections currently open
+	 */
+	public abstract int getOpenConnections();
+
+	/**
+	 * Stop listening and release every resource of this transport
+	 */
+	@Override
+	public abstract void close();
+
+}
@@ -0,0 +1,17 @@
+package me.security.rest;
+
+/**
+ * An endpoint registered in a Router
+ */
+@FunctionalInterface
+public interface RouteHandler {
+
+	/**
+	 * @param request The received request
+	 * @param params  The typed path parameters of the matched route
+	 * @return The answer to send back, never null
+	 * @throws Exception Any problem, answered as a 500 error
+	 */
+	RestResponse handle(RestRequest request, PathParams params) throws Exception;
+
+}
@@ -0,0 +1,179 @@
+package me.security.rest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Route urls to their RouteHandler.<br>
+ * Routes are compiled once into a trie of path segments, a segment is either
+ * a literal or a parameter written {name} for a string or {name:int} for an
+ * int. Dispatching walks the url once without splitting it, so adding routes
+ * doesn't slow down existing ones.<br>
+ * Literal segments are preferred over parameters and the query string
+ * (after '?') is ignored.
+ */
+public class Router {
+
+	public static final int MAX_PARAMS = 4;
+
+	private final Node root;
+
+	public Router() {
+		this.root = new Node();
+	}
+
+	/**
+	 * Register a route, must be done before the Router is used to dispatch
+	 *
+	 * @param pattern The url pattern, for example /sensor/{id:int}/toggle
+	 * @param handler The endpoint answering this route
+	 * @return This Router to chain declarations
+	 * @throws IllegalArgumentException If the pattern is invalid or already
+	 *                                  registered
+	 */
+	public Router add(String pattern, RouteHandler handler) throws IllegalArgumentException {
+		if (pattern == null || !pattern.startsWith("/"))
+			throw new IllegalArgumentException("Pattern must start with '/'");
+		if (handler == null)
+			throw new IllegalArgumentException("Handler must not be null");
+
+		Node node = this.root;
+		List<String> names = new ArrayList<String>();
+		for (String segment : pattern.substring(1).split("/", -1)) {
+			if (segment.startsWith("{") && segment.endsWith("}")) {
+				String[] param = segment.substring(1, segment.length() - 1).split(":");
+				boolean isInt = param.length == 2 && param[1].equals("int");
+				if (param[0].isEmpty() || (param.length == 2 && !isInt) || param.length > 2)
+					throw new IllegalArgumentException("Invalid parameter " + segment + " in " + pattern);
+				if (names.size() == MAX_PARAMS)
+					throw new IllegalArgumentException("More than " + MAX_PARAMS + " parameters in " + pattern);
+				names.add(param[0]);
+				node = node.param(isInt, pattern);
+			} else {
+				node = node.literal(segment);
+			}
+		}
+
+		if (node.handler != null)
+			throw new IllegalArgumentException("Route already registered : " + pattern);
+		node.handler = handler;
+		node.names = names.toArray(new String[0]);
+		return this;
+	}
+
+	/**
+	 * @param request The request to answer
+	 * @return The answer of the matching route, null if no route matches
+	 * @throws Exception Any problem thrown by the handler
+	 */
+	public RestResponse dispatch(RestRequest request) throws Exception {
+		String url = request.getUrl();
+		int end = url.indexOf('?');
+		if (end < 0)
+			end = url.length();
+		if (end == 0 || url.charAt(0) != '/')
+			return null;
+
+		Node node = this.root;
+		PathParams params = PathParams.EMPTY;
+		int captured = 0;
+		int start = 1;
+		while (true) {
+			int segmentEnd = url.indexOf('/', start);
+			if (segmentEnd < 0 || segmentEnd > end)
+				segmentEnd = end;
+
+			Node next = node.findLiteral(url, start, segmentEnd);
+			if (next == null && node.param != null) {
+				int value = 0;
+				if (node.paramIsInt) {
+					if (!isInt(url, start, segmentEnd))
+						return null;
+					value = Integer.parseInt(url, start, segmentEnd, 10);
+				}
+				if (params == PathParams.EMPTY)
+					params = new PathParams(url, MAX_PARAMS);
+				params.set(captured++, start, segmentEnd, value);
+				next = node.param;
+			}
+
+			if (next == null)
+				return null;
+			node = next;
+
+			if (segmentEnd == end)
+				break;
+			start = segmentEnd + 1;
+		}
+
+		if (node.handler == null)
+			return null;
+		if (params != PathParams.EMPTY)
+			params.bind(node.names);
+		return node.handler.handle(request, params);
+	}
+
+	/**
+	 * Only checks digits and size so Integer.parseInt can't fail
+	 */
+	private static boolean isInt(String url, int start, int end) {
+		int i = start;
+		if (i < end && url.charAt(i) == '-')
+			i++;
+		if (i == end || end - i > 9)
+			return false;
+		for (; i < end; i++)
+			if (url.charAt(i) < '0' || url.charAt(i) > '9')
+				return false;
+		return true;
+	}
+
+	/**
+	 * A path segment of the trie
+	 */
+	private static class Node {
+
+		private String[] literals = new String[0];
+		private Node[] children = new Node[0];
+		private Node param;
+		private boolean paramIsInt;
+		private RouteHandler handler;
+		private String[] names;
+
+		private Node literal(String segment) {
+			for (int i = 0; i < this.literals.length; i++)
+				if (this.literals[i].equals(segment))
+					return this.children[i];
+
+			Node child = new Node();
+			this.literals = Arrays.copyOf(this.literals, this.literals.length + 1);
+			this.children = Arrays.copyOf(this.children, this.children.length + 1);
+			this.literals[this.literals.length - 1] = segment;
+			this.children[this.children.length - 1] = child;
+			return child;
+		}
+
+		private Node param(boolean isInt, String pattern) {
+			if (this.param == null) {
+				this.param = new Node();
+				this.paramIsInt = isInt;
+			} else if (this.paramIsInt != isInt) {
+				throw new IllegalArgumentException("Conflicting parameter type in " + pattern);
+			}
+			return this.param;
+		}
+
+		private Node findLiteral(String url, int start, int end) {
+			int length = end - start;
+			for (int i = 0; i < this.literals.length; i++) {
+				String literal = this.literals[i];
+				if (literal.length() == length && url.regionMatches(start, literal, 0, length))
+					return this.children[i];
+			}
+			return null;
+		}
+
+	}
+
+}
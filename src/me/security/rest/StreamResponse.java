@@ -0,0 +1,27 @@
+package me.security.rest;
+
+/**
+ * A text/event-stream answer : only the head is written at first, the
+ * transport then keeps the connection open and writes every event of the
+ * subscriber until it is closed by either side.
+ */
+public class StreamResponse extends RestResponse {
+
+	private final EventSubscriber subscriber;
+
+	/**
+	 * @param subscriber The events to stream
+	 * @throws IllegalArgumentException subscriber must not be null
+	 */
+	public StreamResponse(EventSubscriber subscriber) throws IllegalArgumentException {
+		super(200, "OK", "text/event-stream", false, "", "Cache-Control: no-cache");
+		if (subscriber == null)
+			throw new IllegalArgumentException("Subscriber can't be null");
+		this.subscriber = subscriber;
+	}
+
+	public EventSubscriber getSubscriber() {
+		return this.subscriber;
+	}
+
+}
@@ -0,0 +1,102 @@
+package me.security.rest;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Semaphore;
+
+import me.security.logging.Logger;
+
+/**
+ * Run every connection in its own virtual thread.<br>
+ * Virtual threads are cheap but the work they do is not, so only
+ * maxConnections handlers are running at the same time and at most backlog
+ * others are parked waiting for a slot. Anything more is rejected.<br>
+ * <b>Note:</b><br>
+ * Virtual threads only exist since Java 21 while we still build for older
+ * JVMs, this is why Thread.startVirtualThread is looked up by reflection.
+ */
+public class VirtualThreadConnectionExecutor extends ConnectionExecutor {
+
+	private static final Method START_VIRTUAL_THREAD = findStartVirtualThread();
+	private static final Logger LOG = Logger.get(VirtualThreadConnectionExecutor.class);
+
+	/**
+	 * @return True if the running JVM is able to start virtual threads
+	 */
+	public static boolean isSupported() {
+		return START_VIRTUAL_THREAD != null;
+	}
+
+	private static Method findStartVirtualThread() {
+		try {
+			return Thread.class.getMethod("startVirtualThread", Runnable.class);
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private final Semaphore admitted;
+	private final Semaphore running;
+	private final int capacity;
+	private volatile boolean closed;
+
+	/**
+	 * @param maxConnections Maximum number of connections handled at the same time
+	 * @param backlog        Maximum number of connections waiting for a free slot
+	 * @throws IllegalArgumentException      maxConnections must be positive and
+	 *                                       backlog must not be negative
+	 * @throws UnsupportedOperationException If this JVM doesn't have virtual
+	 *                                       threads
+	 */
+	public VirtualThreadConnectionExecutor(int maxConnections, int backlog)
+			throws IllegalArgumentException, UnsupportedOperationException {
+		if (maxConnections <= 0)
+			throw new IllegalArgumentException("maxConnections must be positive");
+		if (backlog < 0)
+			throw new IllegalArgumentException("backlog must not be negative");
+		if (!isSupported())
+			throw new UnsupportedOperationException("Virtual threads are not available on this JVM");
+
+		this.capacity = maxConnections + backlog;
+		this.admitted = new Semaphore(this.capacity);
+		this.running = new Semaphore(maxConnections);
+	}
+
+	@Override
+	public boolean execute(Runnable connection) throws IllegalArgumentException {
+		if (connection == null)
+			throw new IllegalArgumentException("Connection must not be null");
+		if (this.closed || !this.admitted.tryAcquire())
+			return false;
+
+		try {
+			START_VIRTUAL_THREAD.invoke(null, (Runnable) () -> {
+				try {
+					this.running.acquireUninterruptibly();
+					try {
+						connection.run();
+					} finally {
+						this.running.release();
+					}
+				} finally {
+					this.admitted.release();
+				}
+			});
+			return true;
+		} catch (ReflectiveOperationException e) {
+			LOG.error("Unable to start a virtual thread", e);
+			this.admitted.release();
+			return false;
+		}
+	}
+
+	@Override
+	public int getActiveConnections() {
+		return this.capacity - this.admitted.availablePermits();
+	}
+
+	@Override
+	public void close() {
+		this.closed = true;
+	}
+
+}
@@ -0,0 +1,135 @@
+package logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.security.logging.AsyncAppender;
+import me.security.logging.Level;
+import me.security.logging.Logger;
+
+public class AsyncAppenderTest {
+
+	private static final Logger LOG = Logger.get(AsyncAppenderTest.class);
+
+	private AsyncAppender previous;
+	private Level level;
+
+	@Before
+	public void setUp() {
+		this.previous = Logger.getAppender();
+		this.level = Logger.LEVEL;
+	}
+
+	@After
+	public void tearDown() {
+		Logger.setAppender(this.previous);
+		Logger.LEVEL = this.level;
+	}
+
+	private String capture(boolean json, Runnable logging) {
+		StringWriter out = new StringWriter();
+		AsyncAppender appender = new AsyncAppender(out, json, 64);
+		Logger.setAppender(appender);
+		logging.run();
+		appender.close();
+		return out.toString();
+	}
+
+	@Test
+	public void testKeyValue() {
+		String text = capture(false, () -> LOG.info("Listening", "port", 8080, "transport", "Nio Rest", "path",
+				"a=\"b\"\n"));
+		assertTrue(text, text.startsWith("time="));
+		assertTrue(text, text.endsWith(" level=INFO logger=AsyncAppenderTest thread=main msg=Listening port=8080"
+				+ " transport=\"Nio Rest\" path=\"a=\\\"b\\\"\\n\"\n"));
+	}
+
+	@Test
+	public void testJson() {
+		String text = capture(true, () -> LOG.warn("Slow", "ms", 12.5, "ok", false, "who", "a\"b", "none", null));
+		assertTrue(text, text.startsWith("{\"time\":\""));
+		assertTrue(text, text.endsWith(",\"level\":\"WARN\",\"logger\":\"AsyncAppenderTest\",\"thread\":\"main\","
+				+ "\"msg\":\"Slow\",\"ms\":12.5,\"ok\":false,\"who\":\"a\\\"b\",\"none\":null}\n"));
+	}
+
+	@Test
+	public void testError() {
+		String text = capture(false, () -> LOG.error("Failed", new IllegalStateException("boom")));
+		assertEquals(1, text.split("\n").length);
+		assertTrue(text, text.contains(" error=\"java.lang.IllegalStateException: boom\" stack=\""));
+		assertTrue(text, text.contains("\\n\\tat logging.AsyncAppenderTest"));
+	}
+
+	@Test
+	public void testLevel() {
+		Logger.LEVEL = Level.WARN;
+		assertFalse(LOG.isEnabled(Level.INFO));
+		assertTrue(LOG.isEnabled(Level.ERROR));
+		String text = capture(false, () -> {
+			LOG.debug("Debug");
+			LOG.info("Info");
+			LOG.warn("Warn");
+		});
+		assertFalse(text.contains("msg=Info"));
+		assertTrue(text.contains("msg=Warn"));
+
+		Logger.LEVEL = Level.OFF;
+		assertEquals("", capture(false, () -> LOG.error("Error")));
+	}
+
+	@Test
+	public void testOrder() {
+		String text = capture(false, () -> {
+			for (int i = 0; i < 50; i++)
+				LOG.info("Record", "i", i);
+		});
+		String[] lines = text.split("\n");
+		assertEquals(50, lines.length);
+		for (int i = 0; i < 50; i++)
+			assertTrue(lines[i].endsWith(" i=" + i));
+	}
+
+	@Test
+	public void testDropped() throws Exception {
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Writer slow = new StringWriter() {
+			@Override
+			public void write(String str) {
+				blocked.countDown();
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				super.write(str);
+			}
+		};
+		AsyncAppender appender = new AsyncAppender(slow, false, 4);
+		Logger.setAppender(appender);
+
+		LOG.info("First");
+		assertTrue(blocked.await(5, TimeUnit.SECONDS));
+		// The writer is stuck on the first record, the buffer holds 4 more
+		for (int i = 0; i < 10; i++)
+			LOG.info("Burst", "i", i);
+		assertEquals(6, appender.getDropped());
+		release.countDown();
+		appender.close();
+
+		String text = slow.toString();
+		assertEquals(1 + 4 + 1, text.split("\n").length);
+		assertTrue(text, text.contains("msg=\"Log records dropped, the buffer was full\" count=6"));
+	}
+
+}
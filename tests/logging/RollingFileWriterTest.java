@@ -0,0 +1,80 @@
+package logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.security.logging.RollingFileWriter;
+
+public class RollingFileWriterTest {
+
+	private File dir;
+	private File file;
+
+	@Before
+	public void setUp() throws Exception {
+		this.dir = Files.createTempDirectory("rolling").toFile();
+		this.file = new File(this.dir, "server.log");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(this.dir);
+	}
+
+	private String read(File f) throws Exception {
+		return new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testRotate() throws Exception {
+		try (RollingFileWriter out = new RollingFileWriter(this.file, 10, 2)) {
+			out.write("line 1\n");
+			out.write("line 2\n");// Would exceed 10, rotated before
+			out.write("line 3\n");
+			out.write("line 4\n");
+			assertEquals(out.rotated(1), new File(this.dir, "server.log.1"));
+		}
+		assertEquals("line 4\n", read(this.file));
+		assertEquals("line 3\n", read(new File(this.dir, "server.log.1")));
+		assertEquals("line 2\n", read(new File(this.dir, "server.log.2")));
+		assertFalse(new File(this.dir, "server.log.3").exists());
+	}
+
+	@Test
+	public void testAppend() throws Exception {
+		try (RollingFileWriter out = new RollingFileWriter(this.file, 100, 1)) {
+			out.write("first\n");
+		}
+		try (RollingFileWriter out = new RollingFileWriter(this.file, 100, 1)) {
+			out.write("second\n");
+			out.flush();
+			assertEquals("first\nsecond\n", read(this.file));
+		}
+	}
+
+	@Test
+	public void testTruncate() throws Exception {
+		try (RollingFileWriter out = new RollingFileWriter(this.file, 8, 0)) {
+			out.write("line 1\n");
+			out.write("line 2\n");
+		}
+		assertEquals("line 2\n", read(this.file));
+		assertTrue(this.dir.list().length == 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSize() throws Exception {
+		new RollingFileWriter(this.file, 0, 1).close();
+	}
+
+}
@@ -0,0 +1,201 @@
+package logs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.security.logs.ConnectionPool;
+import me.security.logs.ConnectionPool.PooledConnection;
+
+public class ConnectionPoolTest {
+
+	private final AtomicBoolean valid = new AtomicBoolean(true);
+	private final AtomicInteger closed = new AtomicInteger();
+	private ConnectionPool pool;
+	private long validateIdle;
+
+	@Before
+	public void setUp() throws Exception {
+		this.validateIdle = ConnectionPool.VALIDATE_IDLE;
+		this.pool = new ConnectionPool(this::fakeConnection, 2, 100, 200);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		ConnectionPool.VALIDATE_IDLE = this.validateIdle;
+		this.pool.close();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConstructorNoSize() {
+		new ConnectionPool(this::fakeConnection, 0, 100, 100);
+	}
+
+	@Test
+	public void testReused() throws Exception {
+		Connection first;
+		try (PooledConnection c = this.pool.borrow()) {
+			first = c.getConnection();
+		}
+		try (PooledConnection c = this.pool.borrow()) {
+			assertSame(first, c.getConnection());
+		}
+		assertEquals(1, this.pool.getCreated());
+		assertEquals(1, this.pool.getIdle());
+		assertEquals(0, this.pool.getActive());
+	}
+
+	@Test(expected = SQLException.class)
+	public void testExhausted() throws Exception {
+		this.pool.borrow();
+		this.pool.borrow();
+		this.pool.borrow();
+	}
+
+	@Test
+	public void testIsConnectionError() {
+		assertTrue(ConnectionPool.isConnectionError(new SQLException("Communications link failure", "08S01")));
+		assertTrue(ConnectionPool.isConnectionError(new SQLRecoverableException("Connection closed")));
+		assertTrue(ConnectionPool.isConnectionError(
+				new SQLException("Batch failed", "HY000", new SQLTransientConnectionException("Timeout"))));
+		assertFalse(ConnectionPool.isConnectionError(new SQLException("Data too long for column", "22001")));
+		assertFalse(ConnectionPool.isConnectionError(new SQLException("Duplicate entry", "23000")));
+		assertFalse(ConnectionPool.isConnectionError(new SQLException("No state")));
+		try {
+			this.pool.borrow();
+			this.pool.borrow();
+			this.pool.borrow();
+		} catch (SQLException e) {
+			// Exhausted, the database itself is fine
+			assertFalse(ConnectionPool.isConnectionError(e));
+		}
+	}
+
+	@Test
+	public void testReserved() throws Exception {
+		this.pool.close();
+		this.pool = new ConnectionPool(this::fakeConnection, 3, 1, 100, 1000);
+		PooledConnection first = this.pool.borrow();
+		PooledConnection second = this.pool.borrow();
+		try {
+			this.pool.borrow();
+			fail("Only the reserved connection is left");
+		} catch (SQLException e) {
+			// Expected
+		}
+
+		PooledConnection reserved = this.pool.borrowReserved();
+		assertEquals(3, this.pool.getActive());
+		reserved.close();
+
+		first.close();
+		// A free shared connection is used before the reserved one
+		PooledConnection writer = this.pool.borrowReserved();
+		reserved = this.pool.borrowReserved();
+		assertEquals(3, this.pool.getActive());
+		reserved.close();
+		writer.close();
+		second.close();
+		assertEquals(0, this.pool.getActive());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReservedEveryConnection() {
+		new ConnectionPool(this::fakeConnection, 2, 2, 100, 100);
+	}
+
+	@Test
+	public void testValidatedOnBorrow() throws Exception {
+		ConnectionPool.VALIDATE_IDLE = 0;
+		Connection first;
+		try (PooledConnection c = this.pool.borrow()) {
+			first = c.getConnection();
+		}
+		Thread.sleep(5);
+		this.valid.set(false);
+		try (PooledConnection c = this.pool.borrow()) {
+			assertNotSame(first, c.getConnection());
+		}
+		assertEquals(1, this.closed.get());
+	}
+
+	@Test
+	public void testInvalidatedNotReused() throws Exception {
+		try (PooledConnection c = this.pool.borrow()) {
+			c.invalidate();
+		}
+		assertEquals(0, this.pool.getIdle());
+		assertEquals(1, this.closed.get());
+		try (PooledConnection c = this.pool.borrow()) {
+			assertEquals(2, this.pool.getCreated());
+		}
+	}
+
+	@Test
+	public void testStatementCached() throws Exception {
+		PreparedStatement stmt;
+		try (PooledConnection c = this.pool.borrow()) {
+			stmt = c.prepare("SELECT 1");
+			assertNotSame(stmt, c.prepare("SELECT 2"));
+		}
+		try (PooledConnection c = this.pool.borrow()) {
+			assertSame(stmt, c.prepare("SELECT 1"));
+		}
+	}
+
+	@Test
+	public void testLeakDetected() throws Exception {
+		PooledConnection leaked = this.pool.borrow();
+		Thread.sleep(500);
+		assertEquals(1, this.pool.getLeaks());
+		leaked.close();
+		assertTrue(this.pool.getIdle() == 1);
+	}
+
+	private Connection fakeConnection() {
+		AtomicBoolean isClosed = new AtomicBoolean();
+		return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+					case "isValid":
+						return this.valid.get();
+					case "close":
+						isClosed.set(true);
+						this.closed.incrementAndGet();
+						return null;
+					case "isClosed":
+						return isClosed.get();
+					case "prepareStatement":
+						return Proxy.newProxyInstance(getClass().getClassLoader(),
+								new Class<?>[] { PreparedStatement.class }, (p, m, a) -> {
+									if (m.getName().equals("isClosed"))
+										return false;
+									return null;
+								});
+					case "hashCode":
+						return System.identityHashCode(proxy);
+					case "equals":
+						return proxy == args[0];
+					default:
+						return null;
+					}
+				});
+	}
+
+}
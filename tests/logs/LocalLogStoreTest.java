@@ -0,0 +1,166 @@
+package logs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.security.logs.LocalLogStore;
+import me.security.managers.DatabaseManager.Log;
+
+public class LocalLogStoreTest {
+
+	private int segmentSize;
+	private File directory;
+	private LocalLogStore store;
+
+	@Before
+	public void setUp() throws Exception {
+		this.segmentSize = LocalLogStore.SEGMENT_SIZE;
+		LocalLogStore.SEGMENT_SIZE = 256;
+		this.directory = Files.createTempDirectory("logs.local").toFile();
+		this.store = new LocalLogStore(this.directory);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.store.close();
+		for (File file : this.directory.listFiles())
+			file.delete();
+		this.directory.delete();
+		LocalLogStore.SEGMENT_SIZE = this.segmentSize;
+	}
+
+	private static List<Log> logs(int from, int count) {
+		List<Log> logs = new ArrayList<Log>();
+		for (int i = from; i < from + count; i++)
+			logs.add(new Log(0, 1000L + i, i % 2 == 0, "Log " + i));
+		return logs;
+	}
+
+	@Test
+	public void testReplayInOrder() throws Exception {
+		this.store.append(logs(0, 30));
+		assertEquals(30, this.store.getPending());
+		assertTrue(this.directory.listFiles().length > 1);
+
+		List<Log> replayed = new ArrayList<Log>();
+		List<Integer> batches = new ArrayList<Integer>();
+		assertEquals(30, this.store.replay(batch -> {
+			replayed.addAll(batch);
+			batches.add(batch.size());
+			return new int[batch.size()];
+		}, 4));
+
+		assertEquals(30, replayed.size());
+		for (int i = 0; i < 30; i++) {
+			assertEquals("Log " + i, replayed.get(i).info);
+			assertEquals(1000L + i, replayed.get(i).time);
+			assertEquals(i % 2 == 0, replayed.get(i).relatedToSensor);
+		}
+		for (int size : batches)
+			assertTrue(size <= 4);
+		assertTrue(this.store.isEmpty());
+		assertEquals(0, this.directory.listFiles().length);
+	}
+
+	@Test
+	public void testFailedBatchStays() throws Exception {
+		this.store.append(logs(0, 10));
+		List<Log> replayed = new ArrayList<Log>();
+		try {
+			this.store.replay(batch -> {
+				if (!replayed.isEmpty())
+					throw new IllegalStateException("Database unreachable");
+				replayed.addAll(batch);
+				return new int[batch.size()];
+			}, 3);
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		assertEquals(7, this.store.getPending());
+
+		replayed.clear();
+		this.store.replay(batch -> {
+			replayed.addAll(batch);
+			return new int[batch.size()];
+		}, 3);
+		assertEquals("Log 3", replayed.get(0).info);
+		assertEquals(7, replayed.size());
+	}
+
+	@Test
+	public void testReopen() throws Exception {
+		this.store.append(logs(0, 20));
+		try {
+			this.store.replay(batch -> {
+				if (batch.get(0).info.equals("Log 5"))
+					throw new IllegalStateException("Database unreachable");
+				return new int[batch.size()];
+			}, 5);
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		this.store.close();
+
+		this.store = new LocalLogStore(this.directory);
+		assertEquals(15, this.store.getPending());
+		this.store.append(logs(20, 1));
+		List<Log> last = this.store.getLast(3);
+		assertEquals(Arrays.asList("Log 20", "Log 19", "Log 18"),
+				Arrays.asList(last.get(0).info, last.get(1).info, last.get(2).info));
+		assertEquals(0, last.get(0).id);
+	}
+
+	@Test
+	public void testAppendAfterReplay() throws Exception {
+		this.store.append(logs(0, 2));
+		this.store.replay(batch -> new int[batch.size()], 10);
+		this.store.append(logs(2, 1));
+		assertEquals(1, this.store.getPending());
+		assertFalse(this.store.isEmpty());
+		assertEquals("Log 2", this.store.getLast(10).get(0).info);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testLogTooLong() throws Exception {
+		char[] info = new char[300];
+		Arrays.fill(info, 'x');
+		this.store.append(Arrays.asList(new Log(0, 0L, false, new String(info))));
+	}
+
+	@Test
+	public void testLogTooLongAppendsNothing() throws Exception {
+		char[] info = new char[300];
+		Arrays.fill(info, 'x');
+		List<Log> batch = logs(0, 20);
+		batch.add(new Log(0, 0L, false, new String(info)));
+		try {
+			this.store.append(batch);
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		assertEquals(0, this.store.getPending());
+		assertEquals(0, this.store.replay(b -> new int[b.size()], 10));
+	}
+
+	@Test
+	public void testGetLastFiltered() throws Exception {
+		this.store.append(logs(0, 30));
+		List<Log> last = this.store.getLast(3, log -> log.relatedToSensor);
+		assertEquals(Arrays.asList("Log 28", "Log 26", "Log 24"),
+				Arrays.asList(last.get(0).info, last.get(1).info, last.get(2).info));
+		assertEquals(15, this.store.getLast(100, log -> log.relatedToSensor).size());
+		assertEquals("Log 0", this.store.getLast(30).get(29).info);
+	}
+
+}
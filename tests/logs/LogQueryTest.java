@@ -0,0 +1,61 @@
+package logs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import me.security.logs.LogQuery;
+
+public class LogQueryTest {
+
+	@Test
+	public void testNext() {
+		LogQuery query = new LogQuery(0, 20, true, 1000, 2000, "porte");
+		LogQuery next = query.next(480);
+		assertEquals(480, next.getBefore());
+		assertEquals(20, next.getLimit());
+		assertTrue(next.isSensorOnly());
+		assertEquals(1000, next.getFrom());
+		assertEquals(2000, next.getTo());
+		assertEquals("porte", next.getText());
+	}
+
+	@Test
+	public void testMatches() {
+		LogQuery query = new LogQuery(0, 20, true, 1000, 2000, "PORTE");
+		assertTrue(query.matches(1000, true, "Porte ouverte"));
+		assertFalse(query.matches(1000, false, "Porte ouverte"));
+		assertFalse(query.matches(2000, true, "Porte ouverte"));
+		assertFalse(query.matches(999, true, "Porte ouverte"));
+		assertFalse(query.matches(1500, true, "Fenêtre ouverte"));
+	}
+
+	@Test
+	public void testEmptyTextMatchesAll() {
+		assertNull(new LogQuery(0, 20, false, 0, 0, "").getText());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testLimitTooHigh() {
+		new LogQuery(0, LogQuery.MAX_LIMIT + 1, false, 0, 0, null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testLimitZero() {
+		new LogQuery(0, 0, false, 0, 0, null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeBefore() {
+		new LogQuery(-1, 20, false, 0, 0, null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEmptyRange() {
+		new LogQuery(0, 20, false, 2000, 2000, null);
+	}
+
+}
@@ -0,0 +1,192 @@
+package logs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.security.logs.ConnectionPool;
+import me.security.logs.LogRetention;
+import me.security.managers.DatabaseManager.Log;
+
+public class LogRetentionTest {
+
+	private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+	/**
+	 * Fake logs table, by id
+	 */
+	private final TreeMap<Integer, Log> logs = new TreeMap<Integer, Log>();
+	private final Map<String, Integer> hourly = new HashMap<String, Integer>();
+	private int chunkSize;
+	private long chunkPause;
+	private File directory;
+	private ConnectionPool pool;
+
+	@Before
+	public void setUp() throws Exception {
+		this.chunkSize = LogRetention.CHUNK_SIZE;
+		this.chunkPause = LogRetention.CHUNK_PAUSE;
+		LogRetention.CHUNK_SIZE = 4;
+		LogRetention.CHUNK_PAUSE = 0;
+		this.directory = Files.createTempDirectory("logs.archive").toFile();
+		this.pool = new ConnectionPool(this::fakeConnection, 2, 100, 10000);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		LogRetention.CHUNK_SIZE = this.chunkSize;
+		LogRetention.CHUNK_PAUSE = this.chunkPause;
+		this.pool.close();
+		for (File file : this.directory.listFiles())
+			file.delete();
+		this.directory.delete();
+	}
+
+	@Test
+	public void testArchiveRollupAndDelete() throws Exception {
+		long old = System.currentTimeMillis() - 10 * DAY;
+		old -= old % TimeUnit.HOURS.toMillis(1);
+		for (int id = 1; id <= 9; id++) {
+			boolean sensor = id % 3 != 0;
+			this.logs.put(id, new Log(id, old + id, sensor, sensor ? "Detection Porte (ouverte)" : "Alarme activée"));
+		}
+		this.logs.put(10, new Log(10, System.currentTimeMillis(), true, "Detection Porte (ouverte)"));
+		// Replayed log, newer than its id
+		this.logs.put(5, new Log(5, System.currentTimeMillis(), true, "Detection Fenêtre (ouverte)"));
+
+		LogRetention retention = new LogRetention(this.pool, this.directory, DAY);
+		assertEquals(8, retention.run("time"));
+
+		assertEquals(2, this.logs.size());
+		assertTrue(this.logs.containsKey(5));
+		assertTrue(this.logs.containsKey(10));
+		assertEquals(1, this.hourly.size());
+		assertEquals(Integer.valueOf(5), this.hourly.get("Porte"));
+
+		File[] archives = this.directory.listFiles();
+		assertEquals(1, archives.length);
+		List<String> lines = new ArrayList<String>();
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(
+				new GZIPInputStream(new FileInputStream(archives[0])), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = in.readLine()) != null)
+				lines.add(line);
+		}
+		assertEquals(8, lines.size());
+		assertTrue(lines.get(0).contains("\"id\":1"));
+	}
+
+	@Test
+	public void testNothingToArchive() throws Exception {
+		this.logs.put(1, new Log(1, System.currentTimeMillis(), true, "Detection Porte (ouverte)"));
+		assertEquals(0, new LogRetention(this.pool, this.directory, DAY).run("time"));
+		assertEquals(0, this.directory.listFiles().length);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoMaxAge() {
+		new LogRetention(this.pool, this.directory, 0);
+	}
+
+	/**
+	 * A connection running the few statements of LogRetention on the fake table
+	 */
+	private Connection fakeConnection() {
+		return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+					case "createStatement":
+						return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Statement.class },
+								(p, m, a) -> m.getName().equals("execute") ? false : null);
+					case "prepareStatement":
+						return fakeStatement((String) args[0]);
+					case "isValid":
+						return true;
+					default:
+						return null;
+					}
+				});
+	}
+
+	private PreparedStatement fakeStatement(String sql) {
+		Map<Integer, Object> params = new HashMap<Integer, Object>();
+		List<Map<Integer, Object>> batch = new ArrayList<Map<Integer, Object>>();
+		return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, (proxy, method, args) -> {
+					String name = method.getName();
+					if (name.startsWith("set")) {
+						params.put((Integer) args[0], args[1]);
+					} else if (name.equals("addBatch")) {
+						batch.add(new HashMap<Integer, Object>(params));
+					} else if (name.equals("executeBatch")) {
+						for (Map<Integer, Object> row : batch)
+							this.hourly.merge((String) row.get(2), (Integer) row.get(3), Integer::sum);
+						batch.clear();
+						return new int[0];
+					} else if (name.equals("executeUpdate")) {
+						long cutoff = ((Timestamp) params.get(3)).getTime();
+						return select((Integer) params.get(1) - 1, (Integer) params.get(2), cutoff, Integer.MAX_VALUE)
+								.stream().mapToInt(log -> this.logs.remove(log.id) != null ? 1 : 0).sum();
+					} else if (name.equals("executeQuery")) {
+						return fakeResultSet(select((Integer) params.get(1), Integer.MAX_VALUE,
+								((Timestamp) params.get(2)).getTime(), (Integer) params.get(3)));
+					} else if (name.equals("isClosed")) {
+						return false;
+					}
+					return null;
+				});
+	}
+
+	private List<Log> select(int after, int upTo, long cutoff, int limit) {
+		List<Log> selected = new ArrayList<Log>();
+		for (Log log : this.logs.subMap(after, false, upTo, true).values())
+			if (log.time < cutoff && selected.size() < limit)
+				selected.add(log);
+		return selected;
+	}
+
+	private ResultSet fakeResultSet(List<Log> rows) {
+		int[] row = { -1 };
+		return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ResultSet.class },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+					case "next":
+						return ++row[0] < rows.size();
+					case "getInt":
+						return rows.get(row[0]).id;
+					case "getTimestamp":
+						return new Timestamp(rows.get(row[0]).time);
+					case "getBoolean":
+						return rows.get(row[0]).relatedToSensor;
+					case "getString":
+						return rows.get(row[0]).info;
+					default:
+						return null;
+					}
+				});
+	}
+
+}
@@ -0,0 +1,106 @@
+package logs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import me.security.logs.LogWriter;
+import me.security.managers.DatabaseManager.Log;
+
+public class LogWriterTest {
+
+	private final List<Integer> batchSizes = new ArrayList<Integer>();
+	private final List<Log> written = new ArrayList<Log>();
+	private LogWriter writer;
+
+	@After
+	public void tearDown() throws Exception {
+		if (this.writer != null)
+			this.writer.close();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConstructorNullSink() {
+		new LogWriter(null, log -> {
+		});
+	}
+
+	@Test
+	public void testBatchedWithIds() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		this.writer = new LogWriter(batch -> {
+			release.await();
+			int[] ids = new int[batch.size()];
+			synchronized (this.batchSizes) {
+				for (int i = 0; i < ids.length; i++)
+					ids[i] = this.written.size() + i + 1;
+				this.batchSizes.add(batch.size());
+			}
+			return ids;
+		}, log -> {
+			synchronized (this.batchSizes) {
+				this.written.add(log);
+			}
+		}, 64, 10, 0);
+
+		for (int i = 0; i < 25; i++)
+			assertTrue(this.writer.offer(new Log(0, i, false, "Log " + i)));
+		release.countDown();
+		this.writer.close();
+
+		assertEquals(25, this.writer.getWritten());
+		assertTrue(this.writer.getBatches() <= 4);
+		for (int size : this.batchSizes)
+			assertTrue(size <= 10);
+		for (int i = 0; i < 25; i++) {
+			assertEquals(i + 1, this.written.get(i).id);
+			assertEquals("Log " + i, this.written.get(i).info);
+		}
+	}
+
+	@Test
+	public void testDroppedWhenSinkStuck() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		this.writer = new LogWriter(batch -> {
+			release.await();
+			throw new IllegalStateException("Database down");
+		}, log -> {
+			synchronized (this.written) {
+				this.written.add(log);
+			}
+		}, 4, 1, 0);
+
+		int accepted = 0;
+		for (int i = 0; i < 10; i++)
+			if (this.writer.offer(new Log(0, i, true, "Detection " + i)))
+				accepted++;
+		assertTrue(this.writer.getDropped() > 0);
+		assertEquals(10, accepted + this.writer.getDropped());
+
+		release.countDown();
+		this.writer.close();
+		assertEquals(accepted, this.writer.getFailed());
+		assertEquals(accepted, this.written.size());
+		assertEquals(0, this.written.get(0).id);
+		assertFalse(this.writer.offer(new Log(0, 0, false, "Closed")));
+	}
+
+	@Test
+	public void testLingerBounded() throws Exception {
+		CountDownLatch done = new CountDownLatch(1);
+		this.writer = new LogWriter(batch -> new int[batch.size()], log -> done.countDown(), 64, 100, 50);
+		long start = System.nanoTime();
+		this.writer.offer(new Log(0, 0, false, "Alone"));
+		assertTrue(done.await(1, TimeUnit.SECONDS));
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+	}
+
+}
@@ -0,0 +1,120 @@
+package logs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.security.logs.LogQuery;
+import me.security.logs.MemoryLogStore;
+import me.security.managers.DatabaseManager.Log;
+
+public class MemoryLogStoreTest {
+
+	private int chunkSize;
+	private MemoryLogStore store;
+
+	@Before
+	public void setUp() throws Exception {
+		this.chunkSize = MemoryLogStore.CHUNK_SIZE;
+		MemoryLogStore.CHUNK_SIZE = 8;
+		this.store = new MemoryLogStore(4, false);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.store.close();
+		MemoryLogStore.CHUNK_SIZE = this.chunkSize;
+	}
+
+	@Test
+	public void testLast10Logs() {
+		for (int i = 1; i <= 12; i++)
+			this.store.rawLog(i % 2 == 0, "Log " + i);
+		List<Log> last = this.store.getLast10Logs();
+		assertEquals(10, last.size());
+		assertEquals("Log 12", last.get(0).info);
+		assertEquals(12, last.get(0).id);
+		assertEquals("Log 3", last.get(9).info);
+		assertTrue(last.get(0).relatedToSensor);
+	}
+
+	@Test
+	public void testKeysetPages() throws Exception {
+		for (int i = 1; i <= 20; i++)
+			this.store.rawLog(i % 2 == 0, "Log " + i);
+
+		List<Integer> ids = new ArrayList<Integer>();
+		LogQuery query = new LogQuery(0, 3, true, 0, 0, null);
+		int rows;
+		do {
+			List<Integer> page = new ArrayList<Integer>();
+			rows = this.store.queryLogs(query, (id, time, relatedToSensor, info) -> page.add(id));
+			ids.addAll(page);
+			if (!page.isEmpty())
+				query = query.next(page.get(page.size() - 1));
+		} while (rows == query.getLimit());
+
+		assertEquals(10, ids.size());
+		assertEquals(Integer.valueOf(20), ids.get(0));
+		assertEquals(Integer.valueOf(2), ids.get(9));
+	}
+
+	@Test
+	public void testOldChunksForgotten() {
+		for (int i = 1; i <= 100; i++)
+			this.store.rawLog(false, "Log " + i);
+		List<Integer> ids = new ArrayList<Integer>();
+		try {
+			this.store.queryLogs(new LogQuery(0, LogQuery.MAX_LIMIT, false, 0, 0, null),
+					(id, time, relatedToSensor, info) -> ids.add(id));
+		} catch (Exception e) {
+			throw new AssertionError(e);
+		}
+		// Ids 96 to 100 are in the last chunk, 3 full chunks before it
+		assertEquals(5 + 3 * 8, ids.size());
+		assertEquals(Integer.valueOf(100), ids.get(0));
+	}
+
+	@Test
+	public void testConcurrentAppends() throws Exception {
+		this.store = new MemoryLogStore(1000, false);
+		Set<Integer> notified = new HashSet<Integer>();
+		this.store.addLogListener(log -> {
+			synchronized (notified) {
+				notified.add(log.id);
+			}
+		});
+
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 1000; i++)
+					this.store.rawLog(true, "Detection Porte");
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+
+		assertEquals(4000, this.store.getSize());
+		assertEquals(4000, notified.size());
+		int[] count = new int[1];
+		this.store.queryLogs(new LogQuery(0, LogQuery.MAX_LIMIT, false, 0, 0, "porte"),
+				(id, time, relatedToSensor, info) -> count[0]++);
+		assertEquals(LogQuery.MAX_LIMIT, count[0]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEmptyInfo() {
+		this.store.rawLog(false, "");
+	}
+
+}
@@ -0,0 +1,73 @@
+package logs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import me.security.logs.MpscRingBuffer;
+
+public class MpscRingBufferTest {
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConstructorNoCapacity() {
+		new MpscRingBuffer<String>(0);
+	}
+
+	@Test
+	public void testCapacityRoundedUp() {
+		assertEquals(8, new MpscRingBuffer<String>(5).capacity());
+	}
+
+	@Test
+	public void testFifoAndFull() {
+		MpscRingBuffer<String> ring = new MpscRingBuffer<String>(2);
+		assertTrue(ring.offer("a"));
+		assertTrue(ring.offer("b"));
+		assertFalse(ring.offer("c"));
+		assertEquals(2, ring.size());
+
+		assertEquals("a", ring.poll());
+		assertTrue(ring.offer("c"));
+		assertEquals("b", ring.poll());
+		assertEquals("c", ring.poll());
+		assertNull(ring.poll());
+	}
+
+	@Test
+	public void testConcurrentProducers() throws Exception {
+		MpscRingBuffer<Integer> ring = new MpscRingBuffer<Integer>(1024);
+		Thread[] producers = new Thread[4];
+		for (int p = 0; p < producers.length; p++) {
+			int base = p * 100_000;
+			producers[p] = new Thread(() -> {
+				for (int i = 0; i < 100_000; i++)
+					while (!ring.offer(base + i))
+						Thread.yield();
+			});
+			producers[p].start();
+		}
+
+		Set<Integer> received = new HashSet<Integer>();
+		int[] last = new int[producers.length];
+		while (received.size() < 400_000) {
+			Integer e = ring.poll();
+			if (e == null)
+				continue;
+			assertTrue(received.add(e));
+			// Elements of a single producer keep their order
+			int p = e / 100_000;
+			assertTrue(e % 100_000 >= last[p]);
+			last[p] = e % 100_000;
+		}
+		for (Thread t : producers)
+			t.join();
+		assertNull(ring.poll());
+	}
+
+}
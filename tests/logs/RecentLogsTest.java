@@ -0,0 +1,71 @@
+package logs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import me.security.logs.RecentLogs;
+import me.security.managers.DatabaseManager.Log;
+
+public class RecentLogsTest {
+
+	private RecentLogs recent;
+
+	@Before
+	public void setUp() throws Exception {
+		this.recent = new RecentLogs(3);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConstructorNoSize() {
+		new RecentLogs(0);
+	}
+
+	@Test
+	public void testNewestFirstBounded() {
+		for (int i = 1; i <= 5; i++)
+			this.recent.accept(log(i));
+		List<Log> last = this.recent.getLast(10);
+		assertEquals(3, last.size());
+		assertEquals(5, last.get(0).id);
+		assertEquals(3, last.get(2).id);
+		assertEquals(1, this.recent.getLast(1).size());
+	}
+
+	@Test
+	public void testSnapshotNotChangedByWrites() {
+		this.recent.accept(log(1));
+		List<Log> before = this.recent.getLast(10);
+		long version = this.recent.getVersion();
+		this.recent.accept(log(2));
+		assertEquals(1, before.size());
+		assertTrue(this.recent.getVersion() > version);
+	}
+
+	@Test
+	public void testWarmKeepsNewerLogs() {
+		this.recent.accept(log(10));
+		this.recent.warm(Arrays.asList(log(9), log(8), log(7)));
+		List<Log> last = this.recent.getLast(10);
+		assertEquals(3, last.size());
+		assertEquals(10, last.get(0).id);
+		assertEquals(9, last.get(1).id);
+		assertEquals(8, last.get(2).id);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testUnmodifiable() {
+		this.recent.accept(log(1));
+		this.recent.getLast(1).clear();
+	}
+
+	private static Log log(int id) {
+		return new Log(id, id * 1000L, false, "Log " + id);
+	}
+
+}
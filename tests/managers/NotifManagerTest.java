@@ -4,6 +4,11 @@
 package managers;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
 import org.junit.Before;
@@ -11,6 +16,9 @@ import org.junit.Test;
 
 import me.security.managers.NotificationManager;
 import me.security.notification.NotificationFreeAPI;
+import me.security.notification.NotificationOutbox;
+import me.security.notification.NotificationPolicy;
+import me.security.notification.NotificationSender;
 
 /**
  * @author Ekinoxx
@@ -79,4 +87,81 @@ public class NotifManagerTest {
 				this.notif.toString());
 	}
 
+	@Test
+	public void testRefusedNotificationAcked() throws Exception {
+		File file = File.createTempFile("notifications", ".outbox");
+		file.delete();
+		NotificationOutbox outbox = new NotificationOutbox(file);
+		NotificationManager notif = new NotificationManager(outbox);
+		try {
+			AtomicInteger calls = new AtomicInteger();
+			notif.add(failingSender(calls, new IllegalArgumentException("Service not activated")),
+					new NotificationPolicy(0, 1, 1000, 1, 0, 1, 100, 1));
+
+			notif.triggerAll("Porte ouverte");
+			for (int i = 0; i < 200 && !outbox.getPending().isEmpty(); i++)
+				Thread.sleep(10);
+			assertTrue(outbox.getPending().isEmpty());
+			assertEquals(1, calls.get());
+		} finally {
+			notif.close();
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testFailedNotificationKept() throws Exception {
+		long maxAge = NotificationManager.MAX_AGE;
+		File file = File.createTempFile("notifications", ".outbox");
+		file.delete();
+		NotificationOutbox outbox = new NotificationOutbox(file);
+		NotificationManager notif = new NotificationManager(outbox);
+		try {
+			NotificationManager.MAX_AGE = 0;
+			AtomicInteger calls = new AtomicInteger();
+			notif.add(failingSender(calls, new IllegalStateException("Provider down")),
+					new NotificationPolicy(0, 1, 1000, 1, 0, 1, 100, 1));
+
+			notif.triggerAll("Porte ouverte");
+			for (int i = 0; i < 200 && calls.get() < 20; i++)
+				Thread.sleep(10);
+			assertTrue(calls.get() >= 20);
+			assertEquals(1, outbox.getPending().size());
+
+			NotificationManager.MAX_AGE = 1;// Given up at its next failure
+			for (int i = 0; i < 200 && !outbox.getPending().isEmpty(); i++)
+				Thread.sleep(10);
+			assertTrue(outbox.getPending().isEmpty());
+		} finally {
+			NotificationManager.MAX_AGE = maxAge;
+			notif.close();
+			file.delete();
+		}
+	}
+
+	private static NotificationSender failingSender(AtomicInteger calls, RuntimeException error) {
+		return new NotificationSender() {
+			@Override
+			public void trigger(String value) {
+				calls.incrementAndGet();
+				throw error;
+			}
+
+			@Override
+			public void trigger(List<String> values) {
+				trigger(values.toString());
+			}
+
+			@Override
+			public boolean equals(Object o) {
+				return o == this;
+			}
+
+			@Override
+			public int hashCode() {
+				return System.identityHashCode(this);
+			}
+		};
+	}
+
 }
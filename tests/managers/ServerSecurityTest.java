@@ -0,0 +1,143 @@
+package managers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.security.hardware.sensors.Sensor;
+import me.security.logs.MemoryLogStore;
+import me.security.managers.DatabaseManager.Log;
+import me.security.managers.NotificationManager;
+import me.security.managers.ServerSecurity;
+import me.security.notification.NotificationSender;
+
+public class ServerSecurityTest {
+
+	private MemoryLogStore db;
+	private NotificationManager notif;
+	private RecordingSender sender;
+	private ServerSecurity security;
+	private Sensor sensor;
+	private List<Boolean> decisions;
+
+	@Before
+	public void setUp() {
+		this.db = new MemoryLogStore(1, false);
+		this.notif = new NotificationManager();
+		this.sender = new RecordingSender();
+		this.notif.add(this.sender);
+		this.security = new ServerSecurity(this.db, this.notif);
+		this.sensor = new Sensor(1, "door");
+		this.security.addSensor(this.sensor);
+		this.decisions = new CopyOnWriteArrayList<Boolean>();
+		this.security.addDetectionListener(event -> this.decisions.add(event.isAlarm()));
+	}
+
+	@After
+	public void tearDown() {
+		this.security.close();
+		this.notif.close();
+		this.db.close();
+	}
+
+	@Test
+	public void testDetectAlarmDisabled() {
+		assertTrue(this.security.detect(this.sensor, "opened"));
+		this.security.close();
+
+		assertEquals(1, this.decisions.size());
+		assertFalse(this.decisions.get(0));
+		assertEquals(0, this.db.getSize());
+	}
+
+	@Test
+	public void testDetectAlarmEnabled() throws InterruptedException {
+		this.security.toggleAlarm("test");
+		this.security.detect(this.sensor, "opened");
+		this.security.close();
+
+		assertEquals(1, this.decisions.size());
+		assertTrue(this.decisions.get(0));
+		List<Log> logs = this.db.getLast10Logs();
+		assertEquals("Detection door (opened)", logs.get(0).info);
+		assertTrue(logs.get(0).relatedToSensor);
+		assertEquals("[door, opened]", this.sender.await());
+	}
+
+	@Test
+	public void testDetectSensorDisabled() {
+		this.security.toggleAlarm("test");
+		this.sensor.toggle();
+		this.security.detect(this.sensor, "opened");
+		this.security.close();
+
+		assertEquals(1, this.decisions.size());
+		assertFalse(this.decisions.get(0));
+	}
+
+	@Test
+	public void testTriggerAlarm() throws InterruptedException {
+		this.security.triggerAlarm("REST", "test");
+		this.security.close();
+
+		assertEquals(1, this.decisions.size());
+		assertTrue(this.decisions.get(0));
+		assertEquals("[REST, test]", this.sender.await());
+	}
+
+	@Test
+	public void testDetectClosed() {
+		this.security.close();
+		assertFalse(this.security.detect(this.sensor, "opened"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDetectNullSensor() {
+		this.security.detect(null, "opened");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDetectNullMessage() {
+		this.security.detect(this.sensor, null);
+	}
+
+	private static class RecordingSender extends NotificationSender {
+
+		private final List<String> sent = new CopyOnWriteArrayList<String>();
+
+		@Override
+		public void trigger(String value) {
+			this.sent.add(value);
+		}
+
+		@Override
+		public void trigger(List<String> values) {
+			this.sent.add(values.toString());
+		}
+
+		private String await() throws InterruptedException {
+			for (int i = 0; i < 200 && this.sent.isEmpty(); i++)
+				Thread.sleep(10);
+			return this.sent.isEmpty() ? null : this.sent.get(0);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o == this;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(this);
+		}
+
+	}
+
+}
@@ -0,0 +1,46 @@
+package metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import me.security.metrics.LatencyHistogram;
+import me.security.metrics.MetricsRegistry;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void testBounds() {
+		LatencyHistogram histogram = new MetricsRegistry().histogram("t_seconds", "Test");
+		histogram.record(500_000);// Exactly 0.5ms, le is inclusive
+		histogram.record(500_001);
+		histogram.record(-1);// Clock skew, counted as 0
+		assertEquals(2, histogram.getBucket(0));
+		assertEquals(1, histogram.getBucket(1));
+		assertEquals(3, histogram.getCount());
+	}
+
+	@Test
+	public void testConcurrentRecords() throws Exception {
+		LatencyHistogram histogram = new MetricsRegistry().histogram("t_seconds", "Test");
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 8; t++) {
+			Thread thread = new Thread(() -> {
+				for (int i = 0; i < 100_000; i++)
+					histogram.record(1_000_000);
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+
+		assertEquals(800_000, histogram.getCount());
+		assertEquals(800_000, histogram.getBucket(1));
+		assertEquals(800, histogram.getSum(), 1e-6);
+	}
+
+}
@@ -0,0 +1,107 @@
+package metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import me.security.metrics.Counter;
+import me.security.metrics.Gauge;
+import me.security.metrics.LatencyHistogram;
+import me.security.metrics.MetricsRegistry;
+
+public class MetricsRegistryTest {
+
+	private MetricsRegistry registry;
+
+	@Before
+	public void setUp() {
+		this.registry = new MetricsRegistry();
+	}
+
+	@Test
+	public void testCounter() {
+		Counter counter = this.registry.counter("requests_total", "Requests", "endpoint", "/alarm");
+		assertSame(counter, this.registry.counter("requests_total", "Requests", "endpoint", "/alarm"));
+		counter.increment();
+		counter.add(2);
+		this.registry.counter("requests_total", "Requests", "endpoint", "/logs").increment();
+
+		assertEquals("# HELP requests_total Requests\n" + "# TYPE requests_total counter\n"
+				+ "requests_total{endpoint=\"/alarm\"} 3\n" + "requests_total{endpoint=\"/logs\"} 1\n",
+				this.registry.scrape());
+	}
+
+	@Test
+	public void testGauge() {
+		AtomicLong depth = new AtomicLong(4);
+		Gauge first = this.registry.gauge("queue_depth", "Queued", depth::get);
+		assertTrue(this.registry.scrape().contains("\nqueue_depth 4\n"));
+		depth.set(7);
+		assertTrue(this.registry.scrape().contains("\nqueue_depth 7\n"));
+
+		// Replaced, removing the first one must not remove the second
+		Gauge second = this.registry.gauge("queue_depth", "Queued", () -> 9);
+		assertFalse(this.registry.remove(first));
+		assertTrue(this.registry.scrape().contains("\nqueue_depth 9\n"));
+		assertTrue(this.registry.remove(second));
+		assertEquals("", this.registry.scrape());
+	}
+
+	@Test
+	public void testHistogram() {
+		LatencyHistogram histogram = this.registry.histogram("query_seconds", "Queries");
+		histogram.record(400_000);// 0.4ms
+		histogram.record(3_000_000);// 3ms
+		histogram.record(20_000_000_000L);// 20s
+
+		String text = this.registry.scrape();
+		assertTrue(text.contains("# TYPE query_seconds histogram\n"));
+		assertTrue(text.contains("query_seconds_bucket{le=\"0.0005\"} 1\n"));
+		assertTrue(text.contains("query_seconds_bucket{le=\"0.0025\"} 1\n"));
+		assertTrue(text.contains("query_seconds_bucket{le=\"0.005\"} 2\n"));
+		assertTrue(text.contains("query_seconds_bucket{le=\"10\"} 2\n"));
+		assertTrue(text.contains("query_seconds_bucket{le=\"+Inf\"} 3\n"));
+		assertTrue(text.contains("query_seconds_sum 20.0034\n"));
+		assertTrue(text.contains("query_seconds_count 3\n"));
+	}
+
+	@Test
+	public void testLabels() {
+		this.registry.histogram("send_seconds", "Sends", "provider", "Free\"API\\").record(1);
+		String text = this.registry.scrape();
+		assertTrue(text, text.contains("send_seconds_bucket{provider=\"Free\\\"API\\\\\",le=\"0.0005\"} 1\n"));
+		assertTrue(text.contains("send_seconds_count{provider=\"Free\\\"API\\\\\"} 1\n"));
+		assertSame(this.registry.get("send_seconds", "provider", "Free\"API\\"),
+				this.registry.histogram("send_seconds", "Sends", "provider", "Free\"API\\"));
+		assertNull(this.registry.get("send_seconds"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTypeConflict() {
+		this.registry.counter("requests", "Requests");
+		this.registry.histogram("requests", "Requests");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidName() {
+		this.registry.counter("requests-total", "Requests");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOddLabels() {
+		this.registry.counter("requests_total", "Requests", "endpoint");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReservedLabel() {
+		this.registry.counter("requests_total", "Requests", "__name__", "x");
+	}
+
+}
@@ -0,0 +1,63 @@
+package notification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import me.security.notification.CircuitBreaker;
+import me.security.notification.CircuitBreaker.State;
+
+public class CircuitBreakerTest {
+
+	private CircuitBreaker breaker;
+
+	@Before
+	public void setUp() throws Exception {
+		this.breaker = new CircuitBreaker(2, 100);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConstructorNoThreshold() {
+		new CircuitBreaker(0, 100);
+	}
+
+	@Test
+	public void testOpensAfterThreshold() {
+		this.breaker.onFailure();
+		assertEquals(State.CLOSED, this.breaker.getState());
+		assertEquals(0, this.breaker.getWait());
+		this.breaker.onFailure();
+		assertEquals(State.OPEN, this.breaker.getState());
+		assertTrue(this.breaker.getWait() > 0);
+	}
+
+	@Test
+	public void testSuccessResetsFailures() {
+		this.breaker.onFailure();
+		this.breaker.onSuccess();
+		this.breaker.onFailure();
+		assertEquals(State.CLOSED, this.breaker.getState());
+	}
+
+	@Test
+	public void testHalfOpenProbe() throws Exception {
+		this.breaker.onFailure();
+		this.breaker.onFailure();
+		Thread.sleep(150);
+		assertEquals(0, this.breaker.getWait());
+		assertEquals(State.HALF_OPEN, this.breaker.getState());
+
+		// A failed probe opens the circuit for twice as long
+		this.breaker.onFailure();
+		assertEquals(State.OPEN, this.breaker.getState());
+		assertTrue(this.breaker.getWait() > 150_000_000L);
+
+		Thread.sleep(250);
+		assertEquals(0, this.breaker.getWait());
+		this.breaker.onSuccess();
+		assertEquals(State.CLOSED, this.breaker.getState());
+	}
+
+}
@@ -0,0 +1,75 @@
+package notification;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.http.client.methods.HttpGet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import me.security.notification.NotificationHttpClient;
+
+public class NotificationHttpClientTest {
+
+	private HttpServer server;
+	private Set<Integer> clientPorts;
+	private NotificationHttpClient http;
+
+	@Before
+	public void setUp() throws Exception {
+		this.clientPorts = new HashSet<Integer>();
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		this.server.createContext("/", exchange -> {
+			synchronized (this.clientPorts) {
+				this.clientPorts.add(exchange.getRemoteAddress().getPort());
+			}
+			byte[] body = "OK".getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(exchange.getRequestURI().getPath().equals("/ok") ? 200 : 402, body.length);
+			exchange.getResponseBody().write(body);
+			exchange.close();
+		});
+		this.server.start();
+		this.http = new NotificationHttpClient(1000, 1000, 1, 1);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.http.close();
+		this.server.stop(0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConstructorNoTimeout() {
+		new NotificationHttpClient(0, 1000, 1, 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConstructorTotalTooSmall() {
+		new NotificationHttpClient(1000, 1000, 2, 1);
+	}
+
+	@Test
+	public void testStatus() throws Exception {
+		assertEquals(402, this.http.execute(new HttpGet(url("/sms"))));
+	}
+
+	@Test
+	public void testConnectionReused() throws Exception {
+		for (int i = 0; i < 3; i++)
+			assertEquals(200, this.http.execute(new HttpGet(url("/ok"))));
+		assertEquals(1, this.clientPorts.size());
+		assertEquals(1, this.http.getIdleConnections());
+	}
+
+	private String url(String path) {
+		return "http://127.0.0.1:" + this.server.getAddress().getPort() + path;
+	}
+
+}
@@ -0,0 +1,94 @@
+package notification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.security.notification.NotificationOutbox;
+import me.security.notification.NotificationOutbox.Entry;
+
+public class NotificationOutboxTest {
+
+	private File file;
+	private NotificationOutbox outbox;
+
+	@Before
+	public void setUp() throws Exception {
+		this.file = File.createTempFile("notifications", ".outbox");
+		this.file.delete();
+		this.outbox = new NotificationOutbox(this.file);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.outbox.close();
+		this.file.delete();
+	}
+
+	@Test
+	public void testPendingUntilAck() throws Exception {
+		Entry first = this.outbox.append("free:12345678", "Porte ouverte", null);
+		Entry second = this.outbox.append("ifttt:alarm", null, Arrays.asList("Porte", "Ouverte"));
+		assertEquals(2, this.outbox.getPending().size());
+
+		this.outbox.ack(first);
+		List<Entry> pending = new ArrayList<Entry>(this.outbox.getPending());
+		assertEquals(1, pending.size());
+		assertEquals(second.getSeq(), pending.get(0).getSeq());
+	}
+
+	@Test
+	public void testReplayedAfterReopen() throws Exception {
+		Entry delivered = this.outbox.append("free:12345678", "Porte ouverte", null);
+		this.outbox.append("free:12345678", "Fenêtre ouverte", null);
+		Entry values = this.outbox.append("ifttt:alarm", null, Arrays.asList("Porte", "Ouverte"));
+		this.outbox.ack(delivered);
+		this.outbox.close();
+
+		this.outbox = new NotificationOutbox(this.file);
+		List<Entry> pending = new ArrayList<Entry>(this.outbox.getPending());
+		assertEquals(2, pending.size());
+		assertEquals("free:12345678", pending.get(0).getSenderKey());
+		assertEquals("Fenêtre ouverte", pending.get(0).getMessage());
+		assertEquals("ifttt:alarm", pending.get(1).getSenderKey());
+		assertNull(pending.get(1).getMessage());
+		assertEquals(Arrays.asList("Porte", "Ouverte"), pending.get(1).getValues());
+
+		// Sequence numbers keep growing across restarts
+		assertTrue(this.outbox.append("free:12345678", "Porte", null).getSeq() > values.getSeq());
+	}
+
+	@Test
+	public void testCompact() throws Exception {
+		Entry kept = null;
+		for (int i = 0; i < 5000; i++) {
+			Entry entry = this.outbox.append("free:12345678", "Detection numéro " + i, null);
+			if (i == 1234) {
+				kept = entry;
+			} else {
+				this.outbox.ack(entry);
+			}
+		}
+		assertTrue(this.outbox.needsCompaction());
+		this.outbox.compact();
+		assertFalse(this.outbox.needsCompaction());
+		this.outbox.close();
+
+		this.outbox = new NotificationOutbox(this.file);
+		List<Entry> pending = new ArrayList<Entry>(this.outbox.getPending());
+		assertEquals(1, pending.size());
+		assertEquals(kept.getSeq(), pending.get(0).getSeq());
+		assertEquals("Detection numéro 1234", pending.get(0).getMessage());
+	}
+
+}
@@ -0,0 +1,201 @@
+package notification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.security.notification.CircuitBreaker;
+import me.security.notification.NotificationPolicy;
+import me.security.notification.NotificationResult;
+import me.security.notification.NotificationSender;
+import me.security.notification.NotificationWorker;
+
+public class NotificationWorkerTest {
+
+	private static final NotificationPolicy UNLIMITED = new NotificationPolicy(0, 1, 1000, 1, 0, 1, 100, 1);
+
+	private FakeSender sender;
+	private NotificationWorker worker;
+
+	@Before
+	public void setUp() throws Exception {
+		this.sender = new FakeSender();
+		this.worker = new NotificationWorker(this.sender, 2, UNLIMITED);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.sender.release.countDown();
+		this.worker.close();
+		this.worker = null;
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConstructorNull() {
+		new NotificationWorker(null, 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConstructorNoCapacity() {
+		new NotificationWorker(this.sender, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPolicyNegativeWindow() {
+		new NotificationPolicy(-1, 1, 1, 1);
+	}
+
+	@Test
+	public void testSubmitDoesNotWait() throws Exception {
+		long start = System.nanoTime();
+		this.worker.submit("Porte");
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 100);
+
+		this.sender.release.countDown();
+		NotificationResult result = this.worker.submit(Arrays.asList("Porte", "Ouverte")).get(5, TimeUnit.SECONDS);
+		assertTrue(result.isSuccess());
+		assertSame(this.sender, result.getSender());
+		assertEquals(Arrays.asList("Porte", "Porte Ouverte"), this.sender.received);
+		assertEquals(2, this.worker.getDelivered());
+	}
+
+	@Test
+	public void testFailureReported() throws Exception {
+		this.sender.release.countDown();
+		NotificationResult result = this.worker.submit("fail").get(5, TimeUnit.SECONDS);
+		assertFalse(result.isSuccess());
+		assertEquals("fail", result.getError().getMessage());
+		assertEquals(1, this.worker.getFailed());
+	}
+
+	@Test
+	public void testQueueFull() throws Exception {
+		this.worker.submit("1");// Taken by the worker thread, blocked in trigger
+		Thread.sleep(100);
+		this.worker.submit("2");
+		this.worker.submit("3");
+		NotificationResult result = this.worker.submit("4").get(5, TimeUnit.SECONDS);
+		assertFalse(result.isSuccess());
+	}
+
+	@Test
+	public void testCoalescedInWindow() throws Exception {
+		this.worker.close();
+		this.worker = new NotificationWorker(this.sender, 10, new NotificationPolicy(300, 10, 10, 1));
+		this.sender.release.countDown();
+
+		assertEquals(1, this.worker.submit(Arrays.asList("Porte", "Ouverte")).get(5, TimeUnit.SECONDS).getBatched());
+		this.worker.submit(Arrays.asList("Porte", "Ouverte"));
+		NotificationResult result = this.worker.submit(Arrays.asList("Fenetre", "Ouverte")).get(5, TimeUnit.SECONDS);
+
+		assertTrue(result.isSuccess());
+		assertEquals(2, result.getBatched());
+		assertEquals(Arrays.asList("Porte Ouverte", "(2) Porte, Fenetre Ouverte"), this.sender.received);
+		assertEquals(2, this.worker.getRequests());
+		assertEquals(3, this.worker.getDelivered());
+	}
+
+	@Test
+	public void testCoalescedWhileRateLimited() throws Exception {
+		this.worker.close();
+		this.worker = new NotificationWorker(this.sender, 10, new NotificationPolicy(0, 10, 1, 300));
+		this.sender.release.countDown();
+
+		this.worker.submit("1").get(5, TimeUnit.SECONDS);
+		long start = System.nanoTime();
+		this.worker.submit("2");
+		this.worker.submit("3");
+		NotificationResult result = this.worker.submit("4").get(5, TimeUnit.SECONDS);
+
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 250);
+		assertEquals(3, result.getBatched());
+		assertEquals(Arrays.asList("1", "(3) 2, 3, 4"), this.sender.received);
+		assertEquals(2, this.worker.getRequests());
+	}
+
+	@Test
+	public void testRetried() throws Exception {
+		this.worker.close();
+		this.worker = new NotificationWorker(this.sender, 10, new NotificationPolicy(0, 1, 1000, 1, 2, 10, 100, 1));
+		this.sender.release.countDown();
+		this.sender.failures = 2;
+
+		assertTrue(this.worker.submit("Porte").get(5, TimeUnit.SECONDS).isSuccess());
+		assertEquals(3, this.worker.getRequests());
+		assertEquals(CircuitBreaker.State.CLOSED, this.worker.getState());
+	}
+
+	@Test
+	public void testInvalidNotRetried() throws Exception {
+		this.worker.close();
+		this.worker = new NotificationWorker(this.sender, 10, new NotificationPolicy(0, 1, 1000, 1, 2, 10, 100, 1));
+		this.sender.release.countDown();
+
+		assertFalse(this.worker.submit("invalid").get(5, TimeUnit.SECONDS).isSuccess());
+		assertEquals(1, this.worker.getRequests());
+	}
+
+	@Test
+	public void testHeldWhileCircuitOpen() throws Exception {
+		this.worker.close();
+		this.worker = new NotificationWorker(this.sender, 10, new NotificationPolicy(0, 1, 1000, 1, 0, 1, 1, 300));
+		this.sender.release.countDown();
+
+		assertFalse(this.worker.submit("fail").get(5, TimeUnit.SECONDS).isSuccess());
+		assertEquals(CircuitBreaker.State.OPEN, this.worker.getState());
+
+		long start = System.nanoTime();
+		assertTrue(this.worker.submit("Porte").get(5, TimeUnit.SECONDS).isSuccess());
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 250);
+		assertEquals(CircuitBreaker.State.CLOSED, this.worker.getState());
+	}
+
+	private static class FakeSender extends NotificationSender {
+
+		private final CountDownLatch release = new CountDownLatch(1);
+		private final List<String> received = new ArrayList<String>();
+		private volatile int failures;
+
+		@Override
+		public void trigger(String value) throws Exception {
+			this.release.await();
+			if (value.equals("fail"))
+				throw new IllegalStateException("fail");
+			if (value.equals("invalid"))
+				throw new IllegalArgumentException("invalid");
+			if (this.failures > 0) {
+				this.failures--;
+				throw new IllegalStateException("transient");
+			}
+			this.received.add(value);
+		}
+
+		@Override
+		public void trigger(List<String> values) throws Exception {
+			trigger(String.join(" ", values));
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o == this;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(this);
+		}
+
+	}
+
+}
@@ -0,0 +1,81 @@
+package rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.security.rest.ChunkedResponse;
+
+public class ChunkedResponseTest {
+
+	private int chunkSize;
+
+	@Before
+	public void setUp() throws Exception {
+		this.chunkSize = ChunkedResponse.CHUNK_SIZE;
+		ChunkedResponse.CHUNK_SIZE = 4;
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		ChunkedResponse.CHUNK_SIZE = this.chunkSize;
+	}
+
+	@Test
+	public void testWriteTo() throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		new ChunkedResponse(out -> {
+			out.write("[1,".getBytes(StandardCharsets.UTF_8));
+			out.flush();
+			out.write("2,3]".getBytes(StandardCharsets.UTF_8));
+		}).writeTo(output, true);
+
+		String written = output.toString(StandardCharsets.ISO_8859_1);
+		assertTrue(written.startsWith("HTTP/1.1 200 OK\r\n"));
+		assertTrue(written.contains("Transfer-Encoding: chunked\r\n"));
+		assertFalse(written.contains("Content-Length"));
+		assertTrue(written.endsWith("Connection: keep-alive\r\n\r\n4\r\n[1,2\r\n3\r\n,3]\r\n0\r\n\r\n"));
+	}
+
+	@Test
+	public void testToBuffers() {
+		ByteBuffer[] buffers = new ChunkedResponse(out -> out.write('x')).toBuffers(false);
+		StringBuilder written = new StringBuilder();
+		for (ByteBuffer buffer : buffers)
+			written.append(StandardCharsets.ISO_8859_1.decode(buffer));
+		assertTrue(written.toString().endsWith("Connection: close\r\n\r\n1\r\nx\r\n0\r\n\r\n"));
+	}
+
+	@Test
+	public void testToBuffersFailureIsAnError() {
+		ByteBuffer[] buffers = new ChunkedResponse(out -> {
+			throw new IOException("Database unreachable");
+		}).toBuffers(true);
+		String head = StandardCharsets.ISO_8859_1.decode(buffers[0]).toString();
+		assertTrue(head.startsWith("HTTP/1.1 500"));
+	}
+
+	@Test
+	public void testFailureWhileWritingAbortsBody() {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try {
+			new ChunkedResponse(out -> {
+				out.write("[1,2,3,".getBytes(StandardCharsets.UTF_8));
+				throw new IOException("Database unreachable");
+			}).writeTo(output, true);
+		} catch (IOException e) {
+			assertEquals("Database unreachable", e.getMessage());
+		}
+		assertFalse(output.toString(StandardCharsets.ISO_8859_1).endsWith("0\r\n\r\n"));
+	}
+
+}
@@ -0,0 +1,72 @@
+package rest;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.security.rest.ConnectionExecutor;
+import me.security.rest.PooledConnectionExecutor;
+
+public class ConnectionExecutorTest {
+
+	private CountDownLatch release;
+	private ConnectionExecutor executor;
+
+	@Before
+	public void setUp() throws Exception {
+		this.release = new CountDownLatch(1);
+		this.executor = new PooledConnectionExecutor(2, 1);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.release.countDown();
+		this.executor.close();
+		this.executor = null;
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConstructorNoConnection() {
+		new PooledConnectionExecutor(0, 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConstructorNegativeBacklog() {
+		new PooledConnectionExecutor(1, -1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testExecuteNull() {
+		this.executor.execute(null);
+	}
+
+	@Test
+	public void testRejectOverLimit() {
+		assertTrue(this.executor.execute(this::block));
+		assertTrue(this.executor.execute(this::block));
+		assertTrue(this.executor.execute(this::block));// Waiting in backlog
+		assertFalse(this.executor.execute(this::block));
+	}
+
+	@Test
+	public void testCreate() {
+		ConnectionExecutor created = ConnectionExecutor.create(4, 4);
+		assertTrue(created.execute(() -> {
+		}));
+		created.close();
+	}
+
+	private void block() {
+		try {
+			this.release.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
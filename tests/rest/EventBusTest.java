@@ -0,0 +1,78 @@
+package rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.security.rest.EventBus;
+import me.security.rest.EventSubscriber;
+
+public class EventBusTest {
+
+	private EventBus bus;
+
+	@Before
+	public void setUp() throws Exception {
+		this.bus = new EventBus(2);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.bus.close();
+		this.bus = null;
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConstructorNoCapacity() {
+		new EventBus(0);
+	}
+
+	@Test
+	public void testEncoding() {
+		EventSubscriber subscriber = this.bus.subscribe();
+		this.bus.publish("alarm", "true");
+		assertEquals("event: alarm\ndata: true\n\n", new String(subscriber.poll(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testFanOutSharesFrame() {
+		EventSubscriber first = this.bus.subscribe();
+		EventSubscriber second = this.bus.subscribe();
+		this.bus.publish("log", "{}");
+		assertSame(first.poll(), second.poll());
+	}
+
+	@Test
+	public void testSlowConsumerClosed() {
+		EventSubscriber slow = this.bus.subscribe();
+		EventSubscriber fast = this.bus.subscribe();
+		for (int i = 0; i < 3; i++) {
+			this.bus.publish("sensor", i + "");
+			fast.poll();
+		}
+		assertTrue(slow.isClosed());
+		assertNull(slow.poll());
+		assertFalse(fast.isClosed());
+		assertEquals(1, this.bus.getSubscriberCount());
+	}
+
+	@Test
+	public void testListener() {
+		EventSubscriber subscriber = this.bus.subscribe();
+		int[] calls = new int[1];
+		subscriber.setListener(() -> calls[0]++);
+		this.bus.publish("alarm", "false");
+		subscriber.close();
+		assertEquals(2, calls[0]);
+		assertEquals(0, this.bus.getSubscriberCount());
+	}
+
+}
@@ -0,0 +1,158 @@
+package rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.security.rest.BadRequestException;
+import me.security.rest.HttpRequestParser;
+import me.security.rest.RestRequest;
+
+public class HttpRequestParserTest {
+
+	private HttpRequestParser parser;
+	private ByteBuffer input;
+
+	@Before
+	public void setUp() throws Exception {
+		this.parser = new HttpRequestParser();
+		this.input = ByteBuffer.allocateDirect(2048);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.parser = null;
+		this.input = null;
+	}
+
+	@Test
+	public void testParse() {
+		receive("GET /alarm HTTP/1.1\r\nHost: raspsecurity\r\nappPassword: pwd\r\n\r\n");
+		RestRequest request = this.parser.parse(this.input);
+		assertEquals("GET", request.getMethod());
+		assertEquals("/alarm", request.getUrl());
+		assertEquals("HTTP/1.1", request.getVersion());
+		assertEquals("pwd", request.getHeader(RestRequest.APP_PASSWORD));
+		assertTrue(request.isKeepAlive());
+		assertEquals(0, this.input.position());
+	}
+
+	@Test
+	public void testParameters() {
+		receive("GET /logs?before=120&sensorOnly&q=porte%20d%27entr%C3%A9e&limit= HTTP/1.1\r\n\r\n");
+		RestRequest request = this.parser.parse(this.input);
+		assertEquals("120", request.getParameter("before"));
+		assertEquals("", request.getParameter("sensorOnly"));
+		assertEquals("porte d'entrée", request.getParameter("q"));
+		assertEquals("", request.getParameter("limit"));
+		assertNull(request.getParameter("before="));
+		assertNull(request.getParameter("from"));
+	}
+
+	@Test
+	public void testHeaderNameIgnoreCase() {
+		receive("GET /alarm HTTP/1.1\r\nAPPPASSWORD:pwd  \r\nconnection: close\r\n\r\n");
+		RestRequest request = this.parser.parse(this.input);
+		assertEquals("pwd", request.getHeader(RestRequest.APP_PASSWORD));
+		assertFalse(request.isKeepAlive());
+	}
+
+	@Test
+	public void testBareLineFeeds() {
+		receive("GET /sensors\nappPassword: pwd\n\n");
+		RestRequest request = this.parser.parse(this.input);
+		assertEquals("/sensors", request.getUrl());
+		assertEquals("HTTP/1.0", request.getVersion());
+		assertEquals("pwd", request.getHeader(RestRequest.APP_PASSWORD));
+	}
+
+	@Test
+	public void testIncomplete() {
+		receive("GET /alarm HTTP/1.1\r\nappPassword: p");
+		assertNull(this.parser.parse(this.input));
+		receive("wd\r\n\r\n");
+		assertEquals("pwd", this.parser.parse(this.input).getHeader(RestRequest.APP_PASSWORD));
+	}
+
+	@Test
+	public void testPipelinedReuse() {
+		receive("GET /alarm HTTP/1.1\r\nappPassword: pwd\r\n\r\n"
+				+ "POST /notify HTTP/1.1\r\nContent-Length: 5\r\n\r\nhello"
+				+ "GET /sensors HTTP/1.1\r\n\r\n");
+		RestRequest first = this.parser.parse(this.input);
+		assertEquals("/alarm", first.getUrl());
+
+		RestRequest second = this.parser.parse(this.input);
+		assertSame(first, second);
+		assertEquals("/notify", second.getUrl());
+		assertEquals(5, second.getContentLength());
+		assertNull(second.getHeader(RestRequest.APP_PASSWORD));
+
+		assertEquals("/sensors", this.parser.parse(this.input).getUrl());
+		assertNull(this.parser.parse(this.input));
+	}
+
+	@Test
+	public void testSameUrlSameString() {
+		receive("GET /alarm HTTP/1.1\r\n\r\n");
+		String first = this.parser.parse(this.input).getUrl();
+		receive("GET /alarm HTTP/1.1\r\n\r\n");
+		assertSame(first, this.parser.parse(this.input).getUrl());
+	}
+
+	@Test
+	public void testBodyNotReceived() {
+		receive("POST /notify HTTP/1.1\r\nContent-Length: 5\r\n\r\nhel");
+		assertNull(this.parser.parse(this.input));
+		receive("lo");
+		assertEquals("/notify", this.parser.parse(this.input).getUrl());
+	}
+
+	@Test(expected = BadRequestException.class)
+	public void testInvalidRequestLine() {
+		receive("GARBAGE\r\n\r\n");
+		this.parser.parse(this.input);
+	}
+
+	@Test(expected = BadRequestException.class)
+	public void testInvalidContentLength() {
+		receive("POST /notify HTTP/1.1\r\nContent-Length: 12a\r\n\r\n");
+		this.parser.parse(this.input);
+	}
+
+	@Test(expected = BadRequestException.class)
+	public void testHeaderLineTooLarge() {
+		StringBuilder value = new StringBuilder();
+		while (value.length() <= HttpRequestParser.MAX_HEADER_LINE)
+			value.append("0123456789");
+		receive("GET /alarm HTTP/1.1\r\nX-Padding: " + value + "\r\n\r\n");
+		this.parser.parse(this.input);
+	}
+
+	@Test
+	public void testHeadTooLarge() {
+		try {
+			while (this.input.hasRemaining())
+				receive("X");
+			this.parser.parse(this.input);
+		} catch (BadRequestException e) {
+			assertEquals(431, e.getResponse().getStatus());
+			return;
+		}
+		throw new AssertionError("Expected BadRequestException");
+	}
+
+	private void receive(String bytes) {
+		this.input.put(bytes.getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+}
@@ -0,0 +1,162 @@
+package rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.security.rest.EventBus;
+import me.security.rest.NioRestTransport;
+import me.security.rest.PooledConnectionExecutor;
+import me.security.rest.RestResponse;
+import me.security.rest.StreamResponse;
+
+public class NioRestTransportTest {
+
+	private NioRestTransport transport;
+	private EventBus events;
+	private int port;
+
+	@Before
+	public void setUp() throws Exception {
+		this.events = new EventBus(4);
+		this.transport = new NioRestTransport(new PooledConnectionExecutor(2, 8));
+		this.port = this.transport.start(0, 16, request -> {
+			if (!"pwd".equals(request.getHeader("appPassword")))
+				return RestResponse.notAuthed();
+			if (request.getUrl().equals("/events"))
+				return new StreamResponse(this.events.subscribe());
+			return RestResponse.text(request.getMethod() + " " + request.getUrl());
+		});
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.events.close();
+		this.transport.close();
+		this.transport = null;
+	}
+
+	@Test
+	public void testRequest() throws IOException {
+		String answer = send("GET /alarm HTTP/1.0\r\nappPassword: pwd\r\n\r\n");
+		assertTrue(answer.startsWith("HTTP/1.1 200 OK\r\n"));
+		assertTrue(answer.contains("Content-Length: 11\r\n"));
+		assertTrue(answer.contains("Connection: close\r\n"));
+		assertTrue(answer.endsWith("\r\n\r\nGET /alarm\n"));
+	}
+
+	@Test
+	public void testNotAuthed() throws IOException {
+		String answer = send("GET /alarm HTTP/1.0\r\n\r\n");
+		assertTrue(answer.startsWith("HTTP/1.1 401 "));
+	}
+
+	@Test
+	public void testSplitRequest() throws Exception {
+		try (Socket socket = new Socket("localhost", this.port)) {
+			socket.getOutputStream().write("GET /sensors HTTP/1.0\r\nappPass".getBytes(StandardCharsets.ISO_8859_1));
+			socket.getOutputStream().flush();
+			Thread.sleep(50);
+			socket.getOutputStream().write("word: pwd\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+			assertTrue(readAll(socket.getInputStream()).endsWith("GET /sensors\n"));
+		}
+	}
+
+	@Test
+	public void testHeadTooLarge() throws IOException {
+		StringBuilder request = new StringBuilder("GET /alarm HTTP/1.1\r\n");
+		while (request.length() < NioRestTransport.DEFAULT_BUFFER_SIZE)
+			request.append("X-Padding: 0123456789\r\n");
+		assertEquals("HTTP/1.1 431", send(request.toString()).substring(0, 12));
+	}
+
+	@Test
+	public void testPipelinedKeepAlive() throws IOException {
+		String answer = send("GET /alarm HTTP/1.1\r\nappPassword: pwd\r\n\r\n"
+				+ "POST /notify HTTP/1.1\r\nappPassword: pwd\r\nContent-Length: 4\r\n\r\nbody"
+				+ "GET /sensors HTTP/1.1\r\nappPassword: pwd\r\nConnection: close\r\n\r\n");
+		int alarm = answer.indexOf("GET /alarm\n");
+		int notify = answer.indexOf("POST /notify\n");
+		int sensors = answer.indexOf("GET /sensors\n");
+		assertTrue(alarm > 0 && notify > alarm && sensors > notify);
+		assertEquals(2, answer.split("Connection: keep-alive").length - 1);
+	}
+
+	@Test
+	public void testIdleTimeout() throws Exception {
+		NioRestTransport shortIdle = new NioRestTransport(new PooledConnectionExecutor(1, 1),
+				NioRestTransport.DEFAULT_BUFFER_SIZE, 1, 200);
+		int shortPort = shortIdle.start(0, 16, request -> RestResponse.text("ok"));
+		try (Socket socket = new Socket("localhost", shortPort)) {
+			socket.setSoTimeout(5000);
+			assertEquals(-1, socket.getInputStream().read());// Closed by the server
+		} finally {
+			shortIdle.close();
+		}
+	}
+
+	@Test
+	public void testEventStream() throws Exception {
+		try (Socket socket = new Socket("localhost", this.port)) {
+			socket.setSoTimeout(5000);
+			socket.getOutputStream().write("GET /events HTTP/1.1\r\nappPassword: pwd\r\n\r\n".getBytes());
+			InputStream input = socket.getInputStream();
+			String head = readUntil(input, "\r\n\r\n");
+			assertTrue(head.contains("Content-Type: text/event-stream\r\n"));
+			assertFalse(head.contains("Content-Length"));
+
+			while (this.events.getSubscriberCount() == 0)
+				Thread.sleep(10);
+			this.events.publish("alarm", "true");
+			this.events.publish("sensor", "{\"id\":1}");
+			assertEquals("event: alarm\ndata: true\n\n", readUntil(input, "\n\n"));
+			assertEquals("event: sensor\ndata: {\"id\":1}\n\n", readUntil(input, "\n\n"));
+		}
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (this.events.getSubscriberCount() > 0 && System.currentTimeMillis() < deadline) {
+			this.events.publish("alarm", "false");// Writing detects the closed client
+			Thread.sleep(10);
+		}
+		assertEquals(0, this.events.getSubscriberCount());
+	}
+
+	private static String readUntil(InputStream input, String end) throws IOException {
+		StringBuilder read = new StringBuilder();
+		while (read.indexOf(end) < 0) {
+			int b = input.read();
+			if (b < 0)
+				throw new IOException("Connection closed");
+			read.append((char) b);
+		}
+		return read.toString();
+	}
+
+	private String send(String request) throws IOException {
+		try (Socket socket = new Socket("localhost", this.port)) {
+			socket.getOutputStream().write(request.getBytes(StandardCharsets.ISO_8859_1));
+			socket.getOutputStream().flush();
+			return readAll(socket.getInputStream());
+		}
+	}
+
+	private static String readAll(InputStream input) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int read;
+		while ((read = input.read(buffer)) >= 0)
+			out.write(buffer, 0, read);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,95 @@
+package rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.security.rest.HttpRequestParser;
+import me.security.rest.RestRequest;
+import me.security.rest.RestResponse;
+import me.security.rest.ResponseCache;
+
+public class ResponseCacheTest {
+
+	private AtomicLong version;
+	private AtomicInteger serialized;
+	private ResponseCache cache;
+
+	@Before
+	public void setUp() throws Exception {
+		this.version = new AtomicLong();
+		this.serialized = new AtomicInteger();
+		this.cache = new ResponseCache(this.version::get, () -> "[" + this.serialized.incrementAndGet() + "]");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.cache = null;
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConstructorNull() {
+		new ResponseCache(null, () -> "");
+	}
+
+	@Test
+	public void testReusedUntilChange() throws IOException {
+		RestResponse first = this.cache.get(request(null));
+		assertSame(first, this.cache.get(request(null)));
+		assertEquals(1, this.serialized.get());
+
+		this.version.incrementAndGet();
+		RestResponse second = this.cache.get(request(null));
+		assertNotSame(first, second);
+		assertEquals(2, this.serialized.get());
+		assertEquals(200, second.getStatus());
+	}
+
+	@Test
+	public void testNotModified() throws IOException {
+		String etag = etagOf(this.cache.get(request(null)));
+
+		RestResponse revalidated = this.cache.get(request(etag));
+		assertEquals(304, revalidated.getStatus());
+		assertEquals("", bodyOf(revalidated));
+
+		this.version.incrementAndGet();
+		assertEquals(200, this.cache.get(request(etag)).getStatus());
+	}
+
+	private static RestRequest request(String etag) {
+		ByteBuffer input = ByteBuffer.allocate(256);
+		input.put(("GET /sensors HTTP/1.1\r\n" + (etag == null ? "" : "If-None-Match: " + etag + "\r\n") + "\r\n")
+				.getBytes(StandardCharsets.ISO_8859_1));
+		return new HttpRequestParser().parse(input);
+	}
+
+	private static String etagOf(RestResponse response) throws IOException {
+		String text = write(response);
+		int start = text.indexOf("ETag: ") + 6;
+		return text.substring(start, text.indexOf("\r\n", start));
+	}
+
+	private static String bodyOf(RestResponse response) throws IOException {
+		String text = write(response);
+		return text.substring(text.indexOf("\r\n\r\n") + 4);
+	}
+
+	private static String write(RestResponse response) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		response.writeTo(output, true);
+		return new String(output.toByteArray(), StandardCharsets.ISO_8859_1);
+	}
+
+}
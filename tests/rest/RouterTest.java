@@ -0,0 +1,111 @@
+package rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.security.rest.HttpRequestParser;
+import me.security.rest.RestRequest;
+import me.security.rest.RestResponse;
+import me.security.rest.Router;
+
+public class RouterTest {
+
+	private Router router;
+	private String called;
+
+	@Before
+	public void setUp() throws Exception {
+		this.router = new Router()
+				.add("/alarm", (request, params) -> answer("alarm"))
+				.add("/alarm/toggle", (request, params) -> answer("toggle"))
+				.add("/sensor/{id:int}/toggle", (request, params) -> answer("sensor " + params.getInt("id")))
+				.add("/sensor/all/toggle", (request, params) -> answer("all"))
+				.add("/user/{name}", (request, params) -> answer("user " + params.getString("name")));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.router = null;
+		this.called = null;
+	}
+
+	@Test
+	public void testLiteral() throws Exception {
+		dispatch("/alarm");
+		assertEquals("alarm", this.called);
+		dispatch("/alarm/toggle");
+		assertEquals("toggle", this.called);
+	}
+
+	@Test
+	public void testIntParam() throws Exception {
+		dispatch("/sensor/42/toggle");
+		assertEquals("sensor 42", this.called);
+		dispatch("/sensor/-3/toggle");
+		assertEquals("sensor -3", this.called);
+	}
+
+	@Test
+	public void testLiteralPreferred() throws Exception {
+		dispatch("/sensor/all/toggle");
+		assertEquals("all", this.called);
+	}
+
+	@Test
+	public void testStringParam() throws Exception {
+		dispatch("/user/bob");
+		assertEquals("user bob", this.called);
+	}
+
+	@Test
+	public void testQueryIgnored() throws Exception {
+		dispatch("/alarm?cache=1");
+		assertEquals("alarm", this.called);
+	}
+
+	@Test
+	public void testNotFound() throws Exception {
+		assertNull(dispatch("/alarms"));
+		assertNull(dispatch("/alarm/"));
+		assertNull(dispatch("/sensor/abc/toggle"));
+		assertNull(dispatch("/sensor/99999999999/toggle"));
+		assertNull(dispatch("/sensor/1"));
+		assertNull(dispatch("/sensor/1/toggle/more"));
+		assertNull(this.called);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddTwice() {
+		this.router.add("/alarm", (request, params) -> answer("again"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddConflictingParam() {
+		this.router.add("/sensor/{name}", (request, params) -> answer("name"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddInvalidType() {
+		this.router.add("/log/{id:long}", (request, params) -> answer("log"));
+	}
+
+	private RestResponse answer(String name) {
+		this.called = name;
+		return RestResponse.text(name);
+	}
+
+	private RestResponse dispatch(String url) throws Exception {
+		ByteBuffer input = ByteBuffer.allocate(256);
+		input.put(("GET " + url + " HTTP/1.1\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+		RestRequest request = new HttpRequestParser().parse(input);
+		return this.router.dispatch(request);
+	}
+
+}
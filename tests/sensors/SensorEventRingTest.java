@@ -0,0 +1,186 @@
+package sensors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.security.hardware.sensors.SensorEvent;
+import me.security.hardware.sensors.SensorEventRing;
+
+public class SensorEventRingTest {
+
+	private SensorEventRing ring;
+
+	@Before
+	public void setUp() {
+		this.ring = new SensorEventRing(8);
+	}
+
+	@After
+	public void tearDown() {
+		this.ring.close();
+	}
+
+	@Test
+	public void testSizeRoundedUp() {
+		assertEquals(8, this.ring.getSize());
+		assertEquals(16, new SensorEventRing(9).getSize());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSize() {
+		new SensorEventRing(0);
+	}
+
+	@Test
+	public void testEventsInOrder() {
+		List<String> received = new ArrayList<String>();
+		this.ring.addStage("test", (event, sequence, endOfBatch) -> received.add(event.getMessage()));
+		this.ring.start();
+
+		for (int i = 0; i < 100; i++)
+			assertEquals(i, this.ring.publish(null, "door", "m" + i, SensorEvent.Type.DETECTION));
+		this.ring.close();
+
+		assertEquals(100, received.size());
+		for (int i = 0; i < 100; i++)
+			assertEquals("m" + i, received.get(i));
+	}
+
+	@Test
+	public void testDependentStageNeverAhead() {
+		AtomicLong first = new AtomicLong(-1);
+		AtomicLong ahead = new AtomicLong();
+		AtomicLong handled = new AtomicLong();
+		SensorEventRing.Stage decide = this.ring.addStage("decide", (event, sequence, endOfBatch) -> {
+			event.setAlarm(true);
+			first.set(sequence);
+		});
+		this.ring.addStage("after", (event, sequence, endOfBatch) -> {
+			if (first.get() < sequence || !event.isAlarm())
+				ahead.incrementAndGet();
+			handled.incrementAndGet();
+		}, decide);
+		this.ring.start();
+
+		for (int i = 0; i < 1000; i++)
+			this.ring.publish(null, "door", "m", SensorEvent.Type.DETECTION);
+		this.ring.close();
+
+		assertEquals(1000, handled.get());
+		assertEquals(0, ahead.get());
+	}
+
+	@Test
+	public void testMultipleProducersWrapAround() throws InterruptedException {
+		int producers = 4;
+		int perProducer = 2000;
+		long[] counts = new long[producers];
+		this.ring.addStage("slow", (event, sequence, endOfBatch) -> {
+			if (sequence % 256 == 0)
+				Thread.sleep(1);
+			counts[Integer.parseInt(event.getSensorName())]++;
+		});
+		this.ring.start();
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int p = 0; p < producers; p++) {
+			String name = Integer.toString(p);
+			Thread t = new Thread(() -> {
+				for (int i = 0; i < perProducer; i++)
+					this.ring.publish(null, name, "m", SensorEvent.Type.DETECTION);
+			});
+			threads.add(t);
+			t.start();
+		}
+		for (Thread t : threads)
+			t.join();
+		this.ring.close();
+
+		for (int p = 0; p < producers; p++)
+			assertEquals(perProducer, counts[p]);
+		assertEquals(0, this.ring.getBacklog());
+	}
+
+	@Test
+	public void testCloseWhileProducersWait() throws InterruptedException {
+		AtomicLong handled = new AtomicLong();
+		this.ring.addStage("slow", (event, sequence, endOfBatch) -> {
+			Thread.sleep(1);
+			handled.incrementAndGet();
+		});
+		this.ring.start();
+
+		AtomicLong accepted = new AtomicLong();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int p = 0; p < 4; p++) {
+			Thread t = new Thread(() -> {
+				while (this.ring.publish(null, "door", "m", SensorEvent.Type.DETECTION) >= 0)
+					accepted.incrementAndGet();
+			});
+			threads.add(t);
+			t.start();
+		}
+		Thread.sleep(50);// Producers are now waiting for the slow stage
+
+		long start = System.nanoTime();
+		this.ring.close();
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+		for (Thread t : threads) {
+			t.join(1000);
+			assertFalse(t.isAlive());
+		}
+		assertEquals(accepted.get(), handled.get());
+		assertEquals(0, this.ring.getBacklog());
+	}
+
+	@Test
+	public void testHandlerFailureSkipsEvent() {
+		AtomicLong handled = new AtomicLong();
+		this.ring.addStage("failing", (event, sequence, endOfBatch) -> {
+			if (sequence == 1)
+				throw new IllegalStateException("Expected by the test");
+			handled.incrementAndGet();
+		});
+		this.ring.start();
+
+		for (int i = 0; i < 3; i++)
+			this.ring.publish(null, "door", "m", SensorEvent.Type.DETECTION);
+		this.ring.close();
+
+		assertEquals(2, handled.get());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testAddStageAfterStart() {
+		this.ring.addStage("first", (event, sequence, endOfBatch) -> {
+		});
+		this.ring.start();
+		this.ring.addStage("second", (event, sequence, endOfBatch) -> {
+		});
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddStageNullHandler() {
+		this.ring.addStage("null", null);
+	}
+
+	@Test
+	public void testPublishClosed() {
+		this.ring.addStage("test", (event, sequence, endOfBatch) -> {
+		});
+		this.ring.start();
+		this.ring.close();
+		assertTrue(this.ring.publish(null, "door", "m", SensorEvent.Type.DETECTION) < 0);
+	}
+
+}
@@ -0,0 +1,56 @@
+package simulated;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import me.security.hardware.simulated.DetectionPattern;
+
+public class DetectionPatternTest {
+
+	@Test
+	public void testParse() {
+		DetectionPattern pattern = DetectionPattern.parse("rate=2, jitter=0,burst=10,burstChance=0.5,burstSpacing=50");
+		assertEquals(2, pattern.getRate(), 0);
+		assertEquals(0, pattern.getJitter(), 0);
+		assertEquals(10, pattern.getBurstSize());
+		assertEquals(0.5, pattern.getBurstChance(), 0);
+		assertEquals(50, pattern.getBurstSpacing());
+		assertEquals(11, pattern.getAverageRate(), 1e-9);
+		assertEquals(pattern.toString(), DetectionPattern.parse(pattern.toString()).toString());
+	}
+
+	@Test
+	public void testParseDefaults() {
+		assertEquals(DetectionPattern.DEFAULT.toString(), DetectionPattern.parse("").toString());
+		DetectionPattern pattern = DetectionPattern.parse("rate=5");
+		assertEquals(5, pattern.getRate(), 0);
+		assertEquals(DetectionPattern.DEFAULT.getBurstSize(), pattern.getBurstSize());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseUnknownKey() {
+		DetectionPattern.parse("speed=2");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseInvalidValue() {
+		DetectionPattern.parse("rate=fast");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullRate() {
+		new DetectionPattern(0, 0, 1, 0, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidJitter() {
+		new DetectionPattern(1, 1.5, 1, 0, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidBurstChance() {
+		new DetectionPattern(1, 0, 2, -0.1, 0);
+	}
+
+}
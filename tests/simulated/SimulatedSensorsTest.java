@@ -0,0 +1,128 @@
+package simulated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.security.hardware.sensors.Sensor;
+import me.security.hardware.simulated.DetectionPattern;
+import me.security.hardware.simulated.SimulatedSensorDriver;
+import me.security.hardware.simulated.TraceRecorder;
+import me.security.hardware.simulated.TraceReplayer;
+import me.security.logs.MemoryLogStore;
+import me.security.managers.NotificationManager;
+import me.security.managers.ServerSecurity;
+
+public class SimulatedSensorsTest {
+
+	private static final String TRACE = "# Recorded trace\n" + "0\tDETECTION\t1\tdoor\topened\n"
+			+ "20\tDETECTION\t2\twindow\tbroken\n" + "\n" + "40\tTRIGGER\t-\tREST\ttest\n";
+
+	private MemoryLogStore db;
+	private NotificationManager notif;
+	private ServerSecurity security;
+	private List<String> events;
+
+	@Before
+	public void setUp() {
+		this.db = new MemoryLogStore(1, false);
+		this.notif = new NotificationManager();
+		this.security = new ServerSecurity(this.db, this.notif);
+		this.events = new CopyOnWriteArrayList<String>();
+		this.security.addDetectionListener(
+				event -> this.events.add(event.getType() + " " + event.getSensorName() + " " + event.getMessage()));
+	}
+
+	@After
+	public void tearDown() {
+		this.security.close();
+		this.notif.close();
+		this.db.close();
+	}
+
+	@Test
+	public void testReplay() throws Exception {
+		TraceReplayer replayer = new TraceReplayer(this.security, () -> new StringReader(TRACE), 0, false);
+		assertEquals(3, replayer.replay());
+		this.security.close();
+
+		assertEquals("[DETECTION door opened, DETECTION window broken, TRIGGER REST test]", this.events.toString());
+		assertEquals("window", this.security.getSensor(2).getName());
+	}
+
+	@Test
+	public void testReplaySpeed() throws Exception {
+		long start = System.nanoTime();
+		new TraceReplayer(this.security, () -> new StringReader(TRACE), 2, false).replay();
+		long elapsed = (System.nanoTime() - start) / 1_000_000;
+		assertTrue("Replayed in " + elapsed + "ms", elapsed >= 19);
+	}
+
+	@Test(expected = java.io.IOException.class)
+	public void testReplayInvalidLine() throws Exception {
+		new TraceReplayer(this.security, () -> new StringReader("0\tDETECTION\tdoor\n"), 0, false).replay();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeSpeed() {
+		new TraceReplayer(this.security, () -> new StringReader(TRACE), -1, false);
+	}
+
+	@Test
+	public void testRecordThenReplay() throws Exception {
+		StringWriter trace = new StringWriter();
+		TraceRecorder recorder = new TraceRecorder(trace);
+		this.security.addDetectionListener(recorder);
+		this.security.detect(new Sensor(3, "garage"), "opened\tthen closed");
+		this.security.triggerAlarm("REST", "test");
+		this.security.close();
+		recorder.close();
+
+		String[] lines = trace.toString().split("\n");
+		assertEquals(2, lines.length);
+		assertTrue(lines[0], lines[0].matches("0\tDETECTION\t3\tgarage\topened then closed"));
+		assertTrue(lines[1], lines[1].matches("\\d+\tTRIGGER\t-\tREST\ttest"));
+
+		ServerSecurity replayed = new ServerSecurity(this.db, this.notif);
+		try {
+			List<String> events = new CopyOnWriteArrayList<String>();
+			replayed.addDetectionListener(event -> events.add(event.getSensorName() + " " + event.getMessage()));
+			assertEquals(2, new TraceReplayer(replayed, () -> new StringReader(trace.toString()), 0, false).replay());
+			replayed.close();
+			assertEquals("[garage opened then closed, REST test]", events.toString());
+		} finally {
+			replayed.close();
+		}
+	}
+
+	@Test
+	public void testSimulatedSensors() throws InterruptedException {
+		SimulatedSensorDriver driver = new SimulatedSensorDriver(this.security, 1);
+		driver.add(new Sensor(1, "door"), new DetectionPattern(200, 0.5, 5, 0.2, 1));
+		driver.add(new Sensor(2, "window"), new DetectionPattern(100, 0, 1, 0, 0));
+		driver.start();
+		Thread.sleep(500);
+		driver.close();
+		this.security.close();
+
+		// 200 * (1 + 0.2 * 4) + 100 detections per second, for half a second
+		long published = driver.getPublished();
+		assertTrue("Published " + published, published > 150 && published < 700);
+		assertEquals(published, this.events.size());
+		assertEquals(2, this.security.getSensors().size());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testSimulatedSensorsNone() {
+		new SimulatedSensorDriver(this.security, 42).start();
+	}
+
+}